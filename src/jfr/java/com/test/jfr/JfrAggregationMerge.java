@@ -0,0 +1,32 @@
+package com.test.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Merge of two partial aggregation states */
+@Name("com.test.AggregationMerge")
+@Label("Aggregation Merge")
+@Description("Merge of partial states: two grouping maps or two aggregation tables")
+@Category(FlightRecording.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public class JfrAggregationMerge extends jdk.jfr.Event implements StageRecorder.Recorded {
+  @Label("Kind")
+  public String kind;
+
+  @Label("Ids")
+  @Description("Count of ids merged")
+  public long ids;
+
+  @Override
+  public void record(StageEvent event) {
+    AggregationMergeEvent aggregationMerge = (AggregationMergeEvent) event;
+    kind = aggregationMerge.kind;
+    ids = aggregationMerge.ids;
+    commit();
+  }
+}
@@ -0,0 +1,38 @@
+package com.test.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Reading and parsing of the lines of one input chunk */
+@Name("com.test.ChunkParse")
+@Label("Chunk Parse")
+@Description("Lines of an input chunk read and passed to the parser")
+@Category(FlightRecording.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public class JfrChunkParse extends jdk.jfr.Event implements StageRecorder.Recorded {
+  @Label("Offset")
+  @DataAmount
+  public long offset;
+
+  @Label("Length")
+  @DataAmount
+  public long length;
+
+  @Label("Lines")
+  public long lines;
+
+  @Override
+  public void record(StageEvent event) {
+    ChunkParseEvent chunkParse = (ChunkParseEvent) event;
+    offset = chunkParse.offset;
+    length = chunkParse.length;
+    lines = chunkParse.lines;
+    commit();
+  }
+}
@@ -0,0 +1,31 @@
+package com.test.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Connection to HSQLDB and creation of a shard table, without the URI as it may hold a password */
+@Name("com.test.ConnectionInit")
+@Label("Connection Init")
+@Description("HSQLDB connection opened and its text table attached to a shard file")
+@Category(FlightRecording.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public class JfrConnectionInit extends jdk.jfr.Event implements StageRecorder.Recorded {
+  @Label("Table")
+  public String table;
+
+  @Label("Shard File")
+  public String shardFile;
+
+  @Override
+  public void record(StageEvent event) {
+    ConnectionInitEvent connectionInit = (ConnectionInitEvent) event;
+    table = connectionInit.table;
+    shardFile = connectionInit.shardFile;
+    commit();
+  }
+}
@@ -0,0 +1,78 @@
+package com.test.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Recording of the stage events as JFR events, started by {@code FlightRecording}. The JFR events
+ * are disabled outside of it, under the names {@code com.test.*}.
+ */
+class JfrRecorder implements StageRecorder {
+  private static final Logger logger = LoggerFactory.getLogger(JfrRecorder.class);
+
+  static final List<Class<? extends Event>> EVENTS =
+      Arrays.asList(
+          JfrChunkParse.class,
+          JfrAggregationMerge.class,
+          JfrSinkFlush.class,
+          JfrConnectionInit.class);
+
+  private final Recording recording;
+  private final Path destination;
+
+  /**
+   * Starts a recording.
+   *
+   * @param destination recording file
+   * @throws IOException when the destination is not writable
+   */
+  JfrRecorder(Path destination) throws IOException {
+    this.destination = destination;
+    try {
+      recording = new Recording(Configuration.getConfiguration("default"));
+    } catch (java.text.ParseException e) {
+      throw new IOException("Invalid default recording settings", e);
+    }
+    for (Class<? extends Event> event : EVENTS) {
+      recording.enable(event).withThreshold(Duration.ZERO);
+    }
+    recording.setName("csa");
+    recording.setDestination(destination);
+    recording.start();
+    logger.info("Flight recording into {}", destination);
+  }
+
+  @Override
+  public Recorded begin(StageEvent event) {
+    Event recorded;
+    if (event instanceof ChunkParseEvent) {
+      recorded = new JfrChunkParse();
+    } else if (event instanceof AggregationMergeEvent) {
+      recorded = new JfrAggregationMerge();
+    } else if (event instanceof SinkFlushEvent) {
+      recorded = new JfrSinkFlush();
+    } else if (event instanceof ConnectionInitEvent) {
+      recorded = new JfrConnectionInit();
+    } else {
+      throw new IllegalArgumentException("Unknown stage event: " + event.getClass().getName());
+    }
+    recorded.begin();
+    return (Recorded) recorded;
+  }
+
+  @Override
+  public void close() {
+    recording.stop();
+    recording.close();
+    logger.info("Flight recording written into {}", destination);
+  }
+}
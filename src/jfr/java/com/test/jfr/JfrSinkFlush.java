@@ -0,0 +1,31 @@
+package com.test.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Write of buffered output records */
+@Name("com.test.SinkFlush")
+@Label("Sink Flush")
+@Description("Buffered output records executed and committed or written to the shard file")
+@Category(FlightRecording.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public class JfrSinkFlush extends jdk.jfr.Event implements StageRecorder.Recorded {
+  @Label("Sink")
+  public String sink;
+
+  @Label("Records")
+  public long records;
+
+  @Override
+  public void record(StageEvent event) {
+    SinkFlushEvent sinkFlush = (SinkFlushEvent) event;
+    sink = sinkFlush.sink;
+    records = sinkFlush.records;
+    commit();
+  }
+}
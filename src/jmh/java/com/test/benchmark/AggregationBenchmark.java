@@ -0,0 +1,63 @@
+package com.test.benchmark;
+
+import com.test.CsaEventProcessor;
+import com.test.aggregate.AggregationMode;
+import com.test.event.InputEvent;
+import com.test.event.OutputEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@code getOutputEventsStream} over all events of {@code idCount} ids, in every aggregation mode,
+ * sequential and parallel. The score is the time to aggregate and read all output events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class AggregationBenchmark {
+  @Param({"1000", "100000", "1000000"})
+  public int idCount;
+
+  @Param({"GROUPING", "STREAMING", "TABLE", "SPILL", "SHARDED"})
+  public AggregationMode mode;
+
+  @Param({"false", "true"})
+  public boolean parallel;
+
+  private List<InputEvent> inputEvents;
+  private CsaEventProcessor processor;
+
+  @Setup
+  public void setUp() {
+    inputEvents = BenchmarkEvents.inputEvents(idCount, true);
+    processor = new CsaEventProcessor();
+    processor.setAggregationMode(mode);
+  }
+
+  @Benchmark
+  public long getOutputEventsStream() {
+    Stream<InputEvent> inputStream =
+        parallel ? inputEvents.parallelStream() : inputEvents.stream();
+    Stream<OutputEvent> outputStream = processor.getOutputEventsStream(inputStream);
+    // every event is read, so its duration is derived as the output sinks do
+    return (parallel ? outputStream.parallel() : outputStream)
+        .mapToLong(OutputEvent::getDurationMillis)
+        .sum();
+  }
+}
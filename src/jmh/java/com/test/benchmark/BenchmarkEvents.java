@@ -0,0 +1,71 @@
+package com.test.benchmark;
+
+import com.test.event.InputEvent;
+import com.test.event.InputEventFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Reproducible input of the benchmarks, the same seed gives the same lines */
+final class BenchmarkEvents {
+  private static final long SEED = 20190101L;
+  private static final long BASE_TIMESTAMP = 1491377495212L;
+
+  private BenchmarkEvents() {}
+
+  /**
+   * @param index index of the id
+   * @param started STARTED or FINISHED line
+   * @param random source of durations and of the optional fields
+   * @return a JSON line without its line separator
+   */
+  private static String line(int index, boolean started, Random random) {
+    StringBuilder line =
+        new StringBuilder("{\"id\":\"id")
+            .append(index)
+            .append("\", \"state\":\"")
+            .append(started ? "STARTED" : "FINISHED")
+            .append('"');
+    if (index % 4 == 0) {
+      line.append(", \"type\":\"APPLICATION_LOG\",\"host\":\"").append(index % 64).append('"');
+    }
+    return line.append(", \"timestamp\":")
+        .append(BASE_TIMESTAMP + index + (started ? 0 : random.nextInt(10)))
+        .append('}')
+        .toString();
+  }
+
+  /**
+   * @param idCount count of distinct ids
+   * @param shuffled lines in random order, otherwise the FINISHED line of an id follows its
+   *     STARTED line
+   * @return a STARTED and a FINISHED line of every id
+   */
+  static List<String> lines(int idCount, boolean shuffled) {
+    Random random = new Random(SEED);
+    List<String> lines = new ArrayList<>(2 * idCount);
+    for (int i = 0; i < idCount; i++) {
+      lines.add(line(i, true, random));
+      lines.add(line(i, false, random));
+    }
+    if (shuffled) {
+      Collections.shuffle(lines, random);
+    }
+    return lines;
+  }
+
+  /**
+   * @param idCount count of distinct ids
+   * @param shuffled events in random order, see {@code lines}
+   * @return parsed {@code lines}
+   */
+  static List<InputEvent> inputEvents(int idCount, boolean shuffled) {
+    List<InputEvent> inputEvents = new ArrayList<>(2 * idCount);
+    for (String line : lines(idCount, shuffled)) {
+      inputEvents.add(InputEventFactory.buildEvent(line));
+    }
+    return inputEvents;
+  }
+}
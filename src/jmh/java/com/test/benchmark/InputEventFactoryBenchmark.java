@@ -0,0 +1,69 @@
+package com.test.benchmark;
+
+import com.test.event.InputEvent;
+import com.test.event.InputEventFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing of a single line, from a string and from the raw bytes of a mapped chunk */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InputEventFactoryBenchmark {
+  // a power of two, so the next line is selected by a mask
+  private static final int LINE_COUNT = 1024;
+
+  private String[] lines;
+  private ByteBuffer buffer;
+  private int[] starts;
+  private int[] ends;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    List<String> shuffled = BenchmarkEvents.lines(LINE_COUNT / 2, true);
+    lines = shuffled.toArray(new String[0]);
+    byte[][] encoded = new byte[LINE_COUNT][];
+    int size = 0;
+    for (int i = 0; i < LINE_COUNT; i++) {
+      encoded[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+      size += encoded[i].length + 1;
+    }
+    buffer = ByteBuffer.allocateDirect(size);
+    starts = new int[LINE_COUNT];
+    ends = new int[LINE_COUNT];
+    for (int i = 0; i < LINE_COUNT; i++) {
+      starts[i] = buffer.position();
+      buffer.put(encoded[i]);
+      ends[i] = buffer.position();
+      buffer.put((byte) '\n');
+    }
+  }
+
+  @Benchmark
+  public InputEvent buildEventFromString() {
+    return InputEventFactory.buildEvent(lines[next++ & (LINE_COUNT - 1)]);
+  }
+
+  @Benchmark
+  public InputEvent buildEventFromBytes() {
+    int line = next++ & (LINE_COUNT - 1);
+    return InputEventFactory.buildEvent(buffer, starts[line], ends[line]);
+  }
+}
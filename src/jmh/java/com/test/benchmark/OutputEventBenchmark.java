@@ -0,0 +1,56 @@
+package com.test.benchmark;
+
+import com.test.event.InputEvent;
+import com.test.event.OutputEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregation of the two events of an id: {@code accept} of both into one {@code OutputEvent}, and
+ * {@code combiner} of two {@code OutputEvent} that accepted one each, as parallel streams do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class OutputEventBenchmark {
+  // a power of two, so the next id is selected by a mask
+  private static final int ID_COUNT = 512;
+
+  // the FINISHED event of an id follows its STARTED event
+  private InputEvent[] inputEvents;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    List<InputEvent> pairs = BenchmarkEvents.inputEvents(ID_COUNT, false);
+    inputEvents = pairs.toArray(new InputEvent[0]);
+  }
+
+  @Benchmark
+  public OutputEvent accept() {
+    int started = 2 * (next++ & (ID_COUNT - 1));
+    return new OutputEvent().accept(inputEvents[started]).accept(inputEvents[started + 1]);
+  }
+
+  @Benchmark
+  public OutputEvent combiner() {
+    int started = 2 * (next++ & (ID_COUNT - 1));
+    return OutputEvent.combiner(
+        new OutputEvent().accept(inputEvents[started]),
+        new OutputEvent().accept(inputEvents[started + 1]));
+  }
+}
@@ -0,0 +1,84 @@
+package com.test.benchmark;
+
+import com.test.event.InputEvent;
+import com.test.event.OutputEvent;
+import com.test.event.OutputGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@code OutputGenerator.emit} of one record into the HSQLDB text table, the batches are executed
+ * and committed as in a real run. Every iteration writes into a new database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class OutputGeneratorBenchmark {
+  // a power of two, so the next record is selected by a mask
+  private static final int RECORD_COUNT = 1024;
+
+  @Param({"1", "1000"})
+  public int batchSize;
+
+  private OutputEvent[] outputEvents;
+  private Path databaseDirectory;
+  private OutputGenerator outputGenerator;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    List<InputEvent> pairs = BenchmarkEvents.inputEvents(RECORD_COUNT, false);
+    outputEvents = new OutputEvent[RECORD_COUNT];
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      outputEvents[i] = new OutputEvent().accept(pairs.get(2 * i)).accept(pairs.get(2 * i + 1));
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void openDatabase() throws IOException, SQLException {
+    databaseDirectory = Files.createTempDirectory("csa-benchmark");
+    outputGenerator =
+        new OutputGenerator(
+            "jdbc:hsqldb:file:" + databaseDirectory.resolve("benchmarkdb") + ";shutdown=true",
+            "output.csv",
+            batchSize);
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeDatabase() throws IOException, SQLException {
+    outputGenerator.finish();
+    try (Stream<Path> files = Files.walk(databaseDirectory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Benchmark
+  public void emit() throws SQLException {
+    outputGenerator.emit(outputEvents[next++ & (RECORD_COUNT - 1)]);
+  }
+}
@@ -1,34 +1,218 @@
 package com.test;
 
+import com.test.aggregate.AggregationMode;
+import com.test.aggregate.OutputEventTable;
+import com.test.aggregate.ShardedAggregator;
+import com.test.aggregate.SpillingAggregator;
+import com.test.aggregate.StreamingAggregator;
+import com.test.checkpoint.CheckpointProcessor;
+import com.test.checkpoint.IncrementalProcessor;
+import com.test.daemon.ProcessorDaemon;
+import com.test.event.CsvOutputGenerator;
 import com.test.event.InputEvent;
 import com.test.event.InputEventFactory;
 import com.test.event.OutputEvent;
+import com.test.event.OutputFormat;
 import com.test.event.OutputGenerator;
+import com.test.event.WorkTablePool;
+import com.test.follow.FollowProcessor;
+import com.test.input.FileChunk;
+import com.test.input.MappedFileChunker;
+import com.test.jfr.AggregationMergeEvent;
+import com.test.jfr.FlightRecording;
+import com.test.metrics.MetricsReporter;
+import com.test.metrics.ProcessingMetrics;
+import com.test.output.AsyncOutputSink;
+import com.test.output.BinaryOutputSink;
+import com.test.output.CsvOutputSink;
+import com.test.output.HsqldbOutputSink;
+import com.test.output.JsonLinesOutputSink;
+import com.test.output.OutputSink;
+import com.test.pipeline.Pipeline;
+import com.test.plan.ExecutionPlan;
+import com.test.plan.ExecutionPlanner;
+import com.test.plan.InputProfile;
+import com.test.trace.IdTracer;
 import org.apache.commons.cli.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collector;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.groupingBy;
-
 public class CsaEventProcessor {
   private static final Logger logger = LoggerFactory.getLogger(CsaEventProcessor.class);
 
+  private AggregationMode aggregationMode = AggregationMode.GROUPING;
+  private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+  private Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+  private int shardCount = ShardedAggregator.defaultShardCount();
+  private int batchSize = OutputGenerator.DEFAULT_BATCH_SIZE;
+  private OutputFormat outputFormat = OutputFormat.HSQLDB;
+  private int writeQueueCapacity = AsyncOutputSink.DEFAULT_QUEUE_CAPACITY;
+  private boolean pipelineMode = false;
+  private int readerThreads = Pipeline.defaultReaderThreads();
+  private int parserThreads = Pipeline.defaultParserThreads();
+  private boolean followMode = false;
+  private long followInterval = FollowProcessor.DEFAULT_POLL_INTERVAL;
+  private Path checkpointFile = null;
+  private long checkpointInterval = CheckpointProcessor.DEFAULT_INTERVAL;
+  private boolean resume = false;
+  private Path stateFile = null;
+  private int daemonJobs = ProcessorDaemon.defaultJobThreads();
+  private int tableCapacity = OutputEventTable.DEFAULT_EXPECTED_SIZE;
+  private volatile WorkTablePool workTablePool = null;
+
   public CsaEventProcessor() {}
 
+  /** @return strategy used by {@code getOutputEventsStream} */
+  public AggregationMode getAggregationMode() {
+    return aggregationMode;
+  }
+
+  /** @param aggregationMode strategy used by {@code getOutputEventsStream} */
+  public void setAggregationMode(AggregationMode aggregationMode) {
+    this.aggregationMode = aggregationMode;
+  }
+
+  /** @param memoryBudget heap bytes the aggregation state may use before it is spilled to disk */
+  public void setMemoryBudget(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+
+  /** @param spillDirectory directory for temporary partition files */
+  public void setSpillDirectory(Path spillDirectory) {
+    this.spillDirectory = spillDirectory;
+  }
+
+  /** @param shardCount count of aggregation threads in sharded mode and in the pipeline */
+  public void setShardCount(int shardCount) {
+    this.shardCount = shardCount;
+  }
+
+  /** @param batchSize count of output records per JDBC batch and transaction */
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  /** @return format of the output file */
+  public OutputFormat getOutputFormat() {
+    return outputFormat;
+  }
+
+  /** @param outputFormat format of the output file */
+  public void setOutputFormat(OutputFormat outputFormat) {
+    this.outputFormat = outputFormat;
+  }
+
+  /** @param writeQueueCapacity count of record batches that may wait for the output writer */
+  public void setWriteQueueCapacity(int writeQueueCapacity) {
+    this.writeQueueCapacity = writeQueueCapacity;
+  }
+
+  /** @param pipelineMode run the staged pipeline instead of streams */
+  public void setPipelineMode(boolean pipelineMode) {
+    this.pipelineMode = pipelineMode;
+  }
+
+  /** @param readerThreads count of reader threads of the pipeline */
+  public void setReaderThreads(int readerThreads) {
+    this.readerThreads = readerThreads;
+  }
+
+  /** @param parserThreads count of parser threads of the pipeline */
+  public void setParserThreads(int parserThreads) {
+    this.parserThreads = parserThreads;
+  }
+
+  /** @param followMode tail the input file until the process is stopped */
+  public void setFollowMode(boolean followMode) {
+    this.followMode = followMode;
+  }
+
+  /** @param followInterval milliseconds to wait for new lines of the followed file */
+  public void setFollowInterval(long followInterval) {
+    this.followInterval = followInterval;
+  }
+
+  /** @param checkpointFile checkpoint file of a checkpointed run, null for a normal run */
+  public void setCheckpointFile(Path checkpointFile) {
+    this.checkpointFile = checkpointFile;
+  }
+
+  /** @param checkpointInterval seconds between two checkpoints */
+  public void setCheckpointInterval(long checkpointInterval) {
+    this.checkpointInterval = checkpointInterval;
+  }
+
+  /** @param resume continue a checkpointed run from its checkpoint file */
+  public void setResume(boolean resume) {
+    this.resume = resume;
+  }
+
+  /** @param stateFile state file of incremental runs, null for a normal run */
+  public void setStateFile(Path stateFile) {
+    this.stateFile = stateFile;
+  }
+
+  /** @param daemonJobs count of input files processed concurrently in daemon mode */
+  public void setDaemonJobs(int daemonJobs) {
+    this.daemonJobs = daemonJobs;
+  }
+
+  /**
+   * @param tableCapacity count of ids the aggregation tables are sized for together, tables that
+   *     aggregate at the same time get their share of it
+   */
+  public void setTableCapacity(int tableCapacity) {
+    this.tableCapacity = tableCapacity;
+  }
+
+  /**
+   * @param tables count of tables that aggregate at the same time
+   * @return count of ids one of them is sized for
+   */
+  private int tableCapacity(int tables) {
+    return tableCapacity / Math.max(1, tables);
+  }
+
+  /**
+   * Takes the aggregation mode, the thread counts of the pipeline, the memory budget and the table
+   * capacity of a plan, the plan also tells whether the run is parallel.
+   *
+   * @param plan plan of the run
+   */
+  public void applyPlan(ExecutionPlan plan) {
+    this.aggregationMode = plan.getAggregationMode();
+    this.readerThreads = plan.getReaderThreads();
+    this.parserThreads = plan.getParserThreads();
+    this.shardCount = plan.getShardCount();
+    this.memoryBudget = plan.getMemoryBudget();
+    this.tableCapacity = plan.getTableCapacity();
+  }
+
   /** @return options settings for the application */
   public static Options getCmdOptions() {
     Options options = new Options();
 
-    Option inputOption = new Option("i", "input", true, "input file name");
-    inputOption.setRequired(true);
+    Option inputOption =
+        new Option("i", "input", true, "input file name, required unless in daemon mode");
+    inputOption.setRequired(false);
     options.addOption(inputOption);
 
     Option wdOption =
@@ -36,19 +220,75 @@ public class CsaEventProcessor {
             "wd",
             "working-database-URL",
             true,
-            "HSQLDB working database URI (example \"jdbc:hsqldb:file:/tmp/test1/sampledb;shutdown=true\")");
-    wdOption.setRequired(true);
+            "HSQLDB working database URI (example \"jdbc:hsqldb:file:/tmp/test1/sampledb;shutdown=true\"), required for hsqldb output");
+    wdOption.setRequired(false);
     options.addOption(wdOption);
 
-    Option outputOption = new Option("o", "output", true, "output file name");
-    outputOption.setRequired(true);
+    Option outputOption =
+        new Option("o", "output", true, "output file name, output directory in daemon mode");
+    outputOption.setRequired(false);
     options.addOption(outputOption);
 
     Option stOption =
         new Option(
             "st", "single-thread", false, "use single-thread processing (reduces memory load)");
     stOption.setRequired(false);
-    options.addOption(stOption);
+    Option pipelineOption =
+        new Option(
+            "pl",
+            "pipeline",
+            false,
+            "use the staged pipeline: reader, parser, aggregation shard and writer threads "
+                + "connected by lock-free ring buffers (ids are aggregated in table shards, "
+                + "the aggregation mode is ignored)");
+    pipelineOption.setRequired(false);
+    Option followOption =
+        new Option(
+            "f",
+            "follow",
+            false,
+            "follow the input file as it grows, also after rotation or truncation, and write "
+                + "every id as soon as it completes until the process is stopped (ids are "
+                + "aggregated in streaming mode, the aggregation mode is ignored; csv, jsonl or "
+                + "binary output)");
+    followOption.setRequired(false);
+    Option checkpointOption =
+        new Option(
+            "cp",
+            "checkpoint",
+            true,
+            "checkpoint file: process on a single thread and save the state periodically, so "
+                + "the run can be resumed after a crash (ids are aggregated in streaming mode, "
+                + "the aggregation mode is ignored; needs csv, jsonl or binary output)");
+    checkpointOption.setRequired(false);
+    Option stateOption =
+        new Option(
+            "s",
+            "state",
+            true,
+            "state file of incremental runs: only lines appended since the previous run are "
+                + "read and only new and changed records are written, ids that are still open "
+                + "are kept in the state file (ids are aggregated in streaming mode, the "
+                + "aggregation mode is ignored)");
+    stateOption.setRequired(false);
+    Option planOption =
+        new Option(
+            "pa",
+            "plan",
+            false,
+            "sample the head of the input and choose the aggregation mode, the threads, also "
+                + "those of the pipeline, the memory budget and the table capacity from it, the "
+                + "maximum heap and the processors; streaming is never chosen (do not combine "
+                + "with am, mb, sc, pt or rt)");
+    planOption.setRequired(false);
+    OptionGroup executionGroup = new OptionGroup();
+    executionGroup.addOption(stOption);
+    executionGroup.addOption(pipelineOption);
+    executionGroup.addOption(followOption);
+    executionGroup.addOption(checkpointOption);
+    executionGroup.addOption(stateOption);
+    options.addOptionGroup(executionGroup);
+    options.addOption(planOption);
 
     Option alertThresholdOption =
         new Option(
@@ -59,18 +299,233 @@ public class CsaEventProcessor {
     alertThresholdOption.setRequired(false);
     options.addOption(alertThresholdOption);
 
+    Option aggregationModeOption =
+        new Option(
+            "am",
+            "aggregation-mode",
+            true,
+            "aggregation mode: grouping (default), streaming (emits events as soon as "
+                + "STARTED and FINISHED are seen, memory tracks in-flight ids), table "
+                + "(compact primitive table for many distinct ids), spill (table that is "
+                + "partitioned to disk over the memory budget) or sharded (ids are routed to "
+                + "aggregation threads by hash)");
+    aggregationModeOption.setRequired(false);
+    options.addOption(aggregationModeOption);
+
+    Option memoryBudgetOption =
+        new Option(
+            "mb",
+            "memory-budget",
+            true,
+            "aggregation memory budget in MB for spill mode (default 1/4 of maximum heap)");
+    memoryBudgetOption.setRequired(false);
+    options.addOption(memoryBudgetOption);
+
+    Option spillDirectoryOption =
+        new Option(
+            "sd",
+            "spill-directory",
+            true,
+            "directory for temporary files of spill mode (default java.io.tmpdir)");
+    spillDirectoryOption.setRequired(false);
+    options.addOption(spillDirectoryOption);
+
+    Option shardsOption =
+        new Option(
+            "sc",
+            "shard-count",
+            true,
+            "count of aggregation threads in sharded mode and of shard threads of the pipeline "
+                + "(default half of the processors)");
+    shardsOption.setRequired(false);
+    options.addOption(shardsOption);
+
+    Option batchSizeOption =
+        new Option(
+            "bs",
+            "batch-size",
+            true,
+            "count of output records per database batch and commit (default "
+                + OutputGenerator.DEFAULT_BATCH_SIZE
+                + ")");
+    batchSizeOption.setRequired(false);
+    options.addOption(batchSizeOption);
+
+    Option outputFormatOption =
+        new Option(
+            "of",
+            "output-format",
+            true,
+            "output format: hsqldb (default, output file is relative to the database), csv "
+                + "(the same file written directly), jsonl (JSON object per line) or binary "
+                + "(records readable by OutputEventCodec); files of the last three are relative "
+                + "to the current directory");
+    outputFormatOption.setRequired(false);
+    options.addOption(outputFormatOption);
+
+    Option writeQueueOption =
+        new Option(
+            "wq",
+            "write-queue",
+            true,
+            "count of record batches that may wait for the output writer thread, parallel csv "
+                + "and hsqldb output is written by the workers into shard files (default "
+                + AsyncOutputSink.DEFAULT_QUEUE_CAPACITY
+                + ")");
+    writeQueueOption.setRequired(false);
+    options.addOption(writeQueueOption);
+
+    Option readerThreadsOption =
+        new Option(
+            "rt",
+            "reader-threads",
+            true,
+            "count of reader threads of the pipeline (default "
+                + Pipeline.defaultReaderThreads()
+                + ")");
+    readerThreadsOption.setRequired(false);
+    options.addOption(readerThreadsOption);
+
+    Option parserThreadsOption =
+        new Option(
+            "pt",
+            "parser-threads",
+            true,
+            "count of parser threads of the pipeline, not less than the reader threads (default "
+                + "half of the processors)");
+    parserThreadsOption.setRequired(false);
+    options.addOption(parserThreadsOption);
+
+    Option followIntervalOption =
+        new Option(
+            "fi",
+            "follow-interval",
+            true,
+            "milliseconds to wait for new lines of the followed input file (default "
+                + FollowProcessor.DEFAULT_POLL_INTERVAL
+                + ")");
+    followIntervalOption.setRequired(false);
+    options.addOption(followIntervalOption);
+
+    Option checkpointIntervalOption =
+        new Option(
+            "ci",
+            "checkpoint-interval",
+            true,
+            "seconds between two checkpoints (default "
+                + CheckpointProcessor.DEFAULT_INTERVAL
+                + ")");
+    checkpointIntervalOption.setRequired(false);
+    options.addOption(checkpointIntervalOption);
+
+    Option resumeOption =
+        new Option(
+            "r",
+            "resume",
+            false,
+            "resume the run from the checkpoint file, if it exists, instead of starting over");
+    resumeOption.setRequired(false);
+    options.addOption(resumeOption);
+
+    Option daemonOption =
+        new Option(
+            "d",
+            "daemon",
+            true,
+            "inbox directory: keep running and process every *.log file that is created or "
+                + "renamed into it, processed files are moved into its done or failed "
+                + "subdirectory (not with follow, checkpoint or state)");
+    daemonOption.setRequired(false);
+    options.addOption(daemonOption);
+
+    Option daemonJobsOption =
+        new Option(
+            "dj",
+            "daemon-jobs",
+            true,
+            "count of input files processed concurrently in daemon mode (default half of "
+                + "the processors)");
+    daemonJobsOption.setRequired(false);
+    options.addOption(daemonJobsOption);
+
+    Option metricsIntervalOption =
+        new Option(
+            "mi",
+            "metrics-interval",
+            true,
+            "seconds between two logs of the processing metrics, which are also published "
+                + "as the JMX MBean com.test:type=ProcessingMetrics; 0 disables the log "
+                + "(default 10)");
+    metricsIntervalOption.setRequired(false);
+    options.addOption(metricsIntervalOption);
+
+    Option flightRecordingOption =
+        new Option(
+            "jfr",
+            "flight-recording",
+            true,
+            "Java Flight Recorder file of the run, with the events of chunk parse, aggregation "
+                + "merge, sink flush and connection init enabled; they are off without it");
+    flightRecordingOption.setRequired(false);
+    options.addOption(flightRecordingOption);
+
+    Option traceIdsOption =
+        new Option(
+            "ti",
+            "trace-ids",
+            true,
+            "comma-separated ids whose parse, accept, combine and emit are logged, "
+                + "without debug logging of other ids");
+    traceIdsOption.setRequired(false);
+    options.addOption(traceIdsOption);
+
+    Option traceSampleOption =
+        new Option(
+            "ts",
+            "trace-sample",
+            true,
+            "fraction of ids traced like --trace-ids, from 0 to 1, chosen by a hash of the id "
+                + "so the same ids are traced in every run (default 0)");
+    traceSampleOption.setRequired(false);
+    options.addOption(traceSampleOption);
+
+    Option explainOption =
+        new Option(
+            "ex",
+            "explain",
+            false,
+            "dry run: print the input profile, the plan of --plan and its estimated peak memory, "
+                + "then exit without processing");
+    explainOption.setRequired(false);
+    options.addOption(explainOption);
+
+    Option planSampleOption =
+        new Option(
+            "ps",
+            "plan-sample",
+            true,
+            "MB of the head of the input sampled by --plan and --explain (default "
+                + (InputProfile.DEFAULT_SAMPLE_SIZE >> 20)
+                + ")");
+    planSampleOption.setRequired(false);
+    options.addOption(planSampleOption);
+
     return options;
   }
 
   /**
-   * Converts text file into stream of strings
+   * Converts text file into stream of strings. The file is memory-mapped and split into
+   * newline-aligned chunks, so a parallel stream gets one chunk per worker instead of sharing a
+   * single sequential line iterator. A sequential stream keeps the file order of lines.
    *
    * @param inputFileName source file name
    * @return stream of strings
    * @throws IOException
    */
   public Stream<String> getInputStringStream(String inputFileName) throws IOException {
-    return Files.lines(Paths.get(inputFileName));
+    return MappedFileChunker.split(Paths.get(inputFileName), MappedFileChunker.defaultChunkCount())
+        .stream()
+        .flatMap(FileChunk::lines);
   }
 
   /**
@@ -83,26 +538,133 @@ public class CsaEventProcessor {
       return inputStream.map(InputEventFactory::buildEvent);
   }
 
+  /**
+   * Converts text file directly into stream of {@code InputEvent}. Lines are parsed from the raw
+   * bytes of the memory-mapped chunks and never decoded into strings, lines that are not valid
+   * events are logged by the factory and skipped.
+   *
+   * @param inputFileName source file name
+   * @return stream of {@code InputEvent}
+   * @throws IOException
+   */
+  public Stream<InputEvent> getFileInputEventStream(String inputFileName) throws IOException {
+    return MappedFileChunker.split(Paths.get(inputFileName), MappedFileChunker.defaultChunkCount())
+        .stream()
+        .flatMap(chunk -> chunk.lines(InputEventFactory::buildEvent))
+        .filter(Objects::nonNull);
+  }
+
+  /**
+   * Converts text file directly into stream of {@code OutputEvent}. In table and spill mode the
+   * lines are scanned straight into the aggregation state and no {@code InputEvent} is created,
+   * the other modes aggregate {@code getFileInputEventStream}.
+   *
+   * @param inputFileName source file name
+   * @param parallelMode aggregate chunks in parallel and return a parallel stream
+   * @return stream of {@code OutputEvent}
+   * @throws IOException
+   */
+  public Stream<OutputEvent> getFileOutputEventsStream(String inputFileName, boolean parallelMode)
+      throws IOException {
+    switch (aggregationMode) {
+      case TABLE:
+        List<FileChunk> chunks =
+            MappedFileChunker.split(
+                Paths.get(inputFileName), MappedFileChunker.defaultChunkCount());
+        int chunkCapacity = parallelMode ? tableCapacity(chunks.size()) : tableCapacity;
+        Stream<OutputEvent> outputStream =
+            (parallelMode ? chunks.parallelStream() : chunks.stream())
+                .collect(
+                    Collector.of(
+                        () -> new OutputEventTable(chunkCapacity),
+                        OutputEventTable::acceptLines,
+                        OutputEventTable::merge))
+                .stream();
+        return parallelMode ? outputStream.parallel() : outputStream;
+      case SPILL:
+        return SpillingAggregator.aggregateLines(
+            MappedFileChunker.split(
+                Paths.get(inputFileName), MappedFileChunker.defaultChunkCount()),
+            memoryBudget,
+            spillDirectory,
+            tableCapacity,
+            parallelMode);
+      default:
+        Stream<InputEvent> inputStream = getFileInputEventStream(inputFileName);
+        return parallelMode
+            ? getOutputEventsStream(inputStream.parallel()).parallel()
+            : getOutputEventsStream(inputStream);
+    }
+  }
+
   /**
    * Converts stream of {@code InputEvent} into stream of {@code OutputEvent}. New {@code
    * OutputEvent} represents a result of processing all {@code InputEvent} with the same id of the
-   * event.
+   * event. The way events are aggregated is defined by {@code getAggregationMode}.
    *
    * @param inputStream
    * @return
    */
   public Stream<OutputEvent> getOutputEventsStream(Stream<InputEvent> inputStream) {
-    return inputStream
-        .collect(
-            groupingBy(
-                InputEvent::getId,
-                Collector.of(OutputEvent::new, OutputEvent::accept, OutputEvent::combiner)))
-        .values()
-        .stream();
+    switch (aggregationMode) {
+      case STREAMING:
+        return StreamingAggregator.aggregate(inputStream);
+      case TABLE:
+        int partCapacity =
+            inputStream.isParallel()
+                ? tableCapacity(ForkJoinPool.getCommonPoolParallelism())
+                : tableCapacity;
+        return inputStream
+            .collect(
+                Collector.of(
+                    () -> new OutputEventTable(partCapacity),
+                    OutputEventTable::accept,
+                    OutputEventTable::merge))
+            .stream();
+      case SPILL:
+        return SpillingAggregator.aggregate(
+            inputStream, memoryBudget, spillDirectory, tableCapacity);
+      case SHARDED:
+        return ShardedAggregator.aggregate(inputStream, shardCount, tableCapacity(shardCount));
+      default:
+        return inputStream
+            .collect(
+                Collector.<InputEvent, Map<String, OutputEvent>>of(
+                    HashMap::new,
+                    (groups, inputEvent) ->
+                        groups.computeIfAbsent(inputEvent.getId(), id -> new OutputEvent())
+                            .accept(inputEvent),
+                    CsaEventProcessor::mergeGroups))
+            .values()
+            .stream();
+    }
+  }
+
+  /**
+   * Merges the partial groups of a parallel grouping with {@code OutputEvent.combiner}, recorded
+   * as one {@code AggregationMergeEvent} when that event is enabled.
+   *
+   * @param groups1 partial groups by id
+   * @param groups2 partial groups by id, it must not be used afterwards
+   * @return {@code groups1}
+   */
+  private static Map<String, OutputEvent> mergeGroups(
+      Map<String, OutputEvent> groups1, Map<String, OutputEvent> groups2) {
+    AggregationMergeEvent event = new AggregationMergeEvent();
+    event.begin();
+    groups2.forEach((id, outputEvent) -> groups1.merge(id, outputEvent, OutputEvent::combiner));
+    event.end();
+    if (event.shouldCommit()) {
+      event.kind = AggregationMergeEvent.GROUPING;
+      event.ids = groups2.size();
+      event.commit();
+    }
+    return groups1;
   }
 
   /**
-   * Converts stream of {@code OutputEvent} into HSQLDB file.
+   * Converts stream of {@code OutputEvent} into HSQLDB file. The workers of a parallel stream
+   * write their own shard files, which are joined in encounter order at the end.
    *
    * @param outputEventStream input stream
    * @param workingDatabaseURI HSQLDB database URI
@@ -120,18 +682,272 @@ public class CsaEventProcessor {
     // OutputGenerator.apply(workingDatabaseURI, outputFileName, s)).count();
     // OutputGenerator.releaseInstance();
 
-    OutputGenerator.WORKING_DATABASE_URI = workingDatabaseURI;
-    OutputGenerator.OUTPUT_FILE_NAME = outputFileName;
     // outputEventStream.parallel().collect(Collector.of(OutputGenerator::init,
     // OutputGenerator::apply, OutputGenerator::combine, OutputGenerator::release));
-    return outputEventStream
-        .collect(
-            Collector.of(
-                OutputGenerator::init,
-                OutputGenerator::apply,
-                OutputGenerator::combine,
-                OutputGenerator::release))
-        .getEmitCount();
+    WorkTablePool workTables = workTables(workingDatabaseURI);
+    try (Stream<OutputEvent> outputEvents = outputEventStream) {
+      return outputEvents
+          .collect(
+              Collector.of(
+                  () -> OutputGenerator.init(workTables, outputFileName, batchSize),
+                  OutputGenerator::apply,
+                  OutputGenerator::combine,
+                  OutputGenerator::release))
+          .getEmitCount();
+    }
+  }
+
+  /**
+   * Converts stream of {@code OutputEvent} into CSV file, without HSQLDB. The workers of a
+   * parallel stream write their own shard files, which are joined in encounter order at the end.
+   *
+   * @param outputEventStream input stream
+   * @param outputFileName output file name
+   * @return count of generate records in the output file
+   * @throws IOException
+   */
+  public long processOutputEventStreamToCsv(
+      Stream<OutputEvent> outputEventStream, String outputFileName) throws IOException {
+    Path outputFile = Paths.get(outputFileName);
+    try (Stream<OutputEvent> outputEvents = outputEventStream) {
+      return outputEvents
+          .collect(
+              Collector.of(
+                  () -> CsvOutputGenerator.init(outputFile),
+                  CsvOutputGenerator::apply,
+                  CsvOutputGenerator::combine,
+                  CsvOutputGenerator::release))
+          .getEmitCount();
+    }
+  }
+
+  /**
+   * Creates the sink of the configured output format.
+   *
+   * @param workingDatabaseURI HSQLDB URI, only used for HSQLDB output
+   * @param outputFileName output file name, relative to the database files for HSQLDB output
+   * @return a new {@code OutputSink}
+   * @throws IOException
+   * @throws SQLException
+   */
+  public OutputSink createOutputSink(String workingDatabaseURI, String outputFileName)
+      throws IOException, SQLException {
+    switch (outputFormat) {
+      case CSV:
+        return new CsvOutputSink(Paths.get(outputFileName));
+      case JSONL:
+        return new JsonLinesOutputSink(Paths.get(outputFileName));
+      case BINARY:
+        return new BinaryOutputSink(Paths.get(outputFileName));
+      default:
+        return new HsqldbOutputSink(workTables(workingDatabaseURI), outputFileName, batchSize);
+    }
+  }
+
+  /**
+   * @param workingDatabaseURI HSQLDB URI
+   * @return the pool of the running daemon, or a source that creates a table for every output
+   */
+  private WorkTablePool workTables(String workingDatabaseURI) {
+    WorkTablePool pool = workTablePool;
+    return pool != null ? pool : WorkTablePool.unpooled(workingDatabaseURI);
+  }
+
+  /**
+   * Writes stream of {@code OutputEvent} into a sink. The sink runs on its own writer thread, the
+   * stream only waits for it when the writer queue is full. A parallel stream is drained
+   * sequentially: an ordered parallel drain would hold every partition finished out of order in
+   * memory until the partitions before it are written.
+   *
+   * @param outputEventStream input stream, it is closed when it is written
+   * @param outputSink sink, it is closed when the stream is written
+   * @return count of generate records in the output
+   * @throws IOException
+   */
+  public long processOutputEvents(Stream<OutputEvent> outputEventStream, OutputSink outputSink)
+      throws IOException {
+    try (Stream<OutputEvent> outputEvents = outputEventStream;
+        OutputSink asyncOutputSink = new AsyncOutputSink(outputSink, writeQueueCapacity)) {
+      outputEvents.sequential().forEach(
+          outputEvent -> {
+            try {
+              asyncOutputSink.write(outputEvent);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    }
+    return outputSink.getWriteCount();
+  }
+
+  /**
+   * Processes an input file with the staged {@code Pipeline}, the thread counts of its stages are
+   * the reader, parser and shard counts of this processor.
+   *
+   * @param inputFileName input file name
+   * @param outputSink sink, it is closed when all records are written
+   * @return count of generate records in the output
+   * @throws IOException
+   */
+  public long processPipeline(String inputFileName, OutputSink outputSink) throws IOException {
+    return new Pipeline(readerThreads, parserThreads, shardCount, tableCapacity(shardCount))
+        .run(Paths.get(inputFileName), outputSink);
+  }
+
+  /**
+   * Follows an input file with a {@code FollowProcessor} until the JVM shuts down, the open ids are
+   * written before the shutdown completes. HSQLDB output is not supported, its text table reaches
+   * the output file only when the run ends.
+   *
+   * @param inputFileName input file name
+   * @param outputSink sink, it is flushed after every completed id and closed at the end
+   * @return count of generate records in the output
+   * @throws IOException
+   */
+  public long processFollow(String inputFileName, OutputSink outputSink) throws IOException {
+    if (outputFormat == OutputFormat.HSQLDB) {
+      throw new IllegalArgumentException("Follow mode needs csv, jsonl or binary output");
+    }
+    FollowProcessor followProcessor =
+        new FollowProcessor(Paths.get(inputFileName), outputSink, followInterval);
+    Thread shutdownHook =
+        new Thread(
+            () -> {
+              followProcessor.stop();
+              try {
+                followProcessor.awaitTermination(1, TimeUnit.MINUTES);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            },
+            "csa-follow-stop");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+    try {
+      return followProcessor.run();
+    } finally {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        logger.debug("Shutdown in progress");
+      }
+    }
+  }
+
+  /**
+   * Processes an input file with a {@code CheckpointProcessor}, the output is written in parts by
+   * sinks of the configured output format.
+   *
+   * @param inputFileName input file name
+   * @param outputFileName output file name
+   * @return count of generate records in the output
+   * @throws IOException
+   */
+  public long processCheckpointed(String inputFileName, String outputFileName)
+      throws IOException {
+    if (outputFormat == OutputFormat.HSQLDB) {
+      throw new IllegalArgumentException("Checkpoints need csv, jsonl or binary output");
+    }
+    return new CheckpointProcessor(
+            Paths.get(inputFileName),
+            Paths.get(outputFileName),
+            checkpointFile,
+            partFile -> {
+              try {
+                return createOutputSink(null, partFile.toString());
+              } catch (SQLException e) {
+                throw new IOException(e);
+              }
+            },
+            checkpointInterval)
+        .run(resume);
+  }
+
+  /**
+   * Processes the lines appended to an input file since the previous run with an {@code
+   * IncrementalProcessor}, the open ids are kept in the state file.
+   *
+   * @param inputFileName input file name
+   * @param outputSink sink of the new and changed records, it is closed at the end
+   * @return count of generate records in the output
+   * @throws IOException
+   */
+  public long processIncremental(String inputFileName, OutputSink outputSink) throws IOException {
+    return new IncrementalProcessor(Paths.get(inputFileName), stateFile)
+        .run(new AsyncOutputSink(outputSink, writeQueueCapacity));
+  }
+
+  /**
+   * Processes the input files of an inbox directory with a {@code ProcessorDaemon} until the JVM
+   * shuts down, each file is processed by {@code run} into its own file of the output directory.
+   * For HSQLDB output the connections and work tables of finished files are kept in a {@code
+   * WorkTablePool} for the next files, so a file does not connect and create a table, and the
+   * database is not shut down and opened again for every file.
+   *
+   * @param inboxDirectory directory to watch
+   * @param workingDatabaseURI HSQLDB URI, only used for HSQLDB output
+   * @param outputDirectory directory of the output files, relative to the database files for
+   *     HSQLDB output
+   * @param parallelMode run each file in multi-thread mode
+   * @throws IOException
+   * @throws SQLException
+   */
+  public void processDaemon(
+      String inboxDirectory,
+      String workingDatabaseURI,
+      String outputDirectory,
+      boolean parallelMode)
+      throws IOException, SQLException {
+    ProcessorDaemon daemon =
+        new ProcessorDaemon(
+            Paths.get(inboxDirectory),
+            Paths.get(outputDirectory),
+            outputFormat.getExtension(),
+            (inputFile, outputFileName) ->
+                run(inputFile.toString(), workingDatabaseURI, outputFileName, parallelMode),
+            daemonJobs);
+    Thread shutdownHook =
+        new Thread(
+            () -> {
+              daemon.stop();
+              try {
+                daemon.awaitTermination(1, TimeUnit.MINUTES);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            },
+            "csa-daemon-stop");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+    try (WorkTablePool pool =
+        outputFormat == OutputFormat.HSQLDB ? WorkTablePool.pooled(workingDatabaseURI) : null) {
+      workTablePool = pool;
+      Files.createDirectories(
+          outputFormat == OutputFormat.HSQLDB
+              ? databaseDirectory(workingDatabaseURI).resolve(outputDirectory)
+              : Paths.get(outputDirectory));
+      daemon.run();
+    } finally {
+      workTablePool = null;
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        logger.debug("Shutdown in progress");
+      }
+    }
+  }
+
+  /**
+   * @param workingDatabaseURI HSQLDB URI
+   * @return directory of the database files, text table sources are relative to it; the working
+   *     directory for other than file databases
+   */
+  static Path databaseDirectory(String workingDatabaseURI) {
+    String prefix = "jdbc:hsqldb:file:";
+    if (!workingDatabaseURI.startsWith(prefix)) {
+      return Paths.get("");
+    }
+    Path parent =
+        Paths.get(workingDatabaseURI.substring(prefix.length()).split(";")[0]).getParent();
+    return parent != null ? parent : Paths.get("");
   }
 
   /**
@@ -139,9 +955,10 @@ public class CsaEventProcessor {
    * processed {@code OutputEvent} events
    *
    * @param inputFileName input file name
-   * @param workingDatabaseURI HSQLDB URI
+   * @param workingDatabaseURI HSQLDB URI, only used for HSQLDB output
    * @param outputFileName output file name (relative path)
-   * @param parallelMode run in multi-thread mode
+   * @param parallelMode run in multi-thread mode, ignored in pipeline, follow, checkpointed and
+   *     incremental runs
    * @throws IOException
    * @throws SQLException
    */
@@ -152,24 +969,39 @@ public class CsaEventProcessor {
     logger.info("workingDatabaseURI: {}", workingDatabaseURI);
     logger.info("outputFileName: {}", outputFileName);
     logger.info("parallelMode: {}", parallelMode);
+    logger.info("pipelineMode: {}", pipelineMode);
+    logger.info("followMode: {}", followMode);
+    logger.info("checkpointFile: {}", checkpointFile);
+    logger.info("stateFile: {}", stateFile);
+    logger.info("aggregationMode: {}", aggregationMode);
+    logger.info("batchSize: {}", batchSize);
+    logger.info("outputFormat: {}", outputFormat);
     Date date = new Date();
     long startTime = date.getTime();
     logger.info("{}", startTime);
     long count;
-    if (parallelMode) {
+    if (stateFile != null) {
+      count =
+          processIncremental(inputFileName, createOutputSink(workingDatabaseURI, outputFileName));
+    } else if (checkpointFile != null) {
+      count = processCheckpointed(inputFileName, outputFileName);
+    } else if (followMode) {
+      count = processFollow(inputFileName, createOutputSink(workingDatabaseURI, outputFileName));
+    } else if (pipelineMode) {
+      count = processPipeline(inputFileName, createOutputSink(workingDatabaseURI, outputFileName));
+    } else if (parallelMode && outputFormat == OutputFormat.CSV) {
+      count =
+          processOutputEventStreamToCsv(
+              getFileOutputEventsStream(inputFileName, true), outputFileName);
+    } else if (parallelMode && outputFormat == OutputFormat.HSQLDB) {
       count =
           processOutputEventStream(
-              getOutputEventsStream(
-                      getInputEventStream(getInputStringStream(inputFileName).parallel()))
-                  .parallel(),
-              workingDatabaseURI,
-              outputFileName);
+              getFileOutputEventsStream(inputFileName, true), workingDatabaseURI, outputFileName);
     } else {
       count =
-          processOutputEventStream(
-              getOutputEventsStream(getInputEventStream(getInputStringStream(inputFileName))),
-              workingDatabaseURI,
-              outputFileName);
+          processOutputEvents(
+              getFileOutputEventsStream(inputFileName, parallelMode),
+              createOutputSink(workingDatabaseURI, outputFileName));
     }
     date = new Date();
     long finishTime = date.getTime() + 1;
@@ -199,6 +1031,141 @@ public class CsaEventProcessor {
       if (cmd.hasOption("alert-threshold")) {
         OutputEvent.ALERT_THRESHOLD = Long.valueOf(cmd.getOptionValue("alert-threshold"));
       }
+      if (cmd.hasOption("trace-ids") || cmd.hasOption("trace-sample")) {
+        double traceSample =
+            cmd.hasOption("trace-sample") ? Double.valueOf(cmd.getOptionValue("trace-sample")) : 0;
+        if (traceSample < 0 || traceSample > 1) {
+          throw new ParseException("Trace sample must be between 0 and 1: " + traceSample);
+        }
+        IdTracer.configure(
+            cmd.hasOption("trace-ids")
+                ? Arrays.asList(cmd.getOptionValue("trace-ids").split(","))
+                : Collections.emptyList(),
+            traceSample);
+      }
+
+      CsaEventProcessor processor = new CsaEventProcessor();
+      if (cmd.hasOption("aggregation-mode")) {
+        try {
+          processor.setAggregationMode(
+              AggregationMode.fromName(cmd.getOptionValue("aggregation-mode")));
+        } catch (IllegalArgumentException e) {
+          throw new ParseException(
+              "Unknown aggregation mode: " + cmd.getOptionValue("aggregation-mode"));
+        }
+      }
+      if (cmd.hasOption("memory-budget")) {
+        processor.setMemoryBudget(Long.valueOf(cmd.getOptionValue("memory-budget")) << 20);
+      }
+      if (cmd.hasOption("spill-directory")) {
+        processor.setSpillDirectory(Paths.get(cmd.getOptionValue("spill-directory")));
+      }
+      if (cmd.hasOption("shard-count")) {
+        processor.setShardCount(Integer.valueOf(cmd.getOptionValue("shard-count")));
+      }
+      if (cmd.hasOption("batch-size")) {
+        processor.setBatchSize(Integer.valueOf(cmd.getOptionValue("batch-size")));
+      }
+      if (cmd.hasOption("output-format")) {
+        try {
+          processor.setOutputFormat(OutputFormat.fromName(cmd.getOptionValue("output-format")));
+        } catch (IllegalArgumentException e) {
+          throw new ParseException(
+              "Unknown output format: " + cmd.getOptionValue("output-format"));
+        }
+      }
+      if (cmd.hasOption("write-queue")) {
+        processor.setWriteQueueCapacity(Integer.valueOf(cmd.getOptionValue("write-queue")));
+      }
+      processor.setPipelineMode(cmd.hasOption("pipeline"));
+      if (cmd.hasOption("reader-threads")) {
+        processor.setReaderThreads(Integer.valueOf(cmd.getOptionValue("reader-threads")));
+      }
+      if (cmd.hasOption("parser-threads")) {
+        processor.setParserThreads(Integer.valueOf(cmd.getOptionValue("parser-threads")));
+      }
+      if (cmd.hasOption("follow") && processor.getOutputFormat() == OutputFormat.HSQLDB) {
+        throw new ParseException("Follow mode needs csv, jsonl or binary output");
+      }
+      processor.setFollowMode(cmd.hasOption("follow"));
+      if (cmd.hasOption("follow-interval")) {
+        processor.setFollowInterval(Long.valueOf(cmd.getOptionValue("follow-interval")));
+      }
+      if (cmd.hasOption("checkpoint")) {
+        if (processor.getOutputFormat() == OutputFormat.HSQLDB) {
+          throw new ParseException("Checkpoints need csv, jsonl or binary output");
+        }
+        processor.setCheckpointFile(Paths.get(cmd.getOptionValue("checkpoint")));
+      } else if (cmd.hasOption("resume")) {
+        throw new ParseException("Missing required option: cp");
+      }
+      if (cmd.hasOption("checkpoint-interval")) {
+        processor.setCheckpointInterval(Long.valueOf(cmd.getOptionValue("checkpoint-interval")));
+      }
+      processor.setResume(cmd.hasOption("resume"));
+      if (cmd.hasOption("state")) {
+        processor.setStateFile(Paths.get(cmd.getOptionValue("state")));
+      }
+      if (cmd.hasOption("plan") || cmd.hasOption("explain")) {
+        if (inputFileName == null || cmd.hasOption("daemon")) {
+          throw new ParseException("A plan is made for the input file of option i");
+        }
+        if (cmd.hasOption("plan")
+            && (cmd.hasOption("single-thread")
+                || cmd.hasOption("follow")
+                || cmd.hasOption("checkpoint")
+                || cmd.hasOption("state"))) {
+          throw new ParseException("A plan can only be combined with the pipeline");
+        }
+        if (cmd.hasOption("aggregation-mode")
+            || cmd.hasOption("memory-budget")
+            || cmd.hasOption("shard-count")
+            || cmd.hasOption("parser-threads")
+            || cmd.hasOption("reader-threads")) {
+          throw new ParseException(
+              "The plan chooses the aggregation mode, the memory budget and the threads");
+        }
+        long sampleSize =
+            cmd.hasOption("plan-sample")
+                ? Long.valueOf(cmd.getOptionValue("plan-sample")) << 20
+                : InputProfile.DEFAULT_SAMPLE_SIZE;
+        ExecutionPlan plan =
+            ExecutionPlanner.forRuntime()
+                .plan(InputProfile.sample(Paths.get(inputFileName), sampleSize));
+        if (cmd.hasOption("explain")) {
+          System.out.print(plan.explain());
+          return;
+        }
+        logger.info("Plan: {}", plan);
+        processor.applyPlan(plan);
+        parallelMode = plan.isParallel();
+        if (cmd.hasOption("pipeline") && plan.getAggregationMode() != AggregationMode.TABLE) {
+          logger.warn(
+              "The tables of the pipeline do not fit, ids are aggregated in {} mode instead",
+              plan.getAggregationMode());
+          processor.setPipelineMode(false);
+        }
+      }
+      if (outputFileName == null) {
+        throw new ParseException("Missing required option: o");
+      }
+      if (processor.getOutputFormat() == OutputFormat.HSQLDB && workingDatabaseURI == null) {
+        throw new ParseException("Missing required option: wd");
+      }
+      if (cmd.hasOption("daemon")) {
+        if (cmd.hasOption("follow") || cmd.hasOption("checkpoint") || cmd.hasOption("state")) {
+          throw new ParseException("Daemon mode can not follow, checkpoint or keep a state");
+        }
+      } else if (inputFileName == null) {
+        throw new ParseException("Missing required option: i");
+      }
+      if (cmd.hasOption("daemon-jobs")) {
+        processor.setDaemonJobs(Integer.valueOf(cmd.getOptionValue("daemon-jobs")));
+      }
+      long metricsInterval =
+          cmd.hasOption("metrics-interval")
+              ? Long.valueOf(cmd.getOptionValue("metrics-interval"))
+              : MetricsReporter.DEFAULT_INTERVAL;
 
       /*
                   6GB RAM - 1.8M out records in parallel and fail
@@ -208,7 +1175,31 @@ public class CsaEventProcessor {
                    */
 
       // OutputGenerator.initInstance(workingDatabaseURI, outputFileName);
-      new CsaEventProcessor().run(inputFileName, workingDatabaseURI, outputFileName, parallelMode);
+      ProcessingMetrics.register();
+      // the recording and the reporter run in the background, they are only stopped at the end
+      FlightRecording recording =
+          cmd.hasOption("flight-recording")
+              ? new FlightRecording(Paths.get(cmd.getOptionValue("flight-recording")))
+              : null;
+      MetricsReporter reporter = null;
+      try {
+        if (metricsInterval > 0) {
+          reporter = new MetricsReporter(ProcessingMetrics.shared(), metricsInterval);
+        }
+        if (cmd.hasOption("daemon")) {
+          processor.processDaemon(
+              cmd.getOptionValue("daemon"), workingDatabaseURI, outputFileName, parallelMode);
+        } else {
+          processor.run(inputFileName, workingDatabaseURI, outputFileName, parallelMode);
+        }
+      } finally {
+        if (reporter != null) {
+          reporter.close();
+        }
+        if (recording != null) {
+          recording.close();
+        }
+      }
       // OutputGenerator.releaseInstance();
 
       logger.info("Processing completed");
@@ -216,7 +1207,7 @@ public class CsaEventProcessor {
       System.out.println(e.getMessage());
       new HelpFormatter().printHelp("CsaEventProcessor", CsaEventProcessor.getCmdOptions());
       System.exit(1);
-    } catch (IOException | SQLException e) {
+    } catch (IOException | UncheckedIOException | SQLException e) {
       e.printStackTrace();
       System.exit(1);
     }
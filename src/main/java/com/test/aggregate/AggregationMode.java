@@ -0,0 +1,24 @@
+package com.test.aggregate;
+
+/** Strategies to turn a stream of {@code InputEvent} into a stream of {@code OutputEvent} */
+public enum AggregationMode {
+  /** whole input is grouped by id in memory, events are emitted at the end */
+  GROUPING,
+  /** events are emitted as soon as both STARTED and FINISHED are seen for an id */
+  STREAMING,
+  /** whole input is grouped by id in a compact {@code OutputEventTable} */
+  TABLE,
+  /** like {@code TABLE}, but state over the memory budget is partitioned into files on disk */
+  SPILL,
+  /** events are routed by id hash to shards, every shard thread owns its {@code OutputEventTable} */
+  SHARDED;
+
+  /**
+   * @param name case-insensitive name of the mode
+   * @return the mode
+   * @throws IllegalArgumentException for unknown names
+   */
+  public static AggregationMode fromName(String name) {
+    return valueOf(name.trim().toUpperCase());
+  }
+}
@@ -0,0 +1,85 @@
+package com.test.aggregate;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only storage of byte strings in large on-heap slabs. A stored value is addressed by a
+ * {@code long} reference holding the slab index and the offset, so millions of values cost a few
+ * arrays instead of millions of objects.
+ */
+class ByteArena {
+  static final int SLAB_SIZE = 1 << 20;
+
+  private byte[][] slabs = new byte[16][];
+  private int slabCount = 0;
+  private int slabPosition = SLAB_SIZE;
+  private long size = 0;
+
+  /**
+   * Copies the value into the arena.
+   *
+   * @return reference to the stored value
+   */
+  long add(byte[] source, int offset, int length) {
+    if (slabCount == 0 || slabPosition + length > slabs[slabCount - 1].length) {
+      addSlab(Math.max(SLAB_SIZE, length));
+    }
+    int slab = slabCount - 1;
+    int position = slabPosition;
+    System.arraycopy(source, offset, slabs[slab], position, length);
+    slabPosition += length;
+    size += length;
+    return ((long) slab << 32) | position;
+  }
+
+  private void addSlab(int length) {
+    if (slabCount == slabs.length) {
+      byte[][] grown = new byte[slabs.length * 2][];
+      System.arraycopy(slabs, 0, grown, 0, slabCount);
+      slabs = grown;
+    }
+    slabs[slabCount++] = new byte[length];
+    slabPosition = 0;
+  }
+
+  byte[] slab(long reference) {
+    return slabs[(int) (reference >>> 32)];
+  }
+
+  static int offset(long reference) {
+    return (int) reference;
+  }
+
+  /** @return true when the stored value equals the given bytes */
+  boolean equals(long reference, int storedLength, byte[] source, int offset, int length) {
+    if (storedLength != length) {
+      return false;
+    }
+    byte[] slab = slab(reference);
+    int position = offset(reference);
+    for (int i = 0; i < length; i++) {
+      if (slab[position + i] != source[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  String toString(long reference, int length) {
+    return new String(slab(reference), offset(reference), length, StandardCharsets.UTF_8);
+  }
+
+  /** @return count of stored bytes */
+  long size() {
+    return size;
+  }
+
+  /** @return count of allocated bytes */
+  long capacity() {
+    long capacity = 0;
+    for (int i = 0; i < slabCount; i++) {
+      capacity += slabs[i].length;
+    }
+    return capacity;
+  }
+}
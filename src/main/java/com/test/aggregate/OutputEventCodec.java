@@ -0,0 +1,116 @@
+package com.test.aggregate;
+
+import com.test.event.OutputEvent;
+import com.test.event.Timestamps;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary format of partially aggregated {@code OutputEvent} state. A record is the UTF-8
+ * id, a flags byte and only the fields that are present, timestamps are written as {@code long}
+ * unless they need their fixed-point form.
+ */
+public final class OutputEventCodec {
+  private static final int ACCEPTED = 1;
+  private static final int STARTED = 1 << 1;
+  private static final int STARTED_EXACT = 1 << 2;
+  private static final int FINISHED = 1 << 3;
+  private static final int FINISHED_EXACT = 1 << 4;
+  private static final int TYPE = 1 << 5;
+  private static final int HOST = 1 << 6;
+
+  private OutputEventCodec() {}
+
+  /**
+   * Writes partial state of an event.
+   *
+   * @param out destination
+   * @param outputEvent event to write
+   * @throws IOException
+   */
+  public static void write(DataOutputStream out, OutputEvent outputEvent) throws IOException {
+    long started = outputEvent.getStartedTimestampMillis();
+    long finished = outputEvent.getFinishedTimestampMillis();
+    int flags = outputEvent.getAlert() != null ? ACCEPTED : 0;
+    flags |= started != Timestamps.NONE ? STARTED : 0;
+    flags |= outputEvent.getExactStartedTimestamp() != null ? STARTED_EXACT : 0;
+    flags |= finished != Timestamps.NONE ? FINISHED : 0;
+    flags |= outputEvent.getExactFinishedTimestamp() != null ? FINISHED_EXACT : 0;
+    flags |= outputEvent.getType() != null ? TYPE : 0;
+    flags |= outputEvent.getHost() != null ? HOST : 0;
+
+    writeString(out, outputEvent.getId());
+    out.writeByte(flags);
+    if ((flags & STARTED) != 0) {
+      out.writeLong(started);
+    }
+    if ((flags & STARTED_EXACT) != 0) {
+      writeString(out, outputEvent.getExactStartedTimestamp().toString());
+    }
+    if ((flags & FINISHED) != 0) {
+      out.writeLong(finished);
+    }
+    if ((flags & FINISHED_EXACT) != 0) {
+      writeString(out, outputEvent.getExactFinishedTimestamp().toString());
+    }
+    if ((flags & TYPE) != 0) {
+      writeString(out, outputEvent.getType());
+    }
+    if ((flags & HOST) != 0) {
+      writeString(out, outputEvent.getHost());
+    }
+  }
+
+  /**
+   * Reads partial state of an event.
+   *
+   * @param in source
+   * @return restored event, or null at the end of the stream
+   * @throws IOException
+   */
+  public static OutputEvent read(DataInputStream in) throws IOException {
+    int first = in.read();
+    if (first < 0) {
+      return null;
+    }
+    int length = (first << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+    String id = readString(in, length);
+    int flags = in.readUnsignedByte();
+    long started = (flags & STARTED) != 0 ? in.readLong() : Timestamps.NONE;
+    BigDecimal exactStarted =
+        (flags & STARTED_EXACT) != 0 ? new BigDecimal(readString(in, in.readInt())) : null;
+    long finished = (flags & FINISHED) != 0 ? in.readLong() : Timestamps.NONE;
+    BigDecimal exactFinished =
+        (flags & FINISHED_EXACT) != 0 ? new BigDecimal(readString(in, in.readInt())) : null;
+    String type = (flags & TYPE) != 0 ? readString(in, in.readInt()) : null;
+    String host = (flags & HOST) != 0 ? readString(in, in.readInt()) : null;
+
+    boolean accepted = (flags & ACCEPTED) != 0;
+    if (exactStarted == null && exactFinished == null) {
+      return OutputEvent.restore(id, started, finished, type, host, accepted);
+    }
+    return OutputEvent.restore(
+        id,
+        exactStarted != null ? exactStarted : Timestamps.toBigDecimal(started, null),
+        exactFinished != null ? exactFinished : Timestamps.toBigDecimal(finished, null),
+        type,
+        host,
+        accepted);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,461 @@
+package com.test.aggregate;
+
+import com.test.event.InputEvent;
+import com.test.event.InputEventFactory;
+import com.test.event.InputEventScanner;
+import com.test.event.OutputEvent;
+import com.test.event.Timestamps;
+import com.test.event.ValueDictionary;
+import com.test.input.FileChunk;
+import com.test.jfr.AggregationMergeEvent;
+import com.test.trace.IdTracer;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@code OutputEventTable} is an open-addressing aggregation table for per-id state. Ids are kept
+ * as UTF-8 bytes in a {@code ByteArena}, timestamps and the codes of type and host live in parallel
+ * primitive arrays, so an id costs a few dozen bytes instead of a map node, a string and an {@code
+ * OutputEvent}. {@code OutputEvent} objects are only created when the table is emitted.
+ *
+ * <p>Entries are kept in the order their ids were first seen, which is also the emit order. The
+ * accept rules are the same as in {@code OutputEvent.accept} and {@code OutputEvent.combiner}.
+ * Ids that get a fractional or oversized timestamp, or a type or host the full {@code
+ * ValueDictionary} does not code, are moved into a regular {@code OutputEvent}.
+ *
+ * <p>The table is not thread-safe, parallel streams give each split its own table and {@code
+ * merge} them. Ids traced by {@code IdTracer} are traced after every change of their state, the
+ * states kept as {@code OutputEvent} by the methods of that class.
+ */
+public class OutputEventTable {
+  public static final int DEFAULT_EXPECTED_SIZE = 1 << 12;
+
+  /** a STARTED or FINISHED event was accepted, so duration and alert are set */
+  private static final byte FLAG_ACCEPTED = 1;
+  /** state is kept in {@code exactEvents} */
+  private static final byte FLAG_EXACT = 2;
+
+  /** bytes per entry in the parallel arrays and the index */
+  private static final int ENTRY_BYTES = 8 + 4 + 4 + 8 + 8 + 4 + 4 + 1 + 2 * 4;
+  /** bytes per {@code exactEvents} entry: map node, key, {@code OutputEvent}, id and decimals */
+  private static final int EXACT_EVENT_BYTES = 256;
+
+  private final ByteArena ids = new ByteArena();
+  private int[] index;
+  private int mask;
+  private int size = 0;
+
+  private long[] idReferences;
+  private int[] idLengths;
+  private int[] hashes;
+  private long[] startedTimestamps;
+  private long[] finishedTimestamps;
+  private int[] types;
+  private int[] hosts;
+  private byte[] flags;
+
+  private final Map<Integer, OutputEvent> exactEvents = new HashMap<>();
+
+  // codes of type and host values are shared by all tables
+  private final ValueDictionary dictionary = ValueDictionary.shared();
+
+  private byte[] scratch = new byte[64];
+
+  public OutputEventTable() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /** @param expectedSize count of ids the table is sized for before it grows */
+  public OutputEventTable(int expectedSize) {
+    int capacity = Math.max(16, expectedSize);
+    int indexSize = Integer.highestOneBit(capacity * 2 - 1) * 2;
+    index = new int[indexSize];
+    mask = indexSize - 1;
+    idReferences = new long[capacity];
+    idLengths = new int[capacity];
+    hashes = new int[capacity];
+    startedTimestamps = new long[capacity];
+    finishedTimestamps = new long[capacity];
+    types = new int[capacity];
+    hosts = new int[capacity];
+    flags = new byte[capacity];
+  }
+
+  /**
+   * Applies an {@code InputEvent} to the state of its id.
+   *
+   * @param inputEvent source event
+   * @return this table
+   */
+  public OutputEventTable accept(InputEvent inputEvent) {
+    String id = inputEvent.getId();
+    if (id == null) {
+      throw new IllegalArgumentException("Input event without id");
+    }
+    int length = encode(id);
+    int entry = findOrInsert(scratch, 0, length, hash(scratch, 0, length));
+
+    if ((flags[entry] & FLAG_EXACT) != 0) {
+      exactEvents.get(entry).accept(inputEvent);
+      return this;
+    }
+    boolean started = inputEvent.getStateCode() == InputEventScanner.STATE_STARTED;
+    boolean finished = inputEvent.getStateCode() == InputEventScanner.STATE_FINISHED;
+    int typeCode = code(inputEvent.getType());
+    int hostCode = code(inputEvent.getHost());
+    if (((started || finished) && inputEvent.getExactTimestamp() != null)
+        || uncoded(entry, typeCode, hostCode)) {
+      exactEvents.put(entry, toOutputEvent(entry).accept(inputEvent));
+      flags[entry] |= FLAG_EXACT;
+      return this;
+    }
+    acceptFields(entry, started, finished, inputEvent.getTimestampMillis(), typeCode, hostCode);
+    if (IdTracer.isEnabled()) {
+      trace(IdTracer.ACCEPT, inputEvent.getId(), entry);
+    }
+    return this;
+  }
+
+  /**
+   * Applies the line held by the scanner to the state of its id, with the same rules as {@code
+   * accept(InputEvent)} but without creating an {@code InputEvent}: the id is looked up by its raw
+   * bytes and the timestamp is parsed in place. All values are read before the table is changed,
+   * so a line that turns out to be invalid leaves the table as it was.
+   *
+   * @param scanner scanner holding a scanned line
+   * @return this table
+   * @throws IllegalArgumentException when a value of the line is not valid
+   */
+  public OutputEventTable accept(InputEventScanner scanner) {
+    int length = scanner.readIdBytes();
+    if (length < 0) {
+      throw new IllegalArgumentException("Input event without id");
+    }
+    long timestamp = scanner.getTimestampMillis();
+    boolean exact = false;
+    if (timestamp == Timestamps.NONE && scanner.hasTimestamp()) {
+      BigDecimal value = scanner.getTimestamp();
+      timestamp = Timestamps.toLong(value);
+      exact = Timestamps.toExact(value) != null;
+    }
+    int typeCode = scanner.getTypeCode();
+    int hostCode = scanner.getHostCode();
+    int state = scanner.getStateCode();
+    boolean started = state == InputEventScanner.STATE_STARTED;
+    boolean finished = state == InputEventScanner.STATE_FINISHED;
+
+    byte[] id = scanner.getIdBytes();
+    int entry = findOrInsert(id, 0, length, hash(id, 0, length));
+    if ((flags[entry] & FLAG_EXACT) != 0) {
+      exactEvents.get(entry).accept(scanner.toInputEvent());
+      return this;
+    }
+    if (((started || finished) && exact) || uncoded(entry, typeCode, hostCode)) {
+      exactEvents.put(entry, toOutputEvent(entry).accept(scanner.toInputEvent()));
+      flags[entry] |= FLAG_EXACT;
+      return this;
+    }
+    acceptFields(entry, started, finished, timestamp, typeCode, hostCode);
+    if (IdTracer.isEnabled()) {
+      trace(IdTracer.ACCEPT, entry);
+    }
+    return this;
+  }
+
+  /**
+   * Scans every line of the chunk and applies it in place. Lines that are not valid events are
+   * logged and skipped.
+   *
+   * @param chunk input chunk
+   * @return this table
+   */
+  public OutputEventTable acceptLines(FileChunk chunk) {
+    chunk.forEachLine(InputEventFactory.scanning(this::accept));
+    return this;
+  }
+
+  private void acceptFields(
+      int entry, boolean started, boolean finished, long timestamp, int type, int host) {
+    if (started) {
+      acceptStartedTimestamp(entry, timestamp);
+      flags[entry] |= FLAG_ACCEPTED;
+    }
+    if (finished) {
+      acceptFinishedTimestamp(entry, timestamp);
+      flags[entry] |= FLAG_ACCEPTED;
+    }
+    acceptType(entry, type);
+    acceptHost(entry, host);
+  }
+
+  /**
+   * Merges state of another table into this one, with the semantics of {@code
+   * OutputEvent.combiner}, except that ids without any STARTED or FINISHED event keep their alert
+   * unset. Ids first seen in the other table are appended after the ids of this table. The merge is
+   * recorded as an {@code AggregationMergeEvent} when that event is enabled.
+   *
+   * @param other table to merge, it must not be used afterwards
+   * @return this table
+   */
+  public OutputEventTable merge(OutputEventTable other) {
+    AggregationMergeEvent event = new AggregationMergeEvent();
+    event.begin();
+    for (int otherEntry = 0; otherEntry < other.size; otherEntry++) {
+      long reference = other.idReferences[otherEntry];
+      int entry =
+          findOrInsert(
+              other.ids.slab(reference),
+              ByteArena.offset(reference),
+              other.idLengths[otherEntry],
+              other.hashes[otherEntry]);
+
+      if (((flags[entry] | other.flags[otherEntry]) & FLAG_EXACT) != 0) {
+        exactEvents.put(
+            entry, OutputEvent.combiner(toOutputEvent(entry), other.toOutputEvent(otherEntry)));
+        flags[entry] |= FLAG_EXACT;
+        continue;
+      }
+      acceptStartedTimestamp(entry, other.startedTimestamps[otherEntry]);
+      acceptFinishedTimestamp(entry, other.finishedTimestamps[otherEntry]);
+      acceptHost(entry, other.hosts[otherEntry]);
+      acceptType(entry, other.types[otherEntry]);
+      flags[entry] |= other.flags[otherEntry] & FLAG_ACCEPTED;
+      if (IdTracer.isEnabled()) {
+        trace(IdTracer.COMBINE, entry);
+      }
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.kind = AggregationMergeEvent.TABLE;
+      event.ids = other.size;
+      event.commit();
+    }
+    return this;
+  }
+
+  /**
+   * Merges a partially aggregated {@code OutputEvent}, for example one read back from disk, into
+   * the state of its id with the same semantics as {@code merge}.
+   *
+   * @param partial partial state of an id
+   * @return this table
+   */
+  public OutputEventTable combine(OutputEvent partial) {
+    String id = Objects.requireNonNull(partial.getId(), "Output event without id");
+    int length = encode(id);
+    int entry = findOrInsert(scratch, 0, length, hash(scratch, 0, length));
+
+    if ((flags[entry] & FLAG_EXACT) != 0
+        || partial.getExactStartedTimestamp() != null
+        || partial.getExactFinishedTimestamp() != null
+        || uncoded(entry, partial.getTypeCode(), partial.getHostCode())) {
+      exactEvents.put(entry, OutputEvent.combiner(toOutputEvent(entry), partial));
+      flags[entry] |= FLAG_EXACT;
+      return this;
+    }
+    acceptStartedTimestamp(entry, partial.getStartedTimestampMillis());
+    acceptFinishedTimestamp(entry, partial.getFinishedTimestampMillis());
+    acceptHost(entry, partial.getHostCode());
+    acceptType(entry, partial.getTypeCode());
+    if (partial.getAlert() != null) {
+      flags[entry] |= FLAG_ACCEPTED;
+    }
+    if (IdTracer.isEnabled()) {
+      trace(IdTracer.COMBINE, id, entry);
+    }
+    return this;
+  }
+
+  private void trace(String stage, int entry) {
+    trace(stage, ids.toString(idReferences[entry], idLengths[entry]), entry);
+  }
+
+  /** Logs the state of an entry, which is only restored when its id is traced */
+  private void trace(String stage, String id, int entry) {
+    if (IdTracer.traces(id)) {
+      IdTracer.trace(stage, id, toOutputEvent(entry));
+    }
+  }
+
+  private void acceptStartedTimestamp(int entry, long timestamp) {
+    long current = startedTimestamps[entry];
+    if (timestamp != Timestamps.NONE && (current == Timestamps.NONE || current > timestamp)) {
+      startedTimestamps[entry] = timestamp;
+    }
+  }
+
+  private void acceptFinishedTimestamp(int entry, long timestamp) {
+    long current = finishedTimestamps[entry];
+    if (timestamp != Timestamps.NONE && (current == Timestamps.NONE || current < timestamp)) {
+      finishedTimestamps[entry] = timestamp;
+    }
+  }
+
+  private void acceptType(int entry, int code) {
+    if (types[entry] == ValueDictionary.NULL_CODE) {
+      types[entry] = code;
+    }
+  }
+
+  private void acceptHost(int entry, int code) {
+    if (hosts[entry] == ValueDictionary.NULL_CODE) {
+      hosts[entry] = code;
+    }
+  }
+
+  private int code(String value) {
+    return dictionary.code(value);
+  }
+
+  /** @return true when an uncoded type or host would be taken by the entry */
+  private boolean uncoded(int entry, int typeCode, int hostCode) {
+    return (typeCode == ValueDictionary.UNCODED && types[entry] == ValueDictionary.NULL_CODE)
+        || (hostCode == ValueDictionary.UNCODED && hosts[entry] == ValueDictionary.NULL_CODE);
+  }
+
+  /** Encodes the id into the scratch array, ASCII ids are copied without a coder */
+  private int encode(String id) {
+    int length = id.length();
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    for (int i = 0; i < length; i++) {
+      char c = id.charAt(i);
+      if (c >= 0x80) {
+        byte[] utf8 = id.getBytes(StandardCharsets.UTF_8);
+        if (scratch.length < utf8.length) {
+          scratch = new byte[utf8.length];
+        }
+        System.arraycopy(utf8, 0, scratch, 0, utf8.length);
+        return utf8.length;
+      }
+      scratch[i] = (byte) c;
+    }
+    return length;
+  }
+
+  static int hash(byte[] source, int offset, int length) {
+    int h = 0;
+    for (int i = offset; i < offset + length; i++) {
+      h = 31 * h + source[i];
+    }
+    // murmur3 finalizer spreads the bits for power of two tables
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  private int findOrInsert(byte[] source, int offset, int length, int hash) {
+    int slot = hash & mask;
+    while (true) {
+      int entry = index[slot] - 1;
+      if (entry < 0) {
+        break;
+      }
+      if (hashes[entry] == hash
+          && ids.equals(idReferences[entry], idLengths[entry], source, offset, length)) {
+        return entry;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (size == idReferences.length) {
+      growEntries();
+    }
+    int entry = size++;
+    idReferences[entry] = ids.add(source, offset, length);
+    idLengths[entry] = length;
+    hashes[entry] = hash;
+    startedTimestamps[entry] = Timestamps.NONE;
+    finishedTimestamps[entry] = Timestamps.NONE;
+    types[entry] = ValueDictionary.NULL_CODE;
+    hosts[entry] = ValueDictionary.NULL_CODE;
+    flags[entry] = 0;
+    index[slot] = entry + 1;
+    if (size * 2 > index.length) {
+      growIndex();
+    }
+    return entry;
+  }
+
+  private void growEntries() {
+    int capacity = idReferences.length + (idReferences.length >> 1);
+    idReferences = Arrays.copyOf(idReferences, capacity);
+    idLengths = Arrays.copyOf(idLengths, capacity);
+    hashes = Arrays.copyOf(hashes, capacity);
+    startedTimestamps = Arrays.copyOf(startedTimestamps, capacity);
+    finishedTimestamps = Arrays.copyOf(finishedTimestamps, capacity);
+    types = Arrays.copyOf(types, capacity);
+    hosts = Arrays.copyOf(hosts, capacity);
+    flags = Arrays.copyOf(flags, capacity);
+  }
+
+  private void growIndex() {
+    index = new int[index.length * 2];
+    mask = index.length - 1;
+    for (int entry = 0; entry < size; entry++) {
+      int slot = hashes[entry] & mask;
+      while (index[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      index[slot] = entry + 1;
+    }
+  }
+
+  /** @return count of distinct ids */
+  public int size() {
+    return size;
+  }
+
+  /** @return approximate count of heap bytes held by the table, including the exact events */
+  public long getMemoryUsage() {
+    return (long) idReferences.length * ENTRY_BYTES
+        + ids.capacity()
+        + (long) exactEvents.size() * EXACT_EVENT_BYTES;
+  }
+
+  /**
+   * Estimates the heap bytes of a table sized for its ids, the estimate of {@code getMemoryUsage}.
+   *
+   * @param idCount count of ids
+   * @param idLength mean length of the ids in UTF-8 bytes
+   * @return approximate count of heap bytes
+   */
+  public static long estimateMemoryUsage(long idCount, double idLength) {
+    return (long) (idCount * (ENTRY_BYTES + idLength));
+  }
+
+  /**
+   * Creates the {@code OutputEvent} of an entry.
+   *
+   * @param entry entry number, from 0 to {@code size() - 1} in first-seen order
+   * @return a new {@code OutputEvent}
+   */
+  public OutputEvent toOutputEvent(int entry) {
+    if ((flags[entry] & FLAG_EXACT) != 0) {
+      return exactEvents.get(entry);
+    }
+    return OutputEvent.restoreCoded(
+        ids.toString(idReferences[entry], idLengths[entry]),
+        startedTimestamps[entry],
+        finishedTimestamps[entry],
+        types[entry],
+        hosts[entry],
+        (flags[entry] & FLAG_ACCEPTED) != 0);
+  }
+
+  /** @return stream of {@code OutputEvent} in first-seen order, created on demand */
+  public Stream<OutputEvent> stream() {
+    return IntStream.range(0, size).mapToObj(this::toOutputEvent);
+  }
+}
@@ -0,0 +1,217 @@
+package com.test.aggregate;
+
+import com.test.event.InputEvent;
+import com.test.event.OutputEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@code ShardedAggregator} routes events by id hash to a fixed set of shards. Every shard owns an
+ * {@code OutputEventTable} and is the only thread that writes to it, so there is no combine step
+ * and each shard works on its own cache-local part of the ids.
+ *
+ * <p>Every task of the input stream collects events into its own batches, one per shard, and hands
+ * full batches over through a bounded queue, which blocks the task while a shard is behind. The
+ * batches belong to the task, so nothing is left behind on the stream's worker threads. Events of
+ * an id are applied in the order the shard receives them; as timestamps keep the earliest STARTED
+ * and the latest FINISHED this only matters for the type and host, which are taken from the first
+ * event of the id the shard sees.
+ */
+public class ShardedAggregator {
+  private static final Logger logger = LoggerFactory.getLogger(ShardedAggregator.class);
+
+  public static final int BATCH_SIZE = 1024;
+  public static final int QUEUE_CAPACITY = 16;
+
+  private static final InputEvent[] END_OF_INPUT = new InputEvent[0];
+
+  private final Shard[] shards;
+
+  /**
+   * @param shardCount count of shards, every shard runs in its own thread
+   * @param tableCapacity count of ids the table of a shard is sized for
+   */
+  private ShardedAggregator(int shardCount, int tableCapacity) {
+    shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard(i, tableCapacity);
+      shards[i].start();
+    }
+  }
+
+  /** @return default count of shards for the current machine */
+  public static int defaultShardCount() {
+    return Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+  }
+
+  /**
+   * Waits until every shard applied its events and stops the shard threads. Must be called after
+   * all routers are flushed.
+   *
+   * @return stream of {@code OutputEvent} of all shards
+   */
+  private Stream<OutputEvent> finish() {
+    for (Shard shard : shards) {
+      shard.put(END_OF_INPUT);
+    }
+    for (Shard shard : shards) {
+      shard.await();
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug(
+          "Shard sizes: {}",
+          Arrays.toString(Arrays.stream(shards).mapToInt(shard -> shard.table.size()).toArray()));
+    }
+    return IntStream.range(0, shards.length).boxed().flatMap(i -> shards[i].table.stream());
+  }
+
+  /**
+   * Converts stream of {@code InputEvent} into stream of {@code OutputEvent}. A parallel input
+   * stream is consumed by all its workers at the same time.
+   *
+   * @param inputStream input stream
+   * @param shardCount count of shards
+   * @return output stream
+   */
+  public static Stream<OutputEvent> aggregate(Stream<InputEvent> inputStream, int shardCount) {
+    return aggregate(inputStream, shardCount, OutputEventTable.DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Converts stream of {@code InputEvent} into stream of {@code OutputEvent}. A parallel input
+   * stream is consumed by all its workers at the same time.
+   *
+   * @param inputStream input stream
+   * @param shardCount count of shards
+   * @param tableCapacity count of ids the table of a shard is sized for
+   * @return output stream
+   */
+  public static Stream<OutputEvent> aggregate(
+      Stream<InputEvent> inputStream, int shardCount, int tableCapacity) {
+    ShardedAggregator aggregator = new ShardedAggregator(shardCount, tableCapacity);
+    try {
+      inputStream.collect(
+          Collector.of(
+              () -> aggregator.new Router(),
+              Router::route,
+              (left, right) -> {
+                right.flush();
+                return left;
+              },
+              Router::flush));
+    } catch (RuntimeException e) {
+      aggregator.abort();
+      throw e;
+    }
+    return aggregator.finish();
+  }
+
+  private void abort() {
+    for (Shard shard : shards) {
+      shard.interrupt();
+    }
+  }
+
+  private int shardOf(String id) {
+    int h = id.hashCode() * 0x9E3779B9;
+    return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % shards.length;
+  }
+
+  /** Batches of a stream task, one for every shard */
+  private class Router {
+    private final InputEvent[][] batches = new InputEvent[shards.length][BATCH_SIZE];
+    private final int[] sizes = new int[shards.length];
+
+    void route(InputEvent inputEvent) {
+      String id = inputEvent.getId();
+      if (id == null) {
+        throw new IllegalArgumentException("Input event without id");
+      }
+      int shard = shardOf(id);
+      batches[shard][sizes[shard]++] = inputEvent;
+      if (sizes[shard] == BATCH_SIZE) {
+        shards[shard].put(batches[shard]);
+        batches[shard] = new InputEvent[BATCH_SIZE];
+        sizes[shard] = 0;
+      }
+    }
+
+    /** @return this router, its batches are handed over and cleared */
+    Router flush() {
+      for (int shard = 0; shard < shards.length; shard++) {
+        if (sizes[shard] > 0) {
+          shards[shard].put(Arrays.copyOf(batches[shard], sizes[shard]));
+          Arrays.fill(batches[shard], 0, sizes[shard], null);
+          sizes[shard] = 0;
+        }
+      }
+      return this;
+    }
+  }
+
+  /** Shard thread, the single writer of its table */
+  private static class Shard extends Thread {
+    private final BlockingQueue<InputEvent[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final OutputEventTable table;
+    private volatile Throwable failure = null;
+
+    Shard(int number, int tableCapacity) {
+      super("csa-shard-" + number);
+      table = new OutputEventTable(tableCapacity);
+      setDaemon(true);
+    }
+
+    void put(InputEvent[] batch) {
+      try {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+          if (failure != null) {
+            throw new IllegalStateException("Aggregation shard failed", failure);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for aggregation shard", e);
+      }
+    }
+
+    void await() {
+      try {
+        join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for aggregation shard", e);
+      }
+      if (failure != null) {
+        throw new IllegalStateException("Aggregation shard failed", failure);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          InputEvent[] batch = queue.take();
+          if (batch == END_OF_INPUT) {
+            return;
+          }
+          for (InputEvent inputEvent : batch) {
+            table.accept(inputEvent);
+          }
+        }
+      } catch (InterruptedException e) {
+        logger.debug("{} interrupted", getName());
+      } catch (Throwable e) {
+        logger.error("{} failed: {}", getName(), e.getMessage());
+        failure = e;
+      }
+    }
+  }
+}
@@ -0,0 +1,363 @@
+package com.test.aggregate;
+
+import com.test.event.InputEvent;
+import com.test.event.InputEventFactory;
+import com.test.event.InputEventScanner;
+import com.test.event.OutputEvent;
+import com.test.input.FileChunk;
+import com.test.input.LineConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@code SpillingAggregator} is an out-of-core version of the {@code OutputEventTable} aggregation.
+ * Input is aggregated in memory until the table exceeds the memory budget, then the partial state
+ * of every id is hash-partitioned by id into partition files and the table starts empty again. At
+ * the end every partition is aggregated independently, in parallel in multi-thread mode,
+ * partitions that still do not fit are partitioned again with another hash. The heap stays
+ * bounded for any input size and the results are the same as with the in-memory table.
+ */
+public class SpillingAggregator {
+  private static final Logger logger = LoggerFactory.getLogger(SpillingAggregator.class);
+
+  public static final int PARTITION_COUNT = 64;
+  /** partitions of partitions are not split further than this */
+  static final int MAX_LEVEL = 3;
+
+  private static final int CHECK_INTERVAL = 1024;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final long memoryBudget;
+  private final Path spillDirectory;
+  private final int tableCapacity;
+
+  private OutputEventTable table;
+  private Path directory = null;
+  private Partitions partitions = null;
+  private long acceptedCount = 0;
+  private long spillCount = 0;
+  private long spilledIds = 0;
+
+  /**
+   * @param memoryBudget approximate count of heap bytes the aggregation state may use
+   * @param spillDirectory parent directory for partition files
+   */
+  public SpillingAggregator(long memoryBudget, Path spillDirectory) {
+    this(memoryBudget, spillDirectory, OutputEventTable.DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * @param memoryBudget approximate count of heap bytes the aggregation state may use
+   * @param spillDirectory parent directory for partition files
+   * @param tableCapacity count of ids the in-memory table is sized for, like those that fit into
+   *     the budget
+   */
+  public SpillingAggregator(long memoryBudget, Path spillDirectory, int tableCapacity) {
+    this.memoryBudget = memoryBudget;
+    this.spillDirectory = spillDirectory;
+    this.tableCapacity = tableCapacity;
+    this.table = new OutputEventTable(tableCapacity);
+  }
+
+  /**
+   * Applies an {@code InputEvent}, spills the in-memory state when it is over budget.
+   *
+   * @param inputEvent source event
+   * @throws IOException
+   */
+  public void accept(InputEvent inputEvent) throws IOException {
+    table.accept(inputEvent);
+    if (++acceptedCount % CHECK_INTERVAL == 0 && table.getMemoryUsage() > memoryBudget) {
+      spill();
+    }
+  }
+
+  /**
+   * Applies the line held by the scanner without creating an {@code InputEvent}, spills the
+   * in-memory state when it is over budget.
+   *
+   * @param scanner scanner holding a scanned line
+   * @throws IOException
+   */
+  public void accept(InputEventScanner scanner) throws IOException {
+    table.accept(scanner);
+    if (++acceptedCount % CHECK_INTERVAL == 0 && table.getMemoryUsage() > memoryBudget) {
+      spill();
+    }
+  }
+
+  private void spill() throws IOException {
+    if (partitions == null) {
+      directory = Files.createTempDirectory(spillDirectory, "csa-spill");
+      partitions = new Partitions(directory, "p", 0);
+      logger.info("Memory budget of {} bytes exceeded, spilling into {}", memoryBudget, directory);
+    }
+    logger.debug("Spilling {} ids", table.size());
+    partitions.write(table);
+    spilledIds += table.size();
+    table = new OutputEventTable(tableCapacity);
+    spillCount++;
+  }
+
+  /** @return count of times the in-memory state was written to partition files */
+  public long getSpillCount() {
+    return spillCount;
+  }
+
+  /**
+   * Finishes aggregation. Without spills this is the in-memory table, otherwise partitions are
+   * aggregated one after another, or in parallel, as the stream is consumed. The partition files
+   * are deleted when the last partition is consumed or the stream is closed.
+   *
+   * @param parallel aggregate partitions in parallel and return a parallel stream
+   * @return stream of {@code OutputEvent}
+   * @throws IOException
+   */
+  public Stream<OutputEvent> finish(boolean parallel) throws IOException {
+    if (partitions == null) {
+      return parallel ? table.stream().parallel() : table.stream();
+    }
+    spill();
+    partitions.close();
+    table = null;
+    logger.info("Aggregating {} partitions after {} spills", PARTITION_COUNT, spillCount);
+    // partitions aggregated at the same time share the budget
+    long partitionBudget = parallel ? memoryBudget / parallelism() : memoryBudget;
+    // a partition gets its share of the spilled ids, ids spilled more than once are counted again
+    int partitionCapacity =
+        (int)
+            Math.min(
+                parallel ? tableCapacity / parallelism() : tableCapacity,
+                spilledIds / PARTITION_COUNT);
+    AtomicInteger remaining = new AtomicInteger(PARTITION_COUNT);
+    IntStream partitionIndexes = IntStream.range(0, PARTITION_COUNT);
+    return (parallel ? partitionIndexes.parallel() : partitionIndexes)
+        .boxed()
+        .flatMap(
+            partition ->
+                aggregate(partitions.path(partition), 1, partitionBudget, partitionCapacity)
+                    .onClose(
+                        () -> {
+                          if (remaining.decrementAndGet() == 0) {
+                            deleteDirectory();
+                          }
+                        }))
+        .onClose(this::deleteDirectory);
+  }
+
+  /** Aggregates a partition file, partitions it again when it does not fit into the budget */
+  private Stream<OutputEvent> aggregate(Path file, int level, long budget, int capacity) {
+    try {
+      OutputEventTable partitionTable = new OutputEventTable(capacity);
+      boolean overBudget = false;
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+        OutputEvent partial;
+        long count = 0;
+        while ((partial = OutputEventCodec.read(in)) != null) {
+          partitionTable.combine(partial);
+          if (++count % CHECK_INTERVAL == 0
+              && level < MAX_LEVEL
+              && partitionTable.getMemoryUsage() > budget) {
+            overBudget = true;
+            break;
+          }
+        }
+      }
+      if (!overBudget) {
+        delete(file);
+        return partitionTable.stream();
+      }
+
+      logger.debug("Partition {} does not fit into memory, partitioning it again", file);
+      partitionTable = null;
+      Partitions subPartitions = new Partitions(directory, file.getFileName() + "-", level);
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+        OutputEvent partial;
+        while ((partial = OutputEventCodec.read(in)) != null) {
+          subPartitions.write(partial);
+        }
+      }
+      subPartitions.close();
+      delete(file);
+      return IntStream.range(0, PARTITION_COUNT)
+          .boxed()
+          .flatMap(
+              partition -> aggregate(subPartitions.path(partition), level + 1, budget, capacity));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Closes the partition files of a failed aggregation and deletes them */
+  private void abort() {
+    if (partitions != null) {
+      try {
+        partitions.close();
+      } catch (IOException e) {
+        logger.warn("Can not close partitions in {}: {}", directory, e.getMessage());
+      }
+    }
+    deleteDirectory();
+  }
+
+  /** Deletes the spill directory with the partition files that are left in it */
+  private void deleteDirectory() {
+    if (directory == null) {
+      return;
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      files.forEach(SpillingAggregator::delete);
+    } catch (NoSuchFileException e) {
+      return;
+    } catch (IOException e) {
+      logger.warn("Can not list {}: {}", directory, e.getMessage());
+    }
+    delete(directory);
+  }
+
+  private static int parallelism() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  private static void delete(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      logger.warn("Can not delete {}: {}", path, e.getMessage());
+    }
+  }
+
+  /**
+   * Converts stream of {@code InputEvent} into stream of {@code OutputEvent} with bounded memory.
+   * The input is consumed sequentially before the method returns, the output stream is parallel
+   * when the input stream is.
+   *
+   * @param inputStream input stream
+   * @param memoryBudget approximate count of heap bytes the aggregation state may use
+   * @param spillDirectory parent directory for partition files
+   * @param tableCapacity count of ids the in-memory table is sized for
+   * @return output stream
+   */
+  public static Stream<OutputEvent> aggregate(
+      Stream<InputEvent> inputStream, long memoryBudget, Path spillDirectory, int tableCapacity) {
+    SpillingAggregator aggregator =
+        new SpillingAggregator(memoryBudget, spillDirectory, tableCapacity);
+    try {
+      Iterator<InputEvent> input = inputStream.iterator();
+      while (input.hasNext()) {
+        aggregator.accept(input.next());
+      }
+      return aggregator.finish(inputStream.isParallel());
+    } catch (IOException e) {
+      aggregator.abort();
+      throw new UncheckedIOException(e);
+    } catch (RuntimeException e) {
+      aggregator.abort();
+      throw e;
+    }
+  }
+
+  /**
+   * Aggregates the lines of the chunks in place, no {@code InputEvent} is created. The chunks are
+   * consumed sequentially before the method returns.
+   *
+   * @param chunks input chunks in file order
+   * @param memoryBudget approximate count of heap bytes the aggregation state may use
+   * @param spillDirectory parent directory for partition files
+   * @param tableCapacity count of ids the in-memory table is sized for
+   * @param parallel aggregate partitions in parallel and return a parallel stream
+   * @return output stream
+   */
+  public static Stream<OutputEvent> aggregateLines(
+      List<FileChunk> chunks,
+      long memoryBudget,
+      Path spillDirectory,
+      int tableCapacity,
+      boolean parallel) {
+    SpillingAggregator aggregator =
+        new SpillingAggregator(memoryBudget, spillDirectory, tableCapacity);
+    LineConsumer consumer =
+        InputEventFactory.scanning(
+            scanner -> {
+              try {
+                aggregator.accept(scanner);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+    try {
+      for (FileChunk chunk : chunks) {
+        chunk.forEachLine(consumer);
+      }
+      return aggregator.finish(parallel);
+    } catch (IOException e) {
+      aggregator.abort();
+      throw new UncheckedIOException(e);
+    } catch (RuntimeException e) {
+      aggregator.abort();
+      throw e;
+    }
+  }
+
+  /** Set of partition files of one level, ids are routed by a hash that depends on the level */
+  private static class Partitions {
+    private final Path[] paths = new Path[PARTITION_COUNT];
+    private final DataOutputStream[] outputs = new DataOutputStream[PARTITION_COUNT];
+    private final int level;
+
+    Partitions(Path directory, String prefix, int level) throws IOException {
+      this.level = level;
+      for (int i = 0; i < PARTITION_COUNT; i++) {
+        paths[i] = directory.resolve(prefix + i);
+        outputs[i] =
+            new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(paths[i]), BUFFER_SIZE));
+      }
+    }
+
+    Path path(int partition) {
+      return paths[partition];
+    }
+
+    void write(OutputEventTable table) throws IOException {
+      for (int entry = 0; entry < table.size(); entry++) {
+        write(table.toOutputEvent(entry));
+      }
+    }
+
+    void write(OutputEvent partial) throws IOException {
+      OutputEventCodec.write(outputs[partition(partial.getId())], partial);
+    }
+
+    private int partition(String id) {
+      int h = id.hashCode() * 0x9E3779B9 + level;
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      return (h & Integer.MAX_VALUE) % PARTITION_COUNT;
+    }
+
+    void close() throws IOException {
+      for (DataOutputStream output : outputs) {
+        output.close();
+      }
+    }
+  }
+}
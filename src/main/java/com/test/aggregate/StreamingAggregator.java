@@ -0,0 +1,157 @@
+package com.test.aggregate;
+
+import com.test.event.InputEvent;
+import com.test.event.OutputEvent;
+import com.test.metrics.ProcessingMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@code StreamingAggregator} emits an {@code OutputEvent} as soon as both STARTED and FINISHED were
+ * seen for its id and drops its state, so memory tracks the count of in-flight ids instead of the
+ * size of the input. Ids still open at the end of the input are emitted afterwards in the order
+ * they were first seen.
+ *
+ * <p>Events that arrive for an id after it was emitted start a new {@code OutputEvent}, which is
+ * emitted again once complete or at the end of the input.
+ *
+ * <p>The count of open ids of all aggregators is kept in the shared {@code ProcessingMetrics}.
+ */
+public class StreamingAggregator {
+  private static final Logger logger = LoggerFactory.getLogger(StreamingAggregator.class);
+  private static final ProcessingMetrics metrics = ProcessingMetrics.shared();
+
+  private final Map<String, OutputEvent> openEvents = new LinkedHashMap<>();
+  private long emittedCount = 0;
+
+  /**
+   * Applies an {@code InputEvent} to the state of its id.
+   *
+   * @param inputEvent source event
+   * @return the completed {@code OutputEvent}, or null while the id is still open
+   */
+  public OutputEvent accept(InputEvent inputEvent) {
+    OutputEvent outputEvent =
+        openEvents
+            .computeIfAbsent(inputEvent.getId(), StreamingAggregator::open)
+            .accept(inputEvent);
+    if (outputEvent.isComplete()) {
+      openEvents.remove(inputEvent.getId());
+      metrics.addOpenIds(-1);
+      emittedCount++;
+      return outputEvent;
+    }
+    return null;
+  }
+
+  /**
+   * Adds an open event restored from a checkpoint, it is emitted once the missing events arrive.
+   *
+   * @param outputEvent open event
+   */
+  public void restoreOpen(OutputEvent outputEvent) {
+    if (openEvents.put(outputEvent.getId(), outputEvent) == null) {
+      metrics.addOpenIds(1);
+    }
+  }
+
+  private static OutputEvent open(String id) {
+    metrics.addOpenIds(1);
+    return new OutputEvent();
+  }
+
+  /** @return events of the open ids in the order their ids were first seen, not a copy */
+  public Collection<OutputEvent> getOpenEvents() {
+    return Collections.unmodifiableCollection(openEvents.values());
+  }
+
+  /** @return count of ids that are currently open */
+  public int getOpenCount() {
+    return openEvents.size();
+  }
+
+  /** @return count of events emitted as complete */
+  public long getEmittedCount() {
+    return emittedCount;
+  }
+
+  /**
+   * Removes all open events.
+   *
+   * @return iterator over the removed events in the order their ids were first seen
+   */
+  public Iterator<OutputEvent> drainOpen() {
+    logger.debug("Flushing {} open events, {} emitted as complete", openEvents.size(), emittedCount);
+    Iterator<OutputEvent> open = openEvents.values().iterator();
+    return new Iterator<OutputEvent>() {
+      @Override
+      public boolean hasNext() {
+        return open.hasNext();
+      }
+
+      @Override
+      public OutputEvent next() {
+        OutputEvent outputEvent = open.next();
+        open.remove();
+        metrics.addOpenIds(-1);
+        return outputEvent;
+      }
+    };
+  }
+
+  /**
+   * Converts stream of {@code InputEvent} into stream of {@code OutputEvent} lazily, events reach
+   * the downstream while the input is still being read.
+   *
+   * @param inputStream input stream
+   * @return output stream
+   */
+  public static Stream<OutputEvent> aggregate(Stream<InputEvent> inputStream) {
+    return StreamSupport.stream(
+            new OutputEventSpliterator(new StreamingAggregator(), inputStream.iterator()), false)
+        .onClose(inputStream::close);
+  }
+
+  /** Pulls input until an id completes, then emits the open ids once the input is exhausted */
+  private static class OutputEventSpliterator extends Spliterators.AbstractSpliterator<OutputEvent> {
+    private final StreamingAggregator aggregator;
+    private final Iterator<InputEvent> input;
+    private Iterator<OutputEvent> open = null;
+
+    OutputEventSpliterator(StreamingAggregator aggregator, Iterator<InputEvent> input) {
+      super(Long.MAX_VALUE, Spliterator.NONNULL);
+      this.aggregator = aggregator;
+      this.input = input;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super OutputEvent> action) {
+      while (open == null && input.hasNext()) {
+        OutputEvent outputEvent = aggregator.accept(input.next());
+        if (outputEvent != null) {
+          action.accept(outputEvent);
+          return true;
+        }
+      }
+      if (open == null) {
+        open = aggregator.drainOpen();
+      }
+      if (open.hasNext()) {
+        action.accept(open.next());
+        return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,227 @@
+package com.test.checkpoint;
+
+import com.test.aggregate.OutputEventCodec;
+import com.test.event.OutputEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * State of a checkpointed run at a line boundary of its input: the identity of the input file, the
+ * offset of the first line that was not read yet, the count of complete output parts and records,
+ * and the open events in {@code OutputEventCodec} format. It is also the state kept between
+ * incremental runs over a growing file, which is recognized by the checksum of its first bytes.
+ *
+ * <p>A checkpoint file is written next to its final name and then renamed, so a crash while it is
+ * written leaves the previous checkpoint intact.
+ */
+public class Checkpoint {
+  private static final int MAGIC = 0x43534143;
+  private static final int VERSION = 2;
+  /** length of the head of the input covered by the checksum */
+  static final int CHECKSUM_LENGTH = 4096;
+
+  private final String inputFile;
+  private final long inputSize;
+  private final long inputModified;
+  private final long inputChecksum;
+  private final long inputOffset;
+  private final int partCount;
+  private final long writeCount;
+  private final Collection<OutputEvent> openEvents;
+
+  /**
+   * @param inputFile absolute path of the input file
+   * @param inputSize size of the input file
+   * @param inputModified last modification time of the input file in milliseconds
+   * @param inputChecksum {@code checksum} of the input up to the offset
+   * @param inputOffset position of the first line that was not read
+   * @param partCount count of output parts that are complete
+   * @param writeCount count of records in the complete parts
+   * @param openEvents events of the ids that are still open
+   */
+  public Checkpoint(
+      String inputFile,
+      long inputSize,
+      long inputModified,
+      long inputChecksum,
+      long inputOffset,
+      int partCount,
+      long writeCount,
+      Collection<OutputEvent> openEvents) {
+    this.inputFile = inputFile;
+    this.inputSize = inputSize;
+    this.inputModified = inputModified;
+    this.inputChecksum = inputChecksum;
+    this.inputOffset = inputOffset;
+    this.partCount = partCount;
+    this.writeCount = writeCount;
+    this.openEvents = openEvents;
+  }
+
+  /**
+   * Checks that the input is the file the checkpoint was taken of.
+   *
+   * @param input input file
+   * @throws IOException when the input is another file or it was modified since
+   */
+  public void verifyInput(Path input) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(input, BasicFileAttributes.class);
+    if (!inputFile.equals(input.toAbsolutePath().normalize().toString())
+        || inputSize != attributes.size()
+        || inputModified != attributes.lastModifiedTime().toMillis()) {
+      throw new IOException(
+          String.format("Checkpoint was taken of another version of the input: %s", inputFile));
+    }
+  }
+
+  /**
+   * Checks that the input is the file the checkpoint was taken of, possibly with lines appended.
+   *
+   * @param input input file
+   * @return false when the input is shorter than the offset or starts with other bytes
+   * @throws IOException
+   */
+  public boolean isContinuedBy(Path input) throws IOException {
+    return Files.size(input) >= inputOffset && checksum(input, inputOffset) == inputChecksum;
+  }
+
+  /**
+   * @param input input file
+   * @param length length of the input that was read
+   * @return CRC32 of the first {@code CHECKSUM_LENGTH} bytes of the read input
+   * @throws IOException
+   */
+  public static long checksum(Path input, long length) throws IOException {
+    ByteBuffer head = ByteBuffer.allocate((int) Math.min(length, CHECKSUM_LENGTH));
+    try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+      while (head.hasRemaining()) {
+        if (channel.read(head) < 0) {
+          break;
+        }
+      }
+    }
+    CRC32 crc = new CRC32();
+    crc.update(head.array(), 0, head.position());
+    return crc.getValue();
+  }
+
+  /**
+   * Writes the checkpoint and replaces the previous one.
+   *
+   * @param file checkpoint file
+   * @throws IOException
+   */
+  public void write(Path file) throws IOException {
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      out.writeUTF(inputFile);
+      out.writeLong(inputSize);
+      out.writeLong(inputModified);
+      out.writeLong(inputChecksum);
+      out.writeLong(inputOffset);
+      out.writeInt(partCount);
+      out.writeLong(writeCount);
+      out.writeInt(openEvents.size());
+      for (OutputEvent outputEvent : openEvents) {
+        OutputEventCodec.write(out, outputEvent);
+      }
+      out.flush();
+      channel.force(false);
+    }
+    Files.move(
+        temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads a checkpoint written by {@code write}.
+   *
+   * @param file checkpoint file
+   * @return the checkpoint
+   * @throws IOException when the file is not a checkpoint
+   */
+  public static Checkpoint read(Path file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+        throw new IOException("Not a checkpoint file: " + file);
+      }
+      String inputFile = in.readUTF();
+      long inputSize = in.readLong();
+      long inputModified = in.readLong();
+      long inputChecksum = in.readLong();
+      long inputOffset = in.readLong();
+      int partCount = in.readInt();
+      long writeCount = in.readLong();
+      int openCount = in.readInt();
+      List<OutputEvent> openEvents = new ArrayList<>(openCount);
+      for (int i = 0; i < openCount; i++) {
+        OutputEvent outputEvent = OutputEventCodec.read(in);
+        if (outputEvent == null) {
+          throw new IOException("Truncated checkpoint file: " + file);
+        }
+        openEvents.add(outputEvent);
+      }
+      return new Checkpoint(
+          inputFile,
+          inputSize,
+          inputModified,
+          inputChecksum,
+          inputOffset,
+          partCount,
+          writeCount,
+          openEvents);
+    }
+  }
+
+  /** @return position of the first line that was not read */
+  public long getInputOffset() {
+    return inputOffset;
+  }
+
+  /** @return count of output parts that are complete */
+  public int getPartCount() {
+    return partCount;
+  }
+
+  /** @return count of records in the complete parts */
+  public long getWriteCount() {
+    return writeCount;
+  }
+
+  /** @return events of the ids that are still open, in the order their ids were first seen */
+  public Collection<OutputEvent> getOpenEvents() {
+    return openEvents;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "input=%s, offset=%s, parts=%s, records=%s, open=%s",
+        inputFile, inputOffset, partCount, writeCount, openEvents.size());
+  }
+}
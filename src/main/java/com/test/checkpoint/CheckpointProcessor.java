@@ -0,0 +1,253 @@
+package com.test.checkpoint;
+
+import com.test.aggregate.StreamingAggregator;
+import com.test.event.InputEvent;
+import com.test.event.InputEventFactory;
+import com.test.event.OutputEvent;
+import com.test.event.ShardFiles;
+import com.test.input.FileChunk;
+import com.test.input.MappedFileChunker;
+import com.test.output.OutputSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code CheckpointProcessor} processes an input file on a single thread with a {@code
+ * StreamingAggregator} and periodically saves a {@code Checkpoint}, so a run that crashed can be
+ * resumed instead of started over.
+ *
+ * <p>The output is written in parts, every checkpoint closes the current part and opens the next
+ * one, so the parts listed in a checkpoint are complete files. A resumed run deletes the parts
+ * written after the checkpoint and reads the input from the checkpoint offset. The parts are joined
+ * into the output file at the end and the checkpoint file is deleted.
+ *
+ * <p>The aggregation state of a checkpoint is the set of open ids, so its cost depends on the count
+ * of in-flight ids and not on the size of the input.
+ */
+public class CheckpointProcessor {
+  private static final Logger logger = LoggerFactory.getLogger(CheckpointProcessor.class);
+
+  public static final long DEFAULT_INTERVAL = 30;
+
+  /** input bytes between two checks of the checkpoint interval */
+  static final int DEFAULT_SLICE_SIZE = 1 << 20;
+
+  /** Creates the sink of an output part */
+  public interface PartSinkFactory {
+    /**
+     * @param partFile file of the part
+     * @return a new sink writing the part file
+     * @throws IOException
+     */
+    OutputSink create(Path partFile) throws IOException;
+  }
+
+  private final Path inputFile;
+  private final Path outputFile;
+  private final Path checkpointFile;
+  private final PartSinkFactory partSinks;
+  private final long intervalNanos;
+  private final int sliceSize;
+  private final StreamingAggregator aggregator = new StreamingAggregator();
+
+  private OutputSink sink;
+  private long inputOffset = 0;
+  private int partCount = 0;
+  private long writeCount = 0;
+  private int checkpointCount = 0;
+
+  /**
+   * @param inputFile input file
+   * @param outputFile output file, the parts are written next to it
+   * @param checkpointFile checkpoint file
+   * @param partSinks factory of part sinks
+   * @param intervalSeconds time between two checkpoints
+   */
+  public CheckpointProcessor(
+      Path inputFile,
+      Path outputFile,
+      Path checkpointFile,
+      PartSinkFactory partSinks,
+      long intervalSeconds) {
+    this(
+        inputFile,
+        outputFile,
+        checkpointFile,
+        partSinks,
+        TimeUnit.SECONDS.toNanos(intervalSeconds),
+        DEFAULT_SLICE_SIZE);
+  }
+
+  CheckpointProcessor(
+      Path inputFile,
+      Path outputFile,
+      Path checkpointFile,
+      PartSinkFactory partSinks,
+      long intervalNanos,
+      int sliceSize) {
+    this.inputFile = inputFile;
+    this.outputFile = outputFile;
+    this.checkpointFile = checkpointFile;
+    this.partSinks = partSinks;
+    this.intervalNanos = intervalNanos;
+    this.sliceSize = sliceSize;
+  }
+
+  /** @return file of the output part with the given index */
+  Path partFile(int part) {
+    return outputFile.resolveSibling(outputFile.getFileName() + ".part-" + part);
+  }
+
+  /**
+   * Processes the input file.
+   *
+   * @param resume continue from the checkpoint file when it exists
+   * @return count of records in the output file
+   * @throws IOException when processing failed or the checkpoint does not match the input
+   */
+  public long run(boolean resume) throws IOException {
+    if (resume && Files.exists(checkpointFile)) {
+      restore(Checkpoint.read(checkpointFile));
+    } else {
+      Files.deleteIfExists(checkpointFile);
+      deleteParts(0);
+    }
+    openPart();
+    long checkpointTime = System.nanoTime();
+    try {
+      for (FileChunk chunk :
+          MappedFileChunker.splitRange(
+              inputFile, inputOffset, Long.MAX_VALUE, MappedFileChunker.defaultChunkCount())) {
+        int position = 0;
+        while (position < chunk.getLength()) {
+          FileChunk slice = chunk.slice(position, sliceSize);
+          slice.forEachLine(this::acceptLine);
+          position += slice.getLength();
+          inputOffset = chunk.getOffset() + position;
+          if (System.nanoTime() - checkpointTime >= intervalNanos) {
+            checkpoint();
+            checkpointTime = System.nanoTime();
+          }
+        }
+      }
+      for (Iterator<OutputEvent> open = aggregator.drainOpen(); open.hasNext(); ) {
+        sink.write(open.next());
+      }
+      closePart();
+    } catch (IOException | RuntimeException e) {
+      if (sink != null) {
+        try {
+          sink.close();
+        } catch (IOException closeFailure) {
+          logger.debug("Can not close part after failure: {}", closeFailure.getMessage());
+        }
+      }
+      if (e instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e).getCause();
+      }
+      throw e;
+    }
+
+    List<Path> parts = new ArrayList<>();
+    for (int part = 0; part < partCount; part++) {
+      parts.add(partFile(part));
+    }
+    ShardFiles.concatenate(parts, outputFile);
+    Files.deleteIfExists(checkpointFile);
+    logger.info("{} records written after {} checkpoints", writeCount, checkpointCount);
+    return writeCount;
+  }
+
+  private void restore(Checkpoint checkpoint) throws IOException {
+    checkpoint.verifyInput(inputFile);
+    logger.info("Resuming from checkpoint {}", checkpoint);
+    inputOffset = checkpoint.getInputOffset();
+    partCount = checkpoint.getPartCount();
+    writeCount = checkpoint.getWriteCount();
+    for (OutputEvent outputEvent : checkpoint.getOpenEvents()) {
+      aggregator.restoreOpen(outputEvent);
+    }
+    deleteParts(partCount);
+  }
+
+  /** Deletes the files of parts from the given one on, also shards left by a crashed sink */
+  private void deleteParts(int firstPart) throws IOException {
+    String prefix = outputFile.getFileName() + ".part-";
+    try (DirectoryStream<Path> parts =
+        Files.newDirectoryStream(outputFile.toAbsolutePath().getParent(), prefix + "*")) {
+      for (Path part : parts) {
+        String index = part.getFileName().toString().substring(prefix.length()).split("\\.")[0];
+        if (index.matches("[0-9]+") && Integer.parseInt(index) >= firstPart) {
+          logger.debug("Deleting {} written after the checkpoint", part);
+          Files.delete(part);
+        }
+      }
+    }
+  }
+
+  private void acceptLine(ByteBuffer buffer, int start, int end) {
+    InputEvent inputEvent = InputEventFactory.buildEvent(buffer, start, end);
+    if (inputEvent != null) {
+      OutputEvent outputEvent = aggregator.accept(inputEvent);
+      if (outputEvent != null) {
+        try {
+          sink.write(outputEvent);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
+  private void openPart() throws IOException {
+    sink = partSinks.create(partFile(partCount));
+  }
+
+  private void closePart() throws IOException {
+    OutputSink part = sink;
+    sink = null;
+    part.close();
+    writeCount += part.getWriteCount();
+    partCount++;
+  }
+
+  private void checkpoint() throws IOException {
+    long startTime = System.nanoTime();
+    closePart();
+    BasicFileAttributes attributes = Files.readAttributes(inputFile, BasicFileAttributes.class);
+    new Checkpoint(
+            inputFile.toAbsolutePath().normalize().toString(),
+            attributes.size(),
+            attributes.lastModifiedTime().toMillis(),
+            Checkpoint.checksum(inputFile, inputOffset),
+            inputOffset,
+            partCount,
+            writeCount,
+            aggregator.getOpenEvents())
+        .write(checkpointFile);
+    checkpointCount++;
+    openPart();
+    logger.debug(
+        "Checkpoint at {} with {} open ids in {} us",
+        inputOffset,
+        aggregator.getOpenCount(),
+        TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+  }
+
+  /** @return count of checkpoints written by {@code run} */
+  public int getCheckpointCount() {
+    return checkpointCount;
+  }
+}
@@ -0,0 +1,148 @@
+package com.test.checkpoint;
+
+import com.test.aggregate.StreamingAggregator;
+import com.test.event.InputEvent;
+import com.test.event.InputEventFactory;
+import com.test.event.OutputEvent;
+import com.test.input.FileChunk;
+import com.test.input.MappedFileChunker;
+import com.test.output.OutputSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@code IncrementalProcessor} processes only the lines appended to an input file since its
+ * previous run. The state of a run is saved as a {@code Checkpoint}: the identity of the input, the
+ * end of its last complete line and the ids that are still open. The next run restores the open
+ * ids, reads the input from that offset and applies the new lines to the open ids with the usual
+ * {@code OutputEvent} rules.
+ *
+ * <p>A run writes the ids completed by its lines and the open ids that got new lines, the open ids
+ * that did not change since the previous run are not written again. A last line without its line
+ * separator is left for the next run.
+ *
+ * <p>When the input is not the file of the state, for example after the log was rotated, it is read
+ * from the beginning and the open ids of the state are kept, so ids started in the rotated file can
+ * still be completed.
+ */
+public class IncrementalProcessor {
+  private static final Logger logger = LoggerFactory.getLogger(IncrementalProcessor.class);
+
+  private final Path inputFile;
+  private final Path stateFile;
+  private final StreamingAggregator aggregator = new StreamingAggregator();
+  // restored open ids without new lines in this run
+  private final Set<String> unchangedIds = new HashSet<>();
+
+  private OutputSink sink;
+
+  /**
+   * @param inputFile input file
+   * @param stateFile state file, it is created by the first run
+   */
+  public IncrementalProcessor(Path inputFile, Path stateFile) {
+    this.inputFile = inputFile;
+    this.stateFile = stateFile;
+  }
+
+  /**
+   * Processes the lines appended since the previous run and saves the new state.
+   *
+   * @param sink sink of the new and changed records, it is closed at the end
+   * @return count of records written into the sink
+   * @throws IOException
+   */
+  public long run(OutputSink sink) throws IOException {
+    this.sink = sink;
+    long inputOffset = 0;
+    long previousWriteCount = 0;
+    long end;
+    try {
+      if (Files.exists(stateFile)) {
+        Checkpoint state = Checkpoint.read(stateFile);
+        previousWriteCount = state.getWriteCount();
+        if (state.isContinuedBy(inputFile)) {
+          inputOffset = state.getInputOffset();
+        } else {
+          logger.info("{} is not the input of the state, it is read from the beginning", inputFile);
+        }
+        for (OutputEvent outputEvent : state.getOpenEvents()) {
+          aggregator.restoreOpen(outputEvent);
+          unchangedIds.add(outputEvent.getId());
+        }
+        logger.info("Restored state {}", state);
+      }
+
+      end = MappedFileChunker.completeLinesEnd(inputFile);
+      for (FileChunk chunk :
+          MappedFileChunker.splitRange(
+              inputFile, inputOffset, end, MappedFileChunker.defaultChunkCount())) {
+        chunk.forEachLine(this::acceptLine);
+      }
+      for (OutputEvent outputEvent : aggregator.getOpenEvents()) {
+        if (!unchangedIds.contains(outputEvent.getId())) {
+          sink.write(outputEvent);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      try {
+        sink.close();
+      } catch (IOException closeFailure) {
+        logger.debug("Can not close sink after failure: {}", closeFailure.getMessage());
+      }
+      if (e instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e).getCause();
+      }
+      throw e;
+    }
+    // the state is only saved once the output is complete
+    sink.close();
+
+    BasicFileAttributes attributes = Files.readAttributes(inputFile, BasicFileAttributes.class);
+    new Checkpoint(
+            inputFile.toAbsolutePath().normalize().toString(),
+            attributes.size(),
+            attributes.lastModifiedTime().toMillis(),
+            Checkpoint.checksum(inputFile, end),
+            end,
+            0,
+            previousWriteCount + sink.getWriteCount(),
+            aggregator.getOpenEvents())
+        .write(stateFile);
+    logger.info(
+        "Read {} new bytes, {} records written, {} ids open",
+        end - inputOffset,
+        sink.getWriteCount(),
+        aggregator.getOpenCount());
+    return sink.getWriteCount();
+  }
+
+  private void acceptLine(ByteBuffer buffer, int start, int end) {
+    InputEvent inputEvent = InputEventFactory.buildEvent(buffer, start, end);
+    if (inputEvent != null) {
+      unchangedIds.remove(inputEvent.getId());
+      OutputEvent outputEvent = aggregator.accept(inputEvent);
+      if (outputEvent != null) {
+        try {
+          sink.write(outputEvent);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
+  /** @return open ids kept for the next run, valid after {@code run} */
+  public int getOpenCount() {
+    return aggregator.getOpenCount();
+  }
+}
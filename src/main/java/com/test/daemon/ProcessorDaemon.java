@@ -0,0 +1,233 @@
+package com.test.daemon;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code ProcessorDaemon} watches an inbox directory and processes every input file that appears
+ * in it, so many small files are processed by one warmed-up JVM instead of a new JVM per file.
+ * Jobs run concurrently on a fixed pool of job threads; the JVM-wide resources, like the common
+ * fork-join pool of parallel streams and an open HSQLDB database, are shared by all jobs.
+ *
+ * <p>Only files matching the input pattern are taken, so writers should create a file under
+ * another name and rename it when it is complete. The output of {@code name.log} is {@code name}
+ * with the output extension in the output directory. A processed input is moved into the {@code
+ * done} subdirectory of the inbox, an input whose job failed into {@code failed}.
+ */
+public class ProcessorDaemon {
+  private static final Logger logger = LoggerFactory.getLogger(ProcessorDaemon.class);
+
+  public static final String DEFAULT_PATTERN = "*.log";
+  public static final String DONE_DIRECTORY = "done";
+  public static final String FAILED_DIRECTORY = "failed";
+
+  /** Processes one input file */
+  public interface Job {
+    /**
+     * @param inputFile input file
+     * @param outputFileName output file name
+     * @throws Exception when the job failed, the input is moved into {@code failed}
+     */
+    void process(Path inputFile, String outputFileName) throws Exception;
+  }
+
+  private final Path inbox;
+  private final Path outputDirectory;
+  private final String outputExtension;
+  private final Job job;
+  private final PathMatcher inputMatcher;
+  private final ExecutorService jobs;
+  // inputs that are queued or running
+  private final Set<Path> accepted = ConcurrentHashMap.newKeySet();
+  private final AtomicLong doneCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private final CountDownLatch terminated = new CountDownLatch(1);
+  private volatile WatchService watchService = null;
+  private volatile boolean stopped = false;
+
+  /**
+   * @param inbox directory to watch
+   * @param outputDirectory directory of the output files, it is created by the job when needed
+   * @param outputExtension extension of the output files, without the dot
+   * @param job processing of one file
+   * @param jobThreads count of jobs that run concurrently
+   */
+  public ProcessorDaemon(
+      Path inbox, Path outputDirectory, String outputExtension, Job job, int jobThreads) {
+    this.inbox = inbox;
+    this.outputDirectory = outputDirectory;
+    this.outputExtension = outputExtension;
+    this.job = job;
+    this.inputMatcher = FileSystems.getDefault().getPathMatcher("glob:" + DEFAULT_PATTERN);
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadFactory threadFactory =
+        runnable -> {
+          Thread thread = new Thread(runnable, "csa-job-" + threadCount.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        };
+    this.jobs = Executors.newFixedThreadPool(jobThreads, threadFactory);
+  }
+
+  /** @return default count of concurrent jobs, half of the processors */
+  public static int defaultJobThreads() {
+    return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+  }
+
+  /**
+   * Processes the files already in the inbox and then the new ones until {@code stop} is called.
+   * The jobs that were accepted before are completed.
+   *
+   * @throws IOException when the inbox can not be watched
+   */
+  public void run() throws IOException {
+    try {
+      Files.createDirectories(inbox.resolve(DONE_DIRECTORY));
+      Files.createDirectories(inbox.resolve(FAILED_DIRECTORY));
+      watchService = inbox.getFileSystem().newWatchService();
+      inbox.register(
+          watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.OVERFLOW);
+      // files created before the watch was registered
+      scanInbox();
+      logger.info("Watching {} for {}", inbox, DEFAULT_PATTERN);
+      while (!stopped) {
+        WatchKey key;
+        try {
+          key = watchService.take();
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+          break;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            scanInbox();
+          } else {
+            accept(inbox.resolve((Path) event.context()));
+          }
+        }
+        if (!key.reset()) {
+          logger.error("{} can not be watched any more", inbox);
+          break;
+        }
+      }
+    } finally {
+      jobs.shutdown();
+      try {
+        jobs.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (watchService != null) {
+        watchService.close();
+      }
+      logger.info("Stopped after {} done and {} failed jobs", doneCount, failedCount);
+      terminated.countDown();
+    }
+  }
+
+  private void scanInbox() throws IOException {
+    try (DirectoryStream<Path> inputs = Files.newDirectoryStream(inbox)) {
+      for (Path input : inputs) {
+        accept(input);
+      }
+    }
+  }
+
+  private void accept(Path input) {
+    if (!inputMatcher.matches(input.getFileName())
+        || !Files.isRegularFile(input)
+        || !accepted.add(input)) {
+      return;
+    }
+    logger.debug("Accepted {}", input);
+    jobs.execute(() -> process(input));
+  }
+
+  private void process(Path input) {
+    String name = input.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    String outputFileName =
+        outputDirectory
+            .resolve((dot > 0 ? name.substring(0, dot) : name) + "." + outputExtension)
+            .toString();
+    long startTime = System.nanoTime();
+    String target = DONE_DIRECTORY;
+    try {
+      job.process(input, outputFileName);
+      doneCount.incrementAndGet();
+      logger.info(
+          "Processed {} into {} in {} ms",
+          input,
+          outputFileName,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    } catch (Exception e) {
+      target = FAILED_DIRECTORY;
+      failedCount.incrementAndGet();
+      logger.error("Processing of {} failed: {}", input, e.getMessage());
+    }
+    try {
+      Files.move(
+          input, inbox.resolve(target).resolve(name), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      logger.error("Can not move {} into {}: {}", input, target, e.getMessage());
+    } finally {
+      accepted.remove(input);
+    }
+  }
+
+  /** Stops watching the inbox, the accepted jobs are completed; it may be called from any thread */
+  public void stop() {
+    stopped = true;
+    WatchService current = watchService;
+    if (current != null) {
+      try {
+        current.close();
+      } catch (IOException e) {
+        logger.debug("Can not close watch service: {}", e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Waits until {@code run} returned.
+   *
+   * @param timeout maximal time to wait
+   * @param unit unit of the timeout
+   * @return false when the time elapsed first
+   * @throws InterruptedException
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return terminated.await(timeout, unit);
+  }
+
+  /** @return count of jobs that completed */
+  public long getDoneCount() {
+    return doneCount.get();
+  }
+
+  /** @return count of jobs that failed */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+}
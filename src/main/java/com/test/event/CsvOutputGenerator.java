@@ -0,0 +1,347 @@
+package com.test.event;
+
+import com.test.jfr.SinkFlushEvent;
+import com.test.trace.IdTracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code CsvOutputGenerator} writes {@code OutputEvent} records straight into a CSV file, without
+ * JDBC and HSQLDB. The output is byte for byte the file an HSQLDB text table with the {@code
+ * OutputGenerator} columns produces: ISO-8859-1 text, {@code ?} for unmappable characters, empty,
+ * quoted and control-character values in double quotes, null values as empty fields, the duration
+ * truncated to an integer like the {@code numeric} column and {@code \n} line endings.
+ *
+ * <p>Records are formatted into a direct buffer of the instance, numbers and booleans without
+ * intermediate strings. Every instance writes its own shard file next to the output file, so
+ * parallel workers never share a file, and the shards are joined in encounter order by {@code
+ * release}. A single writer may write straight into the output file instead, see {@code direct}.
+ */
+public class CsvOutputGenerator {
+  private static final Logger logger = LoggerFactory.getLogger(CsvOutputGenerator.class);
+
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+  /** precision of the HSQLDB {@code numeric} column, longer durations are rejected */
+  static final int MAX_DURATION_PRECISION = 128;
+
+  private static final byte SEPARATOR = ',';
+  private static final byte QUOTE = '"';
+  private static final byte NEW_LINE = '\n';
+  private static final byte UNMAPPABLE = '?';
+  private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+  private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+  private final Path outputFile;
+  private final List<Path> shards = new ArrayList<>();
+  private FileChannel channel;
+  private final ByteBuffer buffer;
+  private final byte[] digits = new byte[20];
+
+  private long emitCount = 0;
+  // records written into the shard file
+  private long flushedCount = 0;
+
+  /**
+   * @param outputFile output file, an existing file is replaced by {@code release}
+   * @param bufferSize size of the record buffer
+   * @throws IOException
+   */
+  public CsvOutputGenerator(Path outputFile, int bufferSize) throws IOException {
+    this(outputFile, bufferSize, true);
+  }
+
+  private CsvOutputGenerator(Path outputFile, int bufferSize, boolean sharded)
+      throws IOException {
+    this.outputFile = outputFile;
+    this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    Path file =
+        sharded
+            ? outputFile.resolveSibling(
+                ShardFiles.shardName(outputFile.getFileName().toString(), ShardFiles.nextShard()))
+            : outputFile;
+    channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+    if (sharded) {
+      shards.add(file);
+    }
+  }
+
+  /**
+   * @param outputFile output file, an existing file is replaced by {@code release}
+   * @throws IOException
+   */
+  public CsvOutputGenerator(Path outputFile) throws IOException {
+    this(outputFile, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates an instance that writes straight into the output file, so every {@code flush} is
+   * visible there at once. It is meant for a single writer and can not be combined.
+   *
+   * @param outputFile output file, an existing file is replaced
+   * @return a new {@code CsvOutputGenerator}
+   * @throws IOException
+   */
+  public static CsvOutputGenerator direct(Path outputFile) throws IOException {
+    return new CsvOutputGenerator(outputFile, DEFAULT_BUFFER_SIZE, false);
+  }
+
+  /**
+   * Initializes new instance.
+   *
+   * @param outputFile output file
+   * @return a new {@code CsvOutputGenerator}
+   */
+  public static CsvOutputGenerator init(Path outputFile) {
+    try {
+      return new CsvOutputGenerator(outputFile);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Saves a new record into the buffer, the buffer is written when it can not hold the record.
+   *
+   * @param outputEvent {@code OutputEvent} to be recorded
+   * @throws IOException
+   */
+  public void emit(OutputEvent outputEvent) throws IOException {
+    if (IdTracer.isEnabled()) {
+      IdTracer.trace(IdTracer.EMIT, outputEvent.getId(), outputEvent);
+    }
+    BigDecimal exactDuration = outputEvent.getExactDuration();
+    if (exactDuration != null) {
+      exactDuration = exactDuration.setScale(0, RoundingMode.DOWN);
+      if (exactDuration.precision() > MAX_DURATION_PRECISION) {
+        logger.error("Duration out of range, record skipped: {}", outputEvent);
+        return;
+      }
+    }
+
+    int start = buffer.position();
+    try {
+      writeRecord(outputEvent, exactDuration);
+    } catch (BufferOverflowException e) {
+      buffer.position(start);
+      flush();
+      try {
+        writeRecord(outputEvent, exactDuration);
+      } catch (BufferOverflowException tooLong) {
+        throw new IOException("Record does not fit into the output buffer: " + outputEvent);
+      }
+    }
+    emitCount++;
+  }
+
+  private void writeRecord(OutputEvent outputEvent, BigDecimal exactDuration) {
+    writeString(outputEvent.getId());
+    buffer.put(SEPARATOR);
+    if (exactDuration != null) {
+      writeAscii(exactDuration.toPlainString());
+    } else if (outputEvent.getDurationMillis() != Timestamps.NONE) {
+      writeLong(outputEvent.getDurationMillis());
+    }
+    buffer.put(SEPARATOR);
+    writeString(outputEvent.getType());
+    buffer.put(SEPARATOR);
+    writeString(outputEvent.getHost());
+    buffer.put(SEPARATOR);
+    Boolean alert = outputEvent.getAlert();
+    if (alert != null) {
+      buffer.put(alert ? TRUE : FALSE);
+    }
+    buffer.put(NEW_LINE);
+  }
+
+  private void writeLong(long value) {
+    if (value == Long.MIN_VALUE) {
+      writeAscii(Long.toString(value));
+      return;
+    }
+    if (value < 0) {
+      buffer.put((byte) '-');
+      value = -value;
+    }
+    int count = 0;
+    do {
+      digits[count++] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    while (count > 0) {
+      buffer.put(digits[--count]);
+    }
+  }
+
+  private void writeAscii(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      buffer.put((byte) value.charAt(i));
+    }
+  }
+
+  private void writeString(String value) {
+    if (value == null) {
+      return;
+    }
+    boolean quoted = needsQuotes(value);
+    if (quoted) {
+      buffer.put(QUOTE);
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == QUOTE) {
+        buffer.put(QUOTE);
+        buffer.put(QUOTE);
+      } else if (c < 0x100) {
+        buffer.put((byte) c);
+      } else {
+        // a surrogate pair is a single unmappable character
+        if (Character.isHighSurrogate(c)
+            && i + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          i++;
+        }
+        buffer.put(UNMAPPABLE);
+      }
+    }
+    if (quoted) {
+      buffer.put(QUOTE);
+    }
+  }
+
+  private static boolean needsQuotes(String value) {
+    if (value.isEmpty()) {
+      return true;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == SEPARATOR || c == QUOTE || Character.isISOControl(c)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes buffered records into the shard or output file, recorded as a {@code SinkFlushEvent} when that
+   * event is enabled.
+   *
+   * @throws IOException
+   */
+  public void flush() throws IOException {
+    SinkFlushEvent event = new SinkFlushEvent();
+    event.begin();
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+    event.end();
+    if (event.shouldCommit()) {
+      event.sink = SinkFlushEvent.CSV;
+      event.records = emitCount - flushedCount;
+      event.commit();
+    }
+    flushedCount = emitCount;
+  }
+
+  /**
+   * Flushes and closes the shard or output file of this instance.
+   *
+   * @throws IOException
+   */
+  public void close() throws IOException {
+    if (channel != null) {
+      flush();
+      channel.close();
+      channel = null;
+    }
+  }
+
+  /**
+   * Apply method to consume {@code OutputEvent} in stream
+   *
+   * @param outputEvent
+   * @return the same instance
+   */
+  public CsvOutputGenerator apply(OutputEvent outputEvent) {
+    try {
+      emit(outputEvent);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  /**
+   * Combines two partial results - closes the second one, takes over its shards after the own ones
+   * and sums their counts.
+   *
+   * @param generator1
+   * @param generator2
+   * @return the first instance
+   */
+  public static CsvOutputGenerator combine(
+      CsvOutputGenerator generator1, CsvOutputGenerator generator2) {
+    if (generator1.shards.isEmpty() || generator2.shards.isEmpty()) {
+      throw new IllegalStateException("Direct output can not be combined");
+    }
+    try {
+      generator2.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    generator1.shards.addAll(generator2.shards);
+    generator1.emitCount += generator2.emitCount;
+    generator1.flushedCount += generator2.emitCount;
+    return generator1;
+  }
+
+  /**
+   * Closes the shard file and joins all shards into the output file.
+   *
+   * @throws IOException
+   */
+  public void finish() throws IOException {
+    close();
+    if (!shards.isEmpty()) {
+      ShardFiles.concatenate(shards, outputFile);
+    }
+  }
+
+  /**
+   * Used to finalize instance at the end of processing, joins all shards into the output file.
+   *
+   * @return the same instance
+   */
+  public CsvOutputGenerator release() {
+    try {
+      finish();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  /** @return count of produced events into output file */
+  public long getEmitCount() {
+    return emitCount;
+  }
+}
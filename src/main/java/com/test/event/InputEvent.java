@@ -7,14 +7,37 @@ public class InputEvent {
 
   private final String id;
   private final String state;
-  private final BigDecimal timestamp; // TODO can be long, if certain in datatype!
+  private final int stateCode;
+  private final long timestamp; // epoch ms, Timestamps.NONE when missing or kept in exactTimestamp
+  private final BigDecimal exactTimestamp; // only fractional or oversized timestamps
   private final String type;
   private final String host;
 
   public InputEvent(String id, String state, BigDecimal timestamp, String type, String host) {
+    this(id, state, Timestamps.toLong(timestamp), Timestamps.toExact(timestamp), type, host);
+  }
+
+  public InputEvent(String id, String state, long timestamp, String type, String host) {
+    this(id, state, timestamp, null, type, host);
+  }
+
+  private InputEvent(
+      String id,
+      String state,
+      long timestamp,
+      BigDecimal exactTimestamp,
+      String type,
+      String host) {
     this.id = id;
     this.state = state;
+    this.stateCode =
+        InputEventScanner.STARTED.equals(state)
+            ? InputEventScanner.STATE_STARTED
+            : InputEventScanner.FINISHED.equals(state)
+                ? InputEventScanner.STATE_FINISHED
+                : InputEventScanner.STATE_OTHER;
     this.timestamp = timestamp;
+    this.exactTimestamp = exactTimestamp;
     this.type = type;
     this.host = host;
   }
@@ -22,7 +45,8 @@ public class InputEvent {
   @Override
   public String toString() {
     return String.format(
-        "id=%s, state=%s, timestamp=%s, type=%s, host=%s", id, state, timestamp, type, host);
+        "id=%s, state=%s, timestamp=%s, type=%s, host=%s",
+        id, state, getTimestamp(), type, host);
   }
 
   public String getId() {
@@ -33,10 +57,28 @@ public class InputEvent {
     return this.state;
   }
 
+  /**
+   * @return one of {@code InputEventScanner.STATE_STARTED}, {@code STATE_FINISHED} or {@code
+   *     STATE_OTHER}
+   */
+  public int getStateCode() {
+    return stateCode;
+  }
+
   public BigDecimal getTimestamp() {
+    return Timestamps.toBigDecimal(timestamp, exactTimestamp);
+  }
+
+  /** @return timestamp in epoch ms, or {@code Timestamps.NONE} when it is not a {@code long} */
+  public long getTimestampMillis() {
     return timestamp;
   }
 
+  /** @return timestamp when it is fractional or too big for {@code long}, otherwise null */
+  public BigDecimal getExactTimestamp() {
+    return exactTimestamp;
+  }
+
   public String getHost() {
     return host;
   }
@@ -1,71 +1,140 @@
 package com.test.event;
 
-import com.google.gson.stream.JsonReader;
+import com.test.input.LineConsumer;
+import com.test.metrics.ProcessingMetrics;
+import com.test.trace.IdTracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.StringReader;
-import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
 
 /**
  * Static factory to produce {@code InputEvent} from strings. The class is completely static to make
- * it parallel-processing friendly.
+ * it parallel-processing friendly, every thread parses with its own {@code InputEventScanner}.
+ * Parsed lines of traced ids are passed to {@code IdTracer}, nothing is logged per line otherwise.
  */
 public class InputEventFactory {
   private static final Logger logger = LoggerFactory.getLogger(InputEventFactory.class);
+  private static final ProcessingMetrics metrics = ProcessingMetrics.shared();
+
+  private static final ThreadLocal<InputEventScanner> scanners =
+      ThreadLocal.withInitial(InputEventScanner::new);
 
   /**
    * Converts single-line string JSON object into {@code InputEvent}
    *
    * @param jsonString input string
-   * @return a new {@code InputEvent}
+   * @return a new {@code InputEvent}, or null when the string is not a valid JSON object with
+   *     an id
    */
   public static InputEvent buildEvent(String jsonString) {
-    logger.debug("Input string: {}", jsonString);
-    JsonReader reader = new JsonReader(new StringReader(jsonString));
     InputEvent event = null;
     try {
-      reader.beginObject();
-
-      String id = null;
-      String state = null;
-      BigDecimal timestamp = null;
-      String type = null;
-      String host = null;
+      InputEventScanner scanner = scanners.get();
+      scanner.scan(jsonString);
+      requireId(scanner);
+      event = scanner.toInputEvent();
+    } catch (IllegalArgumentException e) {
+      metrics.parseFailed();
+      logger.error(e.getMessage());
+    }
 
-      while (reader.hasNext()) {
-        String name = reader.nextName();
-        switch (name) {
-          case "id":
-            id = reader.nextString();
-            break;
-          case "state":
-            state = reader.nextString();
-            break;
-          case "timestamp":
-            timestamp = new BigDecimal(reader.nextString());
-            break;
-          case "type":
-            type = reader.nextString();
-            break;
-          case "host":
-            host = reader.nextString();
-            break;
-          default:
-            reader.skipValue();
-            break;
-        }
-      }
-      reader.endObject();
+    if (event != null && IdTracer.isEnabled()) {
+      IdTracer.trace(IdTracer.PARSE, event.getId(), event);
+    }
+    return event;
+  }
 
-      event = new InputEvent(id, state, timestamp, type, host);
-    } catch (IOException e) {
+  /**
+   * Converts raw bytes of single-line JSON object into {@code InputEvent}, the line is not decoded
+   * into a string.
+   *
+   * @param buffer source bytes
+   * @param start position of the first byte of the line
+   * @param end position after the last byte of the line
+   * @return a new {@code InputEvent}, or null when the line is not a valid JSON object with an
+   *     id
+   */
+  public static InputEvent buildEvent(ByteBuffer buffer, int start, int end) {
+    InputEvent event = null;
+    try {
+      InputEventScanner scanner = scanners.get();
+      scanner.scan(buffer, start, end);
+      requireId(scanner);
+      event = scanner.toInputEvent();
+    } catch (IllegalArgumentException e) {
+      metrics.parseFailed();
       logger.error(e.getMessage());
-      e.printStackTrace();
     }
 
-    logger.debug("Object: {}", event == null ? "not created" : event.toString());
+    if (event != null && IdTracer.isEnabled()) {
+      IdTracer.trace(IdTracer.PARSE, event.getId(), event);
+    }
     return event;
   }
+
+  /**
+   * Scans raw bytes of single-line JSON object with the scanner of the current thread, without
+   * creating an {@code InputEvent}. The scanner is only valid until the next line is scanned on
+   * the same thread.
+   *
+   * @param buffer source bytes
+   * @param start position of the first byte of the line
+   * @param end position after the last byte of the line
+   * @return the scanner holding the line, or null when the line is not a valid JSON object with
+   *     an id
+   */
+  public static InputEventScanner scan(ByteBuffer buffer, int start, int end) {
+    InputEventScanner scanner = scanners.get();
+    try {
+      scanner.scan(buffer, start, end);
+      requireId(scanner);
+      if (IdTracer.isEnabled()) {
+        trace(scanner);
+      }
+      return scanner;
+    } catch (IllegalArgumentException e) {
+      metrics.parseFailed();
+      logger.error(e.getMessage());
+      return null;
+    }
+  }
+
+  /** @throws IllegalArgumentException when the scanned line has no id */
+  private static void requireId(InputEventScanner scanner) {
+    if (!scanner.hasId()) {
+      throw new IllegalArgumentException("Input event without id");
+    }
+  }
+
+  private static void trace(InputEventScanner scanner) {
+    String id = scanner.getId();
+    if (IdTracer.traces(id)) {
+      IdTracer.trace(IdTracer.PARSE, id, scanner.toInputEvent());
+    }
+  }
+
+  /**
+   * Creates a line consumer that scans every line and passes the scanner to the action, no {@code
+   * InputEvent} is created. Lines that are not valid events, including values the action rejects
+   * with {@code IllegalArgumentException}, are logged and skipped.
+   *
+   * @param action consumer of scanned lines, the scanner is only valid during the call
+   * @return line consumer
+   */
+  public static LineConsumer scanning(Consumer<InputEventScanner> action) {
+    return (buffer, start, end) -> {
+      InputEventScanner scanner = scan(buffer, start, end);
+      if (scanner == null) {
+        return;
+      }
+      try {
+        action.accept(scanner);
+      } catch (IllegalArgumentException e) {
+        metrics.parseFailed();
+        logger.error(e.getMessage());
+      }
+    };
+  }
 }
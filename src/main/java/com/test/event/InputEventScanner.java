@@ -0,0 +1,637 @@
+package com.test.event;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code InputEventScanner} is a specialised single-line JSON scanner working on raw UTF-8 bytes. It
+ * only locates the values of {@code id}, {@code state}, {@code timestamp}, {@code type} and {@code
+ * host}, all other keys are skipped without decoding. Values are kept as offsets into the scanned
+ * buffer and decoded on demand, so a scan itself allocates nothing.
+ *
+ * <p>An instance is reusable but not thread-safe, every thread should own its scanner.
+ */
+public class InputEventScanner {
+  public static final int STATE_OTHER = 0;
+  public static final int STATE_STARTED = 1;
+  public static final int STATE_FINISHED = 2;
+
+  static final String STARTED = "STARTED";
+  static final String FINISHED = "FINISHED";
+
+  private static final byte[] KEY_ID = ascii("id");
+  private static final byte[] KEY_STATE = ascii("state");
+  private static final byte[] KEY_TIMESTAMP = ascii("timestamp");
+  private static final byte[] KEY_TYPE = ascii("type");
+  private static final byte[] KEY_HOST = ascii("host");
+  private static final byte[] VALUE_STARTED = ascii(STARTED);
+  private static final byte[] VALUE_FINISHED = ascii(FINISHED);
+  private static final byte[] VALUE_NULL = ascii("null");
+
+  private static final int FIELD_ID = 0;
+  private static final int FIELD_STATE = 1;
+  private static final int FIELD_TIMESTAMP = 2;
+  private static final int FIELD_TYPE = 3;
+  private static final int FIELD_HOST = 4;
+  private static final int FIELD_COUNT = 5;
+  private static final int FIELD_UNKNOWN = -1;
+
+  /** value flags: raw bytes need unescaping or UTF-8 decoding */
+  private static final int FLAG_ESCAPED = 1;
+  private static final int FLAG_NON_ASCII = 2;
+
+  private ByteBuffer buffer;
+  private int position;
+  private int end;
+
+  private final int[] valueStart = new int[FIELD_COUNT];
+  private final int[] valueEnd = new int[FIELD_COUNT];
+  private final int[] valueFlags = new int[FIELD_COUNT];
+  private final boolean[] present = new boolean[FIELD_COUNT];
+
+  private final ValueDictionary dictionary = ValueDictionary.shared();
+  private final ValueDictionary.Lookup values = dictionary.new Lookup();
+
+  private byte[] bytes = new byte[256];
+  private byte[] idBytes = new byte[64];
+  private char[] chars = new char[256];
+  private ByteBuffer encoded = ByteBuffer.wrap(bytes);
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Scans a single JSON object.
+   *
+   * @param buffer source bytes, absolute positions are used and the buffer state is not changed
+   * @param start position of the first byte of the line
+   * @param end position after the last byte of the line
+   * @throws IllegalArgumentException when the line is not a valid JSON object, also when anything
+   *     but whitespace follows the object
+   */
+  public void scan(ByteBuffer buffer, int start, int end) {
+    this.buffer = buffer;
+    this.position = start;
+    this.end = end;
+    for (int i = 0; i < FIELD_COUNT; i++) {
+      present[i] = false;
+    }
+
+    skipWhitespace();
+    expect('{');
+    skipWhitespace();
+    if (peek() == '}') {
+      position++;
+      expectEnd();
+      return;
+    }
+    while (true) {
+      skipWhitespace();
+      int field = readKey();
+      skipWhitespace();
+      expect(':');
+      skipWhitespace();
+      if (field == FIELD_UNKNOWN) {
+        skipValue();
+      } else {
+        readValue(field);
+      }
+      skipWhitespace();
+      byte next = next();
+      if (next == '}') {
+        expectEnd();
+        return;
+      }
+      if (next != ',') {
+        throw malformed("expected ',' or '}'");
+      }
+    }
+  }
+
+  /**
+   * Scans a single JSON object held in a string.
+   *
+   * @param jsonString source line
+   */
+  public void scan(String jsonString) {
+    int length = encode(jsonString);
+    scan(encoded, 0, length);
+  }
+
+  /** Encodes the string into the internal byte array, ASCII strings are copied without a coder */
+  private int encode(String value) {
+    int length = value.length();
+    ensureBytes(length);
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x80) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        ensureBytes(utf8.length);
+        System.arraycopy(utf8, 0, bytes, 0, utf8.length);
+        return utf8.length;
+      }
+      bytes[i] = (byte) c;
+    }
+    return length;
+  }
+
+  private void ensureBytes(int length) {
+    if (bytes.length < length) {
+      bytes = new byte[Math.max(length, bytes.length * 2)];
+      encoded = ByteBuffer.wrap(bytes);
+    }
+  }
+
+  /** @return a new {@code InputEvent} built from the last scanned line */
+  public InputEvent toInputEvent() {
+    long timestamp = getTimestampMillis();
+    if (timestamp != Timestamps.NONE || !present[FIELD_TIMESTAMP]) {
+      return new InputEvent(getId(), getState(), timestamp, getType(), getHost());
+    }
+    return new InputEvent(getId(), getState(), getTimestamp(), getType(), getHost());
+  }
+
+  public String getId() {
+    return decode(FIELD_ID);
+  }
+
+  /**
+   * Copies the UTF-8 bytes of the id into {@code getIdBytes}. Plain ASCII ids are copied from the
+   * line without a string, others are decoded first, so the bytes always match {@code getId}.
+   *
+   * @return length of the id in bytes, or -1 when the line has no id
+   */
+  public int readIdBytes() {
+    if (!present[FIELD_ID]) {
+      return -1;
+    }
+    if (valueFlags[FIELD_ID] != 0) {
+      byte[] utf8 = getId().getBytes(StandardCharsets.UTF_8);
+      ensureIdBytes(utf8.length);
+      System.arraycopy(utf8, 0, idBytes, 0, utf8.length);
+      return utf8.length;
+    }
+    int start = valueStart[FIELD_ID];
+    int length = valueEnd[FIELD_ID] - start;
+    ensureIdBytes(length);
+    for (int i = 0; i < length; i++) {
+      idBytes[i] = buffer.get(start + i);
+    }
+    return length;
+  }
+
+  private void ensureIdBytes(int length) {
+    if (idBytes.length < length) {
+      idBytes = new byte[Math.max(length, idBytes.length * 2)];
+    }
+  }
+
+  /** @return id bytes of the last {@code readIdBytes}, the array is reused */
+  public byte[] getIdBytes() {
+    return idBytes;
+  }
+
+  /** @return true when the line has an id */
+  public boolean hasId() {
+    return present[FIELD_ID];
+  }
+
+  /** @return true when the line has a timestamp */
+  public boolean hasTimestamp() {
+    return present[FIELD_TIMESTAMP];
+  }
+
+  /** @return the state, known states are returned as shared constants */
+  public String getState() {
+    switch (getStateCode()) {
+      case STATE_STARTED:
+        return STARTED;
+      case STATE_FINISHED:
+        return FINISHED;
+      default:
+        return decode(FIELD_STATE);
+    }
+  }
+
+  /** @return one of {@code STATE_STARTED}, {@code STATE_FINISHED} or {@code STATE_OTHER} */
+  public int getStateCode() {
+    if (!present[FIELD_STATE]) {
+      return STATE_OTHER;
+    }
+    if (valueFlags[FIELD_STATE] != 0) {
+      String state = decode(FIELD_STATE);
+      return STARTED.equals(state)
+          ? STATE_STARTED
+          : FINISHED.equals(state) ? STATE_FINISHED : STATE_OTHER;
+    }
+    if (rawEquals(FIELD_STATE, VALUE_STARTED)) {
+      return STATE_STARTED;
+    }
+    if (rawEquals(FIELD_STATE, VALUE_FINISHED)) {
+      return STATE_FINISHED;
+    }
+    return STATE_OTHER;
+  }
+
+  /** @return the timestamp, integral values are parsed without an intermediate string */
+  public BigDecimal getTimestamp() {
+    if (!present[FIELD_TIMESTAMP]) {
+      return null;
+    }
+    int start = valueStart[FIELD_TIMESTAMP];
+    int stop = valueEnd[FIELD_TIMESTAMP];
+    if (valueFlags[FIELD_TIMESTAMP] == 0 && isLong(start, stop)) {
+      return BigDecimal.valueOf(parseLong(start, stop));
+    }
+    try {
+      return new BigDecimal(decode(FIELD_TIMESTAMP));
+    } catch (NumberFormatException e) {
+      throw malformed("timestamp is not a number");
+    }
+  }
+
+  /**
+   * @return the timestamp in epoch ms, or {@code Timestamps.NONE} when it is missing, fractional
+   *     or too big, {@code getTimestamp} returns such values
+   */
+  public long getTimestampMillis() {
+    if (present[FIELD_TIMESTAMP]
+        && valueFlags[FIELD_TIMESTAMP] == 0
+        && isLong(valueStart[FIELD_TIMESTAMP], valueEnd[FIELD_TIMESTAMP])) {
+      return parseLong(valueStart[FIELD_TIMESTAMP], valueEnd[FIELD_TIMESTAMP]);
+    }
+    return Timestamps.NONE;
+  }
+
+  /** @return true when the bytes are an optionally signed integer of at most 18 digits */
+  private boolean isLong(int start, int stop) {
+    int digits = start < stop && buffer.get(start) == '-' ? start + 1 : start;
+    if (digits == stop || stop - digits > 18) {
+      return false;
+    }
+    for (int i = digits; i < stop; i++) {
+      byte b = buffer.get(i);
+      if (b < '0' || b > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long parseLong(int start, int stop) {
+    boolean negative = buffer.get(start) == '-';
+    long value = 0;
+    for (int i = negative ? start + 1 : start; i < stop; i++) {
+      value = value * 10 + (buffer.get(i) - '0');
+    }
+    return negative ? -value : value;
+  }
+
+  /** @return the type, the shared instance of the {@code ValueDictionary} value when it is coded */
+  public String getType() {
+    return value(FIELD_TYPE);
+  }
+
+  /** @return the host, the shared instance of the {@code ValueDictionary} value when it is coded */
+  public String getHost() {
+    return value(FIELD_HOST);
+  }
+
+  /**
+   * @return {@code ValueDictionary} code of the type, or {@code UNCODED}, plain ASCII values are
+   *     not decoded
+   */
+  public int getTypeCode() {
+    return valueCode(FIELD_TYPE);
+  }
+
+  /**
+   * @return {@code ValueDictionary} code of the host, or {@code UNCODED}, plain ASCII values are
+   *     not decoded
+   */
+  public int getHostCode() {
+    return valueCode(FIELD_HOST);
+  }
+
+  private String value(int field) {
+    int code = valueCode(field);
+    return code == ValueDictionary.UNCODED ? decode(field) : dictionary.decode(code);
+  }
+
+  private int valueCode(int field) {
+    if (!present[field]) {
+      return ValueDictionary.NULL_CODE;
+    }
+    if (valueFlags[field] != 0) {
+      return dictionary.code(decode(field));
+    }
+    return values.code(buffer, valueStart[field], valueEnd[field]);
+  }
+
+  private boolean rawEquals(int field, byte[] expected) {
+    int start = valueStart[field];
+    if (valueEnd[field] - start != expected.length) {
+      return false;
+    }
+    for (int i = 0; i < expected.length; i++) {
+      if (buffer.get(start + i) != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String decode(int field) {
+    if (!present[field]) {
+      return null;
+    }
+    return decode(valueStart[field], valueEnd[field], valueFlags[field]);
+  }
+
+  private String decode(int start, int stop, int flags) {
+    if ((flags & FLAG_ESCAPED) != 0) {
+      return unescape(start, stop);
+    }
+    int length = stop - start;
+    byte[] source;
+    int offset;
+    if (buffer.hasArray()) {
+      source = buffer.array();
+      offset = buffer.arrayOffset() + start;
+    } else {
+      ensureBytes(length);
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(start + i);
+      }
+      source = bytes;
+      offset = 0;
+    }
+    return new String(
+        source,
+        offset,
+        length,
+        (flags & FLAG_NON_ASCII) != 0 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+  }
+
+  private String unescape(int start, int stop) {
+    if (chars.length < stop - start) {
+      chars = new char[Math.max(stop - start, chars.length * 2)];
+    }
+    int count = 0;
+    int i = start;
+    while (i < stop) {
+      byte b = buffer.get(i);
+      if (b == '\\') {
+        byte e = buffer.get(i + 1);
+        i += 2;
+        switch (e) {
+          case 'b':
+            chars[count++] = '\b';
+            break;
+          case 'f':
+            chars[count++] = '\f';
+            break;
+          case 'n':
+            chars[count++] = '\n';
+            break;
+          case 'r':
+            chars[count++] = '\r';
+            break;
+          case 't':
+            chars[count++] = '\t';
+            break;
+          case 'u':
+            chars[count++] = (char) hex(i, 4);
+            i += 4;
+            break;
+          default:
+            chars[count++] = (char) e;
+            break;
+        }
+      } else if (b >= 0) {
+        chars[count++] = (char) b;
+        i++;
+      } else {
+        int sequence = i;
+        while (i < stop && buffer.get(i) < 0) {
+          i++;
+        }
+        String decoded = decode(sequence, i, FLAG_NON_ASCII);
+        for (int k = 0; k < decoded.length(); k++) {
+          chars[count++] = decoded.charAt(k);
+        }
+      }
+    }
+    return new String(chars, 0, count);
+  }
+
+  private int hex(int start, int digits) {
+    if (start + digits > end) {
+      throw malformed("unterminated escape");
+    }
+    int value = 0;
+    for (int i = start; i < start + digits; i++) {
+      int digit = Character.digit(buffer.get(i), 16);
+      if (digit < 0) {
+        throw malformed("invalid unicode escape");
+      }
+      value = value * 16 + digit;
+    }
+    return value;
+  }
+
+  private int readKey() {
+    expect('"');
+    int start = position;
+    int flags = skipStringBody();
+    int stop = position - 1;
+    if (flags != 0) {
+      return fieldOf(decode(start, stop, flags));
+    }
+    int length = stop - start;
+    if (bytesEqual(start, length, KEY_ID)) {
+      return FIELD_ID;
+    }
+    if (bytesEqual(start, length, KEY_STATE)) {
+      return FIELD_STATE;
+    }
+    if (bytesEqual(start, length, KEY_TIMESTAMP)) {
+      return FIELD_TIMESTAMP;
+    }
+    if (bytesEqual(start, length, KEY_TYPE)) {
+      return FIELD_TYPE;
+    }
+    if (bytesEqual(start, length, KEY_HOST)) {
+      return FIELD_HOST;
+    }
+    return FIELD_UNKNOWN;
+  }
+
+  private static int fieldOf(String key) {
+    switch (key) {
+      case "id":
+        return FIELD_ID;
+      case "state":
+        return FIELD_STATE;
+      case "timestamp":
+        return FIELD_TIMESTAMP;
+      case "type":
+        return FIELD_TYPE;
+      case "host":
+        return FIELD_HOST;
+      default:
+        return FIELD_UNKNOWN;
+    }
+  }
+
+  private boolean bytesEqual(int start, int length, byte[] expected) {
+    if (length != expected.length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (buffer.get(start + i) != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Reads a string, a number or {@code null} as the value of a known field */
+  private void readValue(int field) {
+    byte first = peek();
+    if (first == '"') {
+      position++;
+      int start = position;
+      valueFlags[field] = skipStringBody();
+      valueStart[field] = start;
+      valueEnd[field] = position - 1;
+      present[field] = true;
+    } else if (first == '-' || (first >= '0' && first <= '9')) {
+      int start = position;
+      skipLiteral();
+      valueStart[field] = start;
+      valueEnd[field] = position;
+      valueFlags[field] = 0;
+      present[field] = true;
+    } else if (first == 'n') {
+      int start = position;
+      skipLiteral();
+      if (!bytesEqual(start, position - start, VALUE_NULL)) {
+        throw malformed("expected null");
+      }
+      present[field] = false;
+    } else {
+      throw malformed("expected a string or a number");
+    }
+  }
+
+  /**
+   * Skips string content after the opening quote, including the closing quote.
+   *
+   * @return flags describing the content
+   */
+  private int skipStringBody() {
+    int flags = 0;
+    while (position < end) {
+      byte b = buffer.get(position++);
+      if (b == '"') {
+        return flags;
+      }
+      if (b == '\\') {
+        flags |= FLAG_ESCAPED;
+        if (position >= end) {
+          break;
+        }
+        if (buffer.get(position) == 'u') {
+          hex(position + 1, 4);
+          position += 5;
+        } else {
+          position++;
+        }
+      } else if (b < 0) {
+        flags |= FLAG_NON_ASCII;
+      }
+    }
+    throw malformed("unterminated string");
+  }
+
+  private void skipLiteral() {
+    while (position < end) {
+      byte b = buffer.get(position);
+      if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+        return;
+      }
+      position++;
+    }
+  }
+
+  /** Skips any JSON value including nested objects and arrays */
+  private void skipValue() {
+    byte first = peek();
+    if (first == '"') {
+      position++;
+      skipStringBody();
+    } else if (first == '{' || first == '[') {
+      int depth = 0;
+      do {
+        byte b = next();
+        if (b == '"') {
+          skipStringBody();
+        } else if (b == '{' || b == '[') {
+          depth++;
+        } else if (b == '}' || b == ']') {
+          depth--;
+        }
+      } while (depth > 0);
+    } else {
+      int start = position;
+      skipLiteral();
+      if (position == start) {
+        throw malformed("expected a value");
+      }
+    }
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+  }
+
+  private void skipWhitespace() {
+    while (position < end && isWhitespace(buffer.get(position))) {
+      position++;
+    }
+  }
+
+  private byte peek() {
+    if (position >= end) {
+      throw malformed("unexpected end of line");
+    }
+    return buffer.get(position);
+  }
+
+  private byte next() {
+    byte b = peek();
+    position++;
+    return b;
+  }
+
+  private void expectEnd() {
+    skipWhitespace();
+    if (position < end) {
+      throw malformed("unexpected content after the object");
+    }
+  }
+
+  private void expect(char expected) {
+    if (next() != expected) {
+      throw malformed(String.format("expected '%s'", expected));
+    }
+  }
+
+  private IllegalArgumentException malformed(String message) {
+    return new IllegalArgumentException(
+        String.format("Malformed JSON at position %s: %s", position, message));
+  }
+}
@@ -1,36 +1,137 @@
 package com.test.event;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.test.trace.IdTracer;
 
 import java.math.BigDecimal;
 
 /**
  * {@code OutputEvent} class represents processed event. Processed event is a result of applying of
- * several {@code InputEvent} with the same id.
+ * several {@code InputEvent} with the same id. Type and host are kept as {@code ValueDictionary}
+ * codes and decoded by their getters, values the full dictionary does not code are kept as plain
+ * strings.
+ *
+ * <p>While events are accepted only the timestamps are updated; duration and alert are derived
+ * from them when they are first read, usually by the sink that writes the record, and again only
+ * after the timestamps changed.
  */
 public class OutputEvent {
   public static long ALERT_THRESHOLD = 4;
-  private static final Logger logger = LoggerFactory.getLogger(OutputEvent.class);
+  private static final ValueDictionary dictionary = ValueDictionary.shared();
   private String id;
-  private BigDecimal duration;
-  private String type;
-  private String host;
-  private Boolean alert;
+  private int type;
+  private int host;
+  // values of UNCODED type and host
+  private String uncodedType;
+  private String uncodedHost;
+  // a STARTED or FINISHED timestamp was accepted, so alert is not null
+  private boolean accepted;
+
+  // epoch ms, the fixed-point fields are set only for fractional or oversized timestamps
+  private long startedTimestamp;
+  private BigDecimal exactStartedTimestamp;
+  private long finishedTimestamp;
+  private BigDecimal exactFinishedTimestamp;
 
-  private BigDecimal startedTimestamp;
-  private BigDecimal finishedTimestamp;
+  // derived from the timestamps when read
+  private boolean computed;
+  private long duration;
+  private BigDecimal exactDuration;
+  private Boolean alert;
 
   /** default empty constructor */
   public OutputEvent() {
     id = null;
-    duration = null;
-    type = null;
-    host = null;
-    alert = null;
+    type = ValueDictionary.NULL_CODE;
+    host = ValueDictionary.NULL_CODE;
+    accepted = false;
 
-    startedTimestamp = null;
-    finishedTimestamp = null;
+    startedTimestamp = Timestamps.NONE;
+    exactStartedTimestamp = null;
+    finishedTimestamp = Timestamps.NONE;
+    exactFinishedTimestamp = null;
+    computed = false;
+  }
+
+  /**
+   * Restores an event from aggregation state that may hold fractional or oversized timestamps,
+   * see {@code restore} with {@code long} timestamps.
+   */
+  public static OutputEvent restore(
+      String id,
+      BigDecimal startedTimestamp,
+      BigDecimal finishedTimestamp,
+      String type,
+      String host,
+      boolean timestampsAccepted) {
+    OutputEvent outputEvent =
+        restore(
+            id,
+            Timestamps.toLong(startedTimestamp),
+            Timestamps.toLong(finishedTimestamp),
+            type,
+            host,
+            false);
+    outputEvent.exactStartedTimestamp = Timestamps.toExact(startedTimestamp);
+    outputEvent.exactFinishedTimestamp = Timestamps.toExact(finishedTimestamp);
+    outputEvent.accepted = timestampsAccepted;
+    return outputEvent;
+  }
+
+  /**
+   * Restores an event from primitive aggregation state. Used by aggregators that keep no {@code
+   * OutputEvent} objects while accumulating and create them only when emitting.
+   *
+   * @param id event id
+   * @param startedTimestamp earliest STARTED timestamp, or {@code Timestamps.NONE}
+   * @param finishedTimestamp latest FINISHED timestamp, or {@code Timestamps.NONE}
+   * @param type event type
+   * @param host event host
+   * @param timestampsAccepted true when any STARTED or FINISHED event was accepted, duration and
+   *     alert stay unset otherwise
+   * @return a new {@code OutputEvent}
+   */
+  public static OutputEvent restore(
+      String id,
+      long startedTimestamp,
+      long finishedTimestamp,
+      String type,
+      String host,
+      boolean timestampsAccepted) {
+    OutputEvent outputEvent =
+        restoreCoded(
+            id,
+            startedTimestamp,
+            finishedTimestamp,
+            ValueDictionary.NULL_CODE,
+            ValueDictionary.NULL_CODE,
+            timestampsAccepted);
+    outputEvent.acceptType(dictionary.code(type), type);
+    outputEvent.acceptHost(dictionary.code(host), host);
+    return outputEvent;
+  }
+
+  /**
+   * Restores an event from primitive aggregation state, see {@code restore} with {@code long}
+   * timestamps.
+   *
+   * @param typeCode {@code ValueDictionary} code of the type, not {@code UNCODED}
+   * @param hostCode {@code ValueDictionary} code of the host, not {@code UNCODED}
+   */
+  public static OutputEvent restoreCoded(
+      String id,
+      long startedTimestamp,
+      long finishedTimestamp,
+      int typeCode,
+      int hostCode,
+      boolean timestampsAccepted) {
+    OutputEvent outputEvent = new OutputEvent();
+    outputEvent.id = id;
+    outputEvent.startedTimestamp = startedTimestamp;
+    outputEvent.finishedTimestamp = finishedTimestamp;
+    outputEvent.type = typeCode;
+    outputEvent.host = hostCode;
+    outputEvent.accepted = timestampsAccepted;
+    return outputEvent;
   }
 
   private void acceptId(String arg) {
@@ -41,53 +142,84 @@ public class OutputEvent {
     }
   }
 
-  private void acceptStartedTimestamp(BigDecimal arg) {
-    if (startedTimestamp == null) {
+  private void acceptStartedTimestamp(long arg, BigDecimal exactArg) {
+    if (Timestamps.isMissing(startedTimestamp, exactStartedTimestamp)) {
       startedTimestamp = arg;
+      exactStartedTimestamp = exactArg;
     }
-    if ((startedTimestamp != null) && (arg != null)) {
-      if (startedTimestamp.compareTo(arg) > 0) {
+    if (!Timestamps.isMissing(startedTimestamp, exactStartedTimestamp)
+        && !Timestamps.isMissing(arg, exactArg)) {
+      if (Timestamps.compare(startedTimestamp, exactStartedTimestamp, arg, exactArg) > 0) {
         startedTimestamp = arg;
+        exactStartedTimestamp = exactArg;
       }
     }
-    updateDurationAndAlert();
+    timestampsChanged();
   }
 
-  private void acceptFinishedTimestamp(BigDecimal arg) {
-    if (finishedTimestamp == null) {
+  private void acceptFinishedTimestamp(long arg, BigDecimal exactArg) {
+    if (Timestamps.isMissing(finishedTimestamp, exactFinishedTimestamp)) {
       finishedTimestamp = arg;
+      exactFinishedTimestamp = exactArg;
     }
-    if ((startedTimestamp != null) && (arg != null)) {
-      if (finishedTimestamp.compareTo(arg) < 0) {
+    if (!Timestamps.isMissing(finishedTimestamp, exactFinishedTimestamp)
+        && !Timestamps.isMissing(arg, exactArg)) {
+      if (Timestamps.compare(finishedTimestamp, exactFinishedTimestamp, arg, exactArg) < 0) {
         finishedTimestamp = arg;
+        exactFinishedTimestamp = exactArg;
       }
     }
-    updateDurationAndAlert();
+    timestampsChanged();
   }
 
-  private void updateDurationAndAlert() {
-    if ((startedTimestamp != null) && (finishedTimestamp != null)) {
-      duration = finishedTimestamp.subtract(startedTimestamp);
-    } else {
-      duration = null;
-    }
+  private void timestampsChanged() {
+    accepted = true;
+    computed = false;
+  }
 
-    if (duration != null) {
-      alert = duration.compareTo(BigDecimal.valueOf(OutputEvent.ALERT_THRESHOLD)) > 0;
-    } else {
+  /** Derives duration and alert from the timestamps, unless they are up to date */
+  private void compute() {
+    if (computed) {
+      return;
+    }
+    computed = true;
+    duration = Timestamps.NONE;
+    exactDuration = null;
+    if (!accepted) {
+      alert = null;
+    } else if (Timestamps.isMissing(startedTimestamp, exactStartedTimestamp)
+        || Timestamps.isMissing(finishedTimestamp, exactFinishedTimestamp)) {
       alert = false;
+    } else if (exactStartedTimestamp == null
+        && exactFinishedTimestamp == null
+        && noOverflow(finishedTimestamp, startedTimestamp)) {
+      duration = finishedTimestamp - startedTimestamp;
+      alert = duration > OutputEvent.ALERT_THRESHOLD;
+    } else {
+      exactDuration =
+          Timestamps.toBigDecimal(finishedTimestamp, exactFinishedTimestamp)
+              .subtract(Timestamps.toBigDecimal(startedTimestamp, exactStartedTimestamp));
+      alert = exactDuration.compareTo(BigDecimal.valueOf(OutputEvent.ALERT_THRESHOLD)) > 0;
     }
   }
 
-  private void acceptHost(String arg) {
-    if (host == null) {
+  /** @return true when {@code a - b} fits into {@code long} and does not hit {@code NONE} */
+  private static boolean noOverflow(long a, long b) {
+    long result = a - b;
+    return ((a ^ b) & (a ^ result)) >= 0 && result != Timestamps.NONE;
+  }
+
+  private void acceptHost(int arg, String value) {
+    if (host == ValueDictionary.NULL_CODE) {
       host = arg;
+      uncodedHost = arg == ValueDictionary.UNCODED ? value : null;
     }
   }
 
-  private void acceptType(String arg) {
-    if (type == null) {
+  private void acceptType(int arg, String value) {
+    if (type == ValueDictionary.NULL_CODE) {
       type = arg;
+      uncodedType = arg == ValueDictionary.UNCODED ? value : null;
     }
   }
 
@@ -98,49 +230,91 @@ public class OutputEvent {
    * @return updated {@code OutputEvent}
    */
   public OutputEvent accept(InputEvent inputEvent) {
-    logger.debug("Accepting: {}", inputEvent);
     acceptId(inputEvent.getId());
 
-    if (inputEvent.getState().equals("STARTED")) {
-      acceptStartedTimestamp(inputEvent.getTimestamp());
+    switch (inputEvent.getStateCode()) {
+      case InputEventScanner.STATE_STARTED:
+        acceptStartedTimestamp(inputEvent.getTimestampMillis(), inputEvent.getExactTimestamp());
+        break;
+      case InputEventScanner.STATE_FINISHED:
+        acceptFinishedTimestamp(inputEvent.getTimestampMillis(), inputEvent.getExactTimestamp());
+        break;
+      default:
+        break;
     }
 
-    if (inputEvent.getState().equals("FINISHED")) {
-      acceptFinishedTimestamp(inputEvent.getTimestamp());
+    if (host == ValueDictionary.NULL_CODE) {
+      acceptHost(dictionary.code(inputEvent.getHost()), inputEvent.getHost());
     }
 
-    acceptHost(inputEvent.getHost());
-
-    acceptType(inputEvent.getType());
+    if (type == ValueDictionary.NULL_CODE) {
+      acceptType(dictionary.code(inputEvent.getType()), inputEvent.getType());
+    }
 
-    logger.debug("Accepting result: {}", this);
+    if (IdTracer.isEnabled()) {
+      IdTracer.trace(IdTracer.ACCEPT, id, this);
+    }
     return this;
   }
 
   /**
    * Static method to merge two {@code OutputEvent} that were generated as result of applying {@code
-   * InputEvent} in separate threads
+   * InputEvent} in separate threads.
    *
    * @param outputEvent1
    * @param outputEvent2
    * @return
    */
   public static OutputEvent combiner(OutputEvent outputEvent1, OutputEvent outputEvent2) {
-    logger.debug("Combiner for 2 events: {} and {}", outputEvent1, outputEvent2);
     // return outputEvent1.combine(outputEvent2);
     outputEvent1.acceptId(outputEvent2.id);
-    outputEvent1.acceptStartedTimestamp(outputEvent2.startedTimestamp);
-    outputEvent1.acceptFinishedTimestamp(outputEvent2.finishedTimestamp);
-    outputEvent1.acceptHost(outputEvent2.host);
-    outputEvent1.acceptType(outputEvent2.type);
-    logger.debug("Combined result: {}", outputEvent1);
+    outputEvent1.acceptStartedTimestamp(
+        outputEvent2.startedTimestamp, outputEvent2.exactStartedTimestamp);
+    outputEvent1.acceptFinishedTimestamp(
+        outputEvent2.finishedTimestamp, outputEvent2.exactFinishedTimestamp);
+    outputEvent1.acceptHost(outputEvent2.host, outputEvent2.uncodedHost);
+    outputEvent1.acceptType(outputEvent2.type, outputEvent2.uncodedType);
+    if (IdTracer.isEnabled()) {
+      IdTracer.trace(IdTracer.COMBINE, outputEvent1.id, outputEvent1);
+    }
     return outputEvent1;
   }
 
+  /** @return earliest STARTED timestamp, or {@code Timestamps.NONE} when missing or exact */
+  public long getStartedTimestampMillis() {
+    return startedTimestamp;
+  }
+
+  /** @return earliest STARTED timestamp when it is fractional or oversized, otherwise null */
+  public BigDecimal getExactStartedTimestamp() {
+    return exactStartedTimestamp;
+  }
+
+  /** @return latest FINISHED timestamp, or {@code Timestamps.NONE} when missing or exact */
+  public long getFinishedTimestampMillis() {
+    return finishedTimestamp;
+  }
+
+  /** @return latest FINISHED timestamp when it is fractional or oversized, otherwise null */
+  public BigDecimal getExactFinishedTimestamp() {
+    return exactFinishedTimestamp;
+  }
+
+  /** @return true when both STARTED and FINISHED timestamps were accepted */
+  public boolean isComplete() {
+    return !Timestamps.isMissing(startedTimestamp, exactStartedTimestamp)
+        && !Timestamps.isMissing(finishedTimestamp, exactFinishedTimestamp);
+  }
+
   @Override
   public String toString() {
     return String.format(
-        "id=%s, duration=%s, type=%s, host=%s, alert=%s", id, duration, type, host, alert);
+        "id=%s, duration=%s, type=%s, host=%s, alert=%s",
+        id,
+        getDuration(),
+        getType(),
+        getHost(),
+        getAlert());
   }
 
   public String getId() {
@@ -148,18 +322,42 @@ public class OutputEvent {
   }
 
   public BigDecimal getDuration() {
+    compute();
+    return Timestamps.toBigDecimal(duration, exactDuration);
+  }
+
+  /** @return duration in ms, or {@code Timestamps.NONE} when missing or exact */
+  public long getDurationMillis() {
+    compute();
     return duration;
   }
 
+  /** @return duration when it is fractional or oversized, otherwise null */
+  public BigDecimal getExactDuration() {
+    compute();
+    return exactDuration;
+  }
+
   public String getType() {
-    return type;
+    return type == ValueDictionary.UNCODED ? uncodedType : dictionary.decode(type);
   }
 
   public String getHost() {
+    return host == ValueDictionary.UNCODED ? uncodedHost : dictionary.decode(host);
+  }
+
+  /** @return {@code ValueDictionary} code of the type, or {@code UNCODED} */
+  public int getTypeCode() {
+    return type;
+  }
+
+  /** @return {@code ValueDictionary} code of the host, or {@code UNCODED} */
+  public int getHostCode() {
     return host;
   }
 
   public Boolean getAlert() {
+    compute();
     return alert;
   }
 }
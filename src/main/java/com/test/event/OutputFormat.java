@@ -0,0 +1,33 @@
+package com.test.event;
+
+/** Formats of the output file */
+public enum OutputFormat {
+  /** records are inserted into an HSQLDB text table backed by the output file */
+  HSQLDB("csv"),
+  /** the same CSV as the HSQLDB text table, written directly by {@code CsvOutputGenerator} */
+  CSV("csv"),
+  /** a JSON object per line */
+  JSONL("jsonl"),
+  /** records in the {@code OutputEventCodec} format */
+  BINARY("bin");
+
+  private final String extension;
+
+  OutputFormat(String extension) {
+    this.extension = extension;
+  }
+
+  /** @return usual extension of output files, without the dot */
+  public String getExtension() {
+    return extension;
+  }
+
+  /**
+   * @param name case-insensitive name of the format
+   * @return the format
+   * @throws IllegalArgumentException for unknown names
+   */
+  public static OutputFormat fromName(String name) {
+    return valueOf(name.trim().toUpperCase());
+  }
+}
@@ -1,29 +1,41 @@
 package com.test.event;
 
+import com.test.jfr.ConnectionInitEvent;
+import com.test.jfr.SinkFlushEvent;
+import com.test.metrics.ProcessingMetrics;
+import com.test.trace.IdTracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * {@code OutputGenerator} class responsible to convert stream of {@code OutputEvent} into output
- * file with processed events using HSQLDB
+ * file with processed events using HSQLDB. Every instance inserts into its own text table backed by
+ * its own shard file, so parallel workers do not share a table or a file; {@code release} joins the
+ * shards into the output file in encounter order. The tables come from a {@code WorkTablePool},
+ * which can keep them open for the next outputs.
  */
 public class OutputGenerator {
   private static final Logger logger = LoggerFactory.getLogger(OutputGenerator.class);
+  private static final ProcessingMetrics metrics = ProcessingMetrics.shared();
 
-  private static final String WORK_TABLE_NAME = "w_csa_tmp";
-  private static final String CREATE_WORK_TABLE_SQL =
-      "create text table if not exists %s (id varchar(4000), duration numeric, type varchar(4000), host varchar(4000), alert boolean)";
-  private static final String INSERT_WORK_TABLE_SQL = "insert into %s values (?, ?, ?, ?, ?)";
-  private static final String SET_TABLE_SOURCE_SQL = "set table %s source \"%s\"";
-  public static String WORKING_DATABASE_URI;
-  public static String OUTPUT_FILE_NAME;
+  public static final int DEFAULT_BATCH_SIZE = 1000;
 
-  private Connection conn;
-  private PreparedStatement preparedStatement = null;
+  private final WorkTablePool workTables;
+  private WorkTable workTable;
+  private final int batchSize;
+  private Path outputFile;
+  private final List<Path> shards = new ArrayList<>();
 
   private long emitCount = 0;
+  private int pendingCount = 0;
 
   /**
    * Creates a new instance of HSQLDB engine to produce output file.
@@ -33,27 +45,103 @@ public class OutputGenerator {
    * @throws SQLException
    */
   public OutputGenerator(String workingDatabaseURI, String outputFileName) throws SQLException {
-    initConnection(workingDatabaseURI, outputFileName);
+    this(workingDatabaseURI, outputFileName, DEFAULT_BATCH_SIZE);
   }
 
-  private void initConnection(String workingDatabaseURI, String outputFileName)
+  /**
+   * Creates a new instance of HSQLDB engine to produce output file. Records are inserted in JDBC
+   * batches and committed at batch boundaries.
+   *
+   * @param workingDatabaseURI HSQLDB URI
+   * @param outputFileName putput file
+   * @param batchSize count of records per batch and transaction
+   * @throws SQLException
+   */
+  public OutputGenerator(String workingDatabaseURI, String outputFileName, int batchSize)
+      throws SQLException {
+    this(WorkTablePool.unpooled(workingDatabaseURI), outputFileName, batchSize);
+  }
+
+  /**
+   * Creates a new instance that inserts through a table of {@code workTables}, which is returned
+   * to it when the connection is released.
+   *
+   * @param workTables source of connections and tables of the working database
+   * @param outputFileName putput file
+   * @param batchSize count of records per batch and transaction
+   * @throws SQLException
+   */
+  public OutputGenerator(WorkTablePool workTables, String outputFileName, int batchSize)
       throws SQLException {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    this.workTables = workTables;
+    this.batchSize = batchSize;
+    initConnection(outputFileName);
+  }
+
+  private void initConnection(String outputFileName) throws SQLException {
     logger.info("hsqldb connection initialization");
-    conn = DriverManager.getConnection(workingDatabaseURI);
-    Statement stmt = conn.createStatement();
-    stmt.execute(String.format(CREATE_WORK_TABLE_SQL, WORK_TABLE_NAME));
-    stmt.execute(String.format(SET_TABLE_SOURCE_SQL, WORK_TABLE_NAME, outputFileName));
+    ConnectionInitEvent event = new ConnectionInitEvent();
+    event.begin();
+    workTable = workTables.take();
+    String shardFileName = ShardFiles.shardName(outputFileName, ShardFiles.nextShard());
+    Path shardFile = workTable.bind(shardFileName);
+    shards.add(shardFile);
+    outputFile = shardFile.resolveSibling(Paths.get(outputFileName).getFileName());
+    event.end();
+    if (event.shouldCommit()) {
+      event.table = workTable.getName();
+      event.shardFile = shardFile.toString();
+      event.commit();
+    }
     logger.info("hsqldb connection established");
-    logger.debug("URI: {}", workingDatabaseURI);
     logger.debug("OutputFileName: {}", outputFileName);
-    logger.debug("AutoCommit: {}", conn.getAutoCommit());
+    logger.debug("Table: {}, shard: {}", workTable.getName(), shardFile);
+    logger.debug("BatchSize: {}", batchSize);
   }
 
+  /**
+   * Executes pending records and commits them, recorded as a {@code SinkFlushEvent} when that event
+   * is enabled.
+   *
+   * @throws SQLException
+   */
+  public void flush() throws SQLException {
+    if (pendingCount > 0) {
+      logger.debug("Executing batch of {} records...", pendingCount);
+      SinkFlushEvent event = new SinkFlushEvent();
+      event.begin();
+      long startTime = System.nanoTime();
+      workTable.getInsert().executeBatch();
+      workTable.getConnection().commit();
+      metrics.recordEmitBatch(System.nanoTime() - startTime);
+      event.end();
+      if (event.shouldCommit()) {
+        event.sink = SinkFlushEvent.HSQLDB;
+        event.records = pendingCount;
+        event.commit();
+      }
+      pendingCount = 0;
+      logger.debug("... finished");
+    }
+  }
+
+  /**
+   * Commits pending records and detaches the table from its shard file, so that the file is
+   * complete, then returns the table to its pool. The shard file stays until {@code release} joins
+   * it.
+   *
+   * @throws SQLException
+   */
   public void releaseConnection() throws SQLException {
-    if (conn != null) {
+    if (workTable != null) {
       logger.debug("Releasing connection");
-      conn.close();
-      conn = null;
+      flush();
+      workTable.unbind();
+      workTables.give(workTable);
+      workTable = null;
     } else {
       logger.debug("Releasing connection - nothing to release!");
     }
@@ -66,40 +154,53 @@ public class OutputGenerator {
    * @throws SQLException
    */
   public void emit(OutputEvent outputEvent) throws SQLException {
-    logger.debug("Emit: {}", outputEvent);
+    if (IdTracer.isEnabled()) {
+      IdTracer.trace(IdTracer.EMIT, outputEvent.getId(), outputEvent);
+    }
     emitOutputEvent(outputEvent);
   }
 
   private void emitOutputEvent(OutputEvent outputEvent) throws SQLException {
-    if (preparedStatement == null) {
-      logger.debug(
-          "Preparing SQL-statement: {}", String.format(INSERT_WORK_TABLE_SQL, WORK_TABLE_NAME));
-      preparedStatement =
-          conn.prepareStatement(String.format(INSERT_WORK_TABLE_SQL, WORK_TABLE_NAME));
-      logger.debug("Prepared");
-    }
-
+    PreparedStatement preparedStatement = workTable.getInsert();
     preparedStatement.setString(1, outputEvent.getId());
     preparedStatement.setBigDecimal(2, outputEvent.getDuration());
     preparedStatement.setString(3, outputEvent.getType());
     preparedStatement.setString(4, outputEvent.getHost());
     preparedStatement.setBoolean(5, outputEvent.getAlert());
-
-    logger.debug("Executing prepared statement...");
-    preparedStatement.executeUpdate();
-    logger.debug("... finished");
+    preparedStatement.addBatch();
     emitCount++;
+
+    if (++pendingCount >= batchSize) {
+      flush();
+    }
   }
 
   /**
    * Initializes new instance.
    *
+   * @param workingDatabaseURI HSQLDB URI
+   * @param outputFileName output file
+   * @param batchSize count of records per batch and transaction
    * @return a new {@code OutputGenerator}
    */
-  public static OutputGenerator init() {
+  public static OutputGenerator init(
+      String workingDatabaseURI, String outputFileName, int batchSize) {
+    return init(WorkTablePool.unpooled(workingDatabaseURI), outputFileName, batchSize);
+  }
+
+  /**
+   * Initializes new instance that inserts through a table of {@code workTables}.
+   *
+   * @param workTables source of connections and tables of the working database
+   * @param outputFileName output file
+   * @param batchSize count of records per batch and transaction
+   * @return a new {@code OutputGenerator}
+   */
+  public static OutputGenerator init(
+      WorkTablePool workTables, String outputFileName, int batchSize) {
     logger.debug("init");
     try {
-      return new OutputGenerator(WORKING_DATABASE_URI, OUTPUT_FILE_NAME);
+      return new OutputGenerator(workTables, outputFileName, batchSize);
     } catch (SQLException e) {
       logger.error(e.getMessage());
       e.printStackTrace();
@@ -114,7 +215,6 @@ public class OutputGenerator {
    * @return
    */
   public OutputGenerator apply(OutputEvent outputEvent) {
-    logger.debug("apply");
     try {
       this.emit(outputEvent);
     } catch (SQLException e) {
@@ -125,7 +225,8 @@ public class OutputGenerator {
   }
 
   /**
-   * Combines two partial results of {@code OutputGenerator} - just sums their counts.
+   * Combines two partial results of {@code OutputGenerator} - releases the connection of the
+   * second one, takes over its shards after the own ones and sums their counts.
    *
    * @param outputGenerator1
    * @param outputGenerator2
@@ -134,20 +235,39 @@ public class OutputGenerator {
   public static OutputGenerator combine(
       OutputGenerator outputGenerator1, OutputGenerator outputGenerator2) {
     logger.debug("combine");
+    try {
+      outputGenerator2.releaseConnection();
+    } catch (SQLException e) {
+      logger.error(e.getMessage());
+      e.printStackTrace();
+    }
+    outputGenerator1.shards.addAll(outputGenerator2.shards);
     outputGenerator1.emitCount += outputGenerator2.emitCount;
     return outputGenerator1;
   }
 
   /**
-   * Used to finalize instance and close connection at the end of processing.
+   * Releases the connection and joins all shards into the output file.
+   *
+   * @throws SQLException
+   * @throws IOException
+   */
+  public void finish() throws SQLException, IOException {
+    releaseConnection();
+    ShardFiles.concatenate(shards, outputFile);
+  }
+
+  /**
+   * Used to finalize instance and close connection at the end of processing, joins all shards into
+   * the output file.
    *
    * @return the same instance
    */
   public OutputGenerator release() {
     logger.debug("release");
     try {
-      releaseConnection();
-    } catch (SQLException e) {
+      finish();
+    } catch (SQLException | IOException e) {
       logger.error(e.getMessage());
       e.printStackTrace();
     }
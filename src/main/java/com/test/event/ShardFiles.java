@@ -0,0 +1,73 @@
+package com.test.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Output written by parallel workers, each worker into its own shard file next to the output file.
+ * Shards are joined in encounter order at the end, so the output is the same as in a sequential
+ * run. The same is done for the output parts of checkpointed runs.
+ */
+public final class ShardFiles {
+  private static final Logger logger = LoggerFactory.getLogger(ShardFiles.class);
+
+  private static final AtomicInteger shardCounter = new AtomicInteger();
+
+  private ShardFiles() {}
+
+  /** @return a shard number that is unique in this JVM */
+  static int nextShard() {
+    return shardCounter.incrementAndGet();
+  }
+
+  /** @return name of a shard file of the output file */
+  static String shardName(String outputFileName, int shard) {
+    return outputFileName + ".shard-" + shard;
+  }
+
+  /**
+   * Replaces the output file with the concatenation of the shards, using {@code
+   * FileChannel.transferTo}. A single shard is just renamed. Shard files are deleted, missing shards
+   * are empty ones, HSQLDB removes the files of empty text tables.
+   *
+   * @param shards shard files in encounter order
+   * @param output output file
+   * @throws IOException
+   */
+  public static void concatenate(List<Path> shards, Path output) throws IOException {
+    logger.debug("Joining {} shards into {}", shards.size(), output);
+    if (shards.size() == 1 && Files.exists(shards.get(0))) {
+      Files.move(shards.get(0), output, StandardCopyOption.REPLACE_EXISTING);
+      return;
+    }
+    try (FileChannel out =
+        FileChannel.open(
+            output,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      for (Path shard : shards) {
+        if (!Files.exists(shard)) {
+          continue;
+        }
+        try (FileChannel in = FileChannel.open(shard, StandardOpenOption.READ)) {
+          long size = in.size();
+          long position = 0;
+          while (position < size) {
+            position += in.transferTo(position, size - position, out);
+          }
+        }
+        Files.delete(shard);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.test.event;
+
+import java.math.BigDecimal;
+
+/**
+ * Helpers for timestamps kept as primitive epoch milliseconds. A timestamp is a {@code long}; values
+ * that are fractional or do not fit into a {@code long} are kept as a fixed-point {@code BigDecimal}
+ * next to it, and the {@code long} is set to {@code NONE}.
+ */
+public final class Timestamps {
+  /** marks a missing timestamp, or one kept only in its fixed-point form */
+  public static final long NONE = Long.MIN_VALUE;
+
+  private Timestamps() {}
+
+  /**
+   * @param value source value, may be null
+   * @return the value as {@code long}, or {@code NONE} when it is null, fractional or too big
+   */
+  public static long toLong(BigDecimal value) {
+    if (value == null || value.scale() != 0 || value.unscaledValue().bitLength() > 63) {
+      return NONE;
+    }
+    long result = value.longValue();
+    return result == NONE ? NONE : result;
+  }
+
+  /**
+   * @param value source value, may be null
+   * @return the value when it can not be kept as {@code long}, null otherwise
+   */
+  public static BigDecimal toExact(BigDecimal value) {
+    return value != null && toLong(value) == NONE ? value : null;
+  }
+
+  /**
+   * @param value primitive value
+   * @param exact fixed-point value, used when not null
+   * @return the timestamp as {@code BigDecimal}, or null when it is missing
+   */
+  public static BigDecimal toBigDecimal(long value, BigDecimal exact) {
+    if (exact != null) {
+      return exact;
+    }
+    return value == NONE ? null : BigDecimal.valueOf(value);
+  }
+
+  /** @return true when neither the primitive nor the fixed-point value is set */
+  public static boolean isMissing(long value, BigDecimal exact) {
+    return value == NONE && exact == null;
+  }
+
+  /** Compares two present timestamps, the fixed-point form is only used when one of them needs it */
+  public static int compare(long value1, BigDecimal exact1, long value2, BigDecimal exact2) {
+    if (exact1 == null && exact2 == null) {
+      return Long.compare(value1, value2);
+    }
+    return toBigDecimal(value1, exact1).compareTo(toBigDecimal(value2, exact2));
+  }
+}
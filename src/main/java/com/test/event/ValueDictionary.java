@@ -0,0 +1,201 @@
+package com.test.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code ValueDictionary} maps the values of low-cardinality fields, {@code type} and {@code host},
+ * to small integer codes. Code {@code NULL_CODE} stands for a missing value, every other value gets
+ * the next free code the first time it is seen and keeps it for the life of the dictionary, so
+ * codes of different threads and tables can be compared and copied without decoding.
+ *
+ * <p>The dictionary is thread-safe: lookups of known values are lock-free, only a new value takes
+ * a lock. Values are never removed, so the count of values is capped: once the dictionary is full
+ * every new value gets {@code UNCODED} and its holder keeps the plain string instead. Parser threads
+ * look raw bytes up in their own {@code Lookup}, which keeps a copy of the bytes of every coded
+ * value it has seen and does not create a string on a hit.
+ */
+public class ValueDictionary {
+  private static final Logger logger = LoggerFactory.getLogger(ValueDictionary.class);
+
+  public static final int NULL_CODE = 0;
+  /** code of a value that did not fit into the dictionary, it can not be decoded */
+  public static final int UNCODED = -1;
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+
+  private static final ValueDictionary shared = new ValueDictionary();
+
+  private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+  // values by code, written before the code is published in codes
+  private volatile String[] values = new String[64];
+  private int size = 1;
+  private int capacity;
+  private volatile boolean full = false;
+
+  public ValueDictionary() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** @param capacity count of values that get a code */
+  public ValueDictionary(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /** @return dictionary shared by parsers, aggregators and sinks */
+  public static ValueDictionary shared() {
+    return shared;
+  }
+
+  /**
+   * @param value field value, may be null
+   * @return code of the value, {@code NULL_CODE} for null, {@code UNCODED} for a new value when
+   *     the dictionary is full
+   */
+  public int code(String value) {
+    if (value == null) {
+      return NULL_CODE;
+    }
+    Integer code = codes.get(value);
+    if (code != null) {
+      return code;
+    }
+    return full ? UNCODED : add(value);
+  }
+
+  private synchronized int add(String value) {
+    Integer code = codes.get(value);
+    if (code != null) {
+      return code;
+    }
+    if (size > capacity) {
+      if (!full) {
+        logger.warn(
+            "Value dictionary is full with {} values, new values are kept as strings", capacity);
+        full = true;
+      }
+      return UNCODED;
+    }
+    String[] current = values;
+    if (size == current.length) {
+      current = Arrays.copyOf(current, size * 2);
+    }
+    current[size] = value;
+    values = current;
+    codes.put(value, size);
+    return size++;
+  }
+
+  /**
+   * @param code code returned by this dictionary, not {@code UNCODED}
+   * @return the value, the same instance for every call, or null for {@code NULL_CODE}
+   */
+  public String decode(int code) {
+    return values[code];
+  }
+
+  /** @return count of known values */
+  public int size() {
+    return codes.size();
+  }
+
+  /**
+   * Changes the count of values that get a code. Known values keep their codes, so a capacity
+   * below {@code size} only stops new values from being added.
+   *
+   * @param capacity count of values that get a code
+   */
+  public synchronized void setCapacity(int capacity) {
+    this.capacity = capacity;
+    full = size > capacity;
+  }
+
+  /**
+   * Per-thread cache of raw value bytes, only coded values are kept. It is not thread-safe, every
+   * thread should own its lookup.
+   */
+  public class Lookup {
+    private byte[][] keys = new byte[64][];
+    private int[] keyCodes = new int[64];
+    private int count = 0;
+
+    /**
+     * Looks up a value given as ASCII bytes, without escapes.
+     *
+     * @param buffer source bytes, absolute positions are used
+     * @param start position of the first byte of the value
+     * @param end position after the last byte of the value
+     * @return code of the value, or {@code UNCODED}
+     */
+    public int code(ByteBuffer buffer, int start, int end) {
+      int length = end - start;
+      int h = 0;
+      for (int i = start; i < end; i++) {
+        h = 31 * h + buffer.get(i);
+      }
+      int mask = keys.length - 1;
+      int slot = (h ^ (h >>> 16)) & mask;
+      while (keys[slot] != null) {
+        if (matches(keys[slot], buffer, start, length)) {
+          return keyCodes[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      byte[] key = new byte[length];
+      for (int i = 0; i < length; i++) {
+        key[i] = buffer.get(start + i);
+      }
+      int code = ValueDictionary.this.code(new String(key, StandardCharsets.ISO_8859_1));
+      if (code == UNCODED) {
+        return code;
+      }
+      keys[slot] = key;
+      keyCodes[slot] = code;
+      if (++count * 2 > keys.length) {
+        grow();
+      }
+      return code;
+    }
+
+    private boolean matches(byte[] key, ByteBuffer buffer, int start, int length) {
+      if (key.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (key[i] != buffer.get(start + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void grow() {
+      byte[][] oldKeys = keys;
+      int[] oldCodes = keyCodes;
+      keys = new byte[oldKeys.length * 2][];
+      keyCodes = new int[oldKeys.length * 2];
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        byte[] key = oldKeys[i];
+        if (key == null) {
+          continue;
+        }
+        int h = 0;
+        for (byte b : key) {
+          h = 31 * h + b;
+        }
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (keys[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        keyCodes[slot] = oldCodes[i];
+      }
+    }
+  }
+}
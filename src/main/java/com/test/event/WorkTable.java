@@ -0,0 +1,128 @@
+package com.test.event;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Connection to the working database with its own text table. The table is bound to a new shard
+ * file for every output and detached from it when the output is complete, so one connection, its
+ * table and its prepared insert can serve one output after another.
+ */
+class WorkTable {
+  private static final String WORK_TABLE_NAME = "w_csa_tmp";
+  private static final String CREATE_WORK_TABLE_SQL =
+      "create text table %s (id varchar(4000), duration numeric, type varchar(4000), host varchar(4000), alert boolean)";
+  private static final String DROP_WORK_TABLE_SQL = "drop table %s if exists";
+  private static final String INSERT_WORK_TABLE_SQL = "insert into %s values (?, ?, ?, ?, ?)";
+  private static final String SET_TABLE_SOURCE_SQL = "set table %s source \"%s\"";
+  private static final String SET_TABLE_SOURCE_STATE_SQL = "set table %s source %s";
+  private static final String SELECT_FILE_PATH_SQL =
+      "select file_path from information_schema.system_texttables where table_name = '%s'";
+
+  private final Connection connection;
+  private final String name;
+  private PreparedStatement insert = null;
+
+  /**
+   * Connects to the working database and creates the table.
+   *
+   * @param workingDatabaseURI HSQLDB URI
+   * @throws SQLException
+   */
+  WorkTable(String workingDatabaseURI) throws SQLException {
+    name = WORK_TABLE_NAME + "_" + ShardFiles.nextShard();
+    connection = DriverManager.getConnection(workingDatabaseURI);
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute(String.format(DROP_WORK_TABLE_SQL, name));
+      stmt.execute(String.format(CREATE_WORK_TABLE_SQL, name));
+    }
+    connection.setAutoCommit(false);
+  }
+
+  /** @return name of the table */
+  String getName() {
+    return name;
+  }
+
+  /** @return connection of the table, auto-commit is off */
+  Connection getConnection() {
+    return connection;
+  }
+
+  /**
+   * @return insert statement of the table, prepared once for all outputs
+   * @throws SQLException
+   */
+  PreparedStatement getInsert() throws SQLException {
+    if (insert == null) {
+      insert = connection.prepareStatement(String.format(INSERT_WORK_TABLE_SQL, name));
+    }
+    return insert;
+  }
+
+  /**
+   * Binds the table to an empty shard file.
+   *
+   * @param shardFileName source of the table, relative to the database files
+   * @return path of the shard file
+   * @throws SQLException
+   */
+  Path bind(String shardFileName) throws SQLException {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute(String.format(SET_TABLE_SOURCE_SQL, name, shardFileName));
+
+      // the source is relative to the database files, the shard may be left over from a failed run
+      Path shardFile;
+      try (ResultSet resultSet =
+          stmt.executeQuery(String.format(SELECT_FILE_PATH_SQL, name.toUpperCase()))) {
+        resultSet.next();
+        shardFile = Paths.get(resultSet.getString(1));
+      }
+      stmt.execute(String.format(SET_TABLE_SOURCE_STATE_SQL, name, "off"));
+      try {
+        Files.deleteIfExists(shardFile);
+      } catch (IOException e) {
+        throw new SQLException("Can not delete " + shardFile, e);
+      }
+      stmt.execute(String.format(SET_TABLE_SOURCE_STATE_SQL, name, "on"));
+      return shardFile;
+    }
+  }
+
+  /**
+   * Detaches the table from its shard file, so that the file is complete.
+   *
+   * @throws SQLException
+   */
+  void unbind() throws SQLException {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute(String.format(SET_TABLE_SOURCE_STATE_SQL, name, "off"));
+    }
+    connection.commit();
+  }
+
+  /**
+   * Drops the table, its last shard file stays, and closes the connection.
+   *
+   * @throws SQLException
+   */
+  void close() throws SQLException {
+    if (insert != null) {
+      insert.close();
+      insert = null;
+    }
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute(String.format(DROP_WORK_TABLE_SQL, name));
+    }
+    connection.commit();
+    connection.close();
+  }
+}
@@ -0,0 +1,110 @@
+package com.test.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Source of the connections and text tables {@code OutputGenerator} inserts through. A pool keeps
+ * the tables of finished outputs open for the next ones, so a long-running process does not
+ * connect and create a table for every output, and the open connections keep the database from
+ * being shut down between outputs. An unpooled source creates a table for every output and drops
+ * it when the output is complete.
+ */
+public class WorkTablePool implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(WorkTablePool.class);
+
+  private final String workingDatabaseURI;
+  private final boolean pooled;
+  private final Deque<WorkTable> idle = new ArrayDeque<>();
+  private boolean closed = false;
+
+  private WorkTablePool(String workingDatabaseURI, boolean pooled) {
+    this.workingDatabaseURI = workingDatabaseURI;
+    this.pooled = pooled;
+  }
+
+  /**
+   * @param workingDatabaseURI HSQLDB URI
+   * @return a pool that keeps the tables open until it is closed
+   */
+  public static WorkTablePool pooled(String workingDatabaseURI) {
+    return new WorkTablePool(workingDatabaseURI, true);
+  }
+
+  /**
+   * @param workingDatabaseURI HSQLDB URI
+   * @return a source that closes every table when its output is complete
+   */
+  public static WorkTablePool unpooled(String workingDatabaseURI) {
+    return new WorkTablePool(workingDatabaseURI, false);
+  }
+
+  /**
+   * @return an idle table, or a new one
+   * @throws SQLException
+   */
+  WorkTable take() throws SQLException {
+    synchronized (this) {
+      if (closed) {
+        throw new SQLException("Work table pool is closed");
+      }
+      WorkTable table = idle.poll();
+      if (table != null) {
+        logger.debug("Reusing work table {}", table.getName());
+        return table;
+      }
+    }
+    return new WorkTable(workingDatabaseURI);
+  }
+
+  /**
+   * Returns a table detached from its shard file, the table is closed when the source does not
+   * pool or is closed.
+   *
+   * @param table table taken from this source
+   * @throws SQLException
+   */
+  void give(WorkTable table) throws SQLException {
+    synchronized (this) {
+      if (pooled && !closed) {
+        idle.push(table);
+        return;
+      }
+    }
+    table.close();
+  }
+
+  /**
+   * Closes the idle tables, tables still in use are closed when they are returned.
+   *
+   * @throws SQLException
+   */
+  @Override
+  public void close() throws SQLException {
+    Deque<WorkTable> tables;
+    synchronized (this) {
+      closed = true;
+      tables = new ArrayDeque<>(idle);
+      idle.clear();
+    }
+    SQLException failure = null;
+    for (WorkTable table : tables) {
+      try {
+        table.close();
+      } catch (SQLException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
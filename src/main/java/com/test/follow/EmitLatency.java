@@ -0,0 +1,72 @@
+package com.test.follow;
+
+/**
+ * Histogram of emit latencies with power-of-two buckets of nanoseconds. Recording is a few array
+ * updates without allocation; percentiles are reported as the upper bound of their bucket, so they
+ * are exact within a factor of two.
+ *
+ * <p>It is written by one thread. Other threads may read it at any time and then see a slightly
+ * stale state.
+ */
+public class EmitLatency {
+  private final long[] buckets = new long[64];
+  private long count = 0;
+  private long totalNanos = 0;
+  private long maxNanos = 0;
+
+  /**
+   * Records the same latency for several records.
+   *
+   * @param nanos latency in nanoseconds
+   * @param records count of records
+   */
+  public void record(long nanos, int records) {
+    long latency = Math.max(0, nanos);
+    buckets[latency == 0 ? 0 : 63 - Long.numberOfLeadingZeros(latency)] += records;
+    count += records;
+    totalNanos += latency * records;
+    maxNanos = Math.max(maxNanos, latency);
+  }
+
+  /** @return count of recorded records */
+  public long getCount() {
+    return count;
+  }
+
+  /** @return mean latency in microseconds, 0 when nothing was recorded */
+  public long getMeanMicros() {
+    return count == 0 ? 0 : totalNanos / count / 1000;
+  }
+
+  /** @return maximal latency in microseconds */
+  public long getMaxMicros() {
+    return maxNanos / 1000;
+  }
+
+  /**
+   * @param percentile percentile between 0 and 100
+   * @return upper bound of the latency in microseconds under which the percentile of records fall
+   */
+  public long getPercentileMicros(double percentile) {
+    long rank = (long) Math.ceil(count * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      seen += buckets[i];
+      if (seen >= rank && seen > 0) {
+        return Math.min(maxNanos, i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1) / 1000;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "count=%s, mean=%s us, p50=%s us, p99=%s us, max=%s us",
+        count,
+        getMeanMicros(),
+        getPercentileMicros(50),
+        getPercentileMicros(99),
+        getMaxMicros());
+  }
+}
@@ -0,0 +1,155 @@
+package com.test.follow;
+
+import com.test.aggregate.StreamingAggregator;
+import com.test.event.InputEvent;
+import com.test.event.InputEventFactory;
+import com.test.event.OutputEvent;
+import com.test.input.LogFollower;
+import com.test.output.OutputSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code FollowProcessor} tails a growing input file with a {@code LogFollower} and aggregates the
+ * appended lines with a {@code StreamingAggregator}. An {@code OutputEvent} is written and flushed
+ * into the sink as soon as both STARTED and FINISHED of its id were read, so alerts reach the
+ * output one poll interval after their line was appended at the latest.
+ *
+ * <p>The emit latency of every record, from the start of the poll that read its completing line
+ * until the sink was flushed, is recorded in {@code getEmitLatency} and logged periodically.
+ *
+ * <p>The processor runs on the calling thread until {@code stop} is called. The lines appended so
+ * far are read once more and the ids that are still open are emitted, so the output is the same as
+ * a streaming run over the final file.
+ */
+public class FollowProcessor {
+  private static final Logger logger = LoggerFactory.getLogger(FollowProcessor.class);
+
+  public static final long DEFAULT_POLL_INTERVAL = 10;
+
+  private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+  private final Path inputFile;
+  private final OutputSink sink;
+  private final long pollIntervalNanos;
+  private final StreamingAggregator aggregator = new StreamingAggregator();
+  private final EmitLatency emitLatency = new EmitLatency();
+  private final List<OutputEvent> completed = new ArrayList<>();
+  private final CountDownLatch terminated = new CountDownLatch(1);
+  private volatile boolean stopped = false;
+
+  /**
+   * @param inputFile file to follow, it must exist
+   * @param sink sink, it is closed when the processor stops
+   * @param pollIntervalMillis time to wait for new lines when the file did not grow
+   */
+  public FollowProcessor(Path inputFile, OutputSink sink, long pollIntervalMillis) {
+    this.inputFile = inputFile;
+    this.sink = sink;
+    this.pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMillis);
+  }
+
+  /**
+   * Follows the input file until {@code stop} is called or the thread is interrupted.
+   *
+   * @return count of records written into the sink
+   * @throws IOException
+   */
+  public long run() throws IOException {
+    try (OutputSink output = sink;
+        LogFollower follower = new LogFollower(inputFile)) {
+      long reportTime = System.nanoTime();
+      while (!stopped) {
+        long readTime = System.nanoTime();
+        follower.poll(this::acceptLine);
+        if (completed.isEmpty()) {
+          LockSupport.parkNanos(this, pollIntervalNanos);
+          if (Thread.interrupted()) {
+            stopped = true;
+          }
+        } else {
+          emitCompleted(readTime);
+        }
+        if (System.nanoTime() - reportTime > REPORT_INTERVAL) {
+          report(follower);
+          reportTime = System.nanoTime();
+        }
+      }
+      follower.poll(this::acceptLine);
+      emitCompleted(System.nanoTime());
+      for (Iterator<OutputEvent> open = aggregator.drainOpen(); open.hasNext(); ) {
+        output.write(open.next());
+      }
+      report(follower);
+    } finally {
+      terminated.countDown();
+    }
+    return sink.getWriteCount();
+  }
+
+  private void acceptLine(ByteBuffer buffer, int start, int end) {
+    InputEvent inputEvent = InputEventFactory.buildEvent(buffer, start, end);
+    if (inputEvent != null) {
+      OutputEvent outputEvent = aggregator.accept(inputEvent);
+      if (outputEvent != null) {
+        completed.add(outputEvent);
+      }
+    }
+  }
+
+  private void emitCompleted(long readTime) throws IOException {
+    if (completed.isEmpty()) {
+      return;
+    }
+    for (OutputEvent outputEvent : completed) {
+      sink.write(outputEvent);
+    }
+    sink.flush();
+    emitLatency.record(System.nanoTime() - readTime, completed.size());
+    completed.clear();
+  }
+
+  private void report(LogFollower follower) {
+    logger.info(
+        "Following {} at {}: {} emitted, {} open, {} rotations, {} truncations, latency {}",
+        inputFile,
+        follower.getLineOffset(),
+        aggregator.getEmittedCount(),
+        aggregator.getOpenCount(),
+        follower.getRotationCount(),
+        follower.getTruncationCount(),
+        emitLatency);
+  }
+
+  /** Asks the processor to emit the open ids and stop, it may be called from any thread */
+  public void stop() {
+    stopped = true;
+  }
+
+  /**
+   * Waits until {@code run} returned.
+   *
+   * @param timeout maximal time to wait
+   * @param unit unit of the timeout
+   * @return false when the time elapsed first
+   * @throws InterruptedException
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return terminated.await(timeout, unit);
+  }
+
+  /** @return latencies of the emitted complete records */
+  public EmitLatency getEmitLatency() {
+    return emitLatency;
+  }
+}
@@ -0,0 +1,496 @@
+package com.test.generate;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code LoadGenerator} writes synthetic input logs of a given size with a configurable shape: the
+ * count of distinct ids, how far apart and in which order the two events of an id are, the share
+ * of ids with a single event, the skew of the type and host values and extra JSON fields.
+ *
+ * <p>The file is generated in blocks of id pairs by a pool of threads and the blocks are appended
+ * in order, so the file only depends on the settings and the seed, not on the thread count. A
+ * block is generated from its own random source; both events of an id are in the same block.
+ */
+public class LoadGenerator {
+  private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+  public static final long DEFAULT_TARGET_SIZE = 400L << 20;
+  public static final int DEFAULT_BLOCK_PAIRS = 1 << 15;
+  private static final long BASE_TIMESTAMP = 1491377495212L;
+  private static final String[] TYPE_NAMES = {
+    "APPLICATION_LOG", "SYSTEM_LOG", "AUDIT_LOG", "SECURITY_LOG"
+  };
+  // ids are a bijective scramble of the id number modulo 2^40, written in 9 letters
+  private static final long ID_MASK = (1L << 40) - 1;
+  private static final long ID_MULTIPLIER = 0x5DEECE66DL;
+  private static final int ID_LENGTH = 9;
+  private static final char[] ALPHANUMERIC =
+      "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+  private long targetSize = DEFAULT_TARGET_SIZE;
+  private long idCount = 0;
+  private int outOfOrderDistance = 16;
+  private double orphanRatio = 0;
+  private double typedRatio = 0.25;
+  private int typeCount = TYPE_NAMES.length;
+  private int hostCount = 100;
+  private double skew = 1;
+  private int extraFields = 0;
+  private int extraFieldLength = 16;
+  private double meanDuration = 3;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private long seed = 1;
+  private int blockPairs = DEFAULT_BLOCK_PAIRS;
+
+  private double[] typeDistribution;
+  private double[] hostDistribution;
+
+  /** @param targetSize bytes to write at least, the last block is written completely */
+  public void setTargetSize(long targetSize) {
+    this.targetSize = targetSize;
+  }
+
+  /** @param idCount count of distinct ids, ids repeat after it; 0 for a new id per pair */
+  public void setIdCount(long idCount) {
+    this.idCount = idCount;
+  }
+
+  /**
+   * @param outOfOrderDistance lines the two events of an id may be apart, in either order; 0
+   *     writes the FINISHED event right after the STARTED event
+   */
+  public void setOutOfOrderDistance(int outOfOrderDistance) {
+    this.outOfOrderDistance = outOfOrderDistance;
+  }
+
+  /** @param orphanRatio share of ids with only a STARTED or only a FINISHED event */
+  public void setOrphanRatio(double orphanRatio) {
+    this.orphanRatio = orphanRatio;
+  }
+
+  /** @param typedRatio share of ids whose events have type and host */
+  public void setTypedRatio(double typedRatio) {
+    this.typedRatio = typedRatio;
+  }
+
+  /** @param typeCount count of distinct type values */
+  public void setTypeCount(int typeCount) {
+    this.typeCount = typeCount;
+  }
+
+  /** @param hostCount count of distinct host values */
+  public void setHostCount(int hostCount) {
+    this.hostCount = hostCount;
+  }
+
+  /** @param skew Zipf exponent of the type and host values, 0 for uniform values */
+  public void setSkew(double skew) {
+    this.skew = skew;
+  }
+
+  /** @param extraFields count of fields not read by the processor, added to every line */
+  public void setExtraFields(int extraFields) {
+    this.extraFields = extraFields;
+  }
+
+  /** @param extraFieldLength length of the string values of extra fields */
+  public void setExtraFieldLength(int extraFieldLength) {
+    this.extraFieldLength = extraFieldLength;
+  }
+
+  /** @param meanDuration mean of the exponentially distributed durations in ms */
+  public void setMeanDuration(double meanDuration) {
+    this.meanDuration = meanDuration;
+  }
+
+  /** @param threads count of generating threads */
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  /** @param seed seed of the random sources, the same seed gives the same file */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /** @param blockPairs count of id pairs per block, it bounds the out of order distance */
+  public void setBlockPairs(int blockPairs) {
+    this.blockPairs = blockPairs;
+  }
+
+  /**
+   * Writes a new file of at least the target size.
+   *
+   * @param output output file, it is replaced
+   * @return count of bytes written
+   * @throws IOException
+   */
+  public long generate(Path output) throws IOException {
+    if (outOfOrderDistance >= blockPairs) {
+      throw new IllegalArgumentException(
+          "Out of order distance must be less than the block pairs: " + outOfOrderDistance);
+    }
+    typeDistribution = zipf(typeCount, skew);
+    hostDistribution = zipf(hostCount, skew);
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService workers =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "csa-generate-" + threadCount.getAndIncrement());
+              thread.setDaemon(true);
+              return thread;
+            });
+    ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+    long nextBlock = 0;
+    long written = 0;
+    try (FileChannel channel =
+        FileChannel.open(
+            output,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      while (written < targetSize) {
+        // blocks are generated ahead, at most two per thread wait to be written
+        while (pending.size() < 2 * threads) {
+          long block = nextBlock++;
+          pending.add(workers.submit(() -> generateBlock(block)));
+        }
+        ByteBuffer bytes = await(pending.poll());
+        while (bytes.hasRemaining()) {
+          written += channel.write(bytes);
+        }
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+    return written;
+  }
+
+  private static ByteBuffer await(Future<ByteBuffer> block) throws IOException {
+    try {
+      return block.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Generation interrupted");
+    } catch (ExecutionException e) {
+      throw new IOException("Block generation failed", e.getCause());
+    }
+  }
+
+  /**
+   * @param count count of values
+   * @param exponent Zipf exponent
+   * @return cumulative probabilities of the values
+   */
+  static double[] zipf(int count, double exponent) {
+    double[] cumulative = new double[count];
+    double sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += 1 / Math.pow(i + 1, exponent);
+      cumulative[i] = sum;
+    }
+    for (int i = 0; i < count; i++) {
+      cumulative[i] /= sum;
+    }
+    return cumulative;
+  }
+
+  private static int sample(double[] cumulative, SplittableRandom random) {
+    int index = Arrays.binarySearch(cumulative, random.nextDouble());
+    return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+  }
+
+  private ByteBuffer generateBlock(long block) {
+    SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + block);
+    long firstPair = block * blockPairs;
+    int[] durations = new int[blockPairs];
+    int[] types = new int[blockPairs];
+    int[] hosts = new int[blockPairs];
+    // sort key of a line in the high half, 2 * pair + 1 for FINISHED in the low half
+    long[] lines = new long[2 * blockPairs];
+    int lineCount = 0;
+    for (int pair = 0; pair < blockPairs; pair++) {
+      durations[pair] = (int) Math.min(-meanDuration * Math.log(1 - random.nextDouble()), 1 << 30);
+      boolean typed = random.nextDouble() < typedRatio;
+      types[pair] = typed ? sample(typeDistribution, random) : -1;
+      hosts[pair] = typed ? sample(hostDistribution, random) : -1;
+      int missing = -1;
+      if (random.nextDouble() < orphanRatio) {
+        missing = random.nextInt(2);
+      }
+      int offset = 1;
+      if (outOfOrderDistance > 0) {
+        offset = random.nextInt(2 * outOfOrderDistance) - outOfOrderDistance;
+        offset = offset >= 0 ? offset + 1 : offset;
+      }
+      long startedKey = 2L * pair + outOfOrderDistance;
+      if (missing != 0) {
+        lines[lineCount++] = startedKey << 32 | (2L * pair);
+      }
+      if (missing != 1) {
+        lines[lineCount++] = (startedKey + offset) << 32 | (2L * pair + 1);
+      }
+    }
+    Arrays.sort(lines, 0, lineCount);
+
+    LineWriter writer = new LineWriter(lineCount * (96 + extraFields * (extraFieldLength + 24)));
+    for (int i = 0; i < lineCount; i++) {
+      int line = (int) lines[i];
+      int pair = line >>> 1;
+      boolean finished = (line & 1) == 1;
+      long pairNumber = firstPair + pair;
+      long timestamp = BASE_TIMESTAMP + pairNumber + (finished ? durations[pair] : 0);
+      writer.append("{\"id\":\"");
+      writer.appendId(idCount > 0 ? pairNumber % idCount : pairNumber);
+      writer.append(finished ? "\", \"state\":\"FINISHED\"" : "\", \"state\":\"STARTED\"");
+      if (types[pair] >= 0) {
+        writer.append(", \"type\":\"").append(typeName(types[pair]));
+        writer.append("\",\"host\":\"").append(10000 + hosts[pair]).append('"');
+      }
+      for (int field = 0; field < extraFields; field++) {
+        writer.append(", \"field").append(field).append("\":");
+        switch (field % 3) {
+          case 0:
+            writer.append('"');
+            for (int c = 0; c < extraFieldLength; c++) {
+              writer.append(ALPHANUMERIC[random.nextInt(ALPHANUMERIC.length)]);
+            }
+            writer.append('"');
+            break;
+          case 1:
+            writer.append(random.nextInt(1 << 20));
+            break;
+          default:
+            writer.append("{\"thread\":\"worker-").append(random.nextInt(64));
+            writer.append("\", \"line\":").append(random.nextInt(10000)).append('}');
+            break;
+        }
+      }
+      writer.append(", \"timestamp\":").append(timestamp).append("}\n");
+    }
+    return writer.toByteBuffer();
+  }
+
+  private static String typeName(int type) {
+    return type < TYPE_NAMES.length ? TYPE_NAMES[type] : "CUSTOM_LOG_" + type;
+  }
+
+  /** Appends ASCII text to a growing byte array */
+  private static class LineWriter {
+    private byte[] bytes;
+    private int size = 0;
+
+    LineWriter(int capacity) {
+      bytes = new byte[capacity];
+    }
+
+    private void ensure(int length) {
+      if (size + length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + length));
+      }
+    }
+
+    LineWriter append(char value) {
+      ensure(1);
+      bytes[size++] = (byte) value;
+      return this;
+    }
+
+    LineWriter append(String value) {
+      ensure(value.length());
+      for (int i = 0; i < value.length(); i++) {
+        bytes[size++] = (byte) value.charAt(i);
+      }
+      return this;
+    }
+
+    LineWriter append(long value) {
+      return append(Long.toString(value));
+    }
+
+    void appendId(long idNumber) {
+      long scrambled = ((idNumber + 1) * ID_MULTIPLIER) & ID_MASK;
+      ensure(ID_LENGTH);
+      for (int i = ID_LENGTH - 1; i >= 0; i--) {
+        bytes[size + i] = (byte) ('a' + scrambled % 26);
+        scrambled /= 26;
+      }
+      size += ID_LENGTH;
+    }
+
+    ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(bytes, 0, size);
+    }
+  }
+
+  /**
+   * @param size count of bytes with an optional k, m or g suffix
+   * @return count of bytes
+   */
+  static long parseSize(String size) {
+    String value = size.trim().toLowerCase(Locale.ROOT);
+    int shift = 0;
+    switch (value.charAt(value.length() - 1)) {
+      case 'k':
+        shift = 10;
+        break;
+      case 'm':
+        shift = 20;
+        break;
+      case 'g':
+        shift = 30;
+        break;
+      default:
+        break;
+    }
+    return Long.parseLong(shift == 0 ? value : value.substring(0, value.length() - 1)) << shift;
+  }
+
+  /** @return options settings of the generator */
+  public static Options getCmdOptions() {
+    Options options = new Options();
+
+    Option outputOption = new Option("o", "output", true, "output file name");
+    outputOption.setRequired(true);
+    options.addOption(outputOption);
+
+    options.addOption(
+        new Option("sz", "size", true, "target size of the file, e.g. 400m or 4g (default 400m)"));
+    options.addOption(
+        new Option(
+            "ic",
+            "id-count",
+            true,
+            "count of distinct ids, ids repeat after it (default a new id for every pair)"));
+    options.addOption(
+        new Option(
+            "od",
+            "out-of-order",
+            true,
+            "lines the two events of an id may be apart, in either order; 0 writes FINISHED "
+                + "right after STARTED (default 16)"));
+    options.addOption(
+        new Option(
+            "or",
+            "orphan-ratio",
+            true,
+            "share of ids with only a STARTED or only a FINISHED event (default 0)"));
+    options.addOption(
+        new Option(
+            "tr", "typed-ratio", true, "share of ids with type and host (default 0.25)"));
+    options.addOption(
+        new Option("tc", "type-count", true, "count of distinct types (default 4)"));
+    options.addOption(
+        new Option("hc", "host-count", true, "count of distinct hosts (default 100)"));
+    options.addOption(
+        new Option(
+            "sk",
+            "skew",
+            true,
+            "Zipf exponent of types and hosts, 0 for uniform values (default 1)"));
+    options.addOption(
+        new Option(
+            "ef",
+            "extra-fields",
+            true,
+            "count of extra string, number and object fields per line (default 0)"));
+    options.addOption(
+        new Option(
+            "el",
+            "extra-field-length",
+            true,
+            "length of the string values of extra fields (default 16)"));
+    options.addOption(
+        new Option("md", "mean-duration", true, "mean duration of an id in ms (default 3)"));
+    options.addOption(
+        new Option(
+            "t", "threads", true, "count of generating threads (default the processors)"));
+    options.addOption(new Option("seed", "seed", true, "seed of the random values (default 1)"));
+    return options;
+  }
+
+  public static void main(String[] args) {
+    try {
+      CommandLine cmd = new DefaultParser().parse(getCmdOptions(), args);
+      LoadGenerator generator = new LoadGenerator();
+      if (cmd.hasOption("size")) {
+        generator.setTargetSize(parseSize(cmd.getOptionValue("size")));
+      }
+      if (cmd.hasOption("id-count")) {
+        generator.setIdCount(Long.valueOf(cmd.getOptionValue("id-count")));
+      }
+      if (cmd.hasOption("out-of-order")) {
+        generator.setOutOfOrderDistance(Integer.valueOf(cmd.getOptionValue("out-of-order")));
+      }
+      if (cmd.hasOption("orphan-ratio")) {
+        generator.setOrphanRatio(Double.valueOf(cmd.getOptionValue("orphan-ratio")));
+      }
+      if (cmd.hasOption("typed-ratio")) {
+        generator.setTypedRatio(Double.valueOf(cmd.getOptionValue("typed-ratio")));
+      }
+      if (cmd.hasOption("type-count")) {
+        generator.setTypeCount(Integer.valueOf(cmd.getOptionValue("type-count")));
+      }
+      if (cmd.hasOption("host-count")) {
+        generator.setHostCount(Integer.valueOf(cmd.getOptionValue("host-count")));
+      }
+      if (cmd.hasOption("skew")) {
+        generator.setSkew(Double.valueOf(cmd.getOptionValue("skew")));
+      }
+      if (cmd.hasOption("extra-fields")) {
+        generator.setExtraFields(Integer.valueOf(cmd.getOptionValue("extra-fields")));
+      }
+      if (cmd.hasOption("extra-field-length")) {
+        generator.setExtraFieldLength(Integer.valueOf(cmd.getOptionValue("extra-field-length")));
+      }
+      if (cmd.hasOption("mean-duration")) {
+        generator.setMeanDuration(Double.valueOf(cmd.getOptionValue("mean-duration")));
+      }
+      if (cmd.hasOption("threads")) {
+        generator.setThreads(Integer.valueOf(cmd.getOptionValue("threads")));
+      }
+      if (cmd.hasOption("seed")) {
+        generator.setSeed(Long.valueOf(cmd.getOptionValue("seed")));
+      }
+
+      long startTime = System.currentTimeMillis();
+      long written = generator.generate(Paths.get(cmd.getOptionValue("output")));
+      long time = Math.max(1, System.currentTimeMillis() - startTime);
+      logger.info(
+          "Generated {} bytes in {} ms, {} MB/s", written, time, (written >> 20) * 1000 / time);
+    } catch (ParseException | NumberFormatException e) {
+      System.out.println(e.getMessage());
+      new HelpFormatter().printHelp("LoadGenerator", getCmdOptions());
+      System.exit(1);
+    } catch (IOException | IllegalArgumentException e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package com.test.input;
+
+import com.test.jfr.ChunkParseEvent;
+import com.test.metrics.ProcessingMetrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@code FileChunk} is a newline-aligned byte range of an input file backed by a memory-mapped
+ * buffer. A chunk always starts at the beginning of a line and ends right after a line separator
+ * (or at the end of the file), so chunks can be processed independently of each other.
+ *
+ * <p>Lines and bytes read are added to the shared {@code ProcessingMetrics} in batches of lines.
+ * Reading a chunk to its end is recorded as a {@code ChunkParseEvent} when that event is enabled.
+ */
+public class FileChunk {
+  private static final ProcessingMetrics metrics = ProcessingMetrics.shared();
+  // lines counted locally before they are added to the metrics
+  private static final int METRICS_LINES = 4096;
+
+  private final long offset;
+  private final ByteBuffer buffer;
+
+  /**
+   * @param offset position of the first byte of the chunk in the file
+   * @param buffer read-only buffer holding the chunk bytes, positions from 0 to its limit
+   */
+  public FileChunk(long offset, ByteBuffer buffer) {
+    this.offset = offset;
+    this.buffer = buffer;
+  }
+
+  /** @return position of the first byte of the chunk in the file */
+  public long getOffset() {
+    return offset;
+  }
+
+  /** @return length of the chunk in bytes */
+  public int getLength() {
+    return buffer.limit();
+  }
+
+  /**
+   * Cuts a newline-aligned part out of the chunk. The part is extended past {@code length} to the
+   * end of its last line, so every line stays in one part.
+   *
+   * @param start position of the first byte of the part, at the beginning of a line
+   * @param length minimal length of the part, unless the chunk ends earlier
+   * @return chunk sharing the bytes of this chunk
+   */
+  public FileChunk slice(int start, int length) {
+    int limit = buffer.limit();
+    int end = (int) Math.min(limit, (long) start + length);
+    while (end < limit && buffer.get(end - 1) != '\n') {
+      end++;
+    }
+    ByteBuffer part = buffer.duplicate();
+    part.position(start);
+    part.limit(end);
+    return new FileChunk(offset + start, part.slice());
+  }
+
+  /**
+   * Converts the chunk into a sequential stream of lines. Lines are split on {@code \n} only and a
+   * trailing {@code \r} is dropped, so {@code \n} and {@code \r\n} files are read like {@code
+   * Files.lines} reads them. Unlike there, a bare {@code \r} does not end a line, it stays in the
+   * line.
+   *
+   * @return stream of lines
+   */
+  public Stream<String> lines() {
+    return lines(new StringDecoder());
+  }
+
+  /**
+   * Converts the chunk into a sequential stream of decoded lines, the decoder gets raw line bytes
+   * so no intermediate strings are created.
+   *
+   * @param decoder line decoder
+   * @param <T> type of decoded lines
+   * @return stream of decoded lines
+   */
+  public <T> Stream<T> lines(LineDecoder<T> decoder) {
+    return StreamSupport.stream(new LineSpliterator<>(buffer.duplicate(), decoder), false);
+  }
+
+  /**
+   * Passes the raw bytes of every line to the consumer, in chunk order. Lines are split the same
+   * way as by {@code lines}.
+   *
+   * @param consumer line consumer
+   */
+  public void forEachLine(LineConsumer consumer) {
+    ChunkParseEvent event = new ChunkParseEvent();
+    event.begin();
+    ByteBuffer lines = buffer.duplicate();
+    int limit = lines.limit();
+    int position = 0;
+    int lineCount = 0;
+    int reported = 0;
+    long totalLines = 0;
+    while (position < limit) {
+      int end = lineEnd(lines, position, limit);
+      consumer.accept(lines, position, trimEnd(lines, position, end));
+      position = end + 1;
+      if (++lineCount == METRICS_LINES) {
+        metrics.addLinesRead(lineCount, position - reported);
+        totalLines += lineCount;
+        reported = position;
+        lineCount = 0;
+      }
+    }
+    metrics.addLinesRead(lineCount, limit - reported);
+    commit(event, totalLines + lineCount);
+  }
+
+  private void commit(ChunkParseEvent event, long lines) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.offset = offset;
+      event.length = getLength();
+      event.lines = lines;
+      event.commit();
+    }
+  }
+
+  /** @return position of the {@code \n} that ends the line, or the limit */
+  private static int lineEnd(ByteBuffer buffer, int position, int limit) {
+    int end = position;
+    while (end < limit && buffer.get(end) != '\n') {
+      end++;
+    }
+    return end;
+  }
+
+  /** @return end of the line without a trailing {@code \r} */
+  private static int trimEnd(ByteBuffer buffer, int position, int end) {
+    return end > position && buffer.get(end - 1) == '\r' ? end - 1 : end;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("offset=%s, length=%s", offset, getLength());
+  }
+
+  /** Sequential line iterator over the chunk buffer */
+  private class LineSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+    private final ChunkParseEvent event = new ChunkParseEvent();
+    private final ByteBuffer buffer;
+    private final LineDecoder<T> decoder;
+    private final int limit;
+    private int position = 0;
+    private int lineCount = 0;
+    private int reported = 0;
+    private long totalLines = 0;
+
+    LineSpliterator(ByteBuffer buffer, LineDecoder<T> decoder) {
+      super(Long.MAX_VALUE, Spliterator.ORDERED);
+      this.buffer = buffer;
+      this.decoder = decoder;
+      this.limit = buffer.limit();
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      if (position >= limit) {
+        return false;
+      }
+      if (position == 0) {
+        event.begin();
+      }
+      int end = lineEnd(buffer, position, limit);
+      action.accept(decoder.decode(buffer, position, trimEnd(buffer, position, end)));
+      position = end + 1;
+      if (++lineCount == METRICS_LINES || position >= limit) {
+        metrics.addLinesRead(lineCount, Math.min(position, limit) - reported);
+        totalLines += lineCount;
+        reported = position;
+        lineCount = 0;
+      }
+      if (position >= limit) {
+        commit(event, totalLines);
+      }
+      return true;
+    }
+  }
+
+  /** UTF-8 line decoder, reuses a single scratch array */
+  private static class StringDecoder implements LineDecoder<String> {
+    private byte[] scratch = new byte[256];
+
+    @Override
+    public String decode(ByteBuffer buffer, int start, int end) {
+      int length = end - start;
+      if (scratch.length < length) {
+        scratch = new byte[Math.max(length, scratch.length * 2)];
+      }
+      buffer.position(start);
+      buffer.get(scratch, 0, length);
+      return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package com.test.input;
+
+import java.nio.ByteBuffer;
+
+/** Consumes raw bytes of a single line in place, without producing an object per line. */
+@FunctionalInterface
+public interface LineConsumer {
+  /**
+   * @param buffer source bytes, absolute positions must be used
+   * @param start position of the first byte of the line
+   * @param end position after the last byte of the line, line separators are excluded
+   */
+  void accept(ByteBuffer buffer, int start, int end);
+}
@@ -0,0 +1,19 @@
+package com.test.input;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts raw bytes of a single line into an object.
+ *
+ * @param <T> type of the produced object
+ */
+@FunctionalInterface
+public interface LineDecoder<T> {
+  /**
+   * @param buffer source bytes, absolute positions must be used
+   * @param start position of the first byte of the line
+   * @param end position after the last byte of the line, line separators are excluded
+   * @return decoded object
+   */
+  T decode(ByteBuffer buffer, int start, int end);
+}
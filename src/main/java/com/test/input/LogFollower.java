@@ -0,0 +1,175 @@
+package com.test.input;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * {@code LogFollower} reads the lines appended to a growing file, like {@code tail -F}. Every
+ * {@code poll} passes the complete lines written since the previous poll to a {@code LineConsumer};
+ * a line without its {@code \n} yet is kept until the rest of it arrives.
+ *
+ * <p>The follower survives rotation and truncation of the file:
+ *
+ * <ul>
+ *   <li>when the path names a different file than the one being read (it was renamed and created
+ *       again), the rest of the old file is read, its last line is passed even without a line
+ *       separator, and the new file is read from its beginning;
+ *   <li>when the file became shorter than the read position (it was truncated in place, as by
+ *       {@code copytruncate}), it is read again from its beginning.
+ * </ul>
+ *
+ * <p>Files are told apart by their file key, on file systems without file keys only truncation is
+ * detected. The follower is not thread-safe.
+ */
+public class LogFollower implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(LogFollower.class);
+
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+  private final Path path;
+  private FileChannel channel;
+  private Object fileKey;
+  // bytes read but not passed yet, in write mode
+  private ByteBuffer buffer;
+  // position in the current file of the first byte of the buffer
+  private long lineOffset = 0;
+  private int rotationCount = 0;
+  private int truncationCount = 0;
+
+  /**
+   * @param path file to follow, it must exist
+   * @param bufferSize initial size of the read buffer, it grows for longer lines
+   * @throws IOException
+   */
+  public LogFollower(Path path, int bufferSize) throws IOException {
+    this.path = path;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+    open();
+  }
+
+  /**
+   * @param path file to follow, it must exist
+   * @throws IOException
+   */
+  public LogFollower(Path path) throws IOException {
+    this(path, DEFAULT_BUFFER_SIZE);
+  }
+
+  private void open() throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    lineOffset = 0;
+  }
+
+  /**
+   * Passes the complete lines appended since the previous poll, it does not wait for new lines.
+   *
+   * @param consumer line consumer, positions are absolute in the passed buffer
+   * @return count of bytes read, 0 when the file did not grow
+   * @throws IOException
+   */
+  public long poll(LineConsumer consumer) throws IOException {
+    long count = readAppended(consumer);
+    if (count > 0) {
+      return count;
+    }
+    if (channel.size() < channel.position()) {
+      logger.info("{} truncated at {} bytes, reading from the beginning", path, channel.position());
+      truncationCount++;
+      buffer.clear();
+      channel.position(0);
+      lineOffset = 0;
+      return readAppended(consumer);
+    }
+    if (isReplaced()) {
+      count = readAppended(consumer);
+      if (buffer.position() > 0) {
+        passLines(consumer, buffer.position());
+      }
+      logger.info("{} rotated after {} bytes, reading the new file", path, channel.position());
+      rotationCount++;
+      channel.close();
+      open();
+      count += readAppended(consumer);
+    }
+    return count;
+  }
+
+  /** @return true when the path names another file than the one being read */
+  private boolean isReplaced() throws IOException {
+    Object key;
+    try {
+      key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    } catch (NoSuchFileException e) {
+      // renamed, but not created again yet
+      return false;
+    }
+    return key != null && !key.equals(fileKey);
+  }
+
+  private long readAppended(LineConsumer consumer) throws IOException {
+    long count = 0;
+    while (true) {
+      if (!buffer.hasRemaining()) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+      }
+      int read = channel.read(buffer);
+      if (read <= 0) {
+        return count;
+      }
+      count += read;
+      int end = buffer.position();
+      while (end > 0 && buffer.get(end - 1) != '\n') {
+        end--;
+      }
+      if (end > 0) {
+        passLines(consumer, end);
+      }
+    }
+  }
+
+  /** Passes the lines of the first {@code length} buffered bytes and drops them */
+  private void passLines(LineConsumer consumer, int length) {
+    ByteBuffer lines = buffer.duplicate();
+    lines.position(0);
+    lines.limit(length);
+    new FileChunk(lineOffset, lines.slice()).forEachLine(consumer);
+    buffer.flip();
+    buffer.position(length);
+    buffer.compact();
+    lineOffset += length;
+  }
+
+  /** @return position in the current file after the last passed line */
+  public long getLineOffset() {
+    return lineOffset;
+  }
+
+  /** @return count of times the file was replaced by a new one */
+  public int getRotationCount() {
+    return rotationCount;
+  }
+
+  /** @return count of times the file was truncated */
+  public int getTruncationCount() {
+    return truncationCount;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
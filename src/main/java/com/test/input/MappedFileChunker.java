@@ -0,0 +1,153 @@
+package com.test.input;
+
+import com.test.metrics.ProcessingMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits an input file into newline-aligned {@code FileChunk} ranges and memory-maps each of them.
+ * Every chunk can be handed to its own worker, so reading scales with cores instead of stalling on
+ * one sequential reader.
+ */
+public class MappedFileChunker {
+  private static final Logger logger = LoggerFactory.getLogger(MappedFileChunker.class);
+
+  /** chunks per available processor, leaves room for work stealing on uneven chunks */
+  public static final int CHUNKS_PER_PROCESSOR = 4;
+  /** files smaller than this are not split further */
+  static final long MIN_CHUNK_SIZE = 1 << 20;
+  /** a single mapping is addressed by int positions */
+  static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE - 8;
+
+  private static final int SCAN_BUFFER_SIZE = 8192;
+
+  /** @return default count of chunks for the current machine */
+  public static int defaultChunkCount() {
+    return Runtime.getRuntime().availableProcessors() * CHUNKS_PER_PROCESSOR;
+  }
+
+  /**
+   * Splits the file into about {@code chunkCount} newline-aligned chunks.
+   *
+   * @param path input file
+   * @param chunkCount desired count of chunks
+   * @return chunks in file order
+   * @throws IOException
+   */
+  public static List<FileChunk> split(Path path, int chunkCount) throws IOException {
+    return split(path, 0, Long.MAX_VALUE, chunkCount, MIN_CHUNK_SIZE, MAX_CHUNK_SIZE);
+  }
+
+  /**
+   * Splits a byte range of the file into about {@code chunkCount} newline-aligned chunks.
+   *
+   * @param path input file
+   * @param from position of the first byte, at the beginning of a line
+   * @param to position after the last byte, it is cut to the size of the file
+   * @param chunkCount desired count of chunks
+   * @return chunks in file order, their offsets are positions in the file
+   * @throws IOException
+   */
+  public static List<FileChunk> splitRange(Path path, long from, long to, int chunkCount)
+      throws IOException {
+    return split(path, from, to, chunkCount, MIN_CHUNK_SIZE, MAX_CHUNK_SIZE);
+  }
+
+  static List<FileChunk> split(Path path, int chunkCount, long minChunkSize, long maxChunkSize)
+      throws IOException {
+    return split(path, 0, Long.MAX_VALUE, chunkCount, minChunkSize, maxChunkSize);
+  }
+
+  private static List<FileChunk> split(
+      Path path, long from, long to, int chunkCount, long minChunkSize, long maxChunkSize)
+      throws IOException {
+    List<FileChunk> chunks = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = Math.min(to, channel.size());
+      long chunkSize =
+          Math.min(
+              maxChunkSize,
+              Math.max(minChunkSize, (size - from + chunkCount - 1) / Math.max(1, chunkCount)));
+      long start = from;
+      while (start < size) {
+        long end = start + chunkSize;
+        if (end < size) {
+          end = nextLineStart(channel, end, size);
+        } else {
+          end = size;
+        }
+        if (end - start > maxChunkSize) {
+          throw new IOException(
+              String.format("Line at offset %s is too long to be mapped", start));
+        }
+        chunks.add(
+            new FileChunk(start, channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+        start = end;
+      }
+      ProcessingMetrics.shared().addInputSize(Math.max(0, size - from));
+      logger.debug("Split {} bytes of {} into {} chunks", size, path, chunks.size());
+    }
+    return chunks;
+  }
+
+  /**
+   * Finds the end of the complete lines of a file, a last line without its line separator may still
+   * be written.
+   *
+   * @param path input file
+   * @return position right after the last {@code \n} of the file, 0 when there is none
+   * @throws IOException
+   */
+  public static long completeLinesEnd(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer scan = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+      long end = channel.size();
+      while (end > 0) {
+        long start = Math.max(0, end - SCAN_BUFFER_SIZE);
+        scan.clear();
+        scan.limit((int) (end - start));
+        while (scan.hasRemaining()) {
+          if (channel.read(scan, start + scan.position()) <= 0) {
+            break;
+          }
+        }
+        for (int i = scan.position() - 1; i >= 0; i--) {
+          if (scan.get(i) == '\n') {
+            return start + i + 1;
+          }
+        }
+        end = start;
+      }
+      return 0;
+    }
+  }
+
+  /** @return position right after the first {@code \n} at or after {@code position} */
+  private static long nextLineStart(FileChannel channel, long position, long size)
+      throws IOException {
+    ByteBuffer scan = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+    long current = position;
+    while (current < size) {
+      scan.clear();
+      int read = channel.read(scan, current);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (scan.get(i) == '\n') {
+          return current + i + 1;
+        }
+      }
+      current += read;
+    }
+    return size;
+  }
+}
@@ -0,0 +1,12 @@
+package com.test.jfr;
+
+/** Merge of two partial aggregation states, recorded as {@code com.test.AggregationMerge} */
+public class AggregationMergeEvent extends StageEvent {
+  public static final String GROUPING = "grouping";
+  public static final String TABLE = "table";
+
+  public String kind;
+
+  /** Count of ids merged */
+  public long ids;
+}
@@ -0,0 +1,8 @@
+package com.test.jfr;
+
+/** Reading and parsing of the lines of one input chunk, recorded as {@code com.test.ChunkParse} */
+public class ChunkParseEvent extends StageEvent {
+  public long offset;
+  public long length;
+  public long lines;
+}
@@ -0,0 +1,10 @@
+package com.test.jfr;
+
+/**
+ * Connection to HSQLDB and creation of a shard table, recorded as {@code com.test.ConnectionInit}
+ * without the URI as it may hold a password
+ */
+public class ConnectionInitEvent extends StageEvent {
+  public String table;
+  public String shardFile;
+}
@@ -0,0 +1,55 @@
+package com.test.jfr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+
+/**
+ * Java Flight Recording of a run with the events of the processing stages. The JFR events and the
+ * recording are in the {@code jfr} source set, which is only loaded here, so the processing classes
+ * do not depend on {@code jdk.jfr}: without a recording a {@code StageEvent} costs a check of a
+ * field. One recording is active at a time.
+ *
+ * <p>The recording uses the {@code default} settings of the JVM for its own events and records
+ * every stage event without a threshold. The file is written when the recording is closed.
+ */
+public class FlightRecording implements Closeable {
+  public static final String CATEGORY = "CsaEventProcessor";
+
+  private static final String RECORDER = "com.test.jfr.JfrRecorder";
+
+  private final StageRecorder recorder;
+
+  /**
+   * Starts a recording.
+   *
+   * @param destination recording file
+   * @throws IOException when the JVM has no flight recorder or the destination is not writable
+   */
+  public FlightRecording(Path destination) throws IOException {
+    recorder = start(destination);
+    StageEvent.recorder = recorder;
+  }
+
+  private static StageRecorder start(Path destination) throws IOException {
+    try {
+      return (StageRecorder)
+          Class.forName(RECORDER).getDeclaredConstructor(Path.class).newInstance(destination);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Flight recording failed to start", e.getCause());
+    } catch (ReflectiveOperationException | LinkageError e) {
+      throw new IOException("Flight recording needs a JVM with JFR (8u262+ or 11+)", e);
+    }
+  }
+
+  /** Stops the recording and writes its file */
+  @Override
+  public void close() {
+    StageEvent.recorder = null;
+    recorder.close();
+  }
+}
@@ -0,0 +1,10 @@
+package com.test.jfr;
+
+/** Write of buffered output records, recorded as {@code com.test.SinkFlush} */
+public class SinkFlushEvent extends StageEvent {
+  public static final String HSQLDB = "hsqldb";
+  public static final String CSV = "csv";
+
+  public String sink;
+  public long records;
+}
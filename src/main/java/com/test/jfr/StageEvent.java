@@ -0,0 +1,40 @@
+package com.test.jfr;
+
+/**
+ * Event of a processing stage, used like a {@code jdk.jfr.Event}. It is only recorded while a
+ * {@code FlightRecording} is active, which passes it to the JFR event of the stage. Without a
+ * recording {@code begin} reads a field and records nothing, and no class of {@code jdk.jfr} is
+ * loaded, so the stages also run on JVMs without the flight recorder.
+ */
+public abstract class StageEvent {
+  static volatile StageRecorder recorder;
+
+  private StageRecorder.Recorded recorded;
+
+  /** Starts the timing of the event when a recording is active */
+  public void begin() {
+    StageRecorder active = recorder;
+    if (active != null) {
+      recorded = active.begin(this);
+    }
+  }
+
+  /** Ends the timing of the event */
+  public void end() {
+    if (recorded != null) {
+      recorded.end();
+    }
+  }
+
+  /** @return whether the event is recorded, its fields only need to be set then */
+  public boolean shouldCommit() {
+    return recorded != null && recorded.shouldCommit();
+  }
+
+  /** Records the event with its fields */
+  public void commit() {
+    if (recorded != null) {
+      recorded.record(this);
+    }
+  }
+}
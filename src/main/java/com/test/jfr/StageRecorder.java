@@ -0,0 +1,30 @@
+package com.test.jfr;
+
+import java.io.Closeable;
+
+/** Recorder of the stage events, implemented with the JFR events by {@code JfrRecorder} */
+interface StageRecorder extends Closeable {
+  /**
+   * @param event event of a stage
+   * @return the started JFR event of the stage
+   */
+  Recorded begin(StageEvent event);
+
+  /** Stops the recording and writes its file */
+  @Override
+  void close();
+
+  /** JFR event of a stage, the methods of {@code jdk.jfr.Event} */
+  interface Recorded {
+    void end();
+
+    boolean shouldCommit();
+
+    /**
+     * Copies the fields of the stage event and commits.
+     *
+     * @param event event of the stage
+     */
+    void record(StageEvent event);
+  }
+}
@@ -0,0 +1,86 @@
+package com.test.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies with power-of-two buckets of nanoseconds that any count of threads may
+ * record into. Recording is a few atomic additions without locks or allocation; percentiles are
+ * reported as the upper bound of their bucket, so they are exact within a factor of two.
+ *
+ * <p>Readers see the counts of concurrent recordings one by one, so a snapshot may be slightly
+ * inconsistent.
+ */
+public class LatencyHistogram {
+  private final AtomicLongArray buckets = new AtomicLongArray(64);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /**
+   * Records one latency.
+   *
+   * @param nanos latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long latency = Math.max(0, nanos);
+    buckets.incrementAndGet(latency == 0 ? 0 : 63 - Long.numberOfLeadingZeros(latency));
+    count.increment();
+    totalNanos.add(latency);
+    long max = maxNanos.get();
+    while (latency > max && !maxNanos.compareAndSet(max, latency)) {
+      max = maxNanos.get();
+    }
+  }
+
+  /** @return count of recorded latencies */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /** @return mean latency in microseconds, 0 when nothing was recorded */
+  public long getMeanMicros() {
+    long recorded = count.sum();
+    return recorded == 0 ? 0 : totalNanos.sum() / recorded / 1000;
+  }
+
+  /** @return maximal latency in microseconds */
+  public long getMaxMicros() {
+    return maxNanos.get() / 1000;
+  }
+
+  /**
+   * @param percentile percentile between 0 and 100
+   * @return upper bound of the latency in microseconds under which the percentile of latencies
+   *     fall
+   */
+  public long getPercentileMicros(double percentile) {
+    long[] counts = new long[buckets.length()];
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    long rank = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank && seen > 0) {
+        return Math.min(maxNanos.get(), i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1) / 1000;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "count=%s, mean=%s us, p50=%s us, p99=%s us, max=%s us",
+        getCount(),
+        getMeanMicros(),
+        getPercentileMicros(50),
+        getPercentileMicros(99),
+        getMaxMicros());
+  }
+}
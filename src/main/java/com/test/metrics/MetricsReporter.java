@@ -0,0 +1,59 @@
+package com.test.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs {@code ProcessingMetrics} periodically on its own daemon thread, with the count of lines
+ * read per second since the previous report. The last report is logged when it is closed.
+ */
+public class MetricsReporter implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(MetricsReporter.class);
+
+  public static final long DEFAULT_INTERVAL = 10;
+
+  private final ProcessingMetrics metrics;
+  private final ScheduledExecutorService scheduler;
+  private long previousLines;
+  private long previousNanos;
+
+  /**
+   * @param metrics metrics to report
+   * @param intervalSeconds seconds between two reports
+   */
+  public MetricsReporter(ProcessingMetrics metrics, long intervalSeconds) {
+    this.metrics = metrics;
+    this.previousLines = metrics.getLinesRead();
+    this.previousNanos = System.nanoTime();
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "csa-metrics");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /** Logs the current metrics */
+  synchronized void report() {
+    long lines = metrics.getLinesRead();
+    long now = System.nanoTime();
+    long rate =
+        now == previousNanos ? 0 : (long) ((lines - previousLines) * 1e9 / (now - previousNanos));
+    previousLines = lines;
+    previousNanos = now;
+    logger.info("Metrics: {} lines per second, {}", rate, metrics);
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    report();
+  }
+}
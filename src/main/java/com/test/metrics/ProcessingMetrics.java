@@ -0,0 +1,186 @@
+package com.test.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of a running processor: lines and bytes read against the size of the split input,
+ * parse failures, open ids of streaming aggregation and the latency of output batches. All
+ * counters are cumulative over the lifetime of the JVM, so in daemon mode they cover all jobs.
+ *
+ * <p>Recording only adds to {@code LongAdder} cells and atomic buckets, there are no locks and no
+ * boxing. Readers, the MBean server and {@code MetricsReporter}, sum the cells when they are read.
+ */
+public class ProcessingMetrics implements ProcessingMetricsMXBean {
+  private static final Logger logger = LoggerFactory.getLogger(ProcessingMetrics.class);
+
+  public static final String OBJECT_NAME = "com.test:type=ProcessingMetrics";
+  private static final ProcessingMetrics shared = new ProcessingMetrics();
+  private static final long NOT_STARTED = Long.MIN_VALUE;
+
+  private final LongAdder linesRead = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder inputSize = new LongAdder();
+  private final LongAdder parseFailures = new LongAdder();
+  private final LongAdder openIds = new LongAdder();
+  private final LatencyHistogram emitBatchLatency = new LatencyHistogram();
+  // System.nanoTime when the first input was split
+  private final AtomicLong startNanos = new AtomicLong(NOT_STARTED);
+
+  /** @return metrics of the JVM, recorded by all processors */
+  public static ProcessingMetrics shared() {
+    return shared;
+  }
+
+  /**
+   * Publishes the shared metrics in the platform MBean server, it may be called more than once.
+   */
+  public static void register() {
+    try {
+      ManagementFactory.getPlatformMBeanServer()
+          .registerMBean(shared, new ObjectName(OBJECT_NAME));
+    } catch (InstanceAlreadyExistsException e) {
+      logger.debug("{} is already registered", OBJECT_NAME);
+    } catch (JMException e) {
+      logger.warn("Can not register {}: {}", OBJECT_NAME, e.getMessage());
+    }
+  }
+
+  /** @param bytes size of an input range that is split for reading */
+  public void addInputSize(long bytes) {
+    startNanos.compareAndSet(NOT_STARTED, System.nanoTime());
+    inputSize.add(bytes);
+  }
+
+  /**
+   * @param lines count of lines read
+   * @param bytes count of bytes of the lines, with their line separators
+   */
+  public void addLinesRead(long lines, long bytes) {
+    linesRead.add(lines);
+    bytesRead.add(bytes);
+  }
+
+  /** Counts a line that is not a valid event */
+  public void parseFailed() {
+    parseFailures.increment();
+  }
+
+  /** @param delta change of the count of open ids */
+  public void addOpenIds(long delta) {
+    openIds.add(delta);
+  }
+
+  /** @param nanos time to execute and commit an output batch */
+  public void recordEmitBatch(long nanos) {
+    emitBatchLatency.record(nanos);
+  }
+
+  /** @return latencies of output batches */
+  public LatencyHistogram getEmitBatchLatency() {
+    return emitBatchLatency;
+  }
+
+  @Override
+  public long getLinesRead() {
+    return linesRead.sum();
+  }
+
+  @Override
+  public long getLinesPerSecond() {
+    long elapsed = getElapsedNanos();
+    return elapsed <= 0 ? 0 : (long) (linesRead.sum() * 1e9 / elapsed);
+  }
+
+  @Override
+  public long getParseFailures() {
+    return parseFailures.sum();
+  }
+
+  @Override
+  public long getOpenIds() {
+    return openIds.sum();
+  }
+
+  @Override
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  @Override
+  public long getInputSize() {
+    return inputSize.sum();
+  }
+
+  @Override
+  public double getProgressPercent() {
+    long size = inputSize.sum();
+    return size == 0 ? 0 : Math.min(100, 100.0 * bytesRead.sum() / size);
+  }
+
+  @Override
+  public long getEtaSeconds() {
+    long read = bytesRead.sum();
+    long remaining = inputSize.sum() - read;
+    long elapsed = getElapsedNanos();
+    if (remaining <= 0) {
+      return 0;
+    }
+    if (read == 0 || elapsed <= 0) {
+      return -1;
+    }
+    return (long) Math.ceil(remaining * (elapsed / 1e9) / read);
+  }
+
+  private long getElapsedNanos() {
+    long start = startNanos.get();
+    return start == NOT_STARTED ? 0 : System.nanoTime() - start;
+  }
+
+  @Override
+  public long getEmitBatchCount() {
+    return emitBatchLatency.getCount();
+  }
+
+  @Override
+  public long getEmitBatchMeanMicros() {
+    return emitBatchLatency.getMeanMicros();
+  }
+
+  @Override
+  public long getEmitBatchP50Micros() {
+    return emitBatchLatency.getPercentileMicros(50);
+  }
+
+  @Override
+  public long getEmitBatchP99Micros() {
+    return emitBatchLatency.getPercentileMicros(99);
+  }
+
+  @Override
+  public long getEmitBatchMaxMicros() {
+    return emitBatchLatency.getMaxMicros();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "lines=%s, parse failures=%s, open ids=%s, read=%s of %s bytes (%.1f%%), ETA=%s s, "
+            + "emit batches: %s",
+        getLinesRead(),
+        getParseFailures(),
+        getOpenIds(),
+        getBytesRead(),
+        getInputSize(),
+        getProgressPercent(),
+        getEtaSeconds(),
+        emitBatchLatency);
+  }
+}
@@ -0,0 +1,43 @@
+package com.test.metrics;
+
+/** Management interface of {@code ProcessingMetrics}, it is published as {@code OBJECT_NAME} */
+public interface ProcessingMetricsMXBean {
+  /** @return count of input lines read */
+  long getLinesRead();
+
+  /** @return mean count of lines read per second since the first input was split */
+  long getLinesPerSecond();
+
+  /** @return count of lines that are not valid events */
+  long getParseFailures();
+
+  /** @return count of ids held open by streaming aggregation */
+  long getOpenIds();
+
+  /** @return count of input bytes read */
+  long getBytesRead();
+
+  /** @return count of input bytes split for reading */
+  long getInputSize();
+
+  /** @return percentage of the input bytes that were read */
+  double getProgressPercent();
+
+  /** @return estimated seconds until the input is read, -1 when unknown */
+  long getEtaSeconds();
+
+  /** @return count of executed output batches */
+  long getEmitBatchCount();
+
+  /** @return mean latency of an output batch in microseconds */
+  long getEmitBatchMeanMicros();
+
+  /** @return median latency of an output batch in microseconds */
+  long getEmitBatchP50Micros();
+
+  /** @return 99th percentile latency of an output batch in microseconds */
+  long getEmitBatchP99Micros();
+
+  /** @return maximal latency of an output batch in microseconds */
+  long getEmitBatchMaxMicros();
+}
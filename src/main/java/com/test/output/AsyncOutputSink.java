@@ -0,0 +1,160 @@
+package com.test.output;
+
+import com.test.event.OutputEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code AsyncOutputSink} hands records over to a dedicated writer thread, which is the only thread
+ * that calls the wrapped sink, so the threads that produce records never wait for disk or JDBC
+ * latency. Records are passed in batches through a bounded queue; when the sink is slower than the
+ * producers the queue fills up and {@code write} blocks, so memory stays bounded.
+ *
+ * <p>Records are written in the order of the {@code write} calls. Calls may come from different
+ * threads, for example from {@code Stream.forEachOrdered} of a parallel stream.
+ */
+public class AsyncOutputSink implements OutputSink {
+  private static final Logger logger = LoggerFactory.getLogger(AsyncOutputSink.class);
+
+  public static final int BATCH_SIZE = 1024;
+  public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+  private static final OutputEvent[] END_OF_OUTPUT = new OutputEvent[0];
+  private static final OutputEvent[] FLUSH = new OutputEvent[0];
+
+  private final OutputSink sink;
+  private final BlockingQueue<OutputEvent[]> queue;
+  private final Thread writer;
+  private volatile Throwable failure = null;
+
+  private OutputEvent[] batch = new OutputEvent[BATCH_SIZE];
+  private int size = 0;
+  private boolean closed = false;
+
+  /**
+   * @param sink sink to write into, it is closed by {@code close}
+   * @param queueCapacity count of batches that may wait for the writer
+   */
+  public AsyncOutputSink(OutputSink sink, int queueCapacity) {
+    this.sink = sink;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.writer = new Thread(this::writeBatches, "csa-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /** @param sink sink to write into, it is closed by {@code close} */
+  public AsyncOutputSink(OutputSink sink) {
+    this(sink, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  @Override
+  public synchronized void write(OutputEvent outputEvent) throws IOException {
+    batch[size++] = outputEvent;
+    if (size == BATCH_SIZE) {
+      put(batch);
+      batch = new OutputEvent[BATCH_SIZE];
+      size = 0;
+    }
+  }
+
+  /**
+   * Hands the pending records over to the writer thread without waiting for a full batch. The
+   * wrapped sink is flushed by the writer once it wrote them.
+   *
+   * @throws IOException when the writer failed
+   */
+  @Override
+  public synchronized void flush() throws IOException {
+    if (size > 0) {
+      put(Arrays.copyOf(batch, size));
+      size = 0;
+    }
+    put(FLUSH);
+  }
+
+  private void put(OutputEvent[] records) throws IOException {
+    try {
+      while (!queue.offer(records, 100, TimeUnit.MILLISECONDS)) {
+        checkFailure();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the output writer");
+    }
+    checkFailure();
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("Output writer failed: " + failure.getMessage(), failure);
+    }
+  }
+
+  /**
+   * Passes the last batch, waits until the writer wrote all records and closed the wrapped sink.
+   *
+   * @throws IOException when the writer failed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (failure == null) {
+      if (size > 0) {
+        put(Arrays.copyOf(batch, size));
+        size = 0;
+      }
+      put(END_OF_OUTPUT);
+    }
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the output writer");
+    }
+    checkFailure();
+  }
+
+  /** @return count of records written by the wrapped sink, final after {@code close} */
+  @Override
+  public long getWriteCount() {
+    return sink.getWriteCount();
+  }
+
+  private void writeBatches() {
+    try {
+      while (true) {
+        OutputEvent[] records = queue.take();
+        if (records == END_OF_OUTPUT) {
+          break;
+        }
+        if (records == FLUSH) {
+          sink.flush();
+          continue;
+        }
+        for (OutputEvent outputEvent : records) {
+          sink.write(outputEvent);
+        }
+      }
+      sink.close();
+    } catch (Throwable e) {
+      logger.error("Output writer failed: {}", e.getMessage());
+      failure = e;
+      try {
+        sink.close();
+      } catch (Throwable closeFailure) {
+        logger.debug("Can not close sink after failure: {}", closeFailure.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.test.output;
+
+import com.test.aggregate.OutputEventCodec;
+import com.test.event.OutputEvent;
+import com.test.trace.IdTracer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * {@code OutputSink} that writes records in the {@code OutputEventCodec} format, they can be read
+ * back with {@code OutputEventCodec.read} without losing any timestamp.
+ */
+public class BinaryOutputSink implements OutputSink {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final DataOutputStream out;
+  private long writeCount = 0;
+
+  /**
+   * @param outputFile output file, an existing file is replaced
+   * @throws IOException
+   */
+  public BinaryOutputSink(Path outputFile) throws IOException {
+    out =
+        new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(outputFile), BUFFER_SIZE));
+  }
+
+  @Override
+  public void write(OutputEvent outputEvent) throws IOException {
+    if (IdTracer.isEnabled()) {
+      IdTracer.trace(IdTracer.EMIT, outputEvent.getId(), outputEvent);
+    }
+    OutputEventCodec.write(out, outputEvent);
+    writeCount++;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  @Override
+  public long getWriteCount() {
+    return writeCount;
+  }
+}
@@ -0,0 +1,45 @@
+package com.test.output;
+
+import com.test.event.CsvOutputGenerator;
+import com.test.event.OutputEvent;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * {@code OutputSink} that writes the CSV of the HSQLDB text table directly through {@code
+ * CsvOutputGenerator}. The sink is a single writer, so records go straight into the output file
+ * and are visible there after every flush.
+ */
+public class CsvOutputSink implements OutputSink {
+  private final CsvOutputGenerator csvOutputGenerator;
+
+  /**
+   * @param outputFile output file, an existing file is replaced
+   * @throws IOException
+   */
+  public CsvOutputSink(Path outputFile) throws IOException {
+    csvOutputGenerator = CsvOutputGenerator.direct(outputFile);
+  }
+
+  @Override
+  public void write(OutputEvent outputEvent) throws IOException {
+    csvOutputGenerator.emit(outputEvent);
+  }
+
+  /** Writes the buffered records into the output file */
+  @Override
+  public void flush() throws IOException {
+    csvOutputGenerator.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    csvOutputGenerator.finish();
+  }
+
+  @Override
+  public long getWriteCount() {
+    return csvOutputGenerator.getEmitCount();
+  }
+}
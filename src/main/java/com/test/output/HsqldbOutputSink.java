@@ -0,0 +1,71 @@
+package com.test.output;
+
+import com.test.event.OutputEvent;
+import com.test.event.OutputGenerator;
+import com.test.event.WorkTablePool;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * {@code OutputSink} that inserts records into an HSQLDB text table through {@code
+ * OutputGenerator}
+ */
+public class HsqldbOutputSink implements OutputSink {
+  private final OutputGenerator outputGenerator;
+
+  /**
+   * @param workingDatabaseURI HSQLDB URI
+   * @param outputFileName output file, relative to the database files
+   * @param batchSize count of records per batch and transaction
+   * @throws SQLException
+   */
+  public HsqldbOutputSink(String workingDatabaseURI, String outputFileName, int batchSize)
+      throws SQLException {
+    outputGenerator = new OutputGenerator(workingDatabaseURI, outputFileName, batchSize);
+  }
+
+  /**
+   * @param workTables source of the connection and table the records are inserted through
+   * @param outputFileName output file, relative to the database files
+   * @param batchSize count of records per batch and transaction
+   * @throws SQLException
+   */
+  public HsqldbOutputSink(WorkTablePool workTables, String outputFileName, int batchSize)
+      throws SQLException {
+    outputGenerator = new OutputGenerator(workTables, outputFileName, batchSize);
+  }
+
+  @Override
+  public void write(OutputEvent outputEvent) throws IOException {
+    try {
+      outputGenerator.emit(outputEvent);
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /** Executes and commits the pending batch */
+  @Override
+  public void flush() throws IOException {
+    try {
+      outputGenerator.flush();
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      outputGenerator.finish();
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public long getWriteCount() {
+    return outputGenerator.getEmitCount();
+  }
+}
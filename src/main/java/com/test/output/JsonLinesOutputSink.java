@@ -0,0 +1,116 @@
+package com.test.output;
+
+import com.test.event.OutputEvent;
+import com.test.event.Timestamps;
+import com.test.trace.IdTracer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * {@code OutputSink} that writes one UTF-8 JSON object per line, with the fields of the input
+ * format: {@code {"id":"a","duration":5,"type":"APPLICATION_LOG","host":"12345","alert":true}}.
+ * Missing values are {@code null}, the duration keeps its fraction.
+ */
+public class JsonLinesOutputSink implements OutputSink {
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Writer out;
+  private long writeCount = 0;
+
+  /**
+   * @param outputFile output file, an existing file is replaced
+   * @throws IOException
+   */
+  public JsonLinesOutputSink(Path outputFile) throws IOException {
+    out =
+        new BufferedWriter(
+            new OutputStreamWriter(Files.newOutputStream(outputFile), StandardCharsets.UTF_8),
+            BUFFER_SIZE);
+  }
+
+  @Override
+  public void write(OutputEvent outputEvent) throws IOException {
+    if (IdTracer.isEnabled()) {
+      IdTracer.trace(IdTracer.EMIT, outputEvent.getId(), outputEvent);
+    }
+    out.write("{\"id\":");
+    writeString(outputEvent.getId());
+    out.write(",\"duration\":");
+    BigDecimal exactDuration = outputEvent.getExactDuration();
+    if (exactDuration != null) {
+      out.write(exactDuration.toPlainString());
+    } else if (outputEvent.getDurationMillis() != Timestamps.NONE) {
+      out.write(Long.toString(outputEvent.getDurationMillis()));
+    } else {
+      out.write("null");
+    }
+    out.write(",\"type\":");
+    writeString(outputEvent.getType());
+    out.write(",\"host\":");
+    writeString(outputEvent.getHost());
+    out.write(",\"alert\":");
+    out.write(String.valueOf(outputEvent.getAlert()));
+    out.write("}\n");
+    writeCount++;
+  }
+
+  private void writeString(String value) throws IOException {
+    if (value == null) {
+      out.write("null");
+      return;
+    }
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.write("\\\"");
+          break;
+        case '\\':
+          out.write("\\\\");
+          break;
+        case '\n':
+          out.write("\\n");
+          break;
+        case '\r':
+          out.write("\\r");
+          break;
+        case '\t':
+          out.write("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.write("\\u00");
+            out.write(HEX[c >> 4]);
+            out.write(HEX[c & 0xf]);
+          } else {
+            out.write(c);
+          }
+      }
+    }
+    out.write('"');
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  @Override
+  public long getWriteCount() {
+    return writeCount;
+  }
+}
@@ -0,0 +1,39 @@
+package com.test.output;
+
+import com.test.event.OutputEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of processed {@code OutputEvent} records. Implementations are not thread-safe, they
+ * are fed by one thread at a time, usually the writer thread of an {@code AsyncOutputSink}.
+ */
+public interface OutputSink extends Closeable {
+  /**
+   * Saves a new record.
+   *
+   * @param outputEvent {@code OutputEvent} to be recorded
+   * @throws IOException
+   */
+  void write(OutputEvent outputEvent) throws IOException;
+
+  /**
+   * Passes the buffered records on to the output, so readers of the output see them before the
+   * sink is closed. The default implementation does nothing, for sinks that do not buffer.
+   *
+   * @throws IOException
+   */
+  default void flush() throws IOException {}
+
+  /**
+   * Writes all records and releases the output, the output is complete afterwards.
+   *
+   * @throws IOException
+   */
+  @Override
+  void close() throws IOException;
+
+  /** @return count of records written into the output */
+  long getWriteCount();
+}
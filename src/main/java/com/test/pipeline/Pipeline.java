@@ -0,0 +1,442 @@
+package com.test.pipeline;
+
+import com.test.aggregate.OutputEventTable;
+import com.test.aggregate.ShardedAggregator;
+import com.test.event.InputEvent;
+import com.test.event.InputEventFactory;
+import com.test.event.OutputEvent;
+import com.test.input.FileChunk;
+import com.test.input.MappedFileChunker;
+import com.test.output.OutputSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code Pipeline} processes an input file in four stages, each on its own dedicated threads:
+ *
+ * <ol>
+ *   <li>readers cut the memory-mapped chunks of the file into newline-aligned blocks,
+ *   <li>parsers turn the lines of a block into {@code InputEvent} and batch them per shard,
+ *   <li>aggregation shards own an {@code OutputEventTable} each, ids are routed to them by hash,
+ *   <li>a single writer passes the aggregated records to the {@code OutputSink}.
+ * </ol>
+ *
+ * <p>Every pair of connected threads has its own preallocated {@code SpscRing}, so the handoff
+ * between stages is lock-free and the data in flight is bounded by the ring capacities. A stage
+ * that can not hand over spins, then yields, then parks briefly; nothing runs in the common
+ * ForkJoinPool. The writer takes the shards one after another, every shard in the first-seen order
+ * of its ids.
+ */
+public class Pipeline {
+  private static final Logger logger = LoggerFactory.getLogger(Pipeline.class);
+
+  /** minimal size of the blocks a reader hands to a parser */
+  public static final int BLOCK_SIZE = 1 << 16;
+  /** count of events or records in a batch between parsers, shards and the writer */
+  public static final int BATCH_SIZE = 1024;
+  /** count of blocks or batches a ring holds */
+  public static final int RING_CAPACITY = 16;
+
+  private static final int SPIN_ROUNDS = 100;
+  private static final int YIELD_ROUNDS = 200;
+  private static final long PARK_NANOS = 50_000;
+
+  private static final FileChunk END_OF_BLOCKS = new FileChunk(0, null);
+  private static final InputEvent[] END_OF_INPUT = new InputEvent[0];
+  private static final OutputEvent[] END_OF_OUTPUT = new OutputEvent[0];
+
+  private final int readerThreads;
+  private final int parserThreads;
+  private final int shardThreads;
+  private final int tableCapacity;
+
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  /**
+   * @param readerThreads count of reader threads, each reader feeds its own parsers
+   * @param parserThreads count of parser threads, not less than the reader threads
+   * @param shardThreads count of aggregation shard threads
+   */
+  public Pipeline(int readerThreads, int parserThreads, int shardThreads) {
+    this(readerThreads, parserThreads, shardThreads, OutputEventTable.DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * @param readerThreads count of reader threads, each reader feeds its own parsers
+   * @param parserThreads count of parser threads, not less than the reader threads
+   * @param shardThreads count of aggregation shard threads
+   * @param tableCapacity count of ids the table of a shard is sized for
+   */
+  public Pipeline(int readerThreads, int parserThreads, int shardThreads, int tableCapacity) {
+    if (readerThreads < 1 || parserThreads < 1 || shardThreads < 1) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Thread counts must be positive: readers=%s, parsers=%s, shards=%s",
+              readerThreads, parserThreads, shardThreads));
+    }
+    if (readerThreads > parserThreads) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Every reader needs a parser: readers=%s, parsers=%s",
+              readerThreads, parserThreads));
+    }
+    this.readerThreads = readerThreads;
+    this.parserThreads = parserThreads;
+    this.shardThreads = shardThreads;
+    this.tableCapacity = tableCapacity;
+  }
+
+  /** @return default count of reader threads */
+  public static int defaultReaderThreads() {
+    return 1;
+  }
+
+  /** @return default count of parser threads for the current machine */
+  public static int defaultParserThreads() {
+    return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+  }
+
+  /** @return default count of shard threads for the current machine */
+  public static int defaultShardThreads() {
+    return ShardedAggregator.defaultShardCount();
+  }
+
+  /**
+   * Processes the input file into the sink. A pipeline instance runs once.
+   *
+   * @param inputFile input file
+   * @param outputSink sink, it is closed by the writer
+   * @return count of records written by the sink
+   * @throws IOException when a stage failed
+   */
+  public long run(Path inputFile, OutputSink outputSink) throws IOException {
+    List<FileChunk> chunks;
+    try {
+      chunks = MappedFileChunker.split(inputFile, MappedFileChunker.defaultChunkCount());
+    } catch (IOException e) {
+      outputSink.close();
+      throw e;
+    }
+    logger.info(
+        "Pipeline: {} chunks, {} readers, {} parsers, {} shards, 1 writer",
+        chunks.size(),
+        readerThreads,
+        parserThreads,
+        shardThreads);
+
+    Parser[] parsers = new Parser[parserThreads];
+    for (int p = 0; p < parserThreads; p++) {
+      parsers[p] = new Parser(p);
+    }
+    Shard[] shards = new Shard[shardThreads];
+    for (int s = 0; s < shardThreads; s++) {
+      shards[s] = new Shard(s, parsers);
+    }
+    List<Thread> threads = new ArrayList<>();
+    for (int r = 0; r < readerThreads; r++) {
+      List<FileChunk> readerChunks = new ArrayList<>();
+      for (int c = r; c < chunks.size(); c += readerThreads) {
+        readerChunks.add(chunks.get(c));
+      }
+      List<Parser> readerParsers = new ArrayList<>();
+      for (int p = r; p < parserThreads; p += readerThreads) {
+        readerParsers.add(parsers[p]);
+      }
+      threads.add(stage("csa-reader-" + r, new Reader(readerChunks, readerParsers)));
+    }
+    for (Parser parser : parsers) {
+      threads.add(stage("csa-parser-" + parser.number, parser));
+    }
+    for (Shard shard : shards) {
+      threads.add(stage("csa-shard-" + shard.number, shard));
+    }
+    threads.add(stage("csa-writer", new Writer(shards, outputSink)));
+
+    threads.forEach(Thread::start);
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      fail(e);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the pipeline");
+    }
+    Throwable cause = failure.get();
+    if (cause != null) {
+      throw new IOException("Pipeline failed: " + cause.getMessage(), cause);
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug(
+          "Shard sizes: {}",
+          Arrays.toString(Arrays.stream(shards).mapToInt(shard -> shard.table.size()).toArray()));
+    }
+    return outputSink.getWriteCount();
+  }
+
+  private Thread stage(String name, Runnable body) {
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                body.run();
+              } catch (Aborted e) {
+                logger.debug("{} stopped after a failure of another stage", name);
+              } catch (Throwable e) {
+                logger.error("{} failed: {}", name, e.getMessage());
+                fail(e);
+              }
+            },
+            name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  private void fail(Throwable e) {
+    failure.compareAndSet(null, e);
+  }
+
+  /** Waits a little, more the longer nothing moves; stops the stage when the pipeline failed */
+  private int idle(int round) {
+    if (failure.get() != null) {
+      throw new Aborted();
+    }
+    if (round < SPIN_ROUNDS) {
+      // busy spin, the other side is usually only a few instructions behind
+    } else if (round < YIELD_ROUNDS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+    return round + 1;
+  }
+
+  private <T> void put(SpscRing<T> ring, T element) {
+    int round = 0;
+    while (!ring.offer(element)) {
+      round = idle(round);
+    }
+  }
+
+  private <T> T take(SpscRing<T> ring) {
+    int round = 0;
+    T element;
+    while ((element = ring.poll()) == null) {
+      round = idle(round);
+    }
+    return element;
+  }
+
+  private int shardOf(String id) {
+    int h = id.hashCode() * 0x9E3779B9;
+    return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % shardThreads;
+  }
+
+  /** Unwinds a stage after another stage failed */
+  private static class Aborted extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    Aborted() {
+      super(null, null, false, false);
+    }
+  }
+
+  /** Cuts chunks into blocks and hands them to the first of its parsers with a free slot */
+  private class Reader implements Runnable {
+    private final List<FileChunk> chunks;
+    private final List<Parser> parsers;
+    private int next = 0;
+
+    Reader(List<FileChunk> chunks, List<Parser> parsers) {
+      this.chunks = chunks;
+      this.parsers = parsers;
+    }
+
+    @Override
+    public void run() {
+      for (FileChunk chunk : chunks) {
+        int position = 0;
+        while (position < chunk.getLength()) {
+          FileChunk block = chunk.slice(position, BLOCK_SIZE);
+          position += block.getLength();
+          dispatch(block);
+        }
+      }
+      for (Parser parser : parsers) {
+        put(parser.blocks, END_OF_BLOCKS);
+      }
+    }
+
+    private void dispatch(FileChunk block) {
+      int round = 0;
+      while (true) {
+        for (int i = 0; i < parsers.size(); i++) {
+          Parser parser = parsers.get(next);
+          next = (next + 1) % parsers.size();
+          if (parser.blocks.offer(block)) {
+            return;
+          }
+        }
+        round = idle(round);
+      }
+    }
+  }
+
+  /** Parses blocks and routes the events in batches, one ring to every shard */
+  private class Parser implements Runnable {
+    private final int number;
+    private final SpscRing<FileChunk> blocks = new SpscRing<>(RING_CAPACITY);
+    private final List<SpscRing<InputEvent[]>> shardRings = new ArrayList<>();
+    private final InputEvent[][] batches = new InputEvent[shardThreads][BATCH_SIZE];
+    private final int[] sizes = new int[shardThreads];
+
+    Parser(int number) {
+      this.number = number;
+      for (int s = 0; s < shardThreads; s++) {
+        shardRings.add(new SpscRing<>(RING_CAPACITY));
+      }
+    }
+
+    @Override
+    public void run() {
+      FileChunk block;
+      while ((block = take(blocks)) != END_OF_BLOCKS) {
+        block.lines(InputEventFactory::buildEvent).forEach(this::route);
+      }
+      for (int s = 0; s < shardThreads; s++) {
+        if (sizes[s] > 0) {
+          put(shardRings.get(s), Arrays.copyOf(batches[s], sizes[s]));
+        }
+        put(shardRings.get(s), END_OF_INPUT);
+      }
+    }
+
+    private void route(InputEvent inputEvent) {
+      if (inputEvent == null) {
+        // not a valid line, already logged by the factory
+        return;
+      }
+      String id = inputEvent.getId();
+      if (id == null) {
+        throw new IllegalArgumentException("Input event without id");
+      }
+      int s = shardOf(id);
+      batches[s][sizes[s]++] = inputEvent;
+      if (sizes[s] == BATCH_SIZE) {
+        put(shardRings.get(s), batches[s]);
+        batches[s] = new InputEvent[BATCH_SIZE];
+        sizes[s] = 0;
+      }
+    }
+  }
+
+  /** Single writer of its table, passes the table to the writer when all parsers finished */
+  private class Shard implements Runnable {
+    private final int number;
+    private final List<SpscRing<InputEvent[]>> inputs = new ArrayList<>();
+    private final SpscRing<OutputEvent[]> output = new SpscRing<>(RING_CAPACITY);
+    private final OutputEventTable table = new OutputEventTable(tableCapacity);
+
+    Shard(int number, Parser[] parsers) {
+      this.number = number;
+      for (Parser parser : parsers) {
+        inputs.add(parser.shardRings.get(number));
+      }
+    }
+
+    @Override
+    public void run() {
+      consume();
+      OutputEvent[] batch = new OutputEvent[BATCH_SIZE];
+      int size = 0;
+      for (int entry = 0; entry < table.size(); entry++) {
+        batch[size++] = table.toOutputEvent(entry);
+        if (size == BATCH_SIZE) {
+          put(output, batch);
+          batch = new OutputEvent[BATCH_SIZE];
+          size = 0;
+        }
+      }
+      if (size > 0) {
+        put(output, Arrays.copyOf(batch, size));
+      }
+      put(output, END_OF_OUTPUT);
+    }
+
+    private void consume() {
+      boolean[] finished = new boolean[inputs.size()];
+      int remaining = inputs.size();
+      int round = 0;
+      while (remaining > 0) {
+        boolean moved = false;
+        for (int i = 0; i < inputs.size(); i++) {
+          if (finished[i]) {
+            continue;
+          }
+          InputEvent[] batch = inputs.get(i).poll();
+          if (batch == null) {
+            continue;
+          }
+          moved = true;
+          if (batch == END_OF_INPUT) {
+            finished[i] = true;
+            remaining--;
+            continue;
+          }
+          for (InputEvent inputEvent : batch) {
+            table.accept(inputEvent);
+          }
+        }
+        round = moved ? 0 : idle(round);
+      }
+    }
+  }
+
+  /** The only thread that calls the sink, takes the shards in order */
+  private class Writer implements Runnable {
+    private final Shard[] shards;
+    private final OutputSink outputSink;
+
+    Writer(Shard[] shards, OutputSink outputSink) {
+      this.shards = shards;
+      this.outputSink = outputSink;
+    }
+
+    @Override
+    public void run() {
+      boolean closed = false;
+      try {
+        for (Shard shard : shards) {
+          OutputEvent[] batch;
+          while ((batch = take(shard.output)) != END_OF_OUTPUT) {
+            for (OutputEvent outputEvent : batch) {
+              outputSink.write(outputEvent);
+            }
+          }
+        }
+        closed = true;
+        outputSink.close();
+      } catch (IOException e) {
+        logger.error("Output writer failed: {}", e.getMessage());
+        fail(e);
+      } finally {
+        if (!closed) {
+          try {
+            outputSink.close();
+          } catch (Throwable closeFailure) {
+            logger.debug("Can not close sink after failure: {}", closeFailure.getMessage());
+          }
+        }
+      }
+    }
+  }
+}
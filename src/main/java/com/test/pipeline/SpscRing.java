@@ -0,0 +1,92 @@
+package com.test.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code SpscRing} is a bounded single-producer single-consumer ring buffer. The slot array is
+ * allocated once, the producer and the consumer only publish their own counter with an ordered
+ * store, so the handoff needs neither locks nor compare-and-set. Each side caches the last seen
+ * counter of the other side and reads the shared one only when the ring looks full or empty.
+ *
+ * <p>Exactly one thread may call {@code offer} and exactly one thread may call {@code poll}.
+ *
+ * @param <T> type of elements
+ */
+public class SpscRing<T> {
+  private final Object[] slots;
+  private final int mask;
+
+  /** count of taken elements, written by the consumer */
+  private final AtomicLong head = new AtomicLong();
+  /** count of published elements, written by the producer */
+  private final AtomicLong tail = new AtomicLong();
+
+  private long cachedHead = 0;
+  private long cachedTail = 0;
+
+  /** @param capacity count of slots, rounded up to a power of two */
+  public SpscRing(int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Ring capacity out of range: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    slots = new Object[size];
+    mask = size - 1;
+  }
+
+  /** @return count of slots */
+  public int capacity() {
+    return slots.length;
+  }
+
+  /**
+   * Publishes an element, called by the producer only.
+   *
+   * @param element element, not null
+   * @return false when the ring is full
+   */
+  public boolean offer(T element) {
+    if (element == null) {
+      throw new NullPointerException("Ring element is null");
+    }
+    long t = tail.get();
+    if (t - cachedHead >= slots.length) {
+      cachedHead = head.get();
+      if (t - cachedHead >= slots.length) {
+        return false;
+      }
+    }
+    slots[(int) t & mask] = element;
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  /**
+   * Takes the oldest element, called by the consumer only.
+   *
+   * @return the element, or null when the ring is empty
+   */
+  @SuppressWarnings("unchecked")
+  public T poll() {
+    long h = head.get();
+    if (h >= cachedTail) {
+      cachedTail = tail.get();
+      if (h >= cachedTail) {
+        return null;
+      }
+    }
+    int slot = (int) h & mask;
+    T element = (T) slots[slot];
+    slots[slot] = null;
+    head.lazySet(h + 1);
+    return element;
+  }
+
+  /** @return approximate count of elements in the ring */
+  public int size() {
+    return (int) Math.max(0, tail.get() - head.get());
+  }
+}
@@ -0,0 +1,223 @@
+package com.test.plan;
+
+import com.test.aggregate.AggregationMode;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Settings chosen by {@code ExecutionPlanner} for a run: the aggregation mode, whether chunks, or
+ * the partitions of spill mode, are aggregated in parallel, the thread counts of the pipeline, the
+ * memory budget of spill mode and the capacity of the tables, with the estimated peak of the
+ * aggregation state and the reasons of the choice.
+ */
+public class ExecutionPlan {
+  private final InputProfile profile;
+  private final long maxHeap;
+  private final int processors;
+  private final AggregationMode aggregationMode;
+  private final boolean parallel;
+  private final int readerThreads;
+  private final int parserThreads;
+  private final int shardCount;
+  private final long memoryBudget;
+  private final int tableCapacity;
+  private final long estimatedPeakMemory;
+  private final List<String> reasons;
+
+  /**
+   * @param profile profile of the input
+   * @param maxHeap maximal heap size in bytes
+   * @param processors count of available processors
+   * @param aggregationMode chosen aggregation mode
+   * @param parallel aggregate chunks, or the partitions of spill mode, in parallel
+   * @param readerThreads count of reader threads of the pipeline
+   * @param parserThreads count of parser threads of the pipeline
+   * @param shardCount count of shard threads of the pipeline
+   * @param memoryBudget memory budget of spill mode in bytes
+   * @param tableCapacity count of ids the tables are sized for together
+   * @param estimatedPeakMemory estimated peak heap bytes of the aggregation state
+   * @param reasons reasons of the choice, in the order they were considered
+   */
+  public ExecutionPlan(
+      InputProfile profile,
+      long maxHeap,
+      int processors,
+      AggregationMode aggregationMode,
+      boolean parallel,
+      int readerThreads,
+      int parserThreads,
+      int shardCount,
+      long memoryBudget,
+      int tableCapacity,
+      long estimatedPeakMemory,
+      List<String> reasons) {
+    this.profile = profile;
+    this.maxHeap = maxHeap;
+    this.processors = processors;
+    this.aggregationMode = aggregationMode;
+    this.parallel = parallel;
+    this.readerThreads = readerThreads;
+    this.parserThreads = parserThreads;
+    this.shardCount = shardCount;
+    this.memoryBudget = memoryBudget;
+    this.tableCapacity = tableCapacity;
+    this.estimatedPeakMemory = estimatedPeakMemory;
+    this.reasons = reasons;
+  }
+
+  /** @return profile of the input */
+  public InputProfile getProfile() {
+    return profile;
+  }
+
+  /** @return chosen aggregation mode */
+  public AggregationMode getAggregationMode() {
+    return aggregationMode;
+  }
+
+  /** @return true when chunks, or the partitions of spill mode, are aggregated in parallel */
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  /** @return count of reader threads of the pipeline */
+  public int getReaderThreads() {
+    return readerThreads;
+  }
+
+  /** @return count of parser threads of the pipeline */
+  public int getParserThreads() {
+    return parserThreads;
+  }
+
+  /** @return count of shard threads of the pipeline */
+  public int getShardCount() {
+    return shardCount;
+  }
+
+  /** @return memory budget of spill mode in bytes */
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * @return count of ids the tables are sized for together, tables that aggregate at the same time
+   *     get their share of it
+   */
+  public int getTableCapacity() {
+    return tableCapacity;
+  }
+
+  /** @return estimated peak heap bytes of the aggregation state */
+  public long getEstimatedPeakMemory() {
+    return estimatedPeakMemory;
+  }
+
+  /** @return reasons of the choice */
+  public List<String> getReasons() {
+    return reasons;
+  }
+
+  /** @return readable description of the input profile, the plan and its reasons */
+  public String explain() {
+    StringBuilder text = new StringBuilder();
+    text.append(
+        String.format(
+            Locale.ROOT,
+            "Input: %s, %s sampled%s%n",
+            bytes(profile.getInputSize()),
+            bytes(profile.getSampledBytes()),
+            profile.isComplete() ? " (whole input)" : ""));
+    text.append(
+        String.format(
+            Locale.ROOT,
+            "  lines: %d sampled, ~%d estimated, %.1f bytes per event, %d not valid%n",
+            profile.getSampledLines(),
+            profile.getEstimatedLines(),
+            profile.getBytesPerEvent(),
+            profile.getParseFailures()));
+    text.append(
+        String.format(
+            Locale.ROOT,
+            "  ids: %d sampled, ~%d estimated, %.1f bytes per id, %.2f events per id, "
+                + "%.2f%% orphans, %d with events after completion%n",
+            profile.getSampledIds(),
+            profile.getEstimatedIds(),
+            profile.getMeanIdLength(),
+            profile.getEventsPerId(),
+            profile.getOrphanRatio() * 100,
+            profile.getRepeatedIds()));
+    text.append(
+        String.format(
+            Locale.ROOT,
+            "  reordering: %d lines at most, %d lines at the 99th percentile, "
+                + "%d open ids at most%n",
+            profile.getMaxReorderDistance(),
+            profile.getP99ReorderDistance(),
+            profile.getOpenIdsPeak()));
+    text.append(
+        String.format(
+            Locale.ROOT, "Machine: %s maximum heap, %d processors%n", bytes(maxHeap), processors));
+    text.append(
+        String.format(
+            Locale.ROOT,
+            "Plan: %s aggregation, %s%s, table capacity %d%n",
+            aggregationMode.name().toLowerCase(Locale.ROOT),
+            !parallel
+                ? "single thread"
+                : aggregationMode == AggregationMode.SPILL
+                    ? "partitions in parallel on " + processors + " threads"
+                    : "parallel on " + processors + " threads",
+            aggregationMode == AggregationMode.SPILL
+                ? ", memory budget " + bytes(memoryBudget)
+                : "",
+            tableCapacity));
+    text.append(
+        String.format(
+            Locale.ROOT,
+            "Pipeline: %d reader, %d parser and %d shard threads%n",
+            readerThreads,
+            parserThreads,
+            shardCount));
+    text.append(
+        String.format(
+            Locale.ROOT, "Estimated peak memory: %s%n", bytes(estimatedPeakMemory)));
+    for (String reason : reasons) {
+      text.append("  - ").append(reason).append(String.format("%n"));
+    }
+    return text.toString();
+  }
+
+  /**
+   * @param bytes count of bytes
+   * @return count with a binary unit, like {@code 1.5 GB}
+   */
+  static String bytes(long bytes) {
+    String[] units = {"B", "KB", "MB", "GB", "TB"};
+    double value = bytes;
+    int unit = 0;
+    while (value >= 1024 && unit < units.length - 1) {
+      value /= 1024;
+      unit++;
+    }
+    return unit == 0
+        ? bytes + " B"
+        : String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "mode=%s, parallel=%s, readerThreads=%s, parserThreads=%s, shardCount=%s, "
+            + "memoryBudget=%s, tableCapacity=%s, estimatedPeakMemory=%s",
+        aggregationMode,
+        parallel,
+        readerThreads,
+        parserThreads,
+        shardCount,
+        memoryBudget,
+        tableCapacity,
+        estimatedPeakMemory);
+  }
+}
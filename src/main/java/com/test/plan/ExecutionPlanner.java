@@ -0,0 +1,189 @@
+package com.test.plan;
+
+import com.test.aggregate.AggregationMode;
+import com.test.aggregate.OutputEventTable;
+import com.test.input.MappedFileChunker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code ExecutionPlanner} chooses how an input is aggregated from its {@code InputProfile}, the
+ * maximal heap and the processors, in place of the choice between the parallel default and {@code
+ * -st} by hand:
+ *
+ * <ul>
+ *   <li>table mode on all processors when the input is large enough to be split and the chunk
+ *       tables and the merged table fit into the heap share of the aggregation,
+ *   <li>table mode on one thread when one table fits,
+ *   <li>spill mode otherwise, with half of the heap share as its memory budget; the partitions of
+ *       an input large enough to be split are aggregated on all processors, sharing the budget.
+ * </ul>
+ *
+ * <p>Streaming mode is never chosen: it writes an id with events after its completion twice, and a
+ * sample of the head of the input can not rule such ids out for the rest of it. The reasons of a
+ * spill plan tell whether streaming would fit, so it can be chosen by hand.
+ *
+ * <p>The pipeline gets one reader thread, half of the processors parse and the remaining ones
+ * aggregate, inputs too small to be split get one thread of each stage. The tables are sized for
+ * the estimated ids together, spill mode for the ids that fit into its budget, so they do not
+ * grow while the input is read. Estimates from a sample are raised by a margin for ids the sample
+ * did not see.
+ */
+public class ExecutionPlanner {
+  /** share of the maximal heap the aggregation state may use, the rest is left to the output */
+  static final double HEAP_SHARE = 0.6;
+  /** smaller inputs are aggregated on one thread, splitting them does not pay off */
+  static final long PARALLEL_THRESHOLD = 8 << 20;
+  /** heap bytes of an open id of streaming aggregation besides the chars of its id */
+  static final long OPEN_ID_BYTES = 180;
+  /** margin of the estimates from a sample that does not cover the whole input */
+  static final double ESTIMATE_MARGIN = 1.25;
+  static final int MAX_TABLE_CAPACITY = 1 << 28;
+  /** one thread reads the input of the pipeline, it is faster than the parsers */
+  static final int READER_THREADS = 1;
+
+  private final long maxHeap;
+  private final int processors;
+  private final int chunkCount;
+
+  /**
+   * @param maxHeap maximal heap size in bytes
+   * @param processors count of available processors
+   */
+  public ExecutionPlanner(long maxHeap, int processors) {
+    this.maxHeap = maxHeap;
+    this.processors = processors;
+    this.chunkCount = processors * MappedFileChunker.CHUNKS_PER_PROCESSOR;
+  }
+
+  /** @return planner for the heap and the processors of the running JVM */
+  public static ExecutionPlanner forRuntime() {
+    return new ExecutionPlanner(
+        Runtime.getRuntime().maxMemory(), Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param profile profile of the input
+   * @return plan of the run
+   */
+  public ExecutionPlan plan(InputProfile profile) {
+    List<String> reasons = new ArrayList<>();
+    long usable = (long) (maxHeap * HEAP_SHARE);
+    double margin = profile.isComplete() ? 1 : ESTIMATE_MARGIN;
+    long ids = (long) Math.ceil(profile.getEstimatedIds() * margin);
+    double idLength = profile.getMeanIdLength();
+    long table = OutputEventTable.estimateMemoryUsage(ids, idLength);
+    reasons.add(
+        String.format(
+            "a table of ~%d ids takes %s, %s of the heap may hold aggregation state",
+            ids, ExecutionPlan.bytes(table), ExecutionPlan.bytes(usable)));
+
+    boolean split = processors > 1 && profile.getInputSize() >= PARALLEL_THRESHOLD;
+    if (split && 2 * table <= usable) {
+      reasons.add(
+          String.format(
+              "the chunk tables and the merged table fit, %d chunks are aggregated on %d threads",
+              chunkCount, processors));
+      return newPlan(
+          profile,
+          AggregationMode.TABLE,
+          true,
+          split,
+          usable / 2,
+          capacity(ids),
+          2 * table,
+          reasons);
+    }
+    if (table <= usable) {
+      if (split) {
+        reasons.add("the chunk tables and the merged table do not fit, one table is built");
+      } else if (processors > 1) {
+        reasons.add(
+            String.format(
+                "the input is smaller than %s, it is not split",
+                ExecutionPlan.bytes(PARALLEL_THRESHOLD)));
+      } else {
+        reasons.add("there is a single processor");
+      }
+      return newPlan(
+          profile,
+          AggregationMode.TABLE,
+          false,
+          split,
+          usable / 2,
+          capacity(ids),
+          table,
+          reasons);
+    }
+
+    long openIds =
+        (long) Math.ceil(
+            (profile.getOpenIdsPeak() + profile.getOrphanRatio() * ids) * margin);
+    long streaming = (long) (openIds * (OPEN_ID_BYTES + 2 * idLength));
+    reasons.add("the table does not fit, ids over the memory budget are partitioned into files");
+    if (profile.getRepeatedIds() > 0) {
+      reasons.add(
+          String.format(
+              "streaming would write the %d sampled ids with events after their completion twice",
+              profile.getRepeatedIds()));
+    } else if (streaming <= usable) {
+      reasons.add(
+          String.format(
+              "streaming (-am streaming) would keep ~%d open ids in %s, it is not chosen: it "
+                  + "writes ids with events after their completion twice, a sample can not rule "
+                  + "them out",
+              openIds, ExecutionPlan.bytes(streaming)));
+    } else {
+      reasons.add(
+          String.format(
+              "~%d open ids of streaming take %s, they do not fit either",
+              openIds, ExecutionPlan.bytes(streaming)));
+    }
+    if (split) {
+      reasons.add(
+          String.format(
+              "the partitions are aggregated on %d threads, they share the memory budget",
+              processors));
+    }
+    return newPlan(
+        profile,
+        AggregationMode.SPILL,
+        split,
+        split,
+        usable / 2,
+        capacity((long) (ids * ((double) (usable / 2) / table))),
+        usable / 2,
+        reasons);
+  }
+
+  private ExecutionPlan newPlan(
+      InputProfile profile,
+      AggregationMode aggregationMode,
+      boolean parallel,
+      boolean split,
+      long memoryBudget,
+      int tableCapacity,
+      long estimatedPeakMemory,
+      List<String> reasons) {
+    int parserThreads = split ? Math.max(1, processors / 2) : 1;
+    int shardCount = split ? Math.max(1, processors - parserThreads - READER_THREADS) : 1;
+    return new ExecutionPlan(
+        profile,
+        maxHeap,
+        processors,
+        aggregationMode,
+        parallel,
+        READER_THREADS,
+        parserThreads,
+        shardCount,
+        memoryBudget,
+        tableCapacity,
+        estimatedPeakMemory,
+        reasons);
+  }
+
+  private static int capacity(long ids) {
+    return (int) Math.min(MAX_TABLE_CAPACITY, Math.max(ids, 16));
+  }
+}
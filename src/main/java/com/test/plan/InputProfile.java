@@ -0,0 +1,290 @@
+package com.test.plan;
+
+import com.test.event.InputEventScanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of the head of an input file, the input of {@code ExecutionPlanner}: lines and bytes
+ * per event, distinct ids and their length, and how far the events of an id are apart. The lines
+ * are scanned with an own {@code InputEventScanner}, so sampling does not count as processing in
+ * {@code ProcessingMetrics}.
+ *
+ * <p>Ids are followed with the rules of streaming aggregation: an id is open from its first event
+ * until both STARTED and FINISHED were seen. The reordering distance of an id is the count of lines
+ * from its first event to the event that completed it. Ids still open at the end of the sample
+ * although they were first seen more than the longest reordering distance before it are counted as
+ * orphans, they would stay open to the end of the input.
+ */
+public class InputProfile {
+  public static final long DEFAULT_SAMPLE_SIZE = 16 << 20;
+
+  private final long inputSize;
+  private final long sampledBytes;
+  private final long sampledLines;
+  private final long parseFailures;
+  private final long sampledIds;
+  private final double meanIdLength;
+  private final long repeatedIds;
+  private final long openIdsPeak;
+  private final long orphanIds;
+  private final long maxReorderDistance;
+  private final long p99ReorderDistance;
+
+  /** State of an id while the sample is scanned */
+  private static class IdState {
+    final long firstLine;
+    boolean started;
+    boolean finished;
+    boolean repeated;
+
+    IdState(long firstLine) {
+      this.firstLine = firstLine;
+    }
+
+    boolean isComplete() {
+      return started && finished;
+    }
+  }
+
+  /**
+   * @param inputSize size of the whole input in bytes
+   * @param sampledBytes bytes of the complete lines sampled
+   * @param sampledLines count of lines sampled
+   * @param parseFailures count of sampled lines that are not valid events
+   * @param sampledIds count of distinct ids in the sample
+   * @param meanIdLength mean length of the ids in UTF-8 bytes
+   * @param repeatedIds count of ids with events after the event that completed them
+   * @param openIdsPeak maximal count of open ids while the sample is scanned
+   * @param orphanIds count of ids that are not expected to complete
+   * @param maxReorderDistance maximal count of lines between the first and the completing event
+   * @param p99ReorderDistance 99th percentile of the reordering distances
+   */
+  public InputProfile(
+      long inputSize,
+      long sampledBytes,
+      long sampledLines,
+      long parseFailures,
+      long sampledIds,
+      double meanIdLength,
+      long repeatedIds,
+      long openIdsPeak,
+      long orphanIds,
+      long maxReorderDistance,
+      long p99ReorderDistance) {
+    this.inputSize = inputSize;
+    this.sampledBytes = sampledBytes;
+    this.sampledLines = sampledLines;
+    this.parseFailures = parseFailures;
+    this.sampledIds = sampledIds;
+    this.meanIdLength = meanIdLength;
+    this.repeatedIds = repeatedIds;
+    this.openIdsPeak = openIdsPeak;
+    this.orphanIds = orphanIds;
+    this.maxReorderDistance = maxReorderDistance;
+    this.p99ReorderDistance = p99ReorderDistance;
+  }
+
+  /**
+   * Scans the complete lines in the first bytes of the input.
+   *
+   * @param input input file
+   * @param sampleSize maximal count of bytes to sample
+   * @return profile of the input
+   * @throws IOException
+   */
+  public static InputProfile sample(Path input, long sampleSize) throws IOException {
+    ByteBuffer buffer;
+    long inputSize;
+    try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+      inputSize = channel.size();
+      buffer = ByteBuffer.allocate((int) Math.min(inputSize, Math.max(0, sampleSize)));
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // read the whole sample
+      }
+    }
+    int limit = buffer.position();
+    if (limit < inputSize) {
+      // a line cut by the end of the sample is left out
+      while (limit > 0 && buffer.get(limit - 1) != '\n') {
+        limit--;
+      }
+    }
+
+    InputEventScanner scanner = new InputEventScanner();
+    Map<String, IdState> ids = new HashMap<>();
+    List<Long> distances = new ArrayList<>();
+    long lines = 0;
+    long failures = 0;
+    long idBytes = 0;
+    long repeated = 0;
+    long open = 0;
+    long openPeak = 0;
+    int position = 0;
+    while (position < limit) {
+      int end = position;
+      while (end < limit && buffer.get(end) != '\n') {
+        end++;
+      }
+      int lineEnd = end > position && buffer.get(end - 1) == '\r' ? end - 1 : end;
+      long line = lines++;
+      String id = null;
+      try {
+        scanner.scan(buffer, position, lineEnd);
+        id = scanner.getId();
+      } catch (IllegalArgumentException e) {
+        // counted below
+      }
+      position = end + 1;
+      if (id == null) {
+        failures++;
+        continue;
+      }
+
+      IdState state = ids.get(id);
+      if (state == null) {
+        state = new IdState(line);
+        ids.put(id, state);
+        idBytes += id.getBytes(StandardCharsets.UTF_8).length;
+        openPeak = Math.max(openPeak, ++open);
+      } else if (state.isComplete()) {
+        if (!state.repeated) {
+          state.repeated = true;
+          repeated++;
+        }
+        continue;
+      }
+      int stateCode = scanner.getStateCode();
+      state.started |= stateCode == InputEventScanner.STATE_STARTED;
+      state.finished |= stateCode == InputEventScanner.STATE_FINISHED;
+      if (state.isComplete()) {
+        open--;
+        distances.add(line - state.firstLine);
+      }
+    }
+
+    Collections.sort(distances);
+    long maxDistance = distances.isEmpty() ? 0 : distances.get(distances.size() - 1);
+    long p99Distance =
+        distances.isEmpty() ? 0 : distances.get((int) ((distances.size() - 1) * 0.99));
+    long orphans = 0;
+    for (IdState state : ids.values()) {
+      if (!state.isComplete() && state.firstLine < lines - maxDistance) {
+        orphans++;
+      }
+    }
+    return new InputProfile(
+        inputSize,
+        limit,
+        lines,
+        failures,
+        ids.size(),
+        ids.isEmpty() ? 0 : (double) idBytes / ids.size(),
+        repeated,
+        openPeak,
+        orphans,
+        maxDistance,
+        p99Distance);
+  }
+
+  /** @return size of the whole input in bytes */
+  public long getInputSize() {
+    return inputSize;
+  }
+
+  /** @return bytes of the complete lines sampled */
+  public long getSampledBytes() {
+    return sampledBytes;
+  }
+
+  /** @return true when the sample covers the whole input */
+  public boolean isComplete() {
+    return sampledBytes >= inputSize;
+  }
+
+  /** @return count of lines sampled */
+  public long getSampledLines() {
+    return sampledLines;
+  }
+
+  /** @return count of sampled lines that are not valid events */
+  public long getParseFailures() {
+    return parseFailures;
+  }
+
+  /** @return count of distinct ids in the sample */
+  public long getSampledIds() {
+    return sampledIds;
+  }
+
+  /** @return mean length of the ids in UTF-8 bytes */
+  public double getMeanIdLength() {
+    return meanIdLength;
+  }
+
+  /** @return count of ids with events after the event that completed them */
+  public long getRepeatedIds() {
+    return repeatedIds;
+  }
+
+  /** @return maximal count of open ids while the sample was scanned */
+  public long getOpenIdsPeak() {
+    return openIdsPeak;
+  }
+
+  /** @return count of sampled ids that are not expected to complete */
+  public long getOrphanIds() {
+    return orphanIds;
+  }
+
+  /** @return maximal count of lines between the first and the completing event of an id */
+  public long getMaxReorderDistance() {
+    return maxReorderDistance;
+  }
+
+  /** @return 99th percentile of the reordering distances */
+  public long getP99ReorderDistance() {
+    return p99ReorderDistance;
+  }
+
+  /** @return mean count of bytes per line */
+  public double getBytesPerEvent() {
+    return sampledLines == 0 ? 0 : (double) sampledBytes / sampledLines;
+  }
+
+  /** @return mean count of lines per id */
+  public double getEventsPerId() {
+    return sampledIds == 0 ? 0 : (double) (sampledLines - parseFailures) / sampledIds;
+  }
+
+  /** @return estimated count of lines of the whole input */
+  public long getEstimatedLines() {
+    if (isComplete() || sampledBytes == 0) {
+      return sampledLines;
+    }
+    return (long) (inputSize / getBytesPerEvent());
+  }
+
+  /** @return estimated count of distinct ids of the whole input, ids per line as in the sample */
+  public long getEstimatedIds() {
+    if (isComplete() || sampledLines == 0) {
+      return sampledIds;
+    }
+    return (long) ((double) getEstimatedLines() * sampledIds / sampledLines);
+  }
+
+  /** @return fraction of the sampled ids that are not expected to complete */
+  public double getOrphanRatio() {
+    return sampledIds == 0 ? 0 : (double) orphanIds / sampledIds;
+  }
+}
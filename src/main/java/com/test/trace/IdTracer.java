@@ -0,0 +1,95 @@
+package com.test.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@code IdTracer} follows selected ids through the stages of processing: parse, accept, combine
+ * and emit. Every stage an id passes is logged at info level by the logger of this class, with the
+ * state after the stage, so one id can be chased without debug logging of every event.
+ *
+ * <p>Ids are selected by name, by a sampled fraction of their hashes or both. Sampling depends only
+ * on the id, so a sampled id is traced in every stage and in every run. Call sites check {@code
+ * isEnabled} first: while tracing is disabled, which is the default, that is a load of a static
+ * field and no id is hashed and no state is formatted. Tracing is configured before processing
+ * starts, the setting is not published to threads that are already running.
+ */
+public final class IdTracer {
+  private static final Logger logger = LoggerFactory.getLogger(IdTracer.class);
+
+  public static final String PARSE = "parse";
+  public static final String ACCEPT = "accept";
+  public static final String COMBINE = "combine";
+  public static final String EMIT = "emit";
+
+  private static final long HASH_RANGE = 1L << 32;
+
+  private static boolean enabled = false;
+  private static Set<String> ids = Collections.emptySet();
+  // ids with a mixed hash below the threshold are sampled
+  private static long sampleThreshold = 0;
+
+  private IdTracer() {}
+
+  /**
+   * Enables tracing of the given ids and of a sampled fraction of all ids. Tracing is disabled
+   * when there are neither ids nor a sample.
+   *
+   * @param tracedIds ids to trace
+   * @param sampleRatio fraction of ids to trace, from 0 to 1
+   */
+  public static void configure(Collection<String> tracedIds, double sampleRatio) {
+    if (sampleRatio < 0 || sampleRatio > 1) {
+      throw new IllegalArgumentException("Sample ratio must be between 0 and 1: " + sampleRatio);
+    }
+    ids = Collections.unmodifiableSet(new HashSet<>(tracedIds));
+    sampleThreshold = (long) (sampleRatio * HASH_RANGE);
+    enabled = !ids.isEmpty() || sampleThreshold > 0;
+    if (enabled) {
+      logger.info("Tracing ids {} and a sample of {} of all ids", ids, sampleRatio);
+    }
+  }
+
+  /** Disables tracing */
+  public static void disable() {
+    configure(Collections.emptySet(), 0);
+  }
+
+  /** @return true when some ids are traced, call sites check it before anything else */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param id id, may be null
+   * @return true when the id is traced
+   */
+  public static boolean traces(String id) {
+    return enabled && id != null && (ids.contains(id) || sampled(id));
+  }
+
+  private static boolean sampled(String id) {
+    // String.hashCode is weak in its low bits for ids sharing a prefix, so it is mixed first
+    int hash = id.hashCode() * 0x9E3779B9;
+    hash ^= hash >>> 16;
+    return (hash & 0xFFFFFFFFL) < sampleThreshold;
+  }
+
+  /**
+   * Logs a stage of an id when the id is traced.
+   *
+   * @param stage processing stage
+   * @param id id
+   * @param state event or state of the id after the stage, formatted only when it is logged
+   */
+  public static void trace(String stage, String id, Object state) {
+    if (traces(id)) {
+      logger.info("{} {}: {}", stage, id, state);
+    }
+  }
+}
@@ -1,29 +1,39 @@
 package com.test;
 
+import com.test.aggregate.AggregationMode;
+import com.test.event.OutputEvent;
+import com.test.event.OutputFormat;
+import com.test.generate.LoadGenerator;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 public class CsaEventProcessorTest {
   private static final String INPUT_FILE_NAME =
       System.getProperty("user.dir")
           + "/src/test/resources/input.log".replaceAll("/", File.separator);
   private static final String BIG_INPUT_FILE_NAME = "/src/test/resources/big_input.log";
-  private static final String BIG_TEMPLATE_FILE_NAME = "/src/test/resources/big_template.log";
   private static final String OUTPUT_FILE_NAME =
       "src/test/resources/output.csv".replaceAll("/", File.separator);
+  private static final String CSV_OUTPUT_FILE_NAME =
+      "src/test/resources/csv_output.csv".replaceAll("/", File.separator);
   private static final String BIG_OUTPUT_FILE_NAME =
       "src/test/resources/big_output.csv".replaceAll("/", File.separator);
   private static final String ETALON_OUTPUT_FILE_NAME =
@@ -35,8 +45,21 @@ public class CsaEventProcessorTest {
           + "testdb"
           + ";shutdown=true";
 
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
   private CsaEventProcessor app;
 
+  /** @return copy of the input with lines that are not valid events between its lines */
+  private String invalidLinesInput(String... invalidLines) throws IOException {
+    List<String> lines = new ArrayList<>(Files.readAllLines(new File(INPUT_FILE_NAME).toPath()));
+    for (int i = 0; i < invalidLines.length; i++) {
+      lines.add(2 * i + 1, invalidLines[i]);
+    }
+    Path input = folder.getRoot().toPath().resolve("invalid.log");
+    Files.write(input, lines);
+    return input.toString();
+  }
+
   @Before
   public void setUp() {
     app = new CsaEventProcessor();
@@ -136,6 +159,27 @@ public class CsaEventProcessorTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public void getFileInputEventStreamSkipsInvalidLines() throws IOException {
+    String input = invalidLinesInput("not an event", "{\"id\":\"scsmbstgrd\"");
+    List<String> expected =
+        Arrays.asList(
+            "id=scsmbstgra, duration=5, type=APPLICATION_LOG, host=12345, alert=true",
+            "id=scsmbstgrb, duration=3, type=null, host=null, alert=false",
+            "id=scsmbstgrc, duration=8, type=null, host=null, alert=true");
+    for (boolean parallelMode : new boolean[] {false, true}) {
+      List<String> actual =
+          app.getOutputEventsStream(
+                  parallelMode
+                      ? app.getFileInputEventStream(input).parallel()
+                      : app.getFileInputEventStream(input))
+              .map(Object::toString)
+              .sorted()
+              .collect(Collectors.toList());
+      assertEquals(String.valueOf(parallelMode), expected, actual);
+    }
+  }
+
   @Test
   public void getOutputEventsStreamFilter3() throws IOException {
     String expected = "id=scsmbstgrc, duration=8, type=null, host=null, alert=true";
@@ -159,6 +203,69 @@ public class CsaEventProcessorTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public void getOutputEventsStreamStreaming() throws IOException {
+    app.setAggregationMode(AggregationMode.STREAMING);
+    List<String> expected =
+        Arrays.asList(
+            "id=scsmbstgra, duration=5, type=APPLICATION_LOG, host=12345, alert=true",
+            "id=scsmbstgrc, duration=8, type=null, host=null, alert=true",
+            "id=scsmbstgrb, duration=3, type=null, host=null, alert=false");
+    List<String> actual =
+        app.getOutputEventsStream(app.getFileInputEventStream(INPUT_FILE_NAME))
+            .map(OutputEvent::toString)
+            .collect(Collectors.toList());
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void getFileOutputEventsStreamTable() throws IOException {
+    app.setAggregationMode(AggregationMode.TABLE);
+    List<String> expected =
+        Arrays.asList(
+            "id=scsmbstgra, duration=5, type=APPLICATION_LOG, host=12345, alert=true",
+            "id=scsmbstgrb, duration=3, type=null, host=null, alert=false",
+            "id=scsmbstgrc, duration=8, type=null, host=null, alert=true");
+    for (boolean parallelMode : new boolean[] {false, true}) {
+      List<String> actual =
+          app.getFileOutputEventsStream(INPUT_FILE_NAME, parallelMode)
+              .map(OutputEvent::toString)
+              .sorted()
+              .collect(Collectors.toList());
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void getFileOutputEventsStreamSkipsInvalidLines() throws IOException {
+    String input =
+        invalidLinesInput(
+            "not an event", "{\"id\":\"scsmbstgrd\"", "{\"state\":\"STARTED\",\"timestamp\":2}");
+    List<String> expected =
+        Arrays.asList(
+            "id=scsmbstgra, duration=5, type=APPLICATION_LOG, host=12345, alert=true",
+            "id=scsmbstgrb, duration=3, type=null, host=null, alert=false",
+            "id=scsmbstgrc, duration=8, type=null, host=null, alert=true");
+    for (AggregationMode mode :
+        new AggregationMode[] {
+          AggregationMode.GROUPING,
+          AggregationMode.STREAMING,
+          AggregationMode.TABLE,
+          AggregationMode.SPILL,
+          AggregationMode.SHARDED
+        }) {
+      app.setAggregationMode(mode);
+      for (boolean parallelMode : new boolean[] {false, true}) {
+        List<String> actual =
+            app.getFileOutputEventsStream(input, parallelMode)
+                .map(OutputEvent::toString)
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(mode + " " + parallelMode, expected, actual);
+      }
+    }
+  }
+
   @Test
   public void processOutputEventStream() throws IOException, SQLException {
     File outputFile = new File(getFullFileName(OUTPUT_FILE_NAME));
@@ -178,6 +285,160 @@ public class CsaEventProcessorTest {
         Files.readAllLines(etalonOutputFile.toPath()), Files.readAllLines(outputFile.toPath()));
   }
 
+  @Test
+  public void processOutputEventStreamBatched() throws IOException, SQLException {
+    File outputFile = new File(getFullFileName(OUTPUT_FILE_NAME));
+    if (outputFile.exists()) {
+      outputFile.delete();
+    }
+
+    File etalonOutputFile = new File(getFullFileName(ETALON_OUTPUT_FILE_NAME));
+
+    app.setBatchSize(2);
+    long count =
+        app.processOutputEventStream(
+            app.getOutputEventsStream(app.getFileInputEventStream(INPUT_FILE_NAME).parallel())
+                .parallel(),
+            WORK_DB_URI,
+            OUTPUT_FILE_NAME);
+
+    assertArrayEquals(
+        Files.readAllBytes(etalonOutputFile.toPath()), Files.readAllBytes(outputFile.toPath()));
+    assertEquals(3, count);
+  }
+
+  @Test
+  public void processOutputEventStreamParallelOrder() throws IOException, SQLException {
+    List<OutputEvent> outputEvents = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      outputEvents.add(OutputEvent.restore("id" + i, i, 2 * i, "type" + i % 7, null, true));
+    }
+    File outputFile = new File(getFullFileName(OUTPUT_FILE_NAME));
+    File csvOutputFile = new File(getFullFileName(CSV_OUTPUT_FILE_NAME));
+
+    app.processOutputEventStreamToCsv(outputEvents.stream(), csvOutputFile.getPath());
+    byte[] expected = Files.readAllBytes(csvOutputFile.toPath());
+
+    assertEquals(
+        outputEvents.size(),
+        app.processOutputEventStreamToCsv(outputEvents.parallelStream(), csvOutputFile.getPath()));
+    assertArrayEquals(expected, Files.readAllBytes(csvOutputFile.toPath()));
+
+    assertEquals(
+        outputEvents.size(),
+        app.processOutputEventStream(outputEvents.parallelStream(), WORK_DB_URI, OUTPUT_FILE_NAME));
+    assertArrayEquals(expected, Files.readAllBytes(outputFile.toPath()));
+
+    File[] leftovers =
+        outputFile.getParentFile().listFiles((dir, name) -> name.contains(".shard-"));
+    assertEquals(0, leftovers.length);
+    csvOutputFile.delete();
+  }
+
+  @Test
+  public void processOutputEventStreamEmpty() throws IOException, SQLException {
+    File outputFile = new File(getFullFileName(OUTPUT_FILE_NAME));
+
+    assertEquals(
+        0, app.processOutputEventStream(Stream.empty(), WORK_DB_URI, OUTPUT_FILE_NAME));
+    assertEquals(0, outputFile.length());
+  }
+
+  @Test
+  public void processOutputEventStreamToCsv() throws IOException {
+    File outputFile = new File(getFullFileName(CSV_OUTPUT_FILE_NAME));
+    if (outputFile.exists()) {
+      outputFile.delete();
+    }
+
+    File etalonOutputFile = new File(getFullFileName(ETALON_OUTPUT_FILE_NAME));
+
+    long count =
+        app.processOutputEventStreamToCsv(
+            app.getOutputEventsStream(app.getFileInputEventStream(INPUT_FILE_NAME)),
+            outputFile.getPath());
+
+    assertArrayEquals(
+        Files.readAllBytes(etalonOutputFile.toPath()), Files.readAllBytes(outputFile.toPath()));
+    assertEquals(3, count);
+    outputFile.delete();
+  }
+
+  @Test
+  public void processOutputEventsCsvSink() throws IOException, SQLException {
+    File outputFile = new File(getFullFileName(CSV_OUTPUT_FILE_NAME));
+    File etalonOutputFile = new File(getFullFileName(ETALON_OUTPUT_FILE_NAME));
+
+    app.setOutputFormat(OutputFormat.CSV);
+    long count =
+        app.processOutputEvents(
+            app.getOutputEventsStream(app.getFileInputEventStream(INPUT_FILE_NAME).parallel())
+                .parallel(),
+            app.createOutputSink(null, outputFile.getPath()));
+
+    assertArrayEquals(
+        Files.readAllBytes(etalonOutputFile.toPath()), Files.readAllBytes(outputFile.toPath()));
+    assertEquals(3, count);
+    outputFile.delete();
+  }
+
+  @Test
+  public void processPipelineCsvSink() throws IOException, SQLException {
+    File outputFile = new File(getFullFileName(CSV_OUTPUT_FILE_NAME));
+    File etalonOutputFile = new File(getFullFileName(ETALON_OUTPUT_FILE_NAME));
+
+    app.setOutputFormat(OutputFormat.CSV);
+    app.setReaderThreads(1);
+    app.setParserThreads(2);
+    app.setShardCount(2);
+    long count =
+        app.processPipeline(INPUT_FILE_NAME, app.createOutputSink(null, outputFile.getPath()));
+
+    assertEquals(
+        Files.readAllLines(etalonOutputFile.toPath()).stream().sorted().collect(Collectors.toList()),
+        Files.readAllLines(outputFile.toPath()).stream().sorted().collect(Collectors.toList()));
+    assertEquals(3, count);
+    outputFile.delete();
+  }
+
+  @Test
+  public void processPipelineSkipsInvalidLines() throws IOException, SQLException {
+    String input = invalidLinesInput("not an event", "{\"state\":\"STARTED\",\"timestamp\":2}");
+    File outputFile = new File(getFullFileName(CSV_OUTPUT_FILE_NAME));
+    File etalonOutputFile = new File(getFullFileName(ETALON_OUTPUT_FILE_NAME));
+
+    app.setOutputFormat(OutputFormat.CSV);
+    app.setReaderThreads(1);
+    app.setParserThreads(2);
+    app.setShardCount(2);
+    long count = app.processPipeline(input, app.createOutputSink(null, outputFile.getPath()));
+
+    assertEquals(
+        Files.readAllLines(etalonOutputFile.toPath()).stream().sorted().collect(Collectors.toList()),
+        Files.readAllLines(outputFile.toPath()).stream().sorted().collect(Collectors.toList()));
+    assertEquals(3, count);
+    outputFile.delete();
+  }
+
+  @Test
+  public void processCheckpointedCsv() throws IOException {
+    File outputFile = new File(getFullFileName(CSV_OUTPUT_FILE_NAME));
+    File etalonOutputFile = new File(getFullFileName(ETALON_OUTPUT_FILE_NAME));
+    File checkpointFile = new File(getFullFileName(CSV_OUTPUT_FILE_NAME + ".checkpoint"));
+
+    app.setOutputFormat(OutputFormat.CSV);
+    app.setCheckpointFile(checkpointFile.toPath());
+    app.setResume(true);
+    long count = app.processCheckpointed(INPUT_FILE_NAME, outputFile.getPath());
+
+    assertEquals(
+        Files.readAllLines(etalonOutputFile.toPath()).stream().sorted().collect(Collectors.toList()),
+        Files.readAllLines(outputFile.toPath()).stream().sorted().collect(Collectors.toList()));
+    assertEquals(3, count);
+    assertFalse(checkpointFile.exists());
+    outputFile.delete();
+  }
+
   @Test
   @Ignore
   public void performanceTest() throws IOException, SQLException {
@@ -208,88 +469,13 @@ public class CsaEventProcessorTest {
   @Test
   @Ignore
   public void generateBigLogFile() throws IOException {
-    File bigTemplateFile = new File(getFullFileName(BIG_TEMPLATE_FILE_NAME));
-    File bigInputFile = new File(getFullFileName(BIG_INPUT_FILE_NAME));
-    if (bigInputFile.exists()) {
-      bigInputFile.delete();
-    }
-
-    List<String> template = Files.readAllLines(bigTemplateFile.toPath());
-
-    BufferedWriter bufferedWriter =
-        Files.newBufferedWriter(
-            bigInputFile.toPath(),
-            Charset.forName("US-ASCII"),
-            StandardOpenOption.CREATE,
-            StandardOpenOption.APPEND);
-    // E5 23 sec
-    // 1E5 -> 5M rows -> 400MB
-
-    for (int i = 1; i <= 1E5; i++) {
-
-      int finalI = i;
-
-      bufferedWriter.append(
-          String.join(
-              System.lineSeparator(),
-              template
-                  .stream()
-                  .map(
-                      s ->
-                          s.replaceAll("#ID1#", String.format("id_a1_%s", finalI))
-                              .replaceAll("#ID2#", String.format("id_b1_%s", finalI))
-                              .replaceAll("#ID3#", String.format("id_c1_%s", finalI))
-                              .replaceAll("#ID4#", String.format("id_d1_%s", finalI))
-                              .replaceAll("#ID5#", String.format("id_e1_%s", finalI))
-                              .replaceAll("#ID6#", String.format("id_f1_%s", finalI))
-                              .replaceAll("#ID7#", String.format("id_g1_%s", finalI))
-                              .replaceAll("#ID8#", String.format("id_h1_%s", finalI))
-                              .replaceAll("#ID9#", String.format("id_j1_%s", finalI)))
-                  .collect(Collectors.toList())));
-
-      bufferedWriter.append(
-          String.join(
-              System.lineSeparator(),
-              template
-                  .stream()
-                  .map(
-                      s ->
-                          s.replaceAll("#ID1#", String.format("id_a2_%s", finalI))
-                              .replaceAll("#ID2#", String.format("id_b2_%s", finalI))
-                              .replaceAll("#ID3#", String.format("id_c2_%s", finalI))
-                              .replaceAll("#ID4#", String.format("id_d2_%s", finalI))
-                              .replaceAll("#ID5#", String.format("id_e2_%s", finalI))
-                              .replaceAll("#ID6#", String.format("id_f2_%s", finalI))
-                              .replaceAll("#ID7#", String.format("id_g2_%s", finalI))
-                              .replaceAll("#ID8#", String.format("id_h2_%s", finalI))
-                              .replaceAll("#ID9#", String.format("id_j2_%s", finalI)))
-                  .collect(Collectors.toList())));
-
-      bufferedWriter.append(
-          String.join(
-              System.lineSeparator(),
-              template
-                  .stream()
-                  .map(
-                      s ->
-                          s.replaceAll("#ID1#", String.format("id_a3_%s", finalI))
-                              .replaceAll("#ID2#", String.format("id_b3_%s", finalI))
-                              .replaceAll("#ID3#", String.format("id_c3_%s", finalI))
-                              .replaceAll("#ID4#", String.format("id_d3_%s", finalI))
-                              .replaceAll("#ID5#", String.format("id_e3_%s", finalI))
-                              .replaceAll("#ID6#", String.format("id_f3_%s", finalI))
-                              .replaceAll("#ID7#", String.format("id_g3_%s", finalI))
-                              .replaceAll("#ID8#", String.format("id_h3_%s", finalI))
-                              .replaceAll("#ID9#", String.format("id_j3_%s", finalI)))
-                  .collect(Collectors.toList())));
-
-      /*Files.write(bigInputFile.toPath(), template.stream().map(
-              s -> s.replaceAll("#ID1#", String.format("id_a_%s", finalI)).
-                      replaceAll("#ID2#", String.format("id_b_%s", finalI)).
-                      replaceAll("#ID3#", String.format("id_c_%s", finalI))
-      ).collect(Collectors.toList()), StandardOpenOption.APPEND , StandardOpenOption.CREATE);*/
-    }
-    bufferedWriter.close();
+    // about 400MB with ids shaped like big_template.log
+    LoadGenerator generator = new LoadGenerator();
+    generator.setTargetSize(400L << 20);
+    generator.setOutOfOrderDistance(8);
+    generator.setTypedRatio(0.3);
+    generator.setHostCount(1);
+    generator.generate(new File(getFullFileName(BIG_INPUT_FILE_NAME)).toPath());
   }
 
   @Test
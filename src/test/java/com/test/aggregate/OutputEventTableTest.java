@@ -0,0 +1,205 @@
+package com.test.aggregate;
+
+import com.test.event.InputEvent;
+import com.test.event.InputEventFactory;
+import com.test.event.OutputEvent;
+import com.test.event.Timestamps;
+import com.test.event.ValueDictionary;
+import com.test.input.FileChunk;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import static java.util.stream.Collectors.groupingBy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OutputEventTableTest {
+  private OutputEventTable table;
+
+  @Before
+  public void setUp() {
+    OutputEvent.ALERT_THRESHOLD = 4;
+    table = new OutputEventTable(2);
+  }
+
+  private List<String> toStrings(OutputEventTable table) {
+    return table.stream().map(OutputEvent::toString).collect(Collectors.toList());
+  }
+
+  @Test
+  public void acceptInFirstSeenOrder() {
+    table
+        .accept(new InputEvent("b", "STARTED", 1L, null, null))
+        .accept(new InputEvent("a", "STARTED", 1L, "type", "host"))
+        .accept(new InputEvent("b", "FINISHED", 3L, "type2", null))
+        .accept(new InputEvent("a", "FINISHED", 7L, "other", "other"))
+        .accept(new InputEvent("c", "RUNNING", 7L, null, null));
+    List<String> expected =
+        Arrays.asList(
+            "id=b, duration=2, type=type2, host=null, alert=false",
+            "id=a, duration=6, type=type, host=host, alert=true",
+            "id=c, duration=null, type=null, host=null, alert=null");
+    assertEquals(expected, toStrings(table));
+  }
+
+  @Test
+  public void acceptUtf8Ids() {
+    table
+        .accept(new InputEvent("\u00e9", "STARTED", 1L, null, null))
+        .accept(new InputEvent("e", "STARTED", 1L, null, null))
+        .accept(new InputEvent("\u00e9", "FINISHED", 2L, null, null));
+    assertEquals(2, table.size());
+    assertEquals("\u00e9", table.toOutputEvent(0).getId());
+    assertEquals("1", table.toOutputEvent(0).getDuration().toString());
+  }
+
+  @Test
+  public void acceptExactTimestamps() {
+    table
+        .accept(new InputEvent("a", "STARTED", 2L, "type", null))
+        .accept(new InputEvent("a", "STARTED", new BigDecimal("1.5"), null, "host"))
+        .accept(new InputEvent("a", "FINISHED", 7L, null, null));
+    assertEquals(
+        Arrays.asList("id=a, duration=5.5, type=type, host=host, alert=true"), toStrings(table));
+  }
+
+  @Test
+  public void memoryUsageCountsExactEvents() {
+    OutputEventTable exact = new OutputEventTable();
+    for (int i = 0; i < 100; i++) {
+      table.accept(new InputEvent("id" + i, "STARTED", 1L, null, null));
+      exact.accept(new InputEvent("id" + i, "STARTED", new BigDecimal("1.5"), null, null));
+    }
+    assertTrue(exact.getMemoryUsage() > table.getMemoryUsage());
+  }
+
+  @Test
+  public void mergeSameAsCombiner() {
+    OutputEventTable other = new OutputEventTable();
+    table
+        .accept(new InputEvent("a", "STARTED", 3L, null, null))
+        .accept(new InputEvent("b", "FINISHED", 3L, null, "host"));
+    other
+        .accept(new InputEvent("c", "STARTED", 3L, null, null))
+        .accept(new InputEvent("a", "FINISHED", 9L, "type", null))
+        .accept(new InputEvent("b", "STARTED", 1L, "type", "other"));
+    List<String> expected =
+        Arrays.asList(
+            "id=a, duration=6, type=type, host=null, alert=true",
+            "id=b, duration=2, type=type, host=host, alert=false",
+            "id=c, duration=null, type=null, host=null, alert=false");
+    assertEquals(expected, toStrings(table.merge(other)));
+  }
+
+  @Test
+  public void sameAsGroupingForRandomEvents() {
+    Random random = new Random(42);
+    List<InputEvent> inputEvents = new ArrayList<>();
+    String[] states = {"STARTED", "FINISHED", "RUNNING"};
+    for (int i = 0; i < 50000; i++) {
+      inputEvents.add(
+          new InputEvent(
+              "id" + random.nextInt(20000),
+              states[random.nextInt(states.length)],
+              random.nextInt(3) == 0 ? new BigDecimal("10.5") : BigDecimal.valueOf(random.nextInt(20)),
+              random.nextBoolean() ? null : "type" + random.nextInt(3),
+              random.nextBoolean() ? null : "host" + random.nextInt(3)));
+    }
+    Map<String, String> expected = new TreeMap<>();
+    inputEvents
+        .stream()
+        .collect(
+            groupingBy(
+                InputEvent::getId,
+                Collector.of(OutputEvent::new, OutputEvent::accept, OutputEvent::combiner)))
+        .values()
+        .forEach(e -> expected.put(e.getId(), e.toString()));
+
+    Map<String, String> actual = new TreeMap<>();
+    inputEvents
+        .parallelStream()
+        .collect(
+            Collector.of(OutputEventTable::new, OutputEventTable::accept, OutputEventTable::merge))
+        .stream()
+        .forEach(e -> actual.put(e.getId(), e.toString()));
+
+    Map<String, String> sequential = new TreeMap<>();
+    inputEvents.forEach(table::accept);
+    table.stream().forEach(e -> sequential.put(e.getId(), e.toString()));
+
+    assertEquals(expected, sequential);
+    assertEquals(expected.keySet(), actual.keySet());
+  }
+
+  @Test
+  public void acceptUncodedValues() {
+    ValueDictionary dictionary = ValueDictionary.shared();
+    dictionary.setCapacity(dictionary.size());
+    try {
+      String type = "uncoded-type-" + System.nanoTime();
+      String host = "uncoded-host-" + System.nanoTime();
+      assertEquals(ValueDictionary.UNCODED, dictionary.code(type));
+      table
+          .accept(new InputEvent("a", "STARTED", 1L, type, null))
+          .accept(new InputEvent("a", "FINISHED", 7L, null, host));
+      String line =
+          "{\"id\":\"b\", \"state\":\"STARTED\", \"timestamp\":2, \"host\":\"" + host + "\"}";
+      OutputEventTable other =
+          new OutputEventTable(2)
+              .acceptLines(
+                  new FileChunk(0, ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8))));
+      other.combine(OutputEvent.restore("a", 0L, Timestamps.NONE, "t", "h", true));
+      table.merge(other);
+
+      assertEquals(
+          Arrays.asList(
+              "id=a, duration=7, type=" + type + ", host=" + host + ", alert=true",
+              "id=b, duration=null, type=null, host=" + host + ", alert=false"),
+          toStrings(table));
+    } finally {
+      dictionary.setCapacity(ValueDictionary.DEFAULT_CAPACITY);
+    }
+  }
+
+  @Test
+  public void acceptLinesSameAsInputEvents() {
+    List<String> lines =
+        Arrays.asList(
+            "{\"id\":\"a\", \"state\":\"STARTED\", \"timestamp\":1, \"type\":\"t\"}",
+            "{\"id\":\"\u00e9\", \"state\":\"STARTED\", \"timestamp\":2}",
+            "{\"id\":\"\\u00e9\", \"state\":\"FINISHED\", \"timestamp\":9, \"host\":\"h\"}",
+            "{\"id\":\"b\", \"state\":\"\\u0053TARTED\", \"timestamp\":1E+0}",
+            "{\"id\":\"b\", \"state\":\"FINISHED\", \"timestamp\":7.5}",
+            "{\"id\":\"b\", \"state\":\"FINISHED\", \"timestamp\":8}",
+            "{\"id\":\"c\", \"state\":\"STARTED\", \"timestamp\":\"abc\"}",
+            "{\"id\":\"\\u00zz\", \"state\":\"STARTED\", \"timestamp\":1}",
+            "{\"id\":\"d\", \"state\":\"RUNNING\", \"timestamp\":2.5, \"type\":\"x\"}",
+            "not json",
+            "",
+            "{\"id\":\"a\", \"state\":\"FINISHED\", \"timestamp\":6, \"type\":\"u\"}\r");
+    byte[] bytes = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+    lines.stream()
+        .map(InputEventFactory::buildEvent)
+        .filter(Objects::nonNull)
+        .forEach(table::accept);
+
+    OutputEventTable fused =
+        new OutputEventTable(2).acceptLines(new FileChunk(0, ByteBuffer.wrap(bytes)));
+
+    assertEquals(toStrings(table), toStrings(fused));
+    assertEquals(4, fused.size());
+  }
+}
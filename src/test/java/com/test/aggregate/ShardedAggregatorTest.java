@@ -0,0 +1,71 @@
+package com.test.aggregate;
+
+import com.test.event.InputEvent;
+import com.test.event.OutputEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ShardedAggregatorTest {
+  private List<InputEvent> inputEvents;
+
+  @Before
+  public void setUp() {
+    OutputEvent.ALERT_THRESHOLD = 4;
+    Random random = new Random(11);
+    inputEvents = new ArrayList<>();
+    String[] states = {"STARTED", "FINISHED", "RUNNING"};
+    for (int i = 0; i < 100000; i++) {
+      int id = random.nextInt(30000);
+      inputEvents.add(
+          new InputEvent(
+              "id" + id,
+              states[random.nextInt(states.length)],
+              random.nextInt(20),
+              "type" + id % 3,
+              random.nextBoolean() ? null : "host" + id % 5));
+    }
+  }
+
+  private static Map<String, String> toMap(Stream<OutputEvent> outputEvents) {
+    Map<String, String> result = new TreeMap<>();
+    outputEvents.forEach(e -> result.put(e.getId(), e.toString()));
+    return result;
+  }
+
+  private Map<String, String> expected() {
+    OutputEventTable table = new OutputEventTable();
+    inputEvents.forEach(table::accept);
+    return toMap(table.stream());
+  }
+
+  @Test
+  public void aggregateSequential() {
+    assertEquals(expected(), toMap(ShardedAggregator.aggregate(inputEvents.stream(), 3)));
+  }
+
+  @Test
+  public void aggregateParallel() {
+    assertEquals(expected(), toMap(ShardedAggregator.aggregate(inputEvents.parallelStream(), 4)));
+  }
+
+  @Test
+  public void aggregateSingleShard() {
+    assertEquals(expected(), toMap(ShardedAggregator.aggregate(inputEvents.stream(), 1)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void aggregateWithoutId() {
+    List<InputEvent> withoutId = new ArrayList<>(inputEvents);
+    withoutId.add(new InputEvent(null, "STARTED", 1L, null, null));
+    ShardedAggregator.aggregate(withoutId.stream(), 2);
+  }
+}
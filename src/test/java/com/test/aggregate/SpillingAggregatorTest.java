@@ -0,0 +1,150 @@
+package com.test.aggregate;
+
+import com.test.event.InputEvent;
+import com.test.event.OutputEvent;
+import com.test.input.FileChunk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpillingAggregatorTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private List<InputEvent> inputEvents;
+
+  @Before
+  public void setUp() {
+    OutputEvent.ALERT_THRESHOLD = 4;
+    Random random = new Random(7);
+    inputEvents = new ArrayList<>();
+    String[] states = {"STARTED", "FINISHED", "FINISHED", "STARTED", "RUNNING"};
+    for (int i = 0; i < 100000; i++) {
+      inputEvents.add(
+          new InputEvent(
+              "id" + random.nextInt(30000),
+              states[random.nextInt(states.length)],
+              random.nextInt(50) == 0
+                  ? new BigDecimal(random.nextInt(20) + ".5")
+                  : BigDecimal.valueOf(random.nextInt(20)),
+              random.nextBoolean() ? null : "type" + random.nextInt(3),
+              random.nextBoolean() ? null : "host" + random.nextInt(3)));
+    }
+  }
+
+  /** Spilled partitions are streamed in parallel, a duplicated id fails the collector */
+  private static Map<String, String> toMap(Stream<OutputEvent> outputEvents) {
+    return outputEvents.collect(
+        Collectors.toMap(
+            OutputEvent::getId,
+            OutputEvent::toString,
+            (a, b) -> {
+              throw new IllegalStateException("Duplicated id: " + a);
+            },
+            TreeMap::new));
+  }
+
+  private Map<String, String> expected() {
+    OutputEventTable table = new OutputEventTable();
+    inputEvents.forEach(table::accept);
+    return toMap(table.stream());
+  }
+
+  @Test
+  public void aggregateInMemory() throws IOException {
+    Map<String, String> actual =
+        toMap(
+            SpillingAggregator.aggregate(
+                inputEvents.stream(),
+                Long.MAX_VALUE,
+                folder.getRoot().toPath(),
+                OutputEventTable.DEFAULT_EXPECTED_SIZE));
+    assertEquals(expected(), actual);
+    assertEquals(0, Files.list(folder.getRoot().toPath()).count());
+  }
+
+  @Test
+  public void aggregateSpilled() throws IOException {
+    SpillingAggregator aggregator = new SpillingAggregator(64 << 10, folder.getRoot().toPath());
+    for (InputEvent inputEvent : inputEvents) {
+      aggregator.accept(inputEvent);
+    }
+    Map<String, String> actual;
+    try (Stream<OutputEvent> outputEvents = aggregator.finish(true)) {
+      assertTrue(outputEvents.isParallel());
+      actual = toMap(outputEvents);
+    }
+    assertTrue(aggregator.getSpillCount() > 1);
+    assertEquals(expected(), actual);
+    assertEquals(0, Files.list(folder.getRoot().toPath()).count());
+  }
+
+  @Test
+  public void finishSequentialDeletesPartitionsOnClose() throws IOException {
+    SpillingAggregator aggregator = new SpillingAggregator(64 << 10, folder.getRoot().toPath());
+    for (InputEvent inputEvent : inputEvents) {
+      aggregator.accept(inputEvent);
+    }
+    try (Stream<OutputEvent> outputEvents = aggregator.finish(false)) {
+      assertFalse(outputEvents.isParallel());
+      assertTrue(outputEvents.iterator().hasNext());
+      assertEquals(1, Files.list(folder.getRoot().toPath()).count());
+    }
+    assertEquals(0, Files.list(folder.getRoot().toPath()).count());
+  }
+
+  @Test
+  public void aggregatePartitionedAgain() throws IOException {
+    Map<String, String> actual =
+        toMap(SpillingAggregator.aggregate(inputEvents.stream(), 1, folder.getRoot().toPath(), 16));
+    assertEquals(expected(), actual);
+  }
+
+  @Test
+  public void aggregateLinesSpilled() throws IOException {
+    StringBuilder lines = new StringBuilder();
+    for (InputEvent inputEvent : inputEvents) {
+      lines.append("{\"id\":\"").append(inputEvent.getId());
+      lines.append("\", \"state\":\"").append(inputEvent.getState());
+      lines.append("\", \"timestamp\":").append(inputEvent.getTimestamp());
+      if (inputEvent.getType() != null) {
+        lines.append(", \"type\":\"").append(inputEvent.getType()).append('"');
+      }
+      if (inputEvent.getHost() != null) {
+        lines.append(", \"host\":\"").append(inputEvent.getHost()).append('"');
+      }
+      lines.append("}\n");
+    }
+    FileChunk chunk =
+        new FileChunk(0, ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8)));
+
+    Map<String, String> actual =
+        toMap(
+            SpillingAggregator.aggregateLines(
+                Collections.singletonList(chunk),
+                64 << 10,
+                folder.getRoot().toPath(),
+                OutputEventTable.DEFAULT_EXPECTED_SIZE,
+                true));
+    assertEquals(expected(), actual);
+    assertEquals(0, Files.list(folder.getRoot().toPath()).count());
+  }
+}
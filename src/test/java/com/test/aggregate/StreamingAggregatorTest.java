@@ -0,0 +1,109 @@
+package com.test.aggregate;
+
+import com.test.event.InputEvent;
+import com.test.event.OutputEvent;
+import com.test.event.Timestamps;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StreamingAggregatorTest {
+  private StreamingAggregator aggregator;
+
+  @Before
+  public void setUp() {
+    OutputEvent.ALERT_THRESHOLD = 4;
+    aggregator = new StreamingAggregator();
+  }
+
+  @Test
+  public void acceptEmitsWhenComplete() {
+    assertNull(aggregator.accept(new InputEvent("a", "STARTED", 1L, "type", "host")));
+    assertNull(aggregator.accept(new InputEvent("b", "STARTED", 2L, null, null)));
+    assertEquals(2, aggregator.getOpenCount());
+    OutputEvent outputEvent = aggregator.accept(new InputEvent("a", "FINISHED", 6L, null, null));
+    assertEquals("id=a, duration=5, type=type, host=host, alert=true", outputEvent.toString());
+    assertEquals(1, aggregator.getOpenCount());
+    assertEquals(1, aggregator.getEmittedCount());
+  }
+
+  @Test
+  public void acceptOtherStateKeepsOpen() {
+    assertNull(aggregator.accept(new InputEvent("a", "RUNNING", 1L, null, null)));
+    assertNull(aggregator.accept(new InputEvent("a", "FINISHED", 3L, null, null)));
+    assertEquals(1, aggregator.getOpenCount());
+  }
+
+  @Test
+  public void drainOpenInFirstSeenOrder() {
+    aggregator.accept(new InputEvent("b", "STARTED", 1L, null, null));
+    aggregator.accept(new InputEvent("a", "FINISHED", 1L, null, null));
+    aggregator.accept(new InputEvent("c", "STARTED", 1L, null, null));
+    Iterator<OutputEvent> open = aggregator.drainOpen();
+    assertEquals("b", open.next().getId());
+    assertEquals("a", open.next().getId());
+    assertEquals("c", open.next().getId());
+    assertEquals(0, aggregator.getOpenCount());
+  }
+
+  @Test
+  public void restoreOpen() {
+    OutputEvent restored = OutputEvent.restore("a", 1L, Timestamps.NONE, "type", null, true);
+    aggregator.restoreOpen(restored);
+    aggregator.accept(new InputEvent("b", "STARTED", 1L, null, null));
+    assertEquals(2, aggregator.getOpenEvents().size());
+    assertSame(restored, aggregator.getOpenEvents().iterator().next());
+
+    OutputEvent outputEvent = aggregator.accept(new InputEvent("a", "FINISHED", 3L, null, null));
+    assertEquals("id=a, duration=2, type=type, host=null, alert=false", outputEvent.toString());
+    assertEquals(1, aggregator.getOpenCount());
+  }
+
+  @Test
+  public void aggregateSameAsGrouping() {
+    List<InputEvent> inputEvents =
+        Arrays.asList(
+            new InputEvent("a", "STARTED", 1491377495212L, "APPLICATION_LOG", "12345"),
+            new InputEvent("b", "STARTED", 1491377495213L, null, null),
+            new InputEvent("c", "FINISHED", 1491377495218L, null, null),
+            new InputEvent("a", "FINISHED", 1491377495217L, "APPLICATION_LOG", "12345"),
+            new InputEvent("c", "STARTED", 1491377495210L, null, null),
+            new InputEvent("d", "STARTED", 1491377495210L, null, null));
+    List<String> expected =
+        Arrays.asList(
+            "id=a, duration=5, type=APPLICATION_LOG, host=12345, alert=true",
+            "id=c, duration=8, type=null, host=null, alert=true",
+            "id=b, duration=null, type=null, host=null, alert=false",
+            "id=d, duration=null, type=null, host=null, alert=false");
+    List<String> actual =
+        StreamingAggregator.aggregate(inputEvents.stream())
+            .map(OutputEvent::toString)
+            .collect(Collectors.toList());
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void aggregateIsLazy() {
+    AtomicInteger consumed = new AtomicInteger();
+    Stream<InputEvent> inputStream =
+        Stream.of(
+                new InputEvent("a", "STARTED", 1L, null, null),
+                new InputEvent("a", "FINISHED", 2L, null, null),
+                new InputEvent("b", "STARTED", 1L, null, null),
+                new InputEvent("b", "FINISHED", 2L, null, null))
+            .peek(e -> consumed.incrementAndGet());
+    OutputEvent first = StreamingAggregator.aggregate(inputStream).findFirst().get();
+    assertEquals("a", first.getId());
+    assertEquals(2, consumed.get());
+  }
+}
@@ -0,0 +1,166 @@
+package com.test.checkpoint;
+
+import com.test.aggregate.StreamingAggregator;
+import com.test.event.InputEventFactory;
+import com.test.event.OutputEvent;
+import com.test.output.JsonLinesOutputSink;
+import com.test.output.OutputSink;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CheckpointProcessorTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path input;
+  private Path output;
+  private Path checkpointFile;
+  private List<String> expected;
+
+  /** Sink that fails on the given record of the run */
+  private static class FailingSink implements OutputSink {
+    private final OutputSink sink;
+    private final int[] remaining;
+
+    FailingSink(OutputSink sink, int[] remaining) {
+      this.sink = sink;
+      this.remaining = remaining;
+    }
+
+    @Override
+    public void write(OutputEvent outputEvent) throws IOException {
+      if (--remaining[0] == 0) {
+        throw new IOException("disk full");
+      }
+      sink.write(outputEvent);
+    }
+
+    @Override
+    public void close() throws IOException {
+      sink.close();
+    }
+
+    @Override
+    public long getWriteCount() {
+      return sink.getWriteCount();
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    OutputEvent.ALERT_THRESHOLD = 4;
+    Random random = new Random(17);
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      int id = i / 2 + random.nextInt(20);
+      lines.append(
+          String.format(
+              "{\"id\":\"id%s\", \"state\":\"%s\", \"timestamp\":%s}\n",
+              id, random.nextBoolean() ? "STARTED" : "FINISHED", random.nextInt(10)));
+    }
+    input = folder.newFile("input.log").toPath();
+    Files.write(input, lines.toString().getBytes(StandardCharsets.UTF_8));
+    output = folder.getRoot().toPath().resolve("output.jsonl");
+    checkpointFile = folder.getRoot().toPath().resolve("output.checkpoint");
+
+    Path streamingOutput = folder.getRoot().toPath().resolve("streaming.jsonl");
+    try (Stream<String> inputLines = Files.lines(input);
+        OutputSink sink = new JsonLinesOutputSink(streamingOutput)) {
+      StreamingAggregator.aggregate(
+              inputLines.map(InputEventFactory::buildEvent).filter(e -> e != null))
+          .forEachOrdered(
+              outputEvent -> {
+                try {
+                  sink.write(outputEvent);
+                } catch (IOException e) {
+                  throw new IllegalStateException(e);
+                }
+              });
+    }
+    expected = Files.readAllLines(streamingOutput);
+  }
+
+  private CheckpointProcessor processor(CheckpointProcessor.PartSinkFactory partSinks) {
+    return new CheckpointProcessor(input, output, checkpointFile, partSinks, 0, 4096);
+  }
+
+  @Test
+  public void runSameAsStreaming() throws IOException {
+    CheckpointProcessor checkpointProcessor = processor(JsonLinesOutputSink::new);
+    assertEquals(expected.size(), checkpointProcessor.run(false));
+    assertTrue(checkpointProcessor.getCheckpointCount() > 10);
+    assertEquals(expected, Files.readAllLines(output));
+    assertFalse(Files.exists(checkpointFile));
+    assertEquals(
+        0,
+        Files.list(folder.getRoot().toPath())
+            .filter(p -> p.getFileName().toString().contains(".part-"))
+            .count());
+  }
+
+  @Test
+  public void resumeAfterFailure() throws IOException {
+    int[] remaining = {expected.size() / 2};
+    try {
+      processor(partFile -> new FailingSink(new JsonLinesOutputSink(partFile), remaining))
+          .run(false);
+      fail("IOException expected");
+    } catch (IOException e) {
+      assertEquals("disk full", e.getMessage());
+    }
+    Checkpoint checkpoint = Checkpoint.read(checkpointFile);
+    assertTrue(checkpoint.getInputOffset() > 0);
+    assertTrue(checkpoint.getWriteCount() < expected.size() / 2);
+    // left by a crashed sink of the first part after the checkpoint
+    Path staleShard =
+        Files.createFile(
+            output.resolveSibling("output.jsonl.part-" + checkpoint.getPartCount() + ".shard-3"));
+
+    CheckpointProcessor resumed = processor(JsonLinesOutputSink::new);
+    assertEquals(expected.size(), resumed.run(true));
+    assertEquals(expected, Files.readAllLines(output));
+    assertFalse(Files.exists(checkpointFile));
+    assertFalse(Files.exists(staleShard));
+  }
+
+  @Test
+  public void runIgnoresCheckpointWithoutResume() throws IOException {
+    int[] remaining = {expected.size() / 2};
+    try {
+      processor(partFile -> new FailingSink(new JsonLinesOutputSink(partFile), remaining))
+          .run(false);
+      fail("IOException expected");
+    } catch (IOException e) {
+      assertTrue(Files.exists(checkpointFile));
+    }
+    assertEquals(expected.size(), processor(JsonLinesOutputSink::new).run(false));
+    assertEquals(expected, Files.readAllLines(output));
+  }
+
+  @Test(expected = IOException.class)
+  public void resumeModifiedInput() throws IOException {
+    int[] remaining = {expected.size() / 2};
+    try {
+      processor(partFile -> new FailingSink(new JsonLinesOutputSink(partFile), remaining))
+          .run(false);
+      fail("IOException expected");
+    } catch (IOException e) {
+      Files.write(input, "{}\n".getBytes(StandardCharsets.UTF_8));
+    }
+    processor(JsonLinesOutputSink::new).run(true);
+  }
+}
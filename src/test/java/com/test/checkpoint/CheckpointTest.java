@@ -0,0 +1,90 @@
+package com.test.checkpoint;
+
+import com.test.event.OutputEvent;
+import com.test.event.Timestamps;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static Checkpoint checkpointOf(Path input, long offset) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(input, BasicFileAttributes.class);
+    return new Checkpoint(
+        input.toAbsolutePath().normalize().toString(),
+        attributes.size(),
+        attributes.lastModifiedTime().toMillis(),
+        Checkpoint.checksum(input, offset),
+        offset,
+        2,
+        5,
+        Arrays.asList(
+            OutputEvent.restore("a", 1L, Timestamps.NONE, "type", null, true),
+            OutputEvent.restore("b", Timestamps.NONE, 7L, null, "host", true)));
+  }
+
+  @Test
+  public void writeAndRead() throws IOException {
+    Path input = folder.newFile().toPath();
+    Files.write(input, "line\n".getBytes(StandardCharsets.UTF_8));
+    Path file = folder.getRoot().toPath().resolve("checkpoint");
+    checkpointOf(input, 5).write(file);
+
+    Checkpoint checkpoint = Checkpoint.read(file);
+    checkpoint.verifyInput(input);
+    assertEquals(5, checkpoint.getInputOffset());
+    assertEquals(2, checkpoint.getPartCount());
+    assertEquals(5, checkpoint.getWriteCount());
+    List<OutputEvent> openEvents = new ArrayList<>(checkpoint.getOpenEvents());
+    assertEquals(
+        Arrays.asList("a", "b"),
+        openEvents.stream().map(OutputEvent::getId).collect(Collectors.toList()));
+    assertEquals(7L, openEvents.get(1).getFinishedTimestampMillis());
+    assertFalse(Files.exists(file.resolveSibling("checkpoint.tmp")));
+  }
+
+  @Test(expected = IOException.class)
+  public void verifyModifiedInput() throws IOException {
+    Path input = folder.newFile().toPath();
+    Files.write(input, "line\n".getBytes(StandardCharsets.UTF_8));
+    Checkpoint checkpoint = checkpointOf(input, 5);
+    Files.write(input, "line\nmore\n".getBytes(StandardCharsets.UTF_8));
+    checkpoint.verifyInput(input);
+  }
+
+  @Test
+  public void isContinuedBy() throws IOException {
+    Path input = folder.newFile().toPath();
+    Files.write(input, "line\n".getBytes(StandardCharsets.UTF_8));
+    Checkpoint checkpoint = checkpointOf(input, 5);
+    Files.write(input, "line\nmore\n".getBytes(StandardCharsets.UTF_8));
+    assertTrue(checkpoint.isContinuedBy(input));
+    Files.write(input, "LINE\nmore\n".getBytes(StandardCharsets.UTF_8));
+    assertFalse(checkpoint.isContinuedBy(input));
+    Files.write(input, "line".getBytes(StandardCharsets.UTF_8));
+    assertFalse(checkpoint.isContinuedBy(input));
+  }
+
+  @Test(expected = IOException.class)
+  public void readOtherFile() throws IOException {
+    Path file = folder.newFile().toPath();
+    Files.write(file, Collections.singletonList("not a checkpoint"));
+    Checkpoint.read(file);
+  }
+}
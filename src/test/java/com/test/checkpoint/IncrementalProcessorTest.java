@@ -0,0 +1,128 @@
+package com.test.checkpoint;
+
+import com.test.event.OutputEvent;
+import com.test.output.OutputSink;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalProcessorTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path input;
+  private Path stateFile;
+
+  /** Sink that remembers its records */
+  private static class CollectingSink implements OutputSink {
+    final List<String> records = new ArrayList<>();
+    boolean closed = false;
+
+    @Override
+    public void write(OutputEvent outputEvent) {
+      records.add(outputEvent.toString());
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public long getWriteCount() {
+      return records.size();
+    }
+  }
+
+  private static String line(String id, String state, long timestamp) {
+    return String.format(
+        "{\"id\":\"%s\", \"state\":\"%s\", \"timestamp\":%s}\n", id, state, timestamp);
+  }
+
+  private void append(String content) throws IOException {
+    Files.write(
+        input,
+        content.getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+  }
+
+  private List<String> run() throws IOException {
+    CollectingSink sink = new CollectingSink();
+    new IncrementalProcessor(input, stateFile).run(sink);
+    assertTrue(sink.closed);
+    return sink.records;
+  }
+
+  @Before
+  public void setUp() {
+    OutputEvent.ALERT_THRESHOLD = 4;
+    input = folder.getRoot().toPath().resolve("input.log");
+    stateFile = folder.getRoot().toPath().resolve("input.state");
+  }
+
+  @Test
+  public void runOnAppendedLines() throws IOException {
+    String partial = line("b", "FINISHED", 9);
+    append(line("a", "STARTED", 1) + line("b", "STARTED", 2) + line("a", "FINISHED", 3));
+    append(partial.substring(0, 10));
+    assertEquals(
+        Arrays.asList(
+            "id=a, duration=2, type=null, host=null, alert=false",
+            "id=b, duration=null, type=null, host=null, alert=false"),
+        run());
+    assertEquals(1, Checkpoint.read(stateFile).getOpenEvents().size());
+
+    append(partial.substring(10) + line("c", "STARTED", 4));
+    assertEquals(
+        Arrays.asList(
+            "id=b, duration=7, type=null, host=null, alert=true",
+            "id=c, duration=null, type=null, host=null, alert=false"),
+        run());
+    assertEquals(4, Checkpoint.read(stateFile).getWriteCount());
+  }
+
+  @Test
+  public void runSkipsUnchangedOpenIds() throws IOException {
+    append(line("a", "STARTED", 1) + line("b", "FINISHED", 5));
+    assertEquals(2, run().size());
+
+    append(line("c", "STARTED", 1) + line("b", "STARTED", 4));
+    assertEquals(
+        Arrays.asList(
+            "id=b, duration=1, type=null, host=null, alert=false",
+            "id=c, duration=null, type=null, host=null, alert=false"),
+        run());
+
+    assertEquals(Collections.emptyList(), run());
+
+    append(line("a", "FINISHED", 2));
+    assertEquals(
+        Collections.singletonList("id=a, duration=1, type=null, host=null, alert=false"), run());
+  }
+
+  @Test
+  public void runOnRotatedInput() throws IOException {
+    append(line("a", "STARTED", 1) + line("b", "STARTED", 1));
+    run();
+
+    Files.delete(input);
+    append(line("a", "FINISHED", 8));
+    assertEquals(
+        Collections.singletonList("id=a, duration=7, type=null, host=null, alert=true"), run());
+    assertEquals(1, Checkpoint.read(stateFile).getOpenEvents().size());
+  }
+}
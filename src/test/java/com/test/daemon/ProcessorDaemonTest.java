@@ -0,0 +1,99 @@
+package com.test.daemon;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessorDaemonTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path inbox;
+  private Path outputDirectory;
+  private final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+  /** Copies the input in upper case and fails on inputs named fail*.log */
+  private void upperCase(Path inputFile, String outputFileName) throws IOException {
+    threads.add(Thread.currentThread().getName());
+    if (inputFile.getFileName().toString().startsWith("fail")) {
+      throw new IOException("bad input");
+    }
+    String content = new String(Files.readAllBytes(inputFile), StandardCharsets.UTF_8);
+    Files.write(
+        Paths.get(outputFileName), content.toUpperCase().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void writeInput(String name, String content) throws IOException {
+    // written under another name and renamed, as a writer of the inbox should do
+    Path temporary = folder.getRoot().toPath().resolve(name + ".tmp");
+    Files.write(temporary, content.getBytes(StandardCharsets.UTF_8));
+    Files.move(temporary, inbox.resolve(name));
+  }
+
+  private static void awaitFile(Path file) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (!Files.exists(file) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(file + " expected", Files.exists(file));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    inbox = folder.newFolder("inbox").toPath();
+    outputDirectory = folder.newFolder("output").toPath();
+  }
+
+  @Test
+  public void processExistingAndNewFiles() throws Exception {
+    writeInput("a.log", "first");
+    writeInput("ignored.txt", "not an input");
+    ProcessorDaemon daemon =
+        new ProcessorDaemon(inbox, outputDirectory, "out", this::upperCase, 2);
+    Thread runner =
+        new Thread(
+            () -> {
+              try {
+                daemon.run();
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    runner.start();
+
+    awaitFile(inbox.resolve(ProcessorDaemon.DONE_DIRECTORY).resolve("a.log"));
+    writeInput("b.log", "second");
+    writeInput("fail.log", "third");
+    awaitFile(inbox.resolve(ProcessorDaemon.DONE_DIRECTORY).resolve("b.log"));
+    awaitFile(inbox.resolve(ProcessorDaemon.FAILED_DIRECTORY).resolve("fail.log"));
+
+    daemon.stop();
+    assertTrue(daemon.awaitTermination(30, TimeUnit.SECONDS));
+    runner.join();
+    assertEquals(2, daemon.getDoneCount());
+    assertEquals(1, daemon.getFailedCount());
+    assertEquals(
+        Collections.singletonList("FIRST"),
+        Files.readAllLines(outputDirectory.resolve("a.out")));
+    assertEquals(
+        Collections.singletonList("SECOND"),
+        Files.readAllLines(outputDirectory.resolve("b.out")));
+    assertFalse(Files.exists(outputDirectory.resolve("fail.out")));
+    assertTrue(Files.exists(inbox.resolve("ignored.txt")));
+    assertTrue(threads.stream().allMatch(name -> name.startsWith("csa-job-")));
+  }
+}
@@ -0,0 +1,105 @@
+package com.test.event;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CsvOutputGeneratorTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static List<OutputEvent> events() {
+    return Arrays.asList(
+        OutputEvent.restore("plain", 10L, 15L, "APPLICATION_LOG", "12345", true),
+        OutputEvent.restore("negative", 15L, 10L, null, null, true),
+        OutputEvent.restore("", 0L, Long.MAX_VALUE, "", "", true),
+        OutputEvent.restore("a,b", 1L, Timestamps.NONE, "q\"t", "sp ace ", true),
+        OutputEvent.restore("tab\tcr\rnl\nx", Timestamps.NONE, 3L, "\u0085", "\\", true),
+        OutputEvent.restore(
+            "\u00e9\u4e2d\ud83d\ude00", Long.MIN_VALUE + 1, Long.MAX_VALUE, "'", ",", true),
+        OutputEvent.restore(
+            "fraction",
+            new BigDecimal("1.25"),
+            new BigDecimal("9.5"),
+            "\u007f",
+            " lead",
+            true),
+        OutputEvent.restore(
+            "negative fraction", new BigDecimal("9.5"), new BigDecimal("1.25"), null, null, true));
+  }
+
+  private byte[] writeCsv(List<OutputEvent> events, int bufferSize) throws IOException {
+    Path output = folder.getRoot().toPath().resolve("direct.csv");
+    CsvOutputGenerator generator = new CsvOutputGenerator(output, bufferSize);
+    events.forEach(generator::apply);
+    generator.release();
+    assertEquals(events.size(), generator.getEmitCount());
+    return Files.readAllBytes(output);
+  }
+
+  private byte[] writeHsqldb(List<OutputEvent> events) throws SQLException, IOException {
+    File database = folder.newFolder("db");
+    OutputGenerator generator =
+        new OutputGenerator(
+            "jdbc:hsqldb:file:" + database.getPath() + "/db;shutdown=true", "hsqldb.csv");
+    for (OutputEvent event : events) {
+      generator.emit(event);
+    }
+    generator.release();
+    return Files.readAllBytes(database.toPath().resolve("hsqldb.csv"));
+  }
+
+  @Test
+  public void sameAsHsqldb() throws IOException, SQLException {
+    assertEquals(
+        new String(writeHsqldb(events()), "ISO-8859-1"),
+        new String(writeCsv(events(), CsvOutputGenerator.DEFAULT_BUFFER_SIZE), "ISO-8859-1"));
+  }
+
+  @Test
+  public void smallBuffer() throws IOException {
+    assertArrayEquals(
+        writeCsv(events(), CsvOutputGenerator.DEFAULT_BUFFER_SIZE), writeCsv(events(), 64));
+  }
+
+  @Test(expected = UncheckedIOException.class)
+  public void recordLongerThanBuffer() throws IOException {
+    writeCsv(events(), 16);
+  }
+
+  @Test
+  public void directVisibleAfterFlush() throws IOException {
+    Path output = folder.getRoot().toPath().resolve("direct.csv");
+    CsvOutputGenerator generator = CsvOutputGenerator.direct(output);
+    events().forEach(generator::apply);
+    generator.flush();
+    byte[] flushed = Files.readAllBytes(output);
+    generator.release();
+    assertArrayEquals(writeCsv(events(), CsvOutputGenerator.DEFAULT_BUFFER_SIZE), flushed);
+    assertEquals(1, Files.list(folder.getRoot().toPath()).count());
+  }
+
+  @Test
+  public void missingDurationAndAlert() throws IOException {
+    assertEquals(
+        "id,,type,,\n",
+        new String(
+            writeCsv(
+                Arrays.asList(
+                    OutputEvent.restore("id", Timestamps.NONE, Timestamps.NONE, "type", null, false)),
+                64),
+            "ISO-8859-1"));
+  }
+}
@@ -2,7 +2,11 @@ package com.test.event;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class InputEventFactoryTest {
 
@@ -70,4 +74,30 @@ public class InputEventFactoryTest {
     String actual = inputEvent.toString();
     assertEquals(expected, actual);
   }
+
+  @Test
+  public void buildEventMalformed() {
+    assertNull(InputEventFactory.buildEvent("{\"id\":\"scsmbstgrb\", \"state\""));
+  }
+
+  @Test
+  public void buildEventWithoutId() {
+    assertNull(InputEventFactory.buildEvent("{\"state\":\"STARTED\", \"timestamp\":2}"));
+    assertNull(InputEventFactory.buildEvent("{\"id\":null, \"state\":\"STARTED\"}"));
+    byte[] bytes = "{\"state\":\"STARTED\", \"timestamp\":2}".getBytes(StandardCharsets.UTF_8);
+    assertNull(InputEventFactory.buildEvent(ByteBuffer.wrap(bytes), 0, bytes.length));
+    assertNull(InputEventFactory.scan(ByteBuffer.wrap(bytes), 0, bytes.length));
+  }
+
+  @Test
+  public void buildEventByteBuffer() {
+    byte[] bytes =
+        "{\"id\":\"scsmbstgrb\", \"state\":\"FINISHED\", \"timestamp\":1491377495216}"
+            .getBytes(StandardCharsets.UTF_8);
+    InputEvent inputEvent = InputEventFactory.buildEvent(ByteBuffer.wrap(bytes), 0, bytes.length);
+    String expected =
+        "id=scsmbstgrb, state=FINISHED, timestamp=1491377495216, type=null, host=null";
+    String actual = inputEvent.toString();
+    assertEquals(expected, actual);
+  }
 }
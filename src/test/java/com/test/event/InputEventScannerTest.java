@@ -0,0 +1,201 @@
+package com.test.event;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class InputEventScannerTest {
+  private InputEventScanner scanner;
+
+  @Before
+  public void setUp() {
+    scanner = new InputEventScanner();
+  }
+
+  private String scan(String jsonString) {
+    scanner.scan(jsonString);
+    return scanner.toInputEvent().toString();
+  }
+
+  @Test
+  public void scanAllFields() {
+    String expected =
+        "id=scsmbstgra, state=STARTED, timestamp=1491377495212, type=APPLICATION_LOG, host=12345";
+    String actual =
+        scan(
+            "{\"id\":\"scsmbstgra\", \"state\":\"STARTED\", \"type\":\"APPLICATION_LOG\",\"host\":\"12345\", \"timestamp\":1491377495212}");
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void scanSkipsUnknownKeys() {
+    String expected = "id=a, state=FINISHED, timestamp=7, type=null, host=null";
+    String actual =
+        scan(
+            "{\"extra\":{\"id\":\"x\",\"list\":[1,{\"a\":\"}]\"},null]}, \"id\":\"a\", \"flag\":true,"
+                + " \"n\":-1.5e3, \"state\":\"FINISHED\", \"timestamp\":7, \"s\":\"\\\"}\"}");
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void scanEscapes() {
+    String expected = "id=a\"b\\c/d\te\u00e9, state=STARTED, timestamp=1, type=null, host=null";
+    String actual =
+        scan("{\"id\":\"a\\\"b\\\\c\\/d\\te\\u00e9\", \"state\":\"STARTED\", \"timestamp\":1}");
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void scanEscapedKey() {
+    String expected = "id=a, state=STARTED, timestamp=1, type=null, host=null";
+    String actual = scan("{\"\\u0069d\":\"a\", \"state\":\"STARTED\", \"timestamp\":1}");
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void scanUtf8() {
+    String expected = "id=\u4e8b\u4ef6, state=STARTED, timestamp=1, type=\u00e9, host=null";
+    String actual =
+        scan("{\"id\":\"\u4e8b\u4ef6\", \"state\":\"STARTED\", \"timestamp\":1, \"type\":\"\u00e9\"}");
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void scanOtherState() {
+    String expected = "id=a, state=started, timestamp=1, type=null, host=null";
+    String actual = scan("{\"id\":\"a\", \"state\":\"started\", \"timestamp\":1}");
+    assertEquals(expected, actual);
+    assertEquals(InputEventScanner.STATE_OTHER, scanner.getStateCode());
+  }
+
+  @Test
+  public void scanStateCodes() {
+    scanner.scan("{\"state\":\"STARTED\"}");
+    assertEquals(InputEventScanner.STATE_STARTED, scanner.getStateCode());
+    scanner.scan("{\"state\":\"FINISHED\"}");
+    assertEquals(InputEventScanner.STATE_FINISHED, scanner.getStateCode());
+  }
+
+  @Test
+  public void scanEscapedStateCode() {
+    scanner.scan("{\"state\":\"\\u0053TARTED\"}");
+    assertEquals(InputEventScanner.STATE_STARTED, scanner.getStateCode());
+    assertEquals("STARTED", scanner.getState());
+  }
+
+  @Test
+  public void scanIdBytes() {
+    scanner.scan("{\"id\":\"abc\"}");
+    assertEquals("abc", idBytes());
+    scanner.scan("{\"id\":\"a\\\"b\\u00e9\"}");
+    assertEquals("a\"b\u00e9", idBytes());
+    scanner.scan("{\"id\":\"\u4e8b\u4ef6\"}");
+    assertEquals("\u4e8b\u4ef6", idBytes());
+    scanner.scan("{\"state\":\"STARTED\"}");
+    assertEquals(-1, scanner.readIdBytes());
+  }
+
+  private String idBytes() {
+    int length = scanner.readIdBytes();
+    return new String(scanner.getIdBytes(), 0, length, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void scanInternedValues() {
+    scanner.scan("{\"type\":\"APPLICATION_LOG\", \"host\":12345}");
+    String type = scanner.getType();
+    int hostCode = scanner.getHostCode();
+    scanner.scan("{\"type\":\"APPLICATION_LOG\", \"host\":\"1234\\u0035\"}");
+    assertSame(type, scanner.getType());
+    assertEquals(hostCode, scanner.getHostCode());
+    assertEquals("12345", scanner.getHost());
+    scanner.scan("{\"type\":null}");
+    assertEquals(ValueDictionary.NULL_CODE, scanner.getTypeCode());
+  }
+
+  @Test
+  public void scanTimestamps() {
+    scanner.scan("{\"timestamp\":\"1491377495212\"}");
+    assertEquals(BigDecimal.valueOf(1491377495212L), scanner.getTimestamp());
+    scanner.scan("{\"timestamp\":1491377495212.25}");
+    assertEquals(new BigDecimal("1491377495212.25"), scanner.getTimestamp());
+    scanner.scan("{\"timestamp\":123456789012345678901234567890}");
+    assertEquals(new BigDecimal("123456789012345678901234567890"), scanner.getTimestamp());
+    scanner.scan("{\"timestamp\":-5}");
+    assertEquals(BigDecimal.valueOf(-5), scanner.getTimestamp());
+    scanner.scan("{\"timestamp\":null}");
+    assertNull(scanner.getTimestamp());
+  }
+
+  @Test
+  public void scanEmptyObject() {
+    String expected = "id=null, state=null, timestamp=null, type=null, host=null";
+    assertEquals(expected, scan(" { } "));
+  }
+
+  @Test
+  public void scanByteBufferRange() {
+    byte[] bytes =
+        "xx{\"id\":\"b\", \"state\":\"FINISHED\", \"timestamp\":3}yy"
+            .getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes);
+    scanner.scan(buffer, 2, bytes.length - 2);
+    String expected = "id=b, state=FINISHED, timestamp=3, type=null, host=null";
+    assertEquals(expected, scanner.toInputEvent().toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void scanUnterminatedString() {
+    scanner.scan("{\"id\":\"abc}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void scanMissingComma() {
+    scanner.scan("{\"id\":\"abc\" \"state\":\"STARTED\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void scanNotAnObject() {
+    scanner.scan("");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void scanInvalidNull() {
+    scanner.scan("{\"id\":\"a\",\"type\":nope}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void scanNullPrefix() {
+    scanner.scan("{\"id\":\"a\",\"host\":nullx}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void scanTrailingContent() {
+    scanner.scan("{\"id\":\"a\"} x");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void scanTrailingContentAfterEmptyObject() {
+    scanner.scan("{}}");
+  }
+
+  @Test
+  public void scanTrailingWhitespace() {
+    String expected = "id=a, state=null, timestamp=null, type=null, host=null";
+    assertEquals(expected, scan("{\"id\":\"a\",\"type\":null} \t\r"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void scanInvalidTimestamp() {
+    scanner.scan("{\"timestamp\":\"abc\"}");
+    scanner.getTimestamp();
+  }
+}
@@ -46,6 +46,19 @@ public class InputEventTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public void getStateCode() {
+    assertEquals(InputEventScanner.STATE_OTHER, eventNotNull.getStateCode());
+    assertEquals(
+        InputEventScanner.STATE_STARTED,
+        new InputEvent("id", new String("STARTED"), 1L, null, null).getStateCode());
+    assertEquals(
+        InputEventScanner.STATE_FINISHED,
+        new InputEvent("id", "FINISHED", 1L, null, null).getStateCode());
+    assertEquals(
+        InputEventScanner.STATE_OTHER, new InputEvent("id", null, 1L, null, null).getStateCode());
+  }
+
   @Test
   public void getTimestamp() {
     BigDecimal expected = BigDecimal.valueOf(3);
@@ -80,4 +93,27 @@ public class InputEventTest {
     String actual = eventNullable.getType();
     assertEquals(expected, actual);
   }
+
+  @Test
+  public void getTimestampMillis() {
+    long expected = 3;
+    long actual = eventNotNull.getTimestampMillis();
+    assertEquals(expected, actual);
+    assertEquals(null, eventNotNull.getExactTimestamp());
+  }
+
+  @Test
+  public void getTimestampFractional() {
+    InputEvent event = new InputEvent("id1", "state2", new BigDecimal("3.25"), null, null);
+    assertEquals(Timestamps.NONE, event.getTimestampMillis());
+    assertEquals(new BigDecimal("3.25"), event.getExactTimestamp());
+    assertEquals(new BigDecimal("3.25"), event.getTimestamp());
+  }
+
+  @Test
+  public void getTimestampNull() {
+    InputEvent event = new InputEvent("id1", "state2", (BigDecimal) null, null, null);
+    assertEquals(Timestamps.NONE, event.getTimestampMillis());
+    assertEquals(null, event.getTimestamp());
+  }
 }
@@ -141,6 +141,18 @@ public class OutputEventTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public void acceptFinishedLaterBeforeStarted() {
+    String expected = "id=, duration=4, type=, host=, alert=false";
+    String actual =
+        outputEventEmpty
+            .accept(new InputEvent("", "FINISHED", BigDecimal.valueOf(4), "", ""))
+            .accept(new InputEvent("", "FINISHED", BigDecimal.valueOf(5), "", ""))
+            .accept(new InputEvent("", "STARTED", BigDecimal.valueOf(1), "", ""))
+            .toString();
+    assertEquals(expected, actual);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void acceptDifferentId1() {
     String expected = "";
@@ -308,4 +320,74 @@ public class OutputEventTest {
     String actual = combinedOutputEvent.getAlert().toString();
     assertEquals(expected, actual);
   }
+
+  @Test
+  public void acceptFractionalTimestamps() {
+    String expected = "id=, duration=5.5, type=, host=, alert=true";
+    String actual =
+        outputEventEmpty
+            .accept(new InputEvent("", "STARTED", new BigDecimal("1.5"), "", ""))
+            .accept(new InputEvent("", "FINISHED", BigDecimal.valueOf(7), "", ""))
+            .toString();
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void acceptMixedTimestamps() {
+    String expected = "id=, duration=2.5, type=, host=, alert=false";
+    String actual =
+        outputEventEmpty
+            .accept(new InputEvent("", "STARTED", 2L, "", ""))
+            .accept(new InputEvent("", "STARTED", new BigDecimal("1.5"), "", ""))
+            .accept(new InputEvent("", "FINISHED", 4L, "", ""))
+            .toString();
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void acceptOversizedTimestamps() {
+    String expected = "id=, duration=3, type=, host=, alert=false";
+    String actual =
+        outputEventEmpty
+            .accept(
+                new InputEvent(
+                    "", "STARTED", new BigDecimal("123456789012345678901234567890"), "", ""))
+            .accept(
+                new InputEvent(
+                    "", "FINISHED", new BigDecimal("123456789012345678901234567893"), "", ""))
+            .toString();
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void acceptOverflowingDuration() {
+    String expected = "id=, duration=18446744073709551613, type=, host=, alert=true";
+    String actual =
+        outputEventEmpty
+            .accept(new InputEvent("", "STARTED", -Long.MAX_VALUE, "", ""))
+            .accept(new InputEvent("", "FINISHED", Long.MAX_VALUE - 1, "", ""))
+            .toString();
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void durationRecomputedAfterAccept() {
+    outputEventEmpty.accept(startedInputEvent1);
+    assertEquals(null, outputEventEmpty.getDuration());
+    assertEquals(Boolean.FALSE, outputEventEmpty.getAlert());
+    outputEventEmpty.accept(new InputEvent("id1", "FINISHED", 4L, null, null));
+    assertEquals(1, outputEventEmpty.getDurationMillis());
+    assertEquals(Boolean.FALSE, outputEventEmpty.getAlert());
+    outputEventEmpty.accept(finishedInputEvent1);
+    assertEquals(BigDecimal.valueOf(5), outputEventEmpty.getDuration());
+    assertEquals(Boolean.TRUE, outputEventEmpty.getAlert());
+  }
+
+  @Test
+  public void acceptWithoutState() {
+    String expected = "id=id1, duration=null, type=type, host=null, alert=null";
+    String actual =
+        outputEventEmpty.accept(new InputEvent("id1", null, 3L, "type", null)).toString();
+    assertEquals(expected, actual);
+  }
 }
@@ -0,0 +1,83 @@
+package com.test.event;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ValueDictionaryTest {
+  @Test
+  public void codeAndDecode() {
+    ValueDictionary dictionary = new ValueDictionary();
+    assertEquals(ValueDictionary.NULL_CODE, dictionary.code(null));
+    assertNull(dictionary.decode(ValueDictionary.NULL_CODE));
+    int code = dictionary.code("APPLICATION_LOG");
+    assertNotEquals(ValueDictionary.NULL_CODE, code);
+    assertEquals(code, dictionary.code(new String("APPLICATION_LOG")));
+    assertNotEquals(code, dictionary.code("12345"));
+    assertEquals("APPLICATION_LOG", dictionary.decode(code));
+    assertEquals(2, dictionary.size());
+  }
+
+  @Test
+  public void lookupRawBytes() {
+    ValueDictionary dictionary = new ValueDictionary();
+    ValueDictionary.Lookup lookup = dictionary.new Lookup();
+    ByteBuffer buffer =
+        ByteBuffer.wrap("x12345yAPPLICATION_LOG".getBytes(StandardCharsets.US_ASCII));
+    int host = lookup.code(buffer, 1, 6);
+    int type = lookup.code(buffer, 7, buffer.limit());
+    assertEquals(dictionary.code("12345"), host);
+    assertEquals(dictionary.code("APPLICATION_LOG"), type);
+    assertEquals(host, lookup.code(buffer, 1, 6));
+    assertSame(dictionary.decode(host), dictionary.decode(lookup.code(buffer, 1, 6)));
+
+    for (int i = 0; i < 1000; i++) {
+      ByteBuffer value = ByteBuffer.wrap(("host" + i).getBytes(StandardCharsets.US_ASCII));
+      assertEquals("host" + i, dictionary.decode(lookup.code(value, 0, value.limit())));
+    }
+    assertEquals(host, lookup.code(buffer, 1, 6));
+  }
+
+  @Test
+  public void uncodedOverCapacity() {
+    ValueDictionary dictionary = new ValueDictionary(2);
+    ValueDictionary.Lookup lookup = dictionary.new Lookup();
+    int first = dictionary.code("first");
+    ByteBuffer second = ByteBuffer.wrap("second".getBytes(StandardCharsets.US_ASCII));
+    assertEquals(dictionary.code("second"), lookup.code(second, 0, second.limit()));
+    ByteBuffer third = ByteBuffer.wrap("third".getBytes(StandardCharsets.US_ASCII));
+    assertEquals(ValueDictionary.UNCODED, lookup.code(third, 0, third.limit()));
+    assertEquals(ValueDictionary.UNCODED, dictionary.code("third"));
+    assertEquals(first, dictionary.code("first"));
+    assertEquals(2, dictionary.size());
+
+    dictionary.setCapacity(3);
+    assertNotEquals(ValueDictionary.UNCODED, lookup.code(third, 0, third.limit()));
+  }
+
+  @Test
+  public void concurrentCodes() {
+    ValueDictionary dictionary = new ValueDictionary();
+    Set<String> mismatches = ConcurrentHashMap.newKeySet();
+    IntStream.range(0, 200000)
+        .parallel()
+        .forEach(
+            i -> {
+              String value = "value" + i % 5000;
+              if (!value.equals(dictionary.decode(dictionary.code(value)))) {
+                mismatches.add(value);
+              }
+            });
+    assertEquals(0, mismatches.size());
+    assertEquals(5000, dictionary.size());
+  }
+}
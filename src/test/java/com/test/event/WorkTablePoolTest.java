@@ -0,0 +1,83 @@
+package com.test.event;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WorkTablePoolTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static void write(WorkTablePool pool, String outputFileName, OutputEvent... events)
+      throws SQLException, IOException {
+    OutputGenerator generator = new OutputGenerator(pool, outputFileName, 2);
+    for (OutputEvent event : events) {
+      generator.emit(event);
+    }
+    generator.finish();
+  }
+
+  @Test
+  public void outputsReuseTable() throws SQLException, IOException {
+    File database = folder.newFolder("db");
+    try (WorkTablePool pool =
+        WorkTablePool.pooled("jdbc:hsqldb:file:" + database.getPath() + "/db;shutdown=true")) {
+      WorkTable table = pool.take();
+      pool.give(table);
+
+      write(
+          pool,
+          "first.csv",
+          OutputEvent.restore("a", 1L, 6L, "APPLICATION_LOG", "12345", true),
+          OutputEvent.restore("b", 1L, 4L, null, null, true),
+          OutputEvent.restore("c", 1L, 9L, null, null, true));
+      write(pool, "second.csv", OutputEvent.restore("d", 2L, 3L, null, null, true));
+      write(pool, "empty.csv");
+
+      assertSame(table, pool.take());
+      pool.give(table);
+    }
+    assertEquals(
+        Arrays.asList("a,5,APPLICATION_LOG,12345,true", "b,3,,,false", "c,8,,,true"),
+        Files.readAllLines(database.toPath().resolve("first.csv"), StandardCharsets.UTF_8));
+    assertEquals(
+        Collections.singletonList("d,1,,,false"),
+        Files.readAllLines(database.toPath().resolve("second.csv"), StandardCharsets.UTF_8));
+    assertEquals(0, Files.size(database.toPath().resolve("empty.csv")));
+  }
+
+  @Test
+  public void concurrentOutputsTakeOwnTables() throws SQLException, IOException {
+    File database = folder.newFolder("db");
+    try (WorkTablePool pool =
+        WorkTablePool.pooled("jdbc:hsqldb:file:" + database.getPath() + "/db;shutdown=true")) {
+      WorkTable first = pool.take();
+      WorkTable second = pool.take();
+      assertNotSame(first, second);
+      pool.give(first);
+      pool.give(second);
+    }
+  }
+
+  @Test
+  public void unpooledClosesTable() throws SQLException, IOException {
+    File database = folder.newFolder("db");
+    WorkTablePool pool =
+        WorkTablePool.unpooled("jdbc:hsqldb:file:" + database.getPath() + "/db;shutdown=true");
+    WorkTable table = pool.take();
+    pool.give(table);
+    assertTrue(table.getConnection().isClosed());
+  }
+}
@@ -0,0 +1,31 @@
+package com.test.follow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class EmitLatencyTest {
+  @Test
+  public void percentiles() {
+    EmitLatency emitLatency = new EmitLatency();
+    assertEquals(0, emitLatency.getPercentileMicros(99));
+    emitLatency.record(1_500_000, 98);
+    emitLatency.record(40_000_000, 2);
+
+    assertEquals(100, emitLatency.getCount());
+    assertEquals(2270, emitLatency.getMeanMicros());
+    assertEquals(40000, emitLatency.getMaxMicros());
+    // 1.5 ms falls into the bucket of 2^20 to 2^21 - 1 ns
+    assertEquals(2097, emitLatency.getPercentileMicros(50));
+    assertEquals(40000, emitLatency.getPercentileMicros(99));
+  }
+
+  @Test
+  public void recordNegativeAsZero() {
+    EmitLatency emitLatency = new EmitLatency();
+    emitLatency.record(-5, 1);
+    assertEquals(1, emitLatency.getCount());
+    assertEquals(0, emitLatency.getMaxMicros());
+    assertEquals(0, emitLatency.getPercentileMicros(100));
+  }
+}
@@ -0,0 +1,136 @@
+package com.test.follow;
+
+import com.test.event.OutputEvent;
+import com.test.output.OutputSink;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FollowProcessorTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Sink that publishes its records on every flush */
+  private static class FlushingSink implements OutputSink {
+    final List<String> pending = new ArrayList<>();
+    final List<String> flushed = Collections.synchronizedList(new ArrayList<>());
+    volatile boolean closed = false;
+
+    @Override
+    public void write(OutputEvent outputEvent) {
+      pending.add(outputEvent.toString());
+    }
+
+    @Override
+    public void flush() {
+      flushed.addAll(pending);
+      pending.clear();
+    }
+
+    @Override
+    public void close() {
+      flush();
+      closed = true;
+    }
+
+    @Override
+    public long getWriteCount() {
+      return flushed.size();
+    }
+  }
+
+  private static void append(Path path, String content) throws IOException {
+    Files.write(
+        path,
+        content.getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+  }
+
+  private static void awaitSize(List<String> records, int size) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (records.size() < size && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(size, records.size());
+  }
+
+  @Before
+  public void setUp() {
+    OutputEvent.ALERT_THRESHOLD = 4;
+  }
+
+  @Test
+  public void emitAsIdsComplete() throws Exception {
+    Path path = folder.newFile().toPath();
+    append(path, "{\"id\":\"a\", \"state\":\"STARTED\", \"timestamp\":1}\n");
+    FlushingSink sink = new FlushingSink();
+    FollowProcessor followProcessor = new FollowProcessor(path, sink, 1);
+    AtomicReference<Object> result = new AtomicReference<>();
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                result.set(followProcessor.run());
+              } catch (IOException e) {
+                result.set(e);
+              }
+            });
+    thread.start();
+
+    append(path, "{\"id\":\"b\", \"state\":\"STARTED\", \"timestamp\":2}\n{\"id\":\"a\", ");
+    append(path, "\"state\":\"FINISHED\", \"type\":\"T\", \"timestamp\":9}\n");
+    awaitSize(sink.flushed, 1);
+    assertEquals("id=a, duration=8, type=T, host=null, alert=true", sink.flushed.get(0));
+
+    // the file is rotated, the new one completes b
+    Files.move(path, path.resolveSibling(path.getFileName() + ".1"));
+    append(path, "{\"id\":\"b\", \"state\":\"FINISHED\", \"timestamp\":3}\n");
+    append(path, "{\"id\":\"c\", \"state\":\"FINISHED\", \"timestamp\":3}\n");
+    awaitSize(sink.flushed, 2);
+    assertEquals("id=b, duration=1, type=null, host=null, alert=false", sink.flushed.get(1));
+
+    followProcessor.stop();
+    assertTrue(followProcessor.awaitTermination(10, TimeUnit.SECONDS));
+    thread.join();
+    assertEquals(3L, result.get());
+    assertEquals(
+        Arrays.asList(
+            "id=a, duration=8, type=T, host=null, alert=true",
+            "id=b, duration=1, type=null, host=null, alert=false",
+            "id=c, duration=null, type=null, host=null, alert=false"),
+        sink.flushed);
+    assertTrue(sink.closed);
+    assertEquals(2, followProcessor.getEmitLatency().getCount());
+  }
+
+  @Test
+  public void missingInputClosesSink() throws Exception {
+    FlushingSink sink = new FlushingSink();
+    FollowProcessor followProcessor =
+        new FollowProcessor(folder.getRoot().toPath().resolve("missing.log"), sink, 1);
+    try {
+      followProcessor.run();
+    } catch (IOException e) {
+      assertTrue(sink.closed);
+      assertTrue(followProcessor.awaitTermination(0, TimeUnit.SECONDS));
+      return;
+    }
+    throw new AssertionError("IOException expected");
+  }
+}
@@ -0,0 +1,113 @@
+package com.test.generate;
+
+import com.test.event.InputEvent;
+import com.test.event.InputEventFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class LoadGeneratorTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private LoadGenerator generator(int threads) {
+    LoadGenerator generator = new LoadGenerator();
+    generator.setTargetSize(200 << 10);
+    generator.setBlockPairs(256);
+    generator.setThreads(threads);
+    return generator;
+  }
+
+  /** @return count of events per id, every line must be parsed */
+  private static Map<String, Integer> eventCounts(Path file) throws IOException {
+    Map<String, Integer> counts = new HashMap<>();
+    for (String line : Files.readAllLines(file)) {
+      InputEvent inputEvent = InputEventFactory.buildEvent(line);
+      assertNotNull(line, inputEvent);
+      counts.merge(inputEvent.getId(), 1, Integer::sum);
+    }
+    return counts;
+  }
+
+  @Test
+  public void generateSameFileOnAnyThreadCount() throws IOException {
+    Path single = folder.getRoot().toPath().resolve("single.log");
+    Path parallel = folder.getRoot().toPath().resolve("parallel.log");
+    long written = generator(1).generate(single);
+    assertEquals(written, generator(4).generate(parallel));
+    assertEquals(written, Files.size(single));
+    assertTrue(written >= 200 << 10);
+    assertArrayEquals(Files.readAllBytes(single), Files.readAllBytes(parallel));
+  }
+
+  @Test
+  public void generatePairsWithoutOrphans() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("pairs.log");
+    LoadGenerator generator = generator(2);
+    generator.setExtraFields(4);
+    generator.generate(file);
+    Map<String, Integer> counts = eventCounts(file);
+    assertTrue(counts.size() > 500);
+    assertTrue(counts.values().stream().allMatch(count -> count == 2));
+  }
+
+  @Test
+  public void generateOrphansAndRepeatedIds() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("orphans.log");
+    LoadGenerator generator = generator(2);
+    generator.setOrphanRatio(0.5);
+    generator.generate(file);
+    Map<String, Integer> counts = eventCounts(file);
+    long orphans = counts.values().stream().filter(count -> count == 1).count();
+    assertTrue(orphans > counts.size() / 3 && orphans < 2 * counts.size() / 3);
+
+    generator = generator(2);
+    generator.setIdCount(100);
+    generator.generate(file);
+    assertEquals(100, eventCounts(file).size());
+  }
+
+  @Test
+  public void generateInOrder() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("ordered.log");
+    LoadGenerator generator = generator(1);
+    generator.setOutOfOrderDistance(0);
+    generator.generate(file);
+    List<String> lines = Files.readAllLines(file);
+    for (int i = 0; i < lines.size(); i += 2) {
+      InputEvent started = InputEventFactory.buildEvent(lines.get(i));
+      InputEvent finished = InputEventFactory.buildEvent(lines.get(i + 1));
+      assertEquals("STARTED", started.getState());
+      assertEquals(started.getId(), finished.getId());
+    }
+  }
+
+  @Test
+  public void zipf() {
+    double[] uniform = LoadGenerator.zipf(4, 0);
+    assertEquals(0.25, uniform[0], 1e-9);
+    assertEquals(1, uniform[3], 1e-9);
+    double[] skewed = LoadGenerator.zipf(3, 1);
+    assertEquals(6 / 11.0, skewed[0], 1e-9);
+    assertEquals(9 / 11.0, skewed[1], 1e-9);
+    assertEquals(1, skewed[2], 1e-9);
+  }
+
+  @Test
+  public void parseSize() {
+    assertEquals(4L << 30, LoadGenerator.parseSize("4g"));
+    assertEquals(400L << 20, LoadGenerator.parseSize("400M"));
+    assertEquals(512, LoadGenerator.parseSize("512"));
+  }
+}
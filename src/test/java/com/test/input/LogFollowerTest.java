@@ -0,0 +1,92 @@
+package com.test.input;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogFollowerTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<String> lines = new ArrayList<>();
+
+  private final LineConsumer collecting =
+      (buffer, start, end) -> {
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++) {
+          bytes[i - start] = buffer.get(i);
+        }
+        lines.add(new String(bytes, StandardCharsets.UTF_8));
+      };
+
+  private static void append(Path path, String content) throws IOException {
+    Files.write(
+        path,
+        content.getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+  }
+
+  @Test
+  public void pollAppendedLines() throws IOException {
+    Path path = folder.newFile().toPath();
+    append(path, "aaa\nbb");
+    try (LogFollower follower = new LogFollower(path, 4)) {
+      assertEquals(6, follower.poll(collecting));
+      assertEquals(Collections.singletonList("aaa"), lines);
+      assertEquals(4, follower.getLineOffset());
+
+      assertEquals(0, follower.poll(collecting));
+      append(path, "b\r\ncccccccccc\n");
+      follower.poll(collecting);
+      assertEquals(Arrays.asList("aaa", "bbb", "cccccccccc"), lines);
+      assertEquals(20, follower.getLineOffset());
+    }
+  }
+
+  @Test
+  public void pollAfterTruncation() throws IOException {
+    Path path = folder.newFile().toPath();
+    append(path, "aaa\nbbb\n");
+    try (LogFollower follower = new LogFollower(path)) {
+      follower.poll(collecting);
+      Files.write(path, "c\n".getBytes(StandardCharsets.UTF_8));
+      follower.poll(collecting);
+      assertEquals(Arrays.asList("aaa", "bbb", "c"), lines);
+      assertEquals(1, follower.getTruncationCount());
+      assertEquals(2, follower.getLineOffset());
+    }
+  }
+
+  @Test
+  public void pollAfterRotation() throws IOException {
+    File file = folder.newFile();
+    Path path = file.toPath();
+    append(path, "aaa\n");
+    try (LogFollower follower = new LogFollower(path)) {
+      follower.poll(collecting);
+      append(path, "bbb\ncc");
+      Files.move(path, path.resolveSibling(file.getName() + ".1"));
+      assertEquals(6, follower.poll(collecting));
+      assertEquals(Arrays.asList("aaa", "bbb"), lines);
+
+      append(path, "ddd\n");
+      follower.poll(collecting);
+      assertEquals(Arrays.asList("aaa", "bbb", "cc", "ddd"), lines);
+      assertEquals(1, follower.getRotationCount());
+      assertEquals(4, follower.getLineOffset());
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package com.test.input;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedFileChunkerTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private File write(String content) throws IOException {
+    File file = folder.newFile();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private List<String> readLines(File file, int chunkCount, long minChunkSize)
+      throws IOException {
+    return MappedFileChunker.split(file.toPath(), chunkCount, minChunkSize, Integer.MAX_VALUE)
+        .stream()
+        .flatMap(FileChunk::lines)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void splitAlignedToNewlines() throws IOException {
+    File file = write("aaa\nbbbb\ncc\nd\neeeee\n");
+    List<FileChunk> chunks = MappedFileChunker.split(file.toPath(), 4, 1, Integer.MAX_VALUE);
+    long expectedOffset = 0;
+    for (FileChunk chunk : chunks) {
+      assertEquals(expectedOffset, chunk.getOffset());
+      expectedOffset += chunk.getLength();
+    }
+    assertEquals(file.length(), expectedOffset);
+    assertEquals(Arrays.asList("aaa", "bbbb", "cc", "d", "eeeee"), readLines(file, 4, 1));
+  }
+
+  @Test
+  public void linesSameAsFilesLines() throws IOException {
+    File file = write("a\r\nb\n\nccc\r\nlast line without newline");
+    assertEquals(Files.readAllLines(file.toPath()), readLines(file, 3, 1));
+  }
+
+  @Test
+  public void bareCarriageReturnStaysInLine() throws IOException {
+    File file = write("a\rb\nc\r\r\nd\r");
+    assertEquals(Arrays.asList("a\rb", "c\r", "d"), readLines(file, 2, 1));
+  }
+
+  @Test
+  public void linesUtf8() throws IOException {
+    File file = write("{\"id\":\"\u00e9v\u00e8nement\"}\n{\"id\":\"\u4e8b\u4ef6\"}\n");
+    assertEquals(Files.readAllLines(file.toPath()), readLines(file, 2, 1));
+  }
+
+  @Test
+  public void emptyFile() throws IOException {
+    File file = write("");
+    assertEquals(0, MappedFileChunker.split(file.toPath(), 4).size());
+  }
+
+  @Test
+  public void singleChunkForSmallFile() throws IOException {
+    File file = write("a\nb\nc\n");
+    assertEquals(1, MappedFileChunker.split(file.toPath(), 4).size());
+  }
+
+  @Test
+  public void parallelLines() throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      content.append("line").append(i).append('\n');
+    }
+    File file = write(content.toString());
+    List<String> actual =
+        MappedFileChunker.split(file.toPath(), 16, 1, Integer.MAX_VALUE)
+            .parallelStream()
+            .flatMap(FileChunk::lines)
+            .collect(Collectors.toList());
+    assertEquals(Files.readAllLines(file.toPath()), actual);
+  }
+
+  @Test
+  public void splitRangeOfLines() throws IOException {
+    File file = write("aaa\nbbbb\ncc\nd\neeeee");
+    List<FileChunk> chunks = MappedFileChunker.splitRange(file.toPath(), 4, 14, 4);
+    assertEquals(4, chunks.get(0).getOffset());
+    assertEquals(
+        Arrays.asList("bbbb", "cc", "d"),
+        chunks.stream().flatMap(FileChunk::lines).collect(Collectors.toList()));
+    assertEquals(0, MappedFileChunker.splitRange(file.toPath(), 19, Long.MAX_VALUE, 4).size());
+  }
+
+  @Test
+  public void completeLinesEnd() throws IOException {
+    assertEquals(14, MappedFileChunker.completeLinesEnd(write("aaa\nbbbb\ncc\nd\neeeee").toPath()));
+    assertEquals(3, MappedFileChunker.completeLinesEnd(write("aa\n").toPath()));
+    assertEquals(0, MappedFileChunker.completeLinesEnd(write("aa").toPath()));
+    StringBuilder longLine = new StringBuilder("a\n");
+    for (int i = 0; i < 20000; i++) {
+      longLine.append('b');
+    }
+    assertEquals(2, MappedFileChunker.completeLinesEnd(write(longLine.toString()).toPath()));
+  }
+
+  @Test
+  public void sliceAlignedToNewlines() throws IOException {
+    File file = write("aaa\nbbbb\ncc\nd\neeeee");
+    FileChunk chunk = MappedFileChunker.split(file.toPath(), 1).get(0);
+    List<String> lines = new ArrayList<>();
+    int position = 0;
+    while (position < chunk.getLength()) {
+      FileChunk slice = chunk.slice(position, 2);
+      assertEquals(chunk.getOffset() + position, slice.getOffset());
+      position += slice.getLength();
+      lines.addAll(slice.lines().collect(Collectors.toList()));
+    }
+    assertEquals(Arrays.asList("aaa", "bbbb", "cc", "d", "eeeee"), lines);
+    assertEquals(5, chunk.slice(4, 1).getLength());
+  }
+}
@@ -0,0 +1,117 @@
+package com.test.jfr;
+
+import com.test.CsaEventProcessor;
+import com.test.aggregate.OutputEventTable;
+import com.test.event.CsvOutputGenerator;
+import com.test.input.FileChunk;
+import com.test.input.MappedFileChunker;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecordingTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static List<RecordedEvent> events(List<RecordedEvent> recorded, String name) {
+    return recorded
+        .stream()
+        .filter(event -> event.getEventType().getName().equals(name))
+        .collect(Collectors.toList());
+  }
+
+  private static boolean recorded(StageEvent event) {
+    event.begin();
+    event.end();
+    return event.shouldCommit();
+  }
+
+  @Test
+  public void eventsAreNotRecordedWithoutRecording() {
+    assertFalse(recorded(new ChunkParseEvent()));
+    assertFalse(recorded(new AggregationMergeEvent()));
+    assertFalse(recorded(new SinkFlushEvent()));
+    assertFalse(recorded(new ConnectionInitEvent()));
+  }
+
+  @Test
+  public void recordStages() throws IOException {
+    Path input = Paths.get("src/test/resources/input.log");
+    Path recordingFile = folder.getRoot().toPath().resolve("run.jfr");
+    List<FileChunk> chunks = MappedFileChunker.split(input, 4);
+    FlightRecording recording = new FlightRecording(recordingFile);
+    try {
+      assertTrue(recorded(new ChunkParseEvent()));
+      OutputEventTable table = new OutputEventTable();
+      for (FileChunk chunk : chunks) {
+        table.merge(new OutputEventTable().acceptLines(chunk));
+      }
+      CsvOutputGenerator generator =
+          new CsvOutputGenerator(folder.getRoot().toPath().resolve("output.csv"));
+      generator.emit(table.toOutputEvent(0));
+      generator.finish();
+    } finally {
+      recording.close();
+    }
+    assertFalse(recorded(new ChunkParseEvent()));
+
+    List<RecordedEvent> recorded = RecordingFile.readAllEvents(recordingFile);
+    List<RecordedEvent> parses = events(recorded, "com.test.ChunkParse");
+    assertEquals(chunks.size(), parses.size());
+    assertTrue(parses.stream().allMatch(event -> event.getLong("lines") > 0));
+    assertEquals(
+        input.toFile().length(), parses.stream().mapToLong(event -> event.getLong("length")).sum());
+
+    List<RecordedEvent> merges = events(recorded, "com.test.AggregationMerge");
+    assertEquals(chunks.size(), merges.size());
+    assertTrue(merges.stream().allMatch(event -> "table".equals(event.getString("kind"))));
+
+    List<RecordedEvent> flushes = events(recorded, "com.test.SinkFlush");
+    assertEquals(1, flushes.size());
+    assertEquals("csv", flushes.get(0).getString("sink"));
+    assertEquals(1, flushes.get(0).getLong("records"));
+  }
+
+  @Test
+  public void recordGroupingMerges() throws IOException {
+    int idCount = 1000;
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < idCount; i++) {
+      lines.add("{\"id\":\"id" + i + "\", \"state\":\"STARTED\", \"timestamp\":" + i + "}");
+    }
+    for (int i = 0; i < idCount; i++) {
+      lines.add("{\"id\":\"id" + i + "\", \"state\":\"FINISHED\", \"timestamp\":" + 2 * i + "}");
+    }
+    Path recordingFile = folder.getRoot().toPath().resolve("run.jfr");
+    CsaEventProcessor processor = new CsaEventProcessor();
+    FlightRecording recording = new FlightRecording(recordingFile);
+    try {
+      assertEquals(
+          idCount,
+          processor
+              .getOutputEventsStream(processor.getInputEventStream(lines.parallelStream()))
+              .count());
+    } finally {
+      recording.close();
+    }
+
+    // one event per merge of two partial maps, not per merged id
+    List<RecordedEvent> merges =
+        events(RecordingFile.readAllEvents(recordingFile), "com.test.AggregationMerge");
+    assertFalse(merges.isEmpty());
+    assertTrue(merges.size() < idCount);
+    assertTrue(merges.stream().allMatch(event -> "grouping".equals(event.getString("kind"))));
+  }
+}
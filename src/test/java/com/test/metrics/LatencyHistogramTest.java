@@ -0,0 +1,49 @@
+package com.test.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+  @Test
+  public void percentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 99; i++) {
+      histogram.record(3_000);
+    }
+    histogram.record(5_000_000);
+    assertEquals(100, histogram.getCount());
+    // 3000 ns fall into the bucket up to 4095 ns
+    assertEquals(4, histogram.getPercentileMicros(50));
+    assertEquals(4, histogram.getPercentileMicros(99));
+    assertEquals(5_000, histogram.getPercentileMicros(100));
+    assertEquals(5_000, histogram.getMaxMicros());
+    assertEquals(52, histogram.getMeanMicros());
+  }
+
+  @Test
+  public void recordConcurrently() throws InterruptedException {
+    LatencyHistogram histogram = new LatencyHistogram();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      long latency = (t + 1) * 1_000_000L;
+      threads.add(
+          new Thread(
+              () -> {
+                for (int i = 0; i < 10_000; i++) {
+                  histogram.record(latency);
+                }
+              }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(40_000, histogram.getCount());
+    assertEquals(4_000, histogram.getMaxMicros());
+    assertEquals(2_500, histogram.getMeanMicros());
+  }
+}
@@ -0,0 +1,64 @@
+package com.test.metrics;
+
+import com.test.event.InputEventFactory;
+import com.test.input.FileChunk;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessingMetricsTest {
+  @Test
+  public void progressAndEta() throws InterruptedException {
+    ProcessingMetrics metrics = new ProcessingMetrics();
+    assertEquals(0, metrics.getEtaSeconds());
+    metrics.addInputSize(1000);
+    assertEquals(-1, metrics.getEtaSeconds());
+    Thread.sleep(10);
+    metrics.addLinesRead(10, 250);
+    assertEquals(25.0, metrics.getProgressPercent(), 1e-9);
+    assertTrue(metrics.getEtaSeconds() >= 1);
+    assertTrue(metrics.getLinesPerSecond() > 0);
+    metrics.addLinesRead(30, 750);
+    assertEquals(100.0, metrics.getProgressPercent(), 1e-9);
+    assertEquals(0, metrics.getEtaSeconds());
+  }
+
+  @Test
+  public void countLinesAndParseFailures() {
+    ProcessingMetrics metrics = ProcessingMetrics.shared();
+    String lines =
+        "{\"id\":\"a\", \"state\":\"STARTED\", \"timestamp\":1}\n"
+            + "not json\n"
+            + "{\"id\":\"a\", \"state\":\"FINISHED\", \"timestamp\":2}";
+    ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+    long linesRead = metrics.getLinesRead();
+    long bytesRead = metrics.getBytesRead();
+    long parseFailures = metrics.getParseFailures();
+
+    new FileChunk(0, buffer).forEachLine(InputEventFactory::buildEvent);
+    assertEquals(linesRead + 3, metrics.getLinesRead());
+    assertEquals(bytesRead + buffer.limit(), metrics.getBytesRead());
+    assertEquals(parseFailures + 1, metrics.getParseFailures());
+
+    assertEquals(3, new FileChunk(0, buffer).lines().count());
+    assertEquals(linesRead + 6, metrics.getLinesRead());
+    assertEquals(bytesRead + 2 * buffer.limit(), metrics.getBytesRead());
+  }
+
+  @Test
+  public void register() throws Exception {
+    ProcessingMetrics.register();
+    ProcessingMetrics.register();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(ProcessingMetrics.OBJECT_NAME);
+    assertEquals(
+        ProcessingMetrics.shared().getParseFailures(), server.getAttribute(name, "ParseFailures"));
+  }
+}
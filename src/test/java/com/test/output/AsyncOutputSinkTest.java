@@ -0,0 +1,157 @@
+package com.test.output;
+
+import com.test.event.OutputEvent;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncOutputSinkTest {
+  /** Sink that remembers ids, optionally waits for a latch or fails on an id */
+  private static class RecordingSink implements OutputSink {
+    final List<String> ids = new ArrayList<>();
+    final List<Thread> threads = new ArrayList<>();
+    CountDownLatch release = new CountDownLatch(0);
+    String failOn = null;
+    boolean closed = false;
+    CountDownLatch flushed = new CountDownLatch(1);
+    int flushedCount = 0;
+
+    @Override
+    public void write(OutputEvent outputEvent) throws IOException {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (outputEvent.getId().equals(failOn)) {
+        throw new IOException("failed on " + failOn);
+      }
+      ids.add(outputEvent.getId());
+      threads.add(Thread.currentThread());
+    }
+
+    @Override
+    public void flush() {
+      flushedCount = ids.size();
+      flushed.countDown();
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public long getWriteCount() {
+      return ids.size();
+    }
+  }
+
+  private static OutputEvent event(int i) {
+    return OutputEvent.restore("id" + i, i, i + 1, null, null, true);
+  }
+
+  @Test
+  public void writeInOrder() throws IOException {
+    RecordingSink sink = new RecordingSink();
+    AsyncOutputSink asyncOutputSink = new AsyncOutputSink(sink, 2);
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      asyncOutputSink.write(event(i));
+      expected.add("id" + i);
+    }
+    asyncOutputSink.close();
+
+    assertEquals(expected, sink.ids);
+    assertEquals(10000, asyncOutputSink.getWriteCount());
+    assertTrue(sink.closed);
+    assertFalse(sink.threads.contains(Thread.currentThread()));
+  }
+
+  @Test
+  public void writeOrderedParallelStream() throws IOException {
+    RecordingSink sink = new RecordingSink();
+    try (AsyncOutputSink asyncOutputSink = new AsyncOutputSink(sink, 4)) {
+      IntStream.range(0, 50000)
+          .parallel()
+          .mapToObj(AsyncOutputSinkTest::event)
+          .forEachOrdered(
+              outputEvent -> {
+                try {
+                  asyncOutputSink.write(outputEvent);
+                } catch (IOException e) {
+                  throw new IllegalStateException(e);
+                }
+              });
+    }
+    assertEquals(
+        IntStream.range(0, 50000).mapToObj(i -> "id" + i).collect(Collectors.toList()), sink.ids);
+  }
+
+  @Test
+  public void flushPartialBatch() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    try (AsyncOutputSink asyncOutputSink = new AsyncOutputSink(sink, 2)) {
+      for (int i = 0; i < 3; i++) {
+        asyncOutputSink.write(event(i));
+      }
+      asyncOutputSink.flush();
+      assertTrue(sink.flushed.await(10, TimeUnit.SECONDS));
+      assertEquals(3, sink.flushedCount);
+      assertFalse(sink.closed);
+    }
+  }
+
+  @Test
+  public void backpressure() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    sink.release = new CountDownLatch(1);
+    AsyncOutputSink asyncOutputSink = new AsyncOutputSink(sink, 1);
+    CountDownLatch written = new CountDownLatch(1);
+    Thread producer =
+        new Thread(
+            () -> {
+              try {
+                for (int i = 0; i < 4 * AsyncOutputSink.BATCH_SIZE; i++) {
+                  asyncOutputSink.write(event(i));
+                }
+                written.countDown();
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    producer.start();
+
+    // the writer holds one batch and the queue another one, the producer has to wait
+    assertFalse(written.await(300, TimeUnit.MILLISECONDS));
+    sink.release.countDown();
+    assertTrue(written.await(10, TimeUnit.SECONDS));
+    asyncOutputSink.close();
+    assertEquals(4 * AsyncOutputSink.BATCH_SIZE, sink.ids.size());
+  }
+
+  @Test(expected = IOException.class)
+  public void writerFailure() throws IOException {
+    RecordingSink sink = new RecordingSink();
+    sink.failOn = "id10";
+    AsyncOutputSink asyncOutputSink = new AsyncOutputSink(sink, 1);
+    try {
+      for (int i = 0; i < 100 * AsyncOutputSink.BATCH_SIZE; i++) {
+        asyncOutputSink.write(event(i));
+      }
+    } finally {
+      assertTrue(sink.closed);
+    }
+    asyncOutputSink.close();
+  }
+}
@@ -0,0 +1,54 @@
+package com.test.output;
+
+import com.test.aggregate.OutputEventCodec;
+import com.test.event.OutputEvent;
+import com.test.event.Timestamps;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BinaryOutputSinkTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void writeAndRead() throws IOException {
+    List<OutputEvent> outputEvents =
+        Arrays.asList(
+            OutputEvent.restore("a", 10L, 15L, "APPLICATION_LOG", "12345", true),
+            OutputEvent.restore("b", Timestamps.NONE, 3L, null, null, true),
+            OutputEvent.restore(
+                "c", new BigDecimal("1.25"), new BigDecimal("9.5"), null, "h", true),
+            OutputEvent.restore("d", Timestamps.NONE, Timestamps.NONE, "t", null, false));
+    Path output = folder.getRoot().toPath().resolve("output.bin");
+    try (BinaryOutputSink sink = new BinaryOutputSink(output)) {
+      for (OutputEvent outputEvent : outputEvents) {
+        sink.write(outputEvent);
+      }
+      assertEquals(outputEvents.size(), sink.getWriteCount());
+    }
+
+    List<String> actual = new ArrayList<>();
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(output)))) {
+      OutputEvent outputEvent;
+      while ((outputEvent = OutputEventCodec.read(in)) != null) {
+        actual.add(outputEvent.toString());
+      }
+    }
+    List<String> expected = new ArrayList<>();
+    outputEvents.forEach(outputEvent -> expected.add(outputEvent.toString()));
+    assertEquals(expected, actual);
+  }
+}
@@ -0,0 +1,43 @@
+package com.test.output;
+
+import com.test.event.OutputEvent;
+import com.test.event.Timestamps;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonLinesOutputSinkTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void write() throws IOException {
+    Path output = folder.getRoot().toPath().resolve("output.jsonl");
+    try (JsonLinesOutputSink sink = new JsonLinesOutputSink(output)) {
+      sink.write(OutputEvent.restore("a", 10L, 15L, "APPLICATION_LOG", "12345", true));
+      sink.write(
+          OutputEvent.restore("q\"\\\n\u0001\u00e9", Timestamps.NONE, 3L, null, null, true));
+      sink.write(
+          OutputEvent.restore(
+              "c", new BigDecimal("1.25"), new BigDecimal("9.5"), null, "h", true));
+      sink.write(OutputEvent.restore("d", Timestamps.NONE, Timestamps.NONE, null, null, false));
+      assertEquals(4, sink.getWriteCount());
+    }
+
+    assertEquals(
+        Arrays.asList(
+            "{\"id\":\"a\",\"duration\":5,\"type\":\"APPLICATION_LOG\",\"host\":\"12345\",\"alert\":true}",
+            "{\"id\":\"q\\\"\\\\\\n\\u0001\u00e9\",\"duration\":null,\"type\":null,\"host\":null,\"alert\":false}",
+            "{\"id\":\"c\",\"duration\":8.25,\"type\":null,\"host\":\"h\",\"alert\":true}",
+            "{\"id\":\"d\",\"duration\":null,\"type\":null,\"host\":null,\"alert\":null}"),
+        Files.readAllLines(output, StandardCharsets.UTF_8));
+  }
+}
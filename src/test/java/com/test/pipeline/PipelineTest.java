@@ -0,0 +1,139 @@
+package com.test.pipeline;
+
+import com.test.aggregate.OutputEventTable;
+import com.test.event.InputEventFactory;
+import com.test.event.OutputEvent;
+import com.test.output.OutputSink;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelineTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private File input;
+  private Map<String, String> expected;
+
+  /** Sink that remembers the records and the threads that wrote them */
+  private static class CollectingSink implements OutputSink {
+    final Map<String, String> records = new TreeMap<>();
+    final List<Thread> threads = new ArrayList<>();
+    String failOn = null;
+    int closeCount = 0;
+
+    @Override
+    public void write(OutputEvent outputEvent) throws IOException {
+      if (outputEvent.getId().equals(failOn)) {
+        throw new IOException("failed on " + failOn);
+      }
+      records.put(outputEvent.getId(), outputEvent.toString());
+      if (!threads.contains(Thread.currentThread())) {
+        threads.add(Thread.currentThread());
+      }
+    }
+
+    @Override
+    public void close() {
+      closeCount++;
+    }
+
+    @Override
+    public long getWriteCount() {
+      return records.size();
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    OutputEvent.ALERT_THRESHOLD = 4;
+    Random random = new Random(12);
+    String[] states = {"STARTED", "FINISHED"};
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 200000; i++) {
+      int id = random.nextInt(50000);
+      lines
+          .append("{\"id\":\"id")
+          .append(id)
+          .append("\", \"state\":\"")
+          .append(states[random.nextInt(states.length)])
+          .append("\", \"type\":\"type")
+          .append(id % 3)
+          .append("\", \"timestamp\":")
+          .append(1491377495000L + random.nextInt(20))
+          .append("}\n");
+      if (i % 50000 == 0) {
+        lines.append("not json\n\n");
+      }
+    }
+    input = folder.newFile();
+    Files.write(input.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8));
+
+    OutputEventTable table = new OutputEventTable();
+    Files.readAllLines(input.toPath()).stream()
+        .map(InputEventFactory::buildEvent)
+        .filter(e -> e != null)
+        .forEach(table::accept);
+    expected = new TreeMap<>();
+    table.stream().forEach(e -> expected.put(e.getId(), e.toString()));
+  }
+
+  @Test
+  public void runSingleThreadPerStage() throws IOException {
+    CollectingSink sink = new CollectingSink();
+    assertEquals(expected.size(), new Pipeline(1, 1, 1).run(input.toPath(), sink));
+    assertEquals(expected, sink.records);
+    assertEquals(1, sink.closeCount);
+  }
+
+  @Test
+  public void runManyThreadsPerStage() throws IOException {
+    CollectingSink sink = new CollectingSink();
+    assertEquals(expected.size(), new Pipeline(2, 5, 3).run(input.toPath(), sink));
+    assertEquals(expected, sink.records);
+    assertEquals(1, sink.threads.size());
+    assertEquals("csa-writer", sink.threads.get(0).getName());
+  }
+
+  @Test
+  public void runEmptyFile() throws IOException {
+    CollectingSink sink = new CollectingSink();
+    assertEquals(0, new Pipeline(1, 2, 2).run(folder.newFile().toPath(), sink));
+    assertEquals(1, sink.closeCount);
+  }
+
+  @Test
+  public void writerFailureStopsAllStages() throws IOException {
+    CollectingSink sink = new CollectingSink();
+    sink.failOn = expected.keySet().iterator().next();
+    try {
+      new Pipeline(1, 3, 2).run(input.toPath(), sink);
+      fail("Pipeline must fail");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("failed on " + sink.failOn));
+    }
+    assertEquals(1, sink.closeCount);
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      assertTrue(thread.getName(), !thread.getName().startsWith("csa-parser"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void moreReadersThanParsers() {
+    new Pipeline(3, 2, 1);
+  }
+}
@@ -0,0 +1,58 @@
+package com.test.pipeline;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SpscRingTest {
+  @Test
+  public void capacityRoundedUp() {
+    assertEquals(1, new SpscRing<Integer>(1).capacity());
+    assertEquals(8, new SpscRing<Integer>(5).capacity());
+    assertEquals(16, new SpscRing<Integer>(16).capacity());
+  }
+
+  @Test
+  public void offerUntilFull() {
+    SpscRing<Integer> ring = new SpscRing<>(4);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ring.offer(i));
+    }
+    assertFalse(ring.offer(4));
+    assertEquals(4, ring.size());
+    assertEquals(Integer.valueOf(0), ring.poll());
+    assertTrue(ring.offer(4));
+    for (int i = 1; i <= 4; i++) {
+      assertEquals(Integer.valueOf(i), ring.poll());
+    }
+    assertNull(ring.poll());
+  }
+
+  @Test
+  public void handoffBetweenThreads() throws InterruptedException {
+    SpscRing<Integer> ring = new SpscRing<>(8);
+    int count = 1_000_000;
+    Thread producer =
+        new Thread(
+            () -> {
+              for (int i = 0; i < count; i++) {
+                while (!ring.offer(i)) {
+                  Thread.yield();
+                }
+              }
+            });
+    producer.start();
+    for (int i = 0; i < count; i++) {
+      Integer element;
+      while ((element = ring.poll()) == null) {
+        Thread.yield();
+      }
+      assertEquals(i, element.intValue());
+    }
+    producer.join();
+    assertNull(ring.poll());
+  }
+}
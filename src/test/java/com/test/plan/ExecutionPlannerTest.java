@@ -0,0 +1,101 @@
+package com.test.plan;
+
+import com.test.aggregate.AggregationMode;
+import com.test.aggregate.OutputEventTable;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExecutionPlannerTest {
+  private static final long GB = 1L << 30;
+
+  /** @return profile of an input sampled at 1/64, 100 bytes per line, 2 lines per id */
+  private static InputProfile profile(long inputSize, long repeatedIds) {
+    long sampledBytes = Math.min(inputSize, 64L << 20);
+    long sampledLines = sampledBytes / 100;
+    return new InputProfile(
+        inputSize,
+        sampledBytes,
+        sampledLines,
+        0,
+        sampledLines / 2,
+        10,
+        repeatedIds,
+        1000,
+        0,
+        200,
+        50);
+  }
+
+  private static int estimatedIds(long inputSize) {
+    double ids = profile(inputSize, 0).getEstimatedIds();
+    return (int) Math.ceil(ids * ExecutionPlanner.ESTIMATE_MARGIN);
+  }
+
+  @Test
+  public void parallelTableWhenTablesFit() {
+    ExecutionPlan plan = new ExecutionPlanner(8 * GB, 8).plan(profile(4 * GB, 0));
+    assertEquals(AggregationMode.TABLE, plan.getAggregationMode());
+    assertTrue(plan.isParallel());
+    assertEquals(1, plan.getReaderThreads());
+    assertEquals(4, plan.getParserThreads());
+    assertEquals(3, plan.getShardCount());
+    // all ids, the chunk and shard tables get their share
+    assertEquals(estimatedIds(4 * GB), plan.getTableCapacity());
+    assertTrue(plan.getEstimatedPeakMemory() < 0.6 * 8 * GB);
+  }
+
+  @Test
+  public void singleThreadTableForSmallInputOrTightHeap() {
+    ExecutionPlan small = new ExecutionPlanner(8 * GB, 8).plan(profile(1 << 20, 0));
+    assertEquals(AggregationMode.TABLE, small.getAggregationMode());
+    assertFalse(small.isParallel());
+    assertEquals(1, small.getParserThreads());
+    assertEquals(1, small.getShardCount());
+    assertEquals(5242, small.getTableCapacity());
+
+    ExecutionPlan tight = new ExecutionPlanner(4 * GB, 8).plan(profile(4 * GB, 0));
+    assertEquals(AggregationMode.TABLE, tight.getAggregationMode());
+    assertFalse(tight.isParallel());
+    assertEquals(estimatedIds(4 * GB), tight.getTableCapacity());
+  }
+
+  @Test
+  public void spillWhenTableDoesNotFit() {
+    // streaming would fit, but the sample can not prove that no id has events after completion
+    ExecutionPlan inOrder = new ExecutionPlanner(GB, 8).plan(profile(8 * GB, 0));
+    assertEquals(AggregationMode.SPILL, inOrder.getAggregationMode());
+    // the partitions of a split input are aggregated in parallel
+    assertTrue(inOrder.isParallel());
+    assertTrue(
+        inOrder.explain().contains("Plan: spill aggregation, partitions in parallel on 8 threads"));
+    assertEquals((long) (0.6 * GB) / 2, inOrder.getMemoryBudget());
+    // the ids that fit into the budget
+    assertTrue(inOrder.getTableCapacity() > OutputEventTable.DEFAULT_EXPECTED_SIZE);
+    assertTrue(inOrder.getTableCapacity() < estimatedIds(8 * GB));
+    assertTrue(
+        inOrder.getReasons().toString(),
+        inOrder.getReasons().stream().anyMatch(reason -> reason.contains("-am streaming")));
+
+    ExecutionPlan repeated = new ExecutionPlanner(GB, 8).plan(profile(8 * GB, 1));
+    assertEquals(AggregationMode.SPILL, repeated.getAggregationMode());
+    assertEquals((long) (0.6 * GB) / 2, repeated.getMemoryBudget());
+
+    ExecutionPlan singleProcessor = new ExecutionPlanner(GB, 1).plan(profile(8 * GB, 0));
+    assertEquals(AggregationMode.SPILL, singleProcessor.getAggregationMode());
+    assertFalse(singleProcessor.isParallel());
+  }
+
+  @Test
+  public void explain() {
+    String text = new ExecutionPlanner(8 * GB, 8).plan(profile(4 * GB, 0)).explain();
+    assertTrue(text, text.startsWith("Input: 4.0 GB, 64.0 MB sampled"));
+    assertTrue(text, text.contains("Plan: table aggregation, parallel on 8 threads"));
+    assertTrue(text, text.contains("Pipeline: 1 reader, 4 parser and 3 shard threads"));
+    assertTrue(text, text.contains("Estimated peak memory: "));
+    assertEquals("1023 B", ExecutionPlan.bytes(1023));
+    assertEquals("1.5 KB", ExecutionPlan.bytes(1536));
+  }
+}
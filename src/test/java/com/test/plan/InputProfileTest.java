@@ -0,0 +1,94 @@
+package com.test.plan;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InputProfileTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static String line(String id, String state, long timestamp) {
+    return String.format(
+        "{\"id\":\"%s\", \"state\":\"%s\", \"timestamp\":%d}\n", id, state, timestamp);
+  }
+
+  private Path write(String content) throws IOException {
+    Path input = folder.newFile().toPath();
+    Files.write(input, content.getBytes(StandardCharsets.UTF_8));
+    return input;
+  }
+
+  @Test
+  public void profileWholeInput() throws IOException {
+    Path input =
+        write(
+            line("a", "STARTED", 1)
+                + line("b", "STARTED", 2)
+                + line("c", "STARTED", 3)
+                + line("a", "FINISHED", 4)
+                + "not an event\n"
+                + line("c", "FINISHED", 5)
+                + line("b", "FINISHED", 6)
+                + line("a", "FINISHED", 7)
+                + line("orphan", "STARTED", 8));
+    InputProfile profile = InputProfile.sample(input, InputProfile.DEFAULT_SAMPLE_SIZE);
+    assertTrue(profile.isComplete());
+    assertEquals(Files.size(input), profile.getSampledBytes());
+    assertEquals(9, profile.getSampledLines());
+    assertEquals(1, profile.getParseFailures());
+    assertEquals(4, profile.getSampledIds());
+    assertEquals(9, profile.getEstimatedLines());
+    assertEquals(4, profile.getEstimatedIds());
+    assertEquals(2.25, profile.getMeanIdLength(), 1e-9);
+    assertEquals(2, profile.getEventsPerId(), 1e-9);
+    assertEquals(1, profile.getRepeatedIds());
+    assertEquals(3, profile.getOpenIdsPeak());
+    assertEquals(5, profile.getMaxReorderDistance());
+    // the orphan was seen less than 5 lines before the end
+    assertEquals(0, profile.getOrphanIds());
+  }
+
+  @Test
+  public void extrapolateSample() throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      content.append(line("id" + i, "STARTED", i)).append(line("id" + i, "FINISHED", i + 1));
+      if (i % 10 == 0) {
+        content.append(line("orphan" + i, "STARTED", i));
+      }
+    }
+    Path input = write(content.toString());
+    long size = Files.size(input);
+    InputProfile profile = InputProfile.sample(input, size / 4);
+    assertFalse(profile.isComplete());
+    assertTrue(profile.getSampledBytes() <= size / 4);
+    assertEquals('\n', Files.readAllBytes(input)[(int) profile.getSampledBytes() - 1]);
+    assertEquals(1, profile.getMaxReorderDistance());
+    // open ids are the orphans and at most one pair
+    assertTrue(profile.getOpenIdsPeak() >= profile.getOrphanIds());
+    assertTrue(profile.getOpenIdsPeak() <= profile.getOrphanIds() + 2);
+    assertEquals(0, profile.getRepeatedIds());
+    assertTrue(Math.abs(profile.getEstimatedLines() - 2100) < 50);
+    assertTrue(Math.abs(profile.getEstimatedIds() - 1100) < 50);
+    assertEquals(1 / 11.0, profile.getOrphanRatio(), 0.02);
+  }
+
+  @Test
+  public void profileTestInput() throws IOException {
+    InputProfile profile =
+        InputProfile.sample(Paths.get("src/test/resources/input.log"), 1 << 20);
+    assertTrue(profile.isComplete());
+    assertEquals(0, profile.getParseFailures());
+    assertTrue(profile.getSampledIds() > 0);
+  }
+}
@@ -0,0 +1,83 @@
+package com.test.trace;
+
+import com.test.aggregate.OutputEventTable;
+import com.test.event.OutputEvent;
+import com.test.input.FileChunk;
+import com.test.input.MappedFileChunker;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdTracerTest {
+  @After
+  public void tearDown() {
+    IdTracer.disable();
+  }
+
+  private static List<String> aggregate(Path input) throws IOException {
+    OutputEventTable table = new OutputEventTable();
+    for (FileChunk chunk : MappedFileChunker.split(input, 4)) {
+      table.merge(new OutputEventTable().acceptLines(chunk));
+    }
+    return table.stream().map(OutputEvent::toString).collect(Collectors.toList());
+  }
+
+  @Test
+  public void disabledByDefault() {
+    assertFalse(IdTracer.isEnabled());
+    assertFalse(IdTracer.traces("scsmbstgra"));
+  }
+
+  @Test
+  public void traceChosenIds() {
+    IdTracer.configure(Arrays.asList("scsmbstgra", "scsmbstgrb"), 0);
+    assertTrue(IdTracer.isEnabled());
+    assertTrue(IdTracer.traces("scsmbstgra"));
+    assertTrue(IdTracer.traces("scsmbstgrb"));
+    assertFalse(IdTracer.traces("scsmbstgrc"));
+    assertFalse(IdTracer.traces(null));
+
+    IdTracer.configure(Collections.emptyList(), 0);
+    assertFalse(IdTracer.isEnabled());
+  }
+
+  @Test
+  public void sampleFractionOfIds() {
+    List<String> ids =
+        IntStream.range(0, 100_000).mapToObj(i -> "id" + i).collect(Collectors.toList());
+    IdTracer.configure(Collections.emptyList(), 0.1);
+    List<String> sampled = ids.stream().filter(IdTracer::traces).collect(Collectors.toList());
+    assertTrue(sampled.size() > 9_000 && sampled.size() < 11_000);
+    // the same ids are sampled again
+    IdTracer.configure(Collections.emptyList(), 0.1);
+    assertEquals(sampled, ids.stream().filter(IdTracer::traces).collect(Collectors.toList()));
+
+    IdTracer.configure(Collections.emptyList(), 1);
+    assertTrue(ids.stream().allMatch(IdTracer::traces));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectInvalidSample() {
+    IdTracer.configure(Collections.emptyList(), 1.5);
+  }
+
+  @Test
+  public void tracingDoesNotChangeResults() throws IOException {
+    Path input = Paths.get("src/test/resources/input.log");
+    List<String> untraced = aggregate(input);
+    IdTracer.configure(Collections.emptyList(), 1);
+    assertEquals(untraced, aggregate(input));
+  }
+}